@@ -1,8 +1,11 @@
 package BTree;
 
+import java.io.Serial;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.Map;
 
 /**
  * A B+ tree Since the structures and behaviors between internal node and
@@ -13,6 +16,22 @@ import java.util.LinkedList;
  * @param < TValue > the data type of the value
  */
 public class BTree<TKey extends Comparable<TKey>, TValue> implements Serializable {
+    @Serial
+    private static final long serialVersionUID = -8663828214632785943L;
+
+    /**
+     * The order of a tree created without one.
+     */
+    public static final int DEFAULT_ORDER = 4;
+    /**
+     * The smallest order that keeps splits and merges balanced.
+     */
+    public static final int MIN_ORDER = 3;
+    /**
+     * The estimated size of a reference, used to derive an order from a node size.
+     */
+    private static final int REFERENCE_BYTES = 8;
+
     /**
      * @uml.property name="root"
      * @uml.associationEnd multiplicity="(1 1)"
@@ -24,7 +43,49 @@ public class BTree<TKey extends Comparable<TKey>, TValue> implements Serializabl
     private String tableName;
 
     public BTree() {
-        this.root = new BTreeLeafNode<TKey, TValue>();
+        this(DEFAULT_ORDER);
+    }
+
+    /**
+     * @param order The maximum number of keys of a node.
+     * @throws IllegalArgumentException If the order is smaller than MIN_ORDER.
+     */
+    public BTree(int order) {
+        this(order, null);
+    }
+
+    /**
+     * Integer and Double keys are stored in primitive arrays, so nodes don't box them and searches compare
+     * primitives. Other keys are stored as objects.
+     *
+     * @param order    The maximum number of keys of a node.
+     * @param keyClass The class of the keys, null to store them as objects.
+     * @throws IllegalArgumentException If the order is smaller than MIN_ORDER.
+     */
+    public BTree(int order, Class<TKey> keyClass) {
+        if (order < MIN_ORDER) {
+            throw new IllegalArgumentException("B+ tree order must be at least " + MIN_ORDER);
+        }
+        this.root = new BTreeLeafNode<TKey, TValue>(KeyArray.of(keyClass, order + 1));
+    }
+
+    /**
+     * Derives the order of a tree from a target node size.
+     * An entry is estimated as its key plus two references, the key and the value or child.
+     *
+     * @param nodeBytes The target size of a node in bytes.
+     * @param keyBytes  The estimated size of a key in bytes.
+     * @return The order, at least MIN_ORDER.
+     */
+    public static int orderForNodeBytes(int nodeBytes, int keyBytes) {
+        return Math.max(MIN_ORDER, nodeBytes / (keyBytes + 2 * REFERENCE_BYTES));
+    }
+
+    /**
+     * @return The maximum number of keys of a node.
+     */
+    public int getOrder() {
+        return this.root.getOrder();
     }
 
     /**
@@ -41,6 +102,106 @@ public class BTree<TKey extends Comparable<TKey>, TValue> implements Serializabl
         }
     }
 
+    /**
+     * Builds the tree bottom-up from entries sorted by key, it replaces a slow sequence of inserts.
+     * Leaves are filled to the order one after the other and linked, then every inner level is made by grouping
+     * the nodes of the level below, until a single root is left. The last leaf takes half of the entries of the one
+     * before it when it would be under-filled, and inner nodes share the children of a level evenly, so every node
+     * holds at least half of the order like a tree built by inserts.
+     *
+     * @param entries The entries, with strictly increasing keys.
+     * @throws IllegalStateException    If the tree is not empty.
+     * @throws IllegalArgumentException If the keys are not strictly increasing.
+     */
+    public void bulkLoad(Iterator<? extends Map.Entry<TKey, TValue>> entries) {
+        if (this.root.getNodeType() != TreeNodeType.LeafNode || this.root.getKeyCount() > 0) {
+            throw new IllegalStateException("Bulk load needs an empty tree");
+        }
+
+        int order = this.getOrder();
+        ArrayList<BTreeNode<TKey>> level = new ArrayList<>();
+        ArrayList<TKey> minKeys = new ArrayList<>();
+        BTreeLeafNode<TKey, TValue> leaf = null;
+        TKey last = null;
+        while (entries.hasNext()) {
+            Map.Entry<TKey, TValue> entry = entries.next();
+            TKey key = entry.getKey();
+            if (last != null && key.compareTo(last) <= 0) {
+                throw new IllegalArgumentException("Bulk load keys must be strictly increasing");
+            }
+            last = key;
+
+            if (leaf == null || leaf.getKeyCount() == order) {
+                BTreeLeafNode<TKey, TValue> next = new BTreeLeafNode<TKey, TValue>(this.root.newKeys());
+                if (leaf != null) {
+                    leaf.setRightSibling(next);
+                    next.setLeftSibling(leaf);
+                }
+                leaf = next;
+                level.add(leaf);
+                minKeys.add(key);
+            }
+            leaf.setKey(leaf.keyCount, key);
+            leaf.setValue(leaf.keyCount, entry.getValue());
+            leaf.keyCount++;
+        }
+
+        if (level.isEmpty()) {
+            return;
+        }
+        if (level.size() > 1 && leaf.isUnderflow()) {
+            // the leaf before the last one is full, so the two of them hold enough entries for two halves
+            BTreeLeafNode<TKey, TValue> previous = (BTreeLeafNode<TKey, TValue>) level.get(level.size() - 2);
+            int moved = previous.getKeyCount() - (previous.getKeyCount() + leaf.getKeyCount() + 1) / 2;
+            for (int i = leaf.getKeyCount() - 1; i >= 0; i--) {
+                leaf.setKey(i + moved, leaf.getKey(i));
+                leaf.setValue(i + moved, leaf.getValue(i));
+            }
+            for (int i = 0; i < moved; i++) {
+                int from = previous.getKeyCount() - moved + i;
+                leaf.setKey(i, previous.getKey(from));
+                leaf.setValue(i, previous.getValue(from));
+                previous.setKey(from, null);
+                previous.setValue(from, null);
+            }
+            previous.keyCount -= moved;
+            leaf.keyCount += moved;
+            minKeys.set(minKeys.size() - 1, leaf.getKey(0));
+        }
+
+        while (level.size() > 1) {
+            // the fewest parents that can hold the level, sharing the children evenly
+            int parents = (level.size() + order) / (order + 1);
+            ArrayList<BTreeNode<TKey>> upper = new ArrayList<>(parents);
+            ArrayList<TKey> upperMinKeys = new ArrayList<>(parents);
+            int start = 0;
+            for (int i = 0; i < parents; i++) {
+                int count = level.size() / parents + (i < level.size() % parents ? 1 : 0);
+                BTreeInnerNode<TKey> parent = new BTreeInnerNode<TKey>(this.root.newKeys());
+                parent.setChild(0, level.get(start));
+                for (int j = 1; j < count; j++) {
+                    // a separator is the smallest key of the subtree on its right
+                    parent.setKey(j - 1, minKeys.get(start + j));
+                    parent.setChild(j, level.get(start + j));
+                }
+                parent.keyCount = count - 1;
+
+                if (!upper.isEmpty()) {
+                    upper.getLast().setRightSibling(parent);
+                    parent.setLeftSibling(upper.getLast());
+                }
+                upper.add(parent);
+                upperMinKeys.add(minKeys.get(start));
+                start += count;
+            }
+
+            level = upper;
+            minKeys = upperMinKeys;
+        }
+
+        this.root = level.getFirst();
+    }
+
     public LinkedList<TValue> search(TKey lowerBound, TKey upperBound) {
         LinkedList<TValue> res = new LinkedList<>();
         BTreeLeafNode<TKey, TValue> leaf;
@@ -49,23 +210,17 @@ public class BTree<TKey extends Comparable<TKey>, TValue> implements Serializabl
             leaf = this.root.getSmallest();
         } else {
             leaf = this.findLeafNodeShouldContainKey(lowerBound);
-            index = leaf.search(lowerBound);
-        }
-
-        if (index == -1) {
-            index = 0;
+            index = leaf.lowerBound(lowerBound);
         }
 
         while (leaf != null) {
             for (int i = index; i < leaf.getKeyCount(); i++) {
-                if (upperBound != null && leaf.getKey(i).compareTo(upperBound) > 0)
+                if (upperBound != null && leaf.compareKey(i, upperBound) > 0)
                     return res;
-                else if (lowerBound == null)
-                    res.add(leaf.getValue(i));
-                else if (leaf.getKey(i).compareTo(lowerBound) >= 0)
-                    res.add(leaf.getValue(i));
+                res.add(leaf.getValue(i));
             }
-            leaf = (BTreeLeafNode<TKey, TValue>) leaf.getRightSibling();
+            // follow the leaf chain, getRightSibling stops at the last child of the parent
+            leaf = (BTreeLeafNode<TKey, TValue>) leaf.rightSibling;
             index = 0;
         }
 
@@ -1,5 +1,6 @@
 package BTree;
 
+import java.io.Serial;
 import java.io.Serializable;
 import java.util.ArrayList;
 
@@ -7,6 +8,9 @@ import java.util.ArrayList;
  * @author mohamed
  */
 class BTreeInnerNode<TKey extends Comparable<TKey>> extends BTreeNode<TKey> implements Serializable {
+	@Serial
+	private static final long serialVersionUID = -6981389755349359344L;
+
 	protected final static int INNERORDER = 4;
 	/**
 	 * @uml.property name="children"
@@ -14,8 +18,22 @@ class BTreeInnerNode<TKey extends Comparable<TKey>> extends BTreeNode<TKey> impl
 	protected Object[] children;
 
 	public BTreeInnerNode() {
-		this.keys = new Object[INNERORDER + 1];
-		this.children = new Object[INNERORDER + 2];
+		this(INNERORDER);
+	}
+
+	/**
+	 * @param order The maximum number of keys of the node.
+	 */
+	public BTreeInnerNode(int order) {
+		this(KeyArray.of(null, order + 1));
+	}
+
+	/**
+	 * @param keys The empty keys of the node, one slot more than the order.
+	 */
+	BTreeInnerNode(KeyArray keys) {
+		this.keys = keys;
+		this.children = new Object[keys.length() + 1];
 	}
 
 	@SuppressWarnings("unchecked")
@@ -56,17 +74,8 @@ class BTreeInnerNode<TKey extends Comparable<TKey>> extends BTreeNode<TKey> impl
 
 	@Override
 	public int search(TKey key) {
-		int index = 0;
-		for (index = 0; index < this.getKeyCount(); ++index) {
-			int cmp = this.getKey(index).compareTo(key);
-			if (cmp == 0) {
-				return index + 1;
-			} else if (cmp > 0) {
-				return index;
-			}
-		}
-
-		return index;
+		// the child on the right of an equal key holds it
+		return this.upperBound(key);
 	}
 
 	/* The codes below are used to support insertion operation */
@@ -95,7 +104,7 @@ class BTreeInnerNode<TKey extends Comparable<TKey>> extends BTreeNode<TKey> impl
 	protected BTreeNode<TKey> split() {
 		int midIndex = this.getKeyCount() / 2;
 
-		BTreeInnerNode<TKey> newRNode = new BTreeInnerNode<TKey>();
+		BTreeInnerNode<TKey> newRNode = new BTreeInnerNode<TKey>(this.newKeys());
 		for (int i = midIndex + 1; i < this.getKeyCount(); ++i) {
 			newRNode.setKey(i - midIndex - 1, this.getKey(i));
 			this.setKey(i, null);
@@ -223,6 +232,8 @@ class BTreeInnerNode<TKey extends Comparable<TKey>> extends BTreeNode<TKey> impl
 			this.keyCount += 1;
 
 			upKey = siblingNode.getKey(0);
+			// the first child moved here, deleteAt drops the child on the right of the key so shift it first
+			siblingNode.setChild(0, siblingNode.getChild(1));
 			siblingNode.deleteAt(borrowIndex);
 		} else {
 			// borrow the last key from left sibling, insert it to head
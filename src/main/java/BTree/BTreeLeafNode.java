@@ -1,5 +1,6 @@
 package BTree;
 
+import java.io.Serial;
 import java.io.Serializable;
 import java.util.ArrayList;
 
@@ -7,6 +8,9 @@ import java.util.ArrayList;
  * @author mohamed
  */
 class BTreeLeafNode<TKey extends Comparable<TKey>, TValue> extends BTreeNode<TKey> implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 7235195007186542414L;
+
     protected final static int LEAFORDER = 4;
     /**
      * @uml.property name="values"
@@ -19,9 +23,23 @@ class BTreeLeafNode<TKey extends Comparable<TKey>, TValue> extends BTreeNode<TKe
     private ArrayList<Boolean> filters;
 
     public BTreeLeafNode() {
+        this(LEAFORDER);
+    }
+
+    /**
+     * @param order The maximum number of keys of the node.
+     */
+    public BTreeLeafNode(int order) {
+        this(KeyArray.of(null, order + 1));
+    }
+
+    /**
+     * @param keys The empty keys of the node, one slot more than the order.
+     */
+    BTreeLeafNode(KeyArray keys) {
         this.filters = new ArrayList<>();
-        this.keys = new Object[LEAFORDER + 1];
-        this.values = new Object[LEAFORDER + 1];
+        this.keys = keys;
+        this.values = new Object[keys.length()];
     }
 
     public BTreeLeafNode(BTreeLeafNode smallest) {
@@ -45,13 +63,9 @@ class BTreeLeafNode<TKey extends Comparable<TKey>, TValue> extends BTreeNode<TKe
 
     @Override
     public int search(TKey key) {
-        for (int i = 0; i < this.getKeyCount(); ++i) {
-            int cmp = this.getKey(i).compareTo(key);
-            if (cmp == 0) {
-                return i;
-            } else if (cmp > 0) {
-                return -1;
-            }
+        int index = this.lowerBound(key);
+        if (index < this.getKeyCount() && this.compareKey(index, key) == 0) {
+            return index;
         }
 
         return -1;
@@ -69,18 +83,13 @@ class BTreeLeafNode<TKey extends Comparable<TKey>, TValue> extends BTreeNode<TKe
     /* The codes below are used to support insertion operation */
 
     public void insertKey(TKey key, TValue value) {
-        int index = 0;
-        while (index < this.getKeyCount() && this.getKey(index).compareTo(key) < 0)
-            ++index;
-        this.insertAt(index, key, value);
+        this.insertAt(this.lowerBound(key), key, value);
     }
 
     private void insertAt(int index, TKey key, TValue value) {
         // move space for the new key
-        for (int i = this.getKeyCount() - 1; i >= index; --i) {
-            this.setKey(i + 1, this.getKey(i));
-            this.setValue(i + 1, this.getValue(i));
-        }
+        this.keys.move(index, index + 1, this.getKeyCount() - index);
+        System.arraycopy(this.values, index, this.values, index + 1, this.getKeyCount() - index);
 
         // insert new key and value
         this.setKey(index, key);
@@ -96,7 +105,7 @@ class BTreeLeafNode<TKey extends Comparable<TKey>, TValue> extends BTreeNode<TKe
     protected BTreeNode<TKey> split() {
         int midIndex = this.getKeyCount() / 2;
 
-        BTreeLeafNode<TKey, TValue> newRNode = new BTreeLeafNode<TKey, TValue>();
+        BTreeLeafNode<TKey, TValue> newRNode = new BTreeLeafNode<TKey, TValue>(this.newKeys());
         for (int i = midIndex; i < this.getKeyCount(); ++i) {
             newRNode.setKey(i - midIndex, this.getKey(i));
             newRNode.setValue(i - midIndex, this.getValue(i));
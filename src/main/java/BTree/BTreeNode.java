@@ -1,5 +1,6 @@
 package BTree;
 
+import java.io.Serial;
 import java.io.Serializable;
 
 enum TreeNodeType implements Serializable {
@@ -10,10 +11,13 @@ enum TreeNodeType implements Serializable {
  * @author mohamed
  */
 abstract class BTreeNode<TKey extends Comparable<TKey>> implements Serializable {
+    @Serial
+    private static final long serialVersionUID = -5852631565920169378L;
+
     /**
      * @uml.property name="keys"
      */
-    protected Object[] keys;
+    protected KeyArray keys;
     /**
      * @uml.property name="keyCount"
      */
@@ -53,11 +57,18 @@ abstract class BTreeNode<TKey extends Comparable<TKey>> implements Serializable
 
     @SuppressWarnings("unchecked")
     public TKey getKey(int index) {
-        return (TKey) this.keys[index];
+        return (TKey) this.keys.get(index);
     }
 
     public void setKey(int index, TKey key) {
-        this.keys[index] = key;
+        this.keys.set(index, key);
+    }
+
+    /**
+     * Compares the key at a position with another key, without boxing primitive keys.
+     */
+    public int compareKey(int index, TKey key) {
+        return this.keys.compare(index, key);
     }
 
     public BTreeNode<TKey> getParent() {
@@ -68,6 +79,38 @@ abstract class BTreeNode<TKey extends Comparable<TKey>> implements Serializable
         this.parentNode = parent;
     }
 
+    /**
+     * @return The maximum number of keys of the node, it overflows when it holds one more.
+     */
+    public int getOrder() {
+        return this.keys.length() - 1;
+    }
+
+    /**
+     * @return Empty keys of the same kind and order, for a new node of the same tree.
+     */
+    protected KeyArray newKeys() {
+        return this.keys.create(this.keys.length());
+    }
+
+    /**
+     * Binary search for the first key that is not smaller than the given key.
+     *
+     * @return The position of the key, or the key count if every key is smaller.
+     */
+    protected int lowerBound(TKey key) {
+        return this.keys.lowerBound(key, this.getKeyCount());
+    }
+
+    /**
+     * Binary search for the first key that is greater than the given key.
+     *
+     * @return The position of the key, or the key count if no key is greater.
+     */
+    protected int upperBound(TKey key) {
+        return this.keys.upperBound(key, this.getKeyCount());
+    }
+
     /**
      * @uml.property name="nodeType"
      * @uml.associationEnd readOnly="true"
@@ -84,7 +127,7 @@ abstract class BTreeNode<TKey extends Comparable<TKey>> implements Serializable
     /* The codes below are used to support insertion operation */
 
     public boolean isOverflow() {
-        return this.getKeyCount() == this.keys.length;
+        return this.getKeyCount() == this.keys.length();
     }
 
     public BTreeNode<TKey> dealOverflow() {
@@ -94,15 +137,16 @@ abstract class BTreeNode<TKey extends Comparable<TKey>> implements Serializable
         BTreeNode<TKey> newRNode = this.split();
 
         if (this.getParent() == null) {
-            this.setParent(new BTreeInnerNode<TKey>());
+            this.setParent(new BTreeInnerNode<TKey>(this.newKeys()));
         }
         newRNode.setParent(this.getParent());
 
         // maintain links of sibling nodes
         newRNode.setLeftSibling(this);
         newRNode.setRightSibling(this.rightSibling);
-        if (this.getRightSibling() != null)
-            this.getRightSibling().setLeftSibling(newRNode);
+        // the raw link, the right sibling may belong to another parent
+        if (this.rightSibling != null)
+            this.rightSibling.setLeftSibling(newRNode);
         this.setRightSibling(newRNode);
 
         // push up a key to parent internal node
@@ -115,12 +159,13 @@ abstract class BTreeNode<TKey extends Comparable<TKey>> implements Serializable
 
     /* The codes below are used to support deletion operation */
 
+    // half of the order, so that two fused nodes never hold more keys than the order, even when it is odd
     public boolean isUnderflow() {
-        return this.getKeyCount() < (this.keys.length / 2);
+        return this.getKeyCount() < (this.getOrder() / 2);
     }
 
     public boolean canLendAKey() {
-        return this.getKeyCount() > (this.keys.length / 2);
+        return this.getKeyCount() > (this.getOrder() / 2);
     }
 
     public BTreeNode<TKey> getLeftSibling() {
@@ -2,25 +2,48 @@ package BTree;
 
 import DB.DBApp;
 import DB.DBAppException;
+import DB.Metadata;
+import DB.WriteAheadLog;
 
 import java.io.*;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.AbstractMap;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
 
 /**
  * This class represents a B+ tree index for a database table.
  * The keys in the B+ tree are the values of the indexed column.
- * The values in the B+ tree are HashMaps that map page numbers to the count of the key in the page.
+ * The values in the B+ tree are PostingLists, the ids of the pages holding the key as a compressed bitmap with the
+ * count of the key in each page, so lookups on several columns are combined with bitmap operations. Pages are
+ * referenced by their permanent id, so removing a page doesn't change the entries of the other pages.
+ * A record index also holds the RecordId of every record, so lookups find the records without reading the other
+ * records of their pages.
  * The B+ tree supports search, range search, insert, and delete operations.
  * The B+ tree can be saved to disk and loaded from disk.
+ * Loaded trees are kept resident by the IndexCache, changes only mark the tree dirty and the cache decides when it
+ * is saved.
+ * <p>
+ * When the IndexStorage property of the configuration is "paged", a new index is disk-resident instead: its entries
+ * are kept by a PagedBTree in an index file of IndexNodeBytes pages, next to a small file holding this descriptor,
+ * and only the nodes on the path of an operation are read. Its values are pages, or RecordIds in a record index,
+ * each with its count. The storage of an index is chosen when it is built, so the existing indexes keep theirs.
  */
-public class DBBTree<TKey extends Comparable<TKey>> extends BTree<TKey, HashMap<Integer, Integer>> implements Serializable {
+public class DBBTree<TKey extends Comparable<TKey>> implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 433869533699864994L;
 
+    private final BTree<TKey, PostingList> tree;
     private final String tableName;
     private final String indexName;
+    private final boolean recordIds;
+    private final boolean paged;
+    private transient PagedBTree<TKey> pagedTree;
+    private transient boolean dirty;
 
     /**
      * Constructs a new B+ tree index for a given table.
@@ -29,20 +52,255 @@ public class DBBTree<TKey extends Comparable<TKey>> extends BTree<TKey, HashMap<
      * @param indexName The name of the index.
      */
     public DBBTree(String tableName, String indexName) {
-        super();
+        this(tableName, indexName, BTree.DEFAULT_ORDER);
+    }
+
+    /**
+     * Constructs a new B+ tree index for a given table.
+     *
+     * @param tableName The name of the table.
+     * @param indexName The name of the index.
+     * @param order     The maximum number of keys of a node.
+     */
+    public DBBTree(String tableName, String indexName, int order) {
+        this(tableName, indexName, order, null);
+    }
+
+    /**
+     * Constructs a new B+ tree index on a column, its order is derived from the configuration and the keys of
+     * Integer and Double columns are stored in primitive arrays.
+     *
+     * @param tableName The name of the table.
+     * @param indexName The name of the index.
+     * @param type      The type of the indexed column.
+     */
+    public DBBTree(String tableName, String indexName, Metadata.ColumnType type) {
+        this(tableName, indexName, type, false);
+    }
+
+    /**
+     * Constructs a new B+ tree index on a column, like DBBTree(String, String, Metadata.ColumnType).
+     *
+     * @param tableName The name of the table.
+     * @param indexName The name of the index.
+     * @param type      The type of the indexed column.
+     * @param recordIds True for a record index, whose values are RecordIds, false for an index of pages.
+     */
+    public DBBTree(String tableName, String indexName, Metadata.ColumnType type, boolean recordIds) {
+        this(tableName, indexName, orderFor(type), keyClass(type), recordIds, pagedFromConfig());
+    }
+
+    private DBBTree(String tableName, String indexName, int order, Class<TKey> keyClass) {
+        this(tableName, indexName, order, keyClass, false, false);
+    }
+
+    private DBBTree(String tableName, String indexName, int order, Class<TKey> keyClass, boolean recordIds,
+                    boolean paged) {
+        this.tree = paged ? null : new BTree<>(order, keyClass);
         this.tableName = tableName;
         this.indexName = indexName;
+        this.recordIds = recordIds;
+        this.paged = paged;
+
+        if (paged) {
+            // the index file is replaced, the cached tree of the previous index must not write to it anymore
+            IndexCache.getInstance().discard(getPath());
+            this.pagedTree = PagedBTree.create(getPagedPath(), keyClass, nodeBytes(), PagedBTree.DEFAULT_CACHE_NODES);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <TKey> Class<TKey> keyClass(Metadata.ColumnType type) {
+        return (Class<TKey>) switch (type) {
+            case INTEGER -> Integer.class;
+            case DOUBLE -> Double.class;
+            case STRING -> String.class;
+        };
+    }
+
+    /**
+     * Derives the order of an index on a column from the IndexNodeBytes property of the configuration.
+     * Strings are estimated at 32 bytes.
+     *
+     * @param type The type of the indexed column.
+     * @return The order of the index.
+     */
+    public static int orderFor(Metadata.ColumnType type) {
+        return BTree.orderForNodeBytes(nodeBytes(), switch (type) {
+            case INTEGER -> Integer.BYTES;
+            case DOUBLE -> Double.BYTES;
+            case STRING -> 32;
+        });
+    }
+
+    private static int nodeBytes() {
+        return Integer.parseInt(DBApp.getDbConfig().getProperty("IndexNodeBytes", "4096"));
+    }
+
+    /**
+     * Reads the kind of the new indexes from the IndexEntries property of the configuration, "page" for indexes of
+     * pages and "record" for record indexes.
+     *
+     * @return True if new indexes are record indexes.
+     */
+    public static boolean recordIdsFromConfig() {
+        String entries = DBApp.getDbConfig().getProperty("IndexEntries", "page").trim();
+        return switch (entries) {
+            case "page" -> false;
+            case "record" -> true;
+            default -> throw new IllegalArgumentException("Unknown IndexEntries " + entries);
+        };
+    }
+
+    /**
+     * Reads the storage of the new indexes from the IndexStorage property of the configuration, "memory" for indexes
+     * loaded whole in memory and "paged" for disk-resident indexes.
+     *
+     * @return True if new indexes are disk-resident.
+     */
+    public static boolean pagedFromConfig() {
+        String storage = DBApp.getDbConfig().getProperty("IndexStorage", "memory").trim();
+        return switch (storage) {
+            case "memory" -> false;
+            case "paged" -> true;
+            default -> throw new IllegalArgumentException("Unknown IndexStorage " + storage);
+        };
+    }
+
+    /**
+     * @return The maximum number of keys of a node.
+     * @throws IllegalStateException If the index is disk-resident, its nodes are bounded by bytes instead.
+     */
+    public int getOrder() {
+        requireMemory();
+        return tree.getOrder();
     }
 
     /**
      * Searches for a key in the B+ tree.
      *
      * @param key The key to search for.
-     * @return A HashMap that maps page numbers to the count of the key in the page.
+     * @return A HashMap that maps page ids to the count of the key in the page, or null if the key is absent.
      */
-    @Override
     public HashMap<Integer, Integer> search(TKey key) {
-        return super.search(key);
+        if (paged) {
+            HashMap<Integer, Integer> counts = pagedTree.search(key);
+            if (counts == null || !recordIds) {
+                return counts;
+            }
+
+            HashMap<Integer, Integer> pages = new HashMap<>();
+            for (int recordId : counts.keySet()) {
+                pages.merge(RecordId.page(recordId), 1, Integer::sum);
+            }
+            return pages;
+        }
+
+        PostingList postings = tree.search(key);
+        return postings == null ? null : postings.toMap();
+    }
+
+    /**
+     * Searches for the pages holding a key.
+     *
+     * @param key The key to search for.
+     * @return A new bitmap of the pages, empty if the key is absent.
+     */
+    public RoaringBitmap searchPages(TKey key) {
+        if (paged) {
+            return searchPages(key, key);
+        }
+
+        PostingList postings = tree.search(key);
+        return postings == null ? new RoaringBitmap() : postings.getPages().clone();
+    }
+
+    /**
+     * Searches for the pages holding a range of keys, the pages of the keys are ORed.
+     *
+     * @param lowerBound The lower bound of the range, null for no bound.
+     * @param upperBound The upper bound of the range, null for no bound.
+     * @return A new bitmap of the pages.
+     */
+    public RoaringBitmap searchPages(TKey lowerBound, TKey upperBound) {
+        if (paged) {
+            RoaringBitmap values = searchPaged(lowerBound, upperBound);
+            return recordIds ? RecordId.pages(values) : values;
+        }
+
+        RoaringBitmap pages = new RoaringBitmap();
+        for (PostingList postings : tree.search(lowerBound, upperBound)) {
+            pages.or(postings.getPages());
+        }
+
+        return pages;
+    }
+
+    /**
+     * Searches for the records holding a key in a record index.
+     *
+     * @param key The key to search for.
+     * @return A new bitmap of the RecordIds of the records, empty if the key is absent.
+     * @throws IllegalStateException If the index only holds pages.
+     */
+    public RoaringBitmap searchRecords(TKey key) {
+        requireRecordIds();
+        if (paged) {
+            return searchPaged(key, key);
+        }
+
+        PostingList postings = tree.search(key);
+        return postings == null ? new RoaringBitmap() : postings.getRecords().clone();
+    }
+
+    /**
+     * Searches for the records holding a range of keys in a record index, the records of the keys are ORed.
+     *
+     * @param lowerBound The lower bound of the range, null for no bound.
+     * @param upperBound The upper bound of the range, null for no bound.
+     * @return A new bitmap of the RecordIds of the records.
+     * @throws IllegalStateException If the index only holds pages.
+     */
+    public RoaringBitmap searchRecords(TKey lowerBound, TKey upperBound) {
+        requireRecordIds();
+        if (paged) {
+            return searchPaged(lowerBound, upperBound);
+        }
+
+        RoaringBitmap records = new RoaringBitmap();
+        for (PostingList postings : tree.search(lowerBound, upperBound)) {
+            records.or(postings.getRecords());
+        }
+
+        return records;
+    }
+
+    private void requireRecordIds() {
+        if (!recordIds) {
+            throw new IllegalStateException("Index " + indexName + " doesn't hold record ids");
+        }
+    }
+
+    private void requireMemory() {
+        if (paged) {
+            throw new IllegalStateException("Index " + indexName + " is disk-resident");
+        }
+    }
+
+    /**
+     * Searches the values of a range of keys in a disk-resident index, the leaves of the range are read ahead.
+     *
+     * @param lowerBound The lower bound of the range, null for no bound.
+     * @param upperBound The upper bound of the range, null for no bound.
+     * @return A new bitmap of the values, pages or RecordIds.
+     */
+    private RoaringBitmap searchPaged(TKey lowerBound, TKey upperBound) {
+        RoaringBitmap values = new RoaringBitmap();
+        for (int value : pagedTree.searchRange(lowerBound, upperBound)) {
+            values.add(value);
+        }
+
+        return values;
     }
 
     /**
@@ -50,14 +308,11 @@ public class DBBTree<TKey extends Comparable<TKey>> extends BTree<TKey, HashMap<
      *
      * @param lowerBound The lower bound of the range.
      * @param upperBound The upper bound of the range.
-     * @return A HashSet of page numbers that contain keys in the range.
+     * @return A HashSet of page ids that contain keys in the range.
      */
     public HashSet<Integer> searchRange(TKey lowerBound, TKey upperBound) {
-        LinkedList<HashMap<Integer, Integer>> res = super.search(lowerBound, upperBound);
         HashSet<Integer> set = new HashSet<>();
-        for (HashMap<Integer, Integer> map : res) {
-            set.addAll(map.keySet());
-        }
+        searchPages(lowerBound, upperBound).forEach(set::add);
 
         return set;
     }
@@ -68,20 +323,71 @@ public class DBBTree<TKey extends Comparable<TKey>> extends BTree<TKey, HashMap<
      * If the key exists in the B+ tree, the count of the key in the page is incremented.
      *
      * @param key   The key to insert.
-     * @param value The value to insert.
+     * @param value The page of the record, or its RecordId in a record index.
      */
     public void insert(TKey key, Integer value) {
-        HashMap<Integer, Integer> values = this.search(key);
-        if (values == null) {
-            values = new HashMap<>();
-            values.put(value, 1);
-            super.insert(key, values);
-        } else {
-            int count = values.getOrDefault(value, 0);
-            values.put(value, count + 1);
+        IndexCache.getInstance().prepareChange(this);
+        if (paged) {
+            pagedTree.insert(key, value);
+            markDirty();
+            return;
+        }
+
+        PostingList postings = tree.search(key);
+        if (postings == null) {
+            postings = new PostingList(recordIds);
+            tree.insert(key, postings);
         }
+        postings.add(value);
 
-        this.saveIndex();
+        markDirty();
+    }
+
+    /**
+     * Builds the index bottom-up from (key, page) pairs sorted by key, instead of inserting them one by one.
+     * The pairs of a key are counted by page, like insert does. The pairs of a record index hold RecordIds
+     * instead of pages.
+     *
+     * @param pairs The pairs, sorted by key.
+     */
+    public void build(Iterator<? extends Map.Entry<TKey, Integer>> pairs) {
+        IndexCache.getInstance().prepareChange(this);
+        if (paged) {
+            // the pairs come in key order, the inserts only touch the rightmost path of the tree
+            while (pairs.hasNext()) {
+                Map.Entry<TKey, Integer> pair = pairs.next();
+                pagedTree.insert(pair.getKey(), pair.getValue());
+            }
+            markDirty();
+            return;
+        }
+
+        tree.bulkLoad(new Iterator<Map.Entry<TKey, PostingList>>() {
+            private Map.Entry<TKey, Integer> pending = pairs.hasNext() ? pairs.next() : null;
+
+            @Override
+            public boolean hasNext() {
+                return pending != null;
+            }
+
+            @Override
+            public Map.Entry<TKey, PostingList> next() {
+                if (pending == null) {
+                    throw new NoSuchElementException();
+                }
+
+                TKey key = pending.getKey();
+                PostingList values = new PostingList(recordIds);
+                while (pending != null && pending.getKey().compareTo(key) == 0) {
+                    values.add(pending.getValue());
+                    pending = pairs.hasNext() ? pairs.next() : null;
+                }
+
+                return new AbstractMap.SimpleImmutableEntry<>(key, values);
+            }
+        });
+
+        markDirty();
     }
 
     /**
@@ -90,31 +396,108 @@ public class DBBTree<TKey extends Comparable<TKey>> extends BTree<TKey, HashMap<
      * If the count of the key in the page is greater than 1, the count is decremented.
      *
      * @param key   The key to delete.
-     * @param value The value to delete.
+     * @param value The page of the record, or its RecordId in a record index.
      */
     public void delete(TKey key, Integer value) {
-        HashMap<Integer, Integer> values = this.search(key);
-        if (values == null) {
+        IndexCache.getInstance().prepareChange(this);
+        if (paged) {
+            pagedTree.delete(key, value);
+            markDirty();
             return;
         }
-        int count = values.getOrDefault(value, 0);
-        if (count == 1) {
-            values.remove(value);
-            if (values.isEmpty()) {
-                super.delete(key);
-            }
-        } else {
-            values.put(value, count - 1);
+
+        PostingList postings = tree.search(key);
+        if (postings == null || !postings.remove(value)) {
+            return;
+        }
+        if (postings.isEmpty()) {
+            tree.delete(key);
         }
 
-        this.saveIndex();
+        markDirty();
+    }
+
+    /**
+     * @return True if the values of the index are RecordIds, false if they are pages.
+     */
+    public boolean isRecordIndex() {
+        return recordIds;
+    }
+
+    /**
+     * @return True if the index is disk-resident, false if it is loaded whole in memory.
+     */
+    public boolean isPaged() {
+        return paged;
+    }
+
+    /**
+     * @return The name of the table.
+     */
+    public String getTableName() {
+        return tableName;
+    }
+
+    /**
+     * @return The name of the index.
+     */
+    public String getIndexName() {
+        return indexName;
     }
 
     /**
-     * Saves the B+ tree index to disk.
+     * @return True if the tree was modified since it was last saved.
+     */
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    /**
+     * Records that the tree was modified.
+     */
+    private void markDirty() {
+        dirty = true;
+        IndexCache.getInstance().markDirty(this);
+    }
+
+    /**
+     * Saves the tree if it was modified since it was last saved.
+     */
+    public void flush() {
+        if (dirty) {
+            saveIndex();
+        }
+    }
+
+    /**
+     * Saves the tree if it was modified and releases its index file, used when the tree leaves the index cache.
+     */
+    void close() {
+        flush();
+        if (paged) {
+            pagedTree.close();
+        }
+    }
+
+    /**
+     * Releases the index file of the tree without saving it, used when the tree is dropped or replaced.
+     */
+    void discard() {
+        if (paged) {
+            pagedTree.discard();
+        }
+    }
+
+    /**
+     * Saves the B+ tree index to disk, for a disk-resident index its modified nodes and its descriptor.
      */
     public void saveIndex() {
-        Path file = Paths.get((String) DBApp.getDbConfig().get("DataPath"), tableName, indexName + ".ser");
+        WriteAheadLog.getInstance().indexWritten(tableName);
+        Path file = getPath();
+        if (paged) {
+            pagedTree.flush();
+            WriteAheadLog.getInstance().fileWritten(pagedTree.getPath());
+        }
 
         try (
                 FileOutputStream fileOut = new FileOutputStream(file.toAbsolutePath().toString());
@@ -123,20 +506,35 @@ public class DBBTree<TKey extends Comparable<TKey>> extends BTree<TKey, HashMap<
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
+        WriteAheadLog.getInstance().fileWritten(file);
+        dirty = false;
+    }
 
+    /**
+     * Returns the B+ tree index through the index cache, it is only read from disk if it is not cached.
+     *
+     * @param tableName The name of the table.
+     * @param indexName The name of the index.
+     * @return The loaded B+ tree index.
+     * @throws DBAppException If the index does not exist or can't be read.
+     */
+    public static DBBTree loadIndex(String tableName, String indexName) throws DBAppException {
+        return IndexCache.getInstance().get(tableName, indexName);
     }
 
     /**
      * Loads the B+ tree index from disk.
+     * A file that doesn't hold an index of this version, like the files written before the classes of the tree had a
+     * fixed serialVersionUID, is reported like a missing index, so the index can be created again from its table.
      *
      * @param tableName The name of the table.
      * @param indexName The name of the index.
      * @return The loaded B+ tree index.
-     * @throws DBAppException If the index does not exist.
+     * @throws DBAppException If the index does not exist or can't be read by this version.
      */
-    public static DBBTree loadIndex(String tableName, String indexName) throws DBAppException {
-        DBBTree tree;
-        Path file = Paths.get((String) DBApp.getDbConfig().get("DataPath"), tableName, indexName + ".ser");
+    static DBBTree<?> readIndex(String tableName, String indexName) throws DBAppException {
+        DBBTree<?> tree;
+        Path file = getPath(tableName, indexName);
 
         if (!file.toFile().exists()) {
             throw new DBAppException("Index " + indexName + " does not exist");
@@ -145,11 +543,45 @@ public class DBBTree<TKey extends Comparable<TKey>> extends BTree<TKey, HashMap<
         try (
                 FileInputStream fileIn = new FileInputStream(file.toAbsolutePath().toString());
                 ObjectInputStream in = new ObjectInputStream(fileIn)) {
-            tree = (DBBTree) in.readObject();
-        } catch (IOException | ClassNotFoundException e) {
+            tree = (DBBTree<?>) in.readObject();
+        } catch (ObjectStreamException | ClassNotFoundException | ClassCastException e) {
+            throw new DBAppException("Index " + indexName + " of table " + tableName
+                    + " can't be read, it must be created again: " + e);
+        } catch (IOException e) {
             throw new RuntimeException(e);
         }
+
+        if (tree.paged) {
+            if (!tree.getPagedPath().toFile().exists()) {
+                throw new DBAppException("Index " + indexName + " of table " + tableName
+                        + " can't be read, it must be created again: its index file is missing");
+            }
+            tree.pagedTree = PagedBTree.open(tree.getPagedPath(), PagedBTree.DEFAULT_CACHE_NODES);
+        }
         return tree;
     }
 
+    /**
+     * @return The path of the index file.
+     */
+    Path getPath() {
+        return getPath(tableName, indexName);
+    }
+
+    /**
+     * @return The path of the file of the nodes of a disk-resident index.
+     */
+    Path getPagedPath() {
+        return Paths.get((String) DBApp.getDbConfig().get("DataPath"), tableName, indexName + PagedBTree.EXTENSION);
+    }
+
+    /**
+     * @param tableName The name of the table.
+     * @param indexName The name of the index.
+     * @return The path of the index file.
+     */
+    static Path getPath(String tableName, String indexName) {
+        return Paths.get((String) DBApp.getDbConfig().get("DataPath"), tableName, indexName + ".ser");
+    }
+
 }
\ No newline at end of file
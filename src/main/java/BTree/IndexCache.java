@@ -0,0 +1,234 @@
+package BTree;
+
+import DB.BufferPool;
+import DB.DBApp;
+import DB.DBAppException;
+import DB.WriteAheadLog;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class is a bounded cache of loaded B+ tree indexes shared by all the tables.
+ * An index is deserialized from its file the first time it is used, and then stays resident until it is evicted,
+ * the least recently used index is evicted when the cache holds more than IndexCacheSize indexes.
+ * A modified index is only marked dirty, it is written back following the WriteMode property of the configuration,
+ * like the pages of the buffer pool:
+ * <ul>
+ *     <li>through: every change of an index rewrites its file immediately.</li>
+ *     <li>statement: the dirty indexes are written once at the end of each DBApp statement.</li>
+ *     <li>background: the dirty indexes are written when they are evicted, and on DBApp.checkpoint and DBApp.close.</li>
+ * </ul>
+ * A tree returned by get may be evicted as soon as another index is loaded, so it must not be kept across loads.
+ *
+ * @author ahmedgado
+ */
+public class IndexCache {
+    private static IndexCache instance;
+
+    private final int capacity;
+    private final LinkedHashMap<String, DBBTree<?>> trees;
+    private long hits;
+    private long misses;
+
+    /**
+     * Constructor for the IndexCache class.
+     *
+     * @param capacity The maximum number of indexes kept in memory.
+     */
+    public IndexCache(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Index cache capacity must be positive");
+        }
+
+        this.capacity = capacity;
+        // access order, the eldest entry is the least recently used index
+        this.trees = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Creates the shared index cache from the IndexCacheSize property of the configuration.
+     * The previous cache, if any, is closed first so that none of its dirty indexes are lost.
+     */
+    public static synchronized void init() {
+        if (instance != null) {
+            instance.close();
+        }
+
+        instance = new IndexCache(Integer.parseInt(DBApp.getDbConfig().getProperty("IndexCacheSize", "32")));
+    }
+
+    /**
+     * @return The shared index cache.
+     * @throws RuntimeException If the cache was not initialized.
+     */
+    public static synchronized IndexCache getInstance() {
+        if (instance == null) {
+            throw new RuntimeException("IndexCache not initialized");
+        }
+
+        return instance;
+    }
+
+    /**
+     * Returns an index, reading it from disk only if it is not already in the cache.
+     *
+     * @param tableName The name of the table.
+     * @param indexName The name of the index.
+     * @return The index.
+     * @throws DBAppException If the index does not exist or can't be read.
+     */
+    public synchronized DBBTree<?> get(String tableName, String indexName) throws DBAppException {
+        DBBTree<?> tree = trees.get(DBBTree.getPath(tableName, indexName).toString());
+        if (tree != null) {
+            hits++;
+            return tree;
+        }
+
+        misses++;
+        tree = DBBTree.readIndex(tableName, indexName);
+        admit(tree);
+
+        return tree;
+    }
+
+    /**
+     * Makes a tree the cached index of its name, replacing the previous one without writing it.
+     * It is used when an index is built again from its table.
+     *
+     * @param tree The index, already saved to disk.
+     */
+    public synchronized void register(DBBTree<?> tree) {
+        DBBTree<?> previous = trees.remove(tree.getPath().toString());
+        if (previous != null && previous != tree) {
+            previous.discard();
+        }
+        admit(tree);
+    }
+
+    /**
+     * Drops an index from the cache without writing it, used before its file is replaced.
+     *
+     * @param path The path of the index file.
+     */
+    synchronized void discard(Path path) {
+        DBBTree<?> tree = trees.remove(path.toString());
+        if (tree != null) {
+            tree.discard();
+        }
+    }
+
+    /**
+     * Records that a tree is about to be modified by the running statement, a cached tree is a change of its table for
+     * the write-ahead log. The nodes of a disk-resident tree are written whenever they leave its node cache, so the
+     * log names its table before the change.
+     *
+     * @param tree The tree.
+     */
+    synchronized void prepareChange(DBBTree<?> tree) {
+        if (trees.get(tree.getPath().toString()) != tree) {
+            return;
+        }
+
+        WriteAheadLog log = WriteAheadLog.getInstance();
+        log.indexChanged(tree.getTableName());
+        if (tree.isPaged()) {
+            log.indexWritten(tree.getTableName());
+        }
+    }
+
+    /**
+     * Records that a tree was modified, a cached tree is written right away in write-through mode.
+     * Trees that are not in the cache, like an index being built, are left to their owner.
+     *
+     * @param tree The modified tree.
+     */
+    public synchronized void markDirty(DBBTree<?> tree) {
+        if (BufferPool.getInstance().getWriteMode() == BufferPool.WriteMode.THROUGH
+                && trees.get(tree.getPath().toString()) == tree) {
+            tree.saveIndex();
+        }
+    }
+
+    /**
+     * Called at the end of every DBApp statement, writes all dirty indexes when the cache is in statement mode.
+     */
+    public void endStatement() {
+        if (BufferPool.getInstance().getWriteMode() == BufferPool.WriteMode.STATEMENT) {
+            flushAll();
+        }
+    }
+
+    /**
+     * Writes every dirty index to disk.
+     */
+    public synchronized void flushAll() {
+        for (DBBTree<?> tree : trees.values()) {
+            tree.flush();
+        }
+    }
+
+    /**
+     * Writes every dirty index to disk and empties the cache.
+     */
+    public synchronized void close() {
+        for (DBBTree<?> tree : trees.values()) {
+            tree.close();
+        }
+        trees.clear();
+    }
+
+    /**
+     * Drops all the indexes of a table from the cache without writing them, used when their files are deleted.
+     *
+     * @param tableName The name of the table.
+     */
+    public synchronized void invalidate(String tableName) {
+        for (DBBTree<?> tree : new ArrayList<>(trees.values())) {
+            if (tree.getTableName().equals(tableName)) {
+                trees.remove(tree.getPath().toString());
+                tree.discard();
+            }
+        }
+    }
+
+    /**
+     * @return The number of indexes in the cache.
+     */
+    public synchronized int size() {
+        return trees.size();
+    }
+
+    /**
+     * @return The maximum number of indexes kept in memory.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return The number of loads served from memory.
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return The number of loads that read the index from disk.
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    private void admit(DBBTree<?> tree) {
+        while (trees.size() >= capacity) {
+            Map.Entry<String, DBBTree<?>> eldest = trees.entrySet().iterator().next();
+            eldest.getValue().close();
+            trees.remove(eldest.getKey());
+        }
+
+        trees.put(tree.getPath().toString(), tree);
+    }
+}
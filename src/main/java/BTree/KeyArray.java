@@ -0,0 +1,310 @@
+package BTree;
+
+import java.io.Serial;
+import java.io.Serializable;
+
+/**
+ * The keys of a B+ tree node.
+ * Integer and Double keys are stored in primitive arrays: they are not boxed in the node, a search unboxes the
+ * searched key once and compares primitives, and the serialized node only holds the raw values. Other keys are
+ * stored in an array of objects and compared with compareTo.
+ * A cleared slot of a primitive array keeps its old value, only the slots below the key count of the node are read.
+ *
+ * @author ahmedgado
+ */
+abstract class KeyArray implements Serializable {
+    @Serial
+    private static final long serialVersionUID = -412890293627338887L;
+
+    /**
+     * Creates the keys of a node, primitive ones for Integer and Double keys.
+     *
+     * @param keyClass The class of the keys, null for an array of objects.
+     * @param length   The number of slots.
+     * @return The keys.
+     */
+    static KeyArray of(Class<?> keyClass, int length) {
+        if (keyClass == Integer.class) {
+            return new IntKeys(length);
+        } else if (keyClass == Double.class) {
+            return new DoubleKeys(length);
+        }
+
+        return new ObjectKeys(length);
+    }
+
+    /**
+     * @param length The number of slots.
+     * @return Empty keys of the same kind, for a new node of the same tree.
+     */
+    abstract KeyArray create(int length);
+
+    /**
+     * @return The number of slots.
+     */
+    abstract int length();
+
+    abstract Object get(int index);
+
+    /**
+     * @param key The key, null clears the slot.
+     */
+    abstract void set(int index, Object key);
+
+    /**
+     * Moves count keys from one position to another of the same array, like System.arraycopy.
+     */
+    abstract void move(int from, int to, int count);
+
+    /**
+     * Compares the key at a position with another key.
+     *
+     * @return A negative number, zero or a positive number if the key at the position is smaller, equal or greater.
+     */
+    abstract int compare(int index, Object key);
+
+    /**
+     * Binary search for the first of the count first keys that is not smaller than the given key.
+     *
+     * @return The position of the key, or count if every key is smaller.
+     */
+    abstract int lowerBound(Object key, int count);
+
+    /**
+     * Binary search for the first of the count first keys that is greater than the given key.
+     *
+     * @return The position of the key, or count if no key is greater.
+     */
+    abstract int upperBound(Object key, int count);
+
+    /**
+     * Keys compared with compareTo.
+     */
+    static final class ObjectKeys extends KeyArray {
+        @Serial
+        private static final long serialVersionUID = 8830484130696041209L;
+
+        private final Object[] keys;
+
+        ObjectKeys(int length) {
+            this.keys = new Object[length];
+        }
+
+        @Override
+        KeyArray create(int length) {
+            return new ObjectKeys(length);
+        }
+
+        @Override
+        int length() {
+            return keys.length;
+        }
+
+        @Override
+        Object get(int index) {
+            return keys[index];
+        }
+
+        @Override
+        void set(int index, Object key) {
+            keys[index] = key;
+        }
+
+        @Override
+        void move(int from, int to, int count) {
+            System.arraycopy(keys, from, keys, to, count);
+        }
+
+        @Override
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        int compare(int index, Object key) {
+            return ((Comparable) keys[index]).compareTo(key);
+        }
+
+        @Override
+        int lowerBound(Object key, int count) {
+            int low = 0;
+            int high = count;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (compare(mid, key) < 0)
+                    low = mid + 1;
+                else
+                    high = mid;
+            }
+
+            return low;
+        }
+
+        @Override
+        int upperBound(Object key, int count) {
+            int low = 0;
+            int high = count;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (compare(mid, key) <= 0)
+                    low = mid + 1;
+                else
+                    high = mid;
+            }
+
+            return low;
+        }
+    }
+
+    /**
+     * Integer keys stored as ints.
+     */
+    static final class IntKeys extends KeyArray {
+        @Serial
+        private static final long serialVersionUID = -1902534922102154974L;
+
+        private final int[] keys;
+
+        IntKeys(int length) {
+            this.keys = new int[length];
+        }
+
+        @Override
+        KeyArray create(int length) {
+            return new IntKeys(length);
+        }
+
+        @Override
+        int length() {
+            return keys.length;
+        }
+
+        @Override
+        Object get(int index) {
+            return keys[index];
+        }
+
+        @Override
+        void set(int index, Object key) {
+            if (key != null) {
+                keys[index] = (Integer) key;
+            }
+        }
+
+        @Override
+        void move(int from, int to, int count) {
+            System.arraycopy(keys, from, keys, to, count);
+        }
+
+        @Override
+        int compare(int index, Object key) {
+            return Integer.compare(keys[index], (Integer) key);
+        }
+
+        @Override
+        int lowerBound(Object key, int count) {
+            int value = (Integer) key;
+            int low = 0;
+            int high = count;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (keys[mid] < value)
+                    low = mid + 1;
+                else
+                    high = mid;
+            }
+
+            return low;
+        }
+
+        @Override
+        int upperBound(Object key, int count) {
+            int value = (Integer) key;
+            int low = 0;
+            int high = count;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (keys[mid] <= value)
+                    low = mid + 1;
+                else
+                    high = mid;
+            }
+
+            return low;
+        }
+    }
+
+    /**
+     * Double keys stored as doubles, ordered like Double.compareTo.
+     */
+    static final class DoubleKeys extends KeyArray {
+        @Serial
+        private static final long serialVersionUID = 1170429859546645948L;
+
+        private final double[] keys;
+
+        DoubleKeys(int length) {
+            this.keys = new double[length];
+        }
+
+        @Override
+        KeyArray create(int length) {
+            return new DoubleKeys(length);
+        }
+
+        @Override
+        int length() {
+            return keys.length;
+        }
+
+        @Override
+        Object get(int index) {
+            return keys[index];
+        }
+
+        @Override
+        void set(int index, Object key) {
+            if (key != null) {
+                keys[index] = (Double) key;
+            }
+        }
+
+        @Override
+        void move(int from, int to, int count) {
+            System.arraycopy(keys, from, keys, to, count);
+        }
+
+        @Override
+        int compare(int index, Object key) {
+            return Double.compare(keys[index], (Double) key);
+        }
+
+        @Override
+        int lowerBound(Object key, int count) {
+            double value = (Double) key;
+            int low = 0;
+            int high = count;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (Double.compare(keys[mid], value) < 0)
+                    low = mid + 1;
+                else
+                    high = mid;
+            }
+
+            return low;
+        }
+
+        @Override
+        int upperBound(Object key, int count) {
+            double value = (Double) key;
+            int low = 0;
+            int high = count;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (Double.compare(keys[mid], value) <= 0)
+                    low = mid + 1;
+                else
+                    high = mid;
+            }
+
+            return low;
+        }
+    }
+}
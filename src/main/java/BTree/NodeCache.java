@@ -0,0 +1,294 @@
+package BTree;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class is a bounded cache of the nodes of a PagedBTree.
+ * Nodes are read from their page of the index file the first time they are used, and the least recently used node
+ * is evicted when the cache is full. Modified nodes are only marked dirty, they are written when they are evicted
+ * and when the tree is flushed.
+ * Range scans read the next leaves of their chain ahead on a virtual thread. The leaves read ahead are only admitted
+ * when the scan reaches them, and they are discarded as soon as a node is modified, since a leaf read before the change
+ * may be stale. The number of leaves read ahead doubles whenever the scan waits for one or passes them, up to a quarter
+ * of the cache, and halves whenever the scan leaves the chain before using them.
+ *
+ * @author ahmedgado
+ */
+class NodeCache {
+    private static final int MAX_PREFETCH = 32;
+
+    private final FileChannel channel;
+    private final byte keyType;
+    private final int pageSize;
+    private final int capacity;
+    private final LinkedHashMap<Integer, PagedNode> nodes;
+    private final ConcurrentHashMap<Integer, Prefetched> prefetched;
+    private final int maxPrefetch;
+    private int prefetch;
+    private volatile long version;
+    private volatile boolean prefetching;
+    private boolean overtaken;
+    private volatile int prefetchEnd;
+    private int pageCount;
+    private long reads;
+    private long writes;
+
+    /**
+     * Constructor for the NodeCache class.
+     *
+     * @param channel   The index file.
+     * @param keyType   The type code of the keys.
+     * @param pageSize  The size of a node page.
+     * @param capacity  The maximum number of nodes kept in memory.
+     * @param pageCount The number of pages of the index file, the header page included.
+     */
+    NodeCache(FileChannel channel, byte keyType, int pageSize, int capacity, int pageCount) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Node cache capacity must be positive");
+        }
+
+        this.channel = channel;
+        this.keyType = keyType;
+        this.pageSize = pageSize;
+        this.capacity = capacity;
+        // access order, the eldest entry is the least recently used node
+        this.nodes = new LinkedHashMap<>(16, 0.75f, true);
+        this.prefetched = new ConcurrentHashMap<>();
+        this.maxPrefetch = Math.min(MAX_PREFETCH, capacity / 4);
+        this.prefetch = Math.min(2, maxPrefetch);
+        this.prefetchEnd = PagedNode.NO_PAGE;
+        this.pageCount = pageCount;
+    }
+
+    /**
+     * Returns a node, reading it from its page only if it is not cached.
+     *
+     * @param id The page id of the node.
+     * @return The node.
+     */
+    PagedNode get(int id) {
+        PagedNode node = nodes.get(id);
+        Prefetched read = prefetched.isEmpty() ? null : prefetched.remove(id);
+        if (node != null) {
+            return node;
+        }
+
+        if (read != null && read.version() == version) {
+            if (!read.node().isDone()) {
+                prefetch = Math.min(2 * prefetch, maxPrefetch);
+            }
+            node = read.node().join();
+        } else if (prefetching) {
+            // the scan passed the leaves being read ahead, the leaves it left behind are not wasted
+            overtaken = true;
+            prefetch = Math.min(2 * prefetch, maxPrefetch);
+        }
+        if (node == null) {
+            node = read(id);
+        }
+        reads++;
+
+        admit(node);
+
+        return node;
+    }
+
+    /**
+     * Reads the leaves that follow a leaf in the chain ahead on a virtual thread, unless they are already being read.
+     * The leaves already read ahead are kept if the scan still follows their chain.
+     *
+     * @param leaf The leaf the scan is leaving.
+     */
+    void prefetch(PagedNode leaf) {
+        if (maxPrefetch == 0 || prefetching || leaf.next == PagedNode.NO_PAGE) {
+            return;
+        }
+
+        int start = prefetchEnd;
+        if (!prefetched.containsKey(leaf.next) && start != leaf.next) {
+            if (!prefetched.isEmpty() && !overtaken) {
+                prefetch = Math.max(1, prefetch / 2);
+            }
+            prefetched.clear();
+            overtaken = false;
+            start = leaf.next;
+        }
+
+        int count = prefetch - prefetched.size();
+        if (start == PagedNode.NO_PAGE || count <= 0) {
+            return;
+        }
+        prefetching = true;
+        long readVersion = version;
+        int first = start;
+        Thread.startVirtualThread(() -> readChain(first, count, readVersion));
+    }
+
+    /**
+     * Reads leaves from the index file, following their chain, it runs on a virtual thread. The leaves are not shared
+     * with the thread of the tree until they are read, and the read stops once a node is modified.
+     *
+     * @param id          The page id of the first leaf.
+     * @param count       The number of leaves to read.
+     * @param readVersion The number of modifications when the read started.
+     */
+    private void readChain(int id, int count, long readVersion) {
+        try {
+            for (int i = 0; i < count && id != PagedNode.NO_PAGE && version == readVersion; i++) {
+                CompletableFuture<PagedNode> future = new CompletableFuture<>();
+                prefetched.put(id, new Prefetched(readVersion, future));
+                PagedNode node;
+                try {
+                    node = read(id);
+                } catch (RuntimeException e) {
+                    // the thread of the tree reads the leaf itself
+                    prefetched.remove(id);
+                    future.complete(null);
+                    id = PagedNode.NO_PAGE;
+                    break;
+                }
+                future.complete(node);
+                id = node.leaf ? node.next : PagedNode.NO_PAGE;
+            }
+            if (version == readVersion) {
+                prefetchEnd = id;
+            }
+        } finally {
+            prefetching = false;
+        }
+    }
+
+    /**
+     * Allocates a page at the end of the index file for a new node.
+     *
+     * @param leaf True for a leaf, false for an inner node.
+     * @return The new node, it is dirty so it is written even if it stays empty.
+     */
+    PagedNode create(boolean leaf) {
+        discardPrefetched();
+        PagedNode node = new PagedNode(pageCount++, leaf);
+        markDirty(node);
+
+        return node;
+    }
+
+    /**
+     * Records that a node was modified, the node is cached again if it was evicted while it was being changed.
+     *
+     * @param node The modified node.
+     */
+    void markDirty(PagedNode node) {
+        discardPrefetched();
+        node.dirty = true;
+        if (nodes.get(node.id) != node) {
+            admit(node);
+        }
+    }
+
+    /**
+     * Writes every dirty node to its page.
+     */
+    void flush() {
+        for (PagedNode node : nodes.values()) {
+            if (node.dirty) {
+                write(node);
+            }
+        }
+    }
+
+    /**
+     * @return The number of pages of the index file, the header page included.
+     */
+    int getPageCount() {
+        return pageCount;
+    }
+
+    /**
+     * @return The number of nodes in the cache.
+     */
+    int size() {
+        return nodes.size();
+    }
+
+    /**
+     * @return The number of node pages read from the index file.
+     */
+    long getReads() {
+        return reads;
+    }
+
+    /**
+     * @return The number of node pages written to the index file.
+     */
+    long getWrites() {
+        return writes;
+    }
+
+    /**
+     * @return The number of leaves read ahead of a range scan.
+     */
+    int getPrefetch() {
+        return prefetch;
+    }
+
+    private PagedNode read(int id) {
+        ByteBuffer buffer = ByteBuffer.allocate(pageSize);
+        try {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, (long) id * pageSize + buffer.position()) < 0) {
+                    throw new RuntimeException("Unexpected end of index file at page " + id);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        return PagedNode.decode(id, keyType, buffer.flip());
+    }
+
+    private void discardPrefetched() {
+        if (!prefetched.isEmpty() || prefetchEnd != PagedNode.NO_PAGE || prefetching) {
+            version++;
+            prefetched.clear();
+            prefetchEnd = PagedNode.NO_PAGE;
+        }
+    }
+
+    private void admit(PagedNode node) {
+        while (nodes.size() >= capacity) {
+            Map.Entry<Integer, PagedNode> eldest = nodes.entrySet().iterator().next();
+            if (eldest.getValue().dirty) {
+                write(eldest.getValue());
+            }
+            nodes.remove(eldest.getKey());
+        }
+
+        nodes.put(node.id, node);
+    }
+
+    private void write(PagedNode node) {
+        discardPrefetched();
+        ByteBuffer buffer = node.encode(keyType, pageSize);
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, (long) node.id * pageSize + buffer.position());
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        writes++;
+        node.dirty = false;
+    }
+
+    /**
+     * A leaf read ahead, with the number of modifications when its read started.
+     */
+    private record Prefetched(long version, CompletableFuture<PagedNode> node) {
+    }
+}
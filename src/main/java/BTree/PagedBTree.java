@@ -0,0 +1,440 @@
+package BTree;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ * This class represents a disk-resident B+ tree index, it holds the entries of a DBBTree whose storage is paged.
+ * Instead of one serialized object graph, the tree is an index file of fixed-size pages: page 0 is the header and
+ * every other page holds one node, children are referenced by their page id. Nodes are read and written one at a
+ * time through a bounded NodeCache, so an operation only touches the nodes on its root-to-leaf path and the index
+ * may be larger than the heap.
+ * <pre>
+ * header: magic (int), version (short), key type (byte), page size (int), root id (int), page count (int)
+ * </pre>
+ * Keys are Integer, Double or String values. A String key may take at most a quarter of a page, so a node that
+ * overflows can always be split in two nodes that fit.
+ * <p>
+ * Deleting entries never merges nodes: under-filled and empty leaves stay in the tree and are skipped by scans.
+ *
+ * @author ahmedgado
+ */
+public class PagedBTree<TKey extends Comparable<TKey>> {
+    public static final String EXTENSION = ".idx";
+    public static final int DEFAULT_PAGE_SIZE = 4096;
+    public static final int DEFAULT_CACHE_NODES = 256;
+
+    private static final int MAGIC = 0x44424958; // "DBIX"
+    private static final short VERSION = 1;
+    private static final int MIN_PAGE_SIZE = 128;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final byte keyType;
+    private final int pageSize;
+    private final NodeCache cache;
+    private int rootId;
+
+    private PagedBTree(Path path, FileChannel channel, byte keyType, int pageSize, int cacheNodes,
+                       int rootId, int pageCount) {
+        this.path = path;
+        this.channel = channel;
+        this.keyType = keyType;
+        this.pageSize = pageSize;
+        this.cache = new NodeCache(channel, keyType, pageSize, cacheNodes, pageCount);
+        this.rootId = rootId;
+    }
+
+    /**
+     * Creates an empty tree, replacing the index file if it exists.
+     *
+     * @param path       The path of the index file.
+     * @param keyClass   The class of the keys: Integer, Double or String.
+     * @param pageSize   The size of a node page in bytes.
+     * @param cacheNodes The maximum number of nodes kept in memory.
+     * @return The new tree.
+     * @throws IllegalArgumentException If the key class is not supported or the page size is too small.
+     */
+    public static <T extends Comparable<T>> PagedBTree<T> create(Path path, Class<T> keyClass,
+                                                                int pageSize, int cacheNodes) {
+        byte keyType = PagedNode.keyType(keyClass);
+        if (pageSize < MIN_PAGE_SIZE) {
+            throw new IllegalArgumentException("Index page size must be at least " + MIN_PAGE_SIZE + " bytes");
+        }
+
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        PagedBTree<T> tree = new PagedBTree<>(path, channel, keyType, pageSize, cacheNodes, PagedNode.NO_PAGE, 1);
+        tree.rootId = tree.cache.create(true).id;
+        tree.flush();
+
+        return tree;
+    }
+
+    /**
+     * Opens an existing index file, only its header is read.
+     *
+     * @param path       The path of the index file.
+     * @param cacheNodes The maximum number of nodes kept in memory.
+     * @return The tree.
+     */
+    public static <T extends Comparable<T>> PagedBTree<T> open(Path path, int cacheNodes) {
+        try {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            ByteBuffer header = ByteBuffer.allocate(Integer.BYTES + Short.BYTES + 1 + 3 * Integer.BYTES);
+            while (header.hasRemaining()) {
+                if (channel.read(header, header.position()) < 0) {
+                    channel.close();
+                    throw new RuntimeException("Unexpected end of index file " + path);
+                }
+            }
+            header.flip();
+
+            if (header.getInt() != MAGIC) {
+                channel.close();
+                throw new RuntimeException("Not an index file " + path);
+            }
+            short version = header.getShort();
+            if (version != VERSION) {
+                channel.close();
+                throw new RuntimeException("Unsupported index version " + version);
+            }
+            byte keyType = header.get();
+            int pageSize = header.getInt();
+            int rootId = header.getInt();
+            int pageCount = header.getInt();
+
+            return new PagedBTree<>(path, channel, keyType, pageSize, cacheNodes, rootId, pageCount);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Inserts a key-value pair into the tree.
+     * If the pair does not exist, a new entry is created, otherwise its count is incremented.
+     *
+     * @param key   The key to insert.
+     * @param value The page of the record holding the key.
+     */
+    public synchronized void insert(TKey key, int value) {
+        checkKey(key);
+
+        ArrayList<PagedNode> nodes = new ArrayList<>();
+        PagedNode leaf = findLeaf(key, value, nodes);
+        int pos = leaf.find(key, value);
+        if (pos >= 0) {
+            leaf.values.set(pos, leaf.values.get(pos) + 1);
+        } else {
+            pos = -(pos + 1);
+            leaf.keys.add(pos, key);
+            leaf.pages.add(pos, value);
+            leaf.values.add(pos, 1);
+        }
+        cache.markDirty(leaf);
+
+        split(nodes);
+    }
+
+    /**
+     * Deletes a key-value pair from the tree.
+     * If the count of the pair is 1, the entry is removed, otherwise its count is decremented.
+     *
+     * @param key   The key to delete.
+     * @param value The page of the record holding the key.
+     */
+    public synchronized void delete(TKey key, int value) {
+        PagedNode leaf = findLeaf(key, value, null);
+        int pos = leaf.find(key, value);
+        if (pos < 0) {
+            return;
+        }
+
+        int count = leaf.values.get(pos);
+        if (count == 1) {
+            leaf.keys.remove(pos);
+            leaf.pages.remove(pos);
+            leaf.values.remove(pos);
+        } else {
+            leaf.values.set(pos, count - 1);
+        }
+        cache.markDirty(leaf);
+    }
+
+    /**
+     * Searches for a key in the tree.
+     *
+     * @param key The key to search for.
+     * @return A HashMap that maps page numbers to the count of the key in the page, or null if the key is not found.
+     */
+    public synchronized HashMap<Integer, Integer> search(TKey key) {
+        HashMap<Integer, Integer> counts = scan(key, key);
+        return counts.isEmpty() ? null : counts;
+    }
+
+    /**
+     * Searches for a range of keys in the tree, both bounds are included.
+     *
+     * @param lowerBound The lower bound of the range, or null for no lower bound.
+     * @param upperBound The upper bound of the range, or null for no upper bound.
+     * @return A HashSet of page numbers that contain keys in the range.
+     */
+    public synchronized HashSet<Integer> searchRange(TKey lowerBound, TKey upperBound) {
+        return new HashSet<>(scan(lowerBound, upperBound).keySet());
+    }
+
+    /**
+     * Writes every modified node and the header to the index file.
+     */
+    public synchronized void flush() {
+        cache.flush();
+
+        ByteBuffer header = ByteBuffer.allocate(Integer.BYTES + Short.BYTES + 1 + 3 * Integer.BYTES);
+        header.putInt(MAGIC)
+                .putShort(VERSION)
+                .put(keyType)
+                .putInt(pageSize)
+                .putInt(rootId)
+                .putInt(cache.getPageCount())
+                .flip();
+        try {
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Flushes the tree and closes the index file.
+     */
+    public synchronized void close() {
+        flush();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Closes the index file without writing the modified nodes, used when the file is replaced or deleted.
+     */
+    public synchronized void discard() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @return The path of the index file.
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * @return The size of a node page in bytes.
+     */
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * @return The number of levels of the tree, 1 when the root is a leaf.
+     */
+    public synchronized int getHeight() {
+        int height = 1;
+        for (PagedNode node = cache.get(rootId); !node.leaf; node = cache.get(node.values.getFirst())) {
+            height++;
+        }
+
+        return height;
+    }
+
+    /**
+     * @return The number of node pages read from the index file since the tree was opened.
+     */
+    public synchronized long getNodeReads() {
+        return cache.getReads();
+    }
+
+    /**
+     * @return The number of node pages written to the index file since the tree was opened.
+     */
+    public synchronized long getNodeWrites() {
+        return cache.getWrites();
+    }
+
+    /**
+     * Descends from the root to the leaf whose range holds a (key, page) pair.
+     *
+     * @param key   The key.
+     * @param page  The page.
+     * @param nodes If not null, receives the nodes of the path, from the root to the leaf.
+     * @return The leaf.
+     */
+    private PagedNode findLeaf(Object key, int page, ArrayList<PagedNode> nodes) {
+        PagedNode node = cache.get(rootId);
+        while (true) {
+            if (nodes != null) {
+                nodes.add(node);
+            }
+            if (node.leaf) {
+                return node;
+            }
+            node = cache.get(node.values.get(node.childIndex(key, page)));
+        }
+    }
+
+    /**
+     * Splits the nodes of a path that grew past the page size, from the leaf up.
+     * The separator of each split is pushed up to the parent, and a new root is made when the root splits.
+     *
+     * @param nodes The nodes of the path, from the root to the leaf.
+     */
+    private void split(ArrayList<PagedNode> nodes) {
+        for (int level = nodes.size() - 1; level >= 0; level--) {
+            PagedNode node = nodes.get(level);
+            if (node.encodedSize(keyType) <= pageSize) {
+                return;
+            }
+
+            // move the upper half out first, the node must fit in its page before any eviction can write it
+            int mid = splitPoint(node);
+            Object separatorKey;
+            int separatorPage;
+            ArrayList<Object> keys;
+            ArrayList<Integer> pages;
+            ArrayList<Integer> values;
+            if (node.leaf) {
+                separatorKey = node.keys.get(mid);
+                separatorPage = node.pages.get(mid);
+                keys = new ArrayList<>(node.keys.subList(mid, node.size()));
+                pages = new ArrayList<>(node.pages.subList(mid, node.size()));
+                values = new ArrayList<>(node.values.subList(mid, node.size()));
+                node.values.subList(mid, node.size()).clear();
+            } else {
+                // the middle separator moves up, the right node starts with the child on its right
+                separatorKey = node.keys.get(mid);
+                separatorPage = node.pages.get(mid);
+                keys = new ArrayList<>(node.keys.subList(mid + 1, node.size()));
+                pages = new ArrayList<>(node.pages.subList(mid + 1, node.size()));
+                values = new ArrayList<>(node.values.subList(mid + 1, node.size() + 1));
+                node.values.subList(mid + 1, node.size() + 1).clear();
+            }
+            node.pages.subList(mid, node.size()).clear();
+            node.keys.subList(mid, node.size()).clear();
+
+            PagedNode right = cache.create(node.leaf);
+            right.keys.addAll(keys);
+            right.pages.addAll(pages);
+            right.values.addAll(values);
+            if (node.leaf) {
+                right.next = node.next;
+                node.next = right.id;
+            }
+            cache.markDirty(node);
+
+            if (level == 0) {
+                PagedNode root = cache.create(false);
+                root.values.add(node.id);
+                root.keys.add(separatorKey);
+                root.pages.add(separatorPage);
+                root.values.add(right.id);
+                rootId = root.id;
+            } else {
+                PagedNode parent = nodes.get(level - 1);
+                int index = parent.childIndex(separatorKey, separatorPage);
+                parent.keys.add(index, separatorKey);
+                parent.pages.add(index, separatorPage);
+                parent.values.add(index + 1, right.id);
+                cache.markDirty(parent);
+            }
+        }
+    }
+
+    /**
+     * @param node A node that overflows its page.
+     * @return The position that splits the entries of the node in two halves of about the same size in bytes.
+     */
+    private int splitPoint(PagedNode node) {
+        int total = node.encodedSize(keyType);
+        int size = 0;
+        for (int i = 0; i < node.size(); i++) {
+            size += PagedNode.keySize(keyType, node.keys.get(i)) + 2 * Integer.BYTES;
+            if (2 * size >= total) {
+                return Math.min(Math.max(i, 1), node.size() - 2);
+            }
+        }
+
+        return node.size() / 2;
+    }
+
+    /**
+     * Collects the entries whose keys are in a range, following the leaf chain from the first one.
+     *
+     * @param lowerBound The lower bound of the range, or null for no lower bound.
+     * @param upperBound The upper bound of the range, or null for no upper bound.
+     * @return A HashMap that maps page numbers to the count of the keys of the range in the page.
+     */
+    private HashMap<Integer, Integer> scan(TKey lowerBound, TKey upperBound) {
+        HashMap<Integer, Integer> counts = new HashMap<>();
+
+        PagedNode leaf;
+        int pos;
+        if (lowerBound == null) {
+            leaf = cache.get(rootId);
+            while (!leaf.leaf) {
+                leaf = cache.get(leaf.values.getFirst());
+            }
+            pos = 0;
+        } else {
+            leaf = findLeaf(lowerBound, Integer.MIN_VALUE, null);
+            pos = leaf.find(lowerBound, Integer.MIN_VALUE);
+            pos = pos >= 0 ? pos : -(pos + 1);
+        }
+
+        while (true) {
+            for (int i = pos; i < leaf.size(); i++) {
+                if (upperBound != null && upperBound.compareTo((TKey) leaf.keys.get(i)) < 0) {
+                    return counts;
+                }
+                counts.merge(leaf.pages.get(i), leaf.values.get(i), Integer::sum);
+            }
+            if (leaf.next == PagedNode.NO_PAGE) {
+                return counts;
+            }
+            cache.prefetch(leaf);
+            leaf = cache.get(leaf.next);
+            pos = 0;
+        }
+    }
+
+    private void checkKey(TKey key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Index keys can't be null");
+        }
+        if (PagedNode.keyType(key.getClass()) != keyType) {
+            throw new IllegalArgumentException("Key " + key + " doesn't match the key type of the index");
+        }
+        if (PagedNode.keySize(keyType, key) + 2 * Integer.BYTES > pageSize / 4) {
+            throw new IllegalArgumentException("Key is too large for an index page of " + pageSize + " bytes");
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package BTree;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+/**
+ * A node of a PagedBTree, it is stored in one fixed-size page of the index file.
+ * The entries of the tree are (key, page) pairs, so the duplicates of a key are spread over as many leaves as
+ * needed instead of growing a single value. A leaf holds the count of every pair, an inner node holds the page id
+ * of its children.
+ * <pre>
+ * leaf:  type (byte), entry count (int), right sibling id (int), entries: key, page (int), count (int)
+ * inner: type (byte), separator count (int), first child id (int), separators: key, page (int), child id (int)
+ * </pre>
+ * Integer keys take 4 bytes, Double keys take 8 bytes and String keys are stored as a length-prefixed UTF-8 string.
+ *
+ * @author ahmedgado
+ */
+class PagedNode {
+    static final byte INTEGER = 1;
+    static final byte DOUBLE = 2;
+    static final byte STRING = 3;
+
+    static final int NO_PAGE = -1;
+
+    private static final byte LEAF = 1;
+    private static final byte INNER = 2;
+    private static final int HEADER_SIZE = 1 + 2 * Integer.BYTES;
+
+    final int id;
+    final boolean leaf;
+    final ArrayList<Object> keys;
+    final ArrayList<Integer> pages;
+    /**
+     * The count of each entry in a leaf, the child ids in an inner node (one more than the separators).
+     */
+    final ArrayList<Integer> values;
+    int next;
+    boolean dirty;
+
+    PagedNode(int id, boolean leaf) {
+        this.id = id;
+        this.leaf = leaf;
+        this.keys = new ArrayList<>();
+        this.pages = new ArrayList<>();
+        this.values = new ArrayList<>();
+        this.next = NO_PAGE;
+    }
+
+    /**
+     * @return The number of keys, entries in a leaf and separators in an inner node.
+     */
+    int size() {
+        return keys.size();
+    }
+
+    /**
+     * @param keyType The type code of the keys.
+     * @return The number of bytes the node takes when it is encoded.
+     */
+    int encodedSize(byte keyType) {
+        int size = HEADER_SIZE;
+        for (Object key : keys) {
+            size += keySize(keyType, key) + 2 * Integer.BYTES;
+        }
+
+        return size;
+    }
+
+    /**
+     * Finds a (key, page) pair with binary search.
+     *
+     * @param key  The key.
+     * @param page The page.
+     * @return The position of the pair, or (-(insertion point) - 1) if the node doesn't hold it.
+     */
+    int find(Object key, int page) {
+        int low = 0;
+        int high = keys.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compare(keys.get(mid), pages.get(mid), key, page);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+
+        return -(low + 1);
+    }
+
+    /**
+     * @param key  The key.
+     * @param page The page.
+     * @return The position of the child of an inner node whose range holds the (key, page) pair.
+     */
+    int childIndex(Object key, int page) {
+        int pos = find(key, page);
+        // a separator is the smallest pair of the child on its right
+        return pos >= 0 ? pos + 1 : -(pos + 1);
+    }
+
+    /**
+     * Compares two (key, page) pairs, by key first and then by page.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static int compare(Object key1, int page1, Object key2, int page2) {
+        int cmp = ((Comparable) key1).compareTo(key2);
+        return cmp != 0 ? cmp : Integer.compare(page1, page2);
+    }
+
+    /**
+     * Encodes the node into a page, the rest of the page is left zeroed.
+     *
+     * @param keyType  The type code of the keys.
+     * @param pageSize The size of a page.
+     * @return A flipped buffer of pageSize bytes.
+     */
+    ByteBuffer encode(byte keyType, int pageSize) {
+        ByteBuffer buffer = ByteBuffer.allocate(pageSize);
+        buffer.put(leaf ? LEAF : INNER).putInt(keys.size());
+        if (leaf) {
+            buffer.putInt(next);
+        } else {
+            buffer.putInt(values.getFirst());
+        }
+
+        for (int i = 0; i < keys.size(); i++) {
+            writeKey(buffer, keyType, keys.get(i));
+            buffer.putInt(pages.get(i));
+            buffer.putInt(leaf ? values.get(i) : values.get(i + 1));
+        }
+
+        return buffer.clear();
+    }
+
+    /**
+     * Decodes a node from its page.
+     *
+     * @param id      The page id of the node.
+     * @param keyType The type code of the keys.
+     * @param buffer  The buffer holding the page.
+     * @return The decoded node.
+     */
+    static PagedNode decode(int id, byte keyType, ByteBuffer buffer) {
+        byte type = buffer.get();
+        if (type != LEAF && type != INNER) {
+            throw new RuntimeException("Not an index node: page " + id);
+        }
+
+        PagedNode node = new PagedNode(id, type == LEAF);
+        int count = buffer.getInt();
+        if (node.leaf) {
+            node.next = buffer.getInt();
+        } else {
+            node.values.add(buffer.getInt());
+        }
+
+        for (int i = 0; i < count; i++) {
+            node.keys.add(readKey(buffer, keyType));
+            node.pages.add(buffer.getInt());
+            node.values.add(buffer.getInt());
+        }
+
+        return node;
+    }
+
+    /**
+     * @param keyClass The class of the keys.
+     * @return The type code of the keys.
+     * @throws IllegalArgumentException If the keys can't be stored in a node.
+     */
+    static byte keyType(Class<?> keyClass) {
+        if (keyClass == Integer.class) {
+            return INTEGER;
+        } else if (keyClass == Double.class) {
+            return DOUBLE;
+        } else if (keyClass == String.class) {
+            return STRING;
+        }
+
+        throw new IllegalArgumentException("Unsupported key type " + keyClass.getName());
+    }
+
+    static int keySize(byte keyType, Object key) {
+        return switch (keyType) {
+            case INTEGER -> Integer.BYTES;
+            case DOUBLE -> Double.BYTES;
+            default -> Integer.BYTES + ((String) key).getBytes(StandardCharsets.UTF_8).length;
+        };
+    }
+
+    private static void writeKey(ByteBuffer buffer, byte keyType, Object key) {
+        switch (keyType) {
+            case INTEGER -> buffer.putInt((Integer) key);
+            case DOUBLE -> buffer.putDouble((Double) key);
+            default -> {
+                byte[] bytes = ((String) key).getBytes(StandardCharsets.UTF_8);
+                buffer.putInt(bytes.length).put(bytes);
+            }
+        }
+    }
+
+    private static Object readKey(ByteBuffer buffer, byte keyType) {
+        return switch (keyType) {
+            case INTEGER -> buffer.getInt();
+            case DOUBLE -> buffer.getDouble();
+            default -> {
+                byte[] bytes = new byte[buffer.getInt()];
+                buffer.get(bytes);
+                yield new String(bytes, StandardCharsets.UTF_8);
+            }
+        };
+    }
+}
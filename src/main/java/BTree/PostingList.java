@@ -0,0 +1,153 @@
+package BTree;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.PrimitiveIterator;
+
+/**
+ * This class holds the pages of the records of one key of a DBBTree, with the number of records of the key in each
+ * page. The pages are a RoaringBitmap, so index lookups can be combined with bitmap operations, and the counts are
+ * an int array in the order of the pages: the count of a page is at its rank in the bitmap.
+ * The list of a record index also holds the RecordIds of the records, so a lookup finds the records themselves.
+ *
+ * @author ahmedgado
+ */
+public class PostingList implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 562949596678517797L;
+
+    private final RoaringBitmap pages;
+    private final RoaringBitmap records;
+    private int[] counts;
+    private int size;
+
+    /**
+     * Constructor for the PostingList class, the list is empty and only holds pages.
+     */
+    public PostingList() {
+        this(false);
+    }
+
+    /**
+     * Constructor for the PostingList class, the list is empty.
+     *
+     * @param recordIds True if the list holds the record ids of the records, false if it only holds their pages.
+     */
+    public PostingList(boolean recordIds) {
+        this.pages = new RoaringBitmap();
+        this.records = recordIds ? new RoaringBitmap() : null;
+        this.counts = new int[4];
+        this.size = 0;
+    }
+
+    /**
+     * Adds a record.
+     *
+     * @param value The page of the record, or its record id if the list holds record ids.
+     */
+    public void add(int value) {
+        if (records != null) {
+            if (records.contains(value)) {
+                return;
+            }
+            records.add(value);
+            value = RecordId.page(value);
+        }
+
+        int page = value;
+        int rank = pages.rank(page);
+        if (pages.contains(page)) {
+            counts[rank - 1]++;
+            return;
+        }
+
+        pages.add(page);
+        if (size == counts.length) {
+            counts = Arrays.copyOf(counts, Math.max(4, 2 * size));
+        }
+        System.arraycopy(counts, rank, counts, rank + 1, size - rank);
+        counts[rank] = 1;
+        size++;
+    }
+
+    /**
+     * Removes a record, its page is removed with its last record.
+     *
+     * @param value The page of the record, or its record id if the list holds record ids.
+     * @return True if the list held the record.
+     */
+    public boolean remove(int value) {
+        if (records != null) {
+            if (!records.remove(value)) {
+                return false;
+            }
+            value = RecordId.page(value);
+        }
+
+        int page = value;
+        if (!pages.contains(page)) {
+            return false;
+        }
+
+        int index = pages.rank(page) - 1;
+        if (--counts[index] == 0) {
+            pages.remove(page);
+            System.arraycopy(counts, index + 1, counts, index, size - index - 1);
+            size--;
+        }
+
+        return true;
+    }
+
+    /**
+     * @param page The page.
+     * @return The number of records in the page.
+     */
+    public int count(int page) {
+        return pages.contains(page) ? counts[pages.rank(page) - 1] : 0;
+    }
+
+    /**
+     * @return The pages holding records, the bitmap must not be modified.
+     */
+    public RoaringBitmap getPages() {
+        return pages;
+    }
+
+    /**
+     * @return The record ids of the records, the bitmap must not be modified, or null if the list only holds pages.
+     */
+    public RoaringBitmap getRecords() {
+        return records;
+    }
+
+    /**
+     * @return True if the list holds no record.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return The number of records in each page.
+     */
+    public HashMap<Integer, Integer> toMap() {
+        HashMap<Integer, Integer> map = new HashMap<>();
+        PrimitiveIterator.OfInt iterator = pages.iterator();
+        for (int i = 0; iterator.hasNext(); i++) {
+            map.put(iterator.nextInt(), counts[i]);
+        }
+
+        return map;
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        // the unused capacity is not written
+        counts = Arrays.copyOf(counts, size);
+        out.defaultWriteObject();
+    }
+}
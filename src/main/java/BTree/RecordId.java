@@ -0,0 +1,92 @@
+package BTree;
+
+import java.util.PrimitiveIterator;
+
+/**
+ * This class packs the id of a record, the id of its page and its slot in the page, into one int, so the
+ * record ids of a key of a record index are held by a RoaringBitmap.
+ * The page takes the high bits and the slot the low SLOT_BITS bits, so record ids are ordered by page, then by slot,
+ * and the sign bit is never set.
+ *
+ * @author ahmedgado
+ */
+public final class RecordId {
+    /**
+     * The number of bits of the slot.
+     */
+    public static final int SLOT_BITS = 12;
+
+    /**
+     * The number of slots of a page that record ids can address.
+     */
+    public static final int MAX_SLOTS = 1 << SLOT_BITS;
+
+    /**
+     * The number of pages that record ids can address.
+     */
+    public static final int MAX_PAGES = 1 << (Integer.SIZE - 1 - SLOT_BITS);
+
+    private RecordId() {
+    }
+
+    /**
+     * @param page The page of the record.
+     * @param slot The slot of the record in the page.
+     * @return The record id.
+     */
+    public static int of(int page, int slot) {
+        if (page < 0 || page >= MAX_PAGES) {
+            throw new IllegalArgumentException("Page " + page + " is out of the range of record ids");
+        }
+        if (slot < 0 || slot >= MAX_SLOTS) {
+            throw new IllegalArgumentException("Slot " + slot + " is out of the range of record ids");
+        }
+
+        return page << SLOT_BITS | slot;
+    }
+
+    /**
+     * @param recordId A record id.
+     * @return The page of the record.
+     */
+    public static int page(int recordId) {
+        return recordId >>> SLOT_BITS;
+    }
+
+    /**
+     * @param recordId A record id.
+     * @return The slot of the record in its page.
+     */
+    public static int slot(int recordId) {
+        return recordId & (MAX_SLOTS - 1);
+    }
+
+    /**
+     * @param recordIds Record ids.
+     * @return A new bitmap of the pages of the records.
+     */
+    public static RoaringBitmap pages(RoaringBitmap recordIds) {
+        RoaringBitmap pages = new RoaringBitmap();
+        recordIds.forEach(recordId -> pages.add(page(recordId)));
+
+        return pages;
+    }
+
+    /**
+     * @param recordIds Record ids.
+     * @param pages     Pages.
+     * @return A new bitmap of the record ids whose page is one of the pages.
+     */
+    public static RoaringBitmap onPages(RoaringBitmap recordIds, RoaringBitmap pages) {
+        RoaringBitmap result = new RoaringBitmap();
+        PrimitiveIterator.OfInt iterator = recordIds.iterator();
+        while (iterator.hasNext()) {
+            int recordId = iterator.nextInt();
+            if (pages.contains(page(recordId))) {
+                result.add(recordId);
+            }
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,755 @@
+package BTree;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.function.IntConsumer;
+
+/**
+ * This class is a compressed set of non-negative ints, in the style of Roaring bitmaps.
+ * The ints are split by their 16 high bits into chunks, and each chunk keeps the 16 low bits of its ints in a
+ * container: a sorted array of chars while it holds at most 4096 ints, a bitmap of 65536 bits (8 KB) when it holds
+ * more. A sparse set costs two bytes per int and a dense one a bit per int.
+ * AND, OR and ANDNOT work chunk by chunk, two bitmap containers are combined word by word.
+ * The static methods return a new bitmap, the instance methods change this bitmap.
+ *
+ * @author ahmedgado
+ */
+public class RoaringBitmap implements Cloneable, Serializable {
+    @Serial
+    private static final long serialVersionUID = 4674611865694067271L;
+
+    /**
+     * The largest cardinality of an array container, a bitmap container takes less space above it.
+     */
+    private static final int ARRAY_LIMIT = 4096;
+    private static final int BITMAP_WORDS = 1024;
+
+    private char[] keys;
+    private Container[] containers;
+    private int size;
+
+    /**
+     * Constructor for the RoaringBitmap class, the bitmap is empty.
+     */
+    public RoaringBitmap() {
+        this(new char[4], new Container[4], 0);
+    }
+
+    private RoaringBitmap(char[] keys, Container[] containers, int size) {
+        this.keys = keys;
+        this.containers = containers;
+        this.size = size;
+    }
+
+    /**
+     * @param values The ints.
+     * @return A bitmap holding the ints.
+     */
+    public static RoaringBitmap of(int... values) {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        for (int value : values) {
+            bitmap.add(value);
+        }
+
+        return bitmap;
+    }
+
+    /**
+     * Adds an int to the set.
+     *
+     * @param value The int.
+     * @throws IllegalArgumentException If the int is negative.
+     */
+    public void add(int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative value " + value);
+        }
+
+        int i = find(high(value));
+        if (i < 0) {
+            i = -i - 1;
+            insert(i, high(value), new ArrayContainer());
+        }
+        containers[i] = containers[i].add(low(value));
+    }
+
+    /**
+     * Removes an int from the set.
+     *
+     * @param value The int.
+     * @return True if the set held the int.
+     */
+    public boolean remove(int value) {
+        int i = value < 0 ? -1 : find(high(value));
+        if (i < 0 || !containers[i].contains(low(value))) {
+            return false;
+        }
+
+        Container container = containers[i].remove(low(value));
+        if (container.cardinality() == 0) {
+            System.arraycopy(keys, i + 1, keys, i, size - i - 1);
+            System.arraycopy(containers, i + 1, containers, i, size - i - 1);
+            containers[--size] = null;
+        } else {
+            containers[i] = container;
+        }
+
+        return true;
+    }
+
+    /**
+     * @param value The int.
+     * @return True if the set holds the int.
+     */
+    public boolean contains(int value) {
+        int i = value < 0 ? -1 : find(high(value));
+        return i >= 0 && containers[i].contains(low(value));
+    }
+
+    /**
+     * @return The number of ints in the set.
+     */
+    public int getCardinality() {
+        int cardinality = 0;
+        for (int i = 0; i < size; i++) {
+            cardinality += containers[i].cardinality();
+        }
+
+        return cardinality;
+    }
+
+    /**
+     * @return True if the set holds no int.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @param value The int.
+     * @return The number of ints of the set that are smaller than or equal to the given int.
+     */
+    public int rank(int value) {
+        if (value < 0) {
+            return 0;
+        }
+
+        int rank = 0;
+        char high = high(value);
+        for (int i = 0; i < size && keys[i] <= high; i++) {
+            rank += keys[i] < high ? containers[i].cardinality() : containers[i].rank(low(value));
+        }
+
+        return rank;
+    }
+
+    /**
+     * @return A new bitmap holding the ints of both bitmaps.
+     */
+    public static RoaringBitmap and(RoaringBitmap a, RoaringBitmap b) {
+        RoaringBitmap result = new RoaringBitmap(new char[Math.min(a.size, b.size)],
+                new Container[Math.min(a.size, b.size)], 0);
+        int i = 0;
+        int j = 0;
+        while (i < a.size && j < b.size) {
+            if (a.keys[i] < b.keys[j]) {
+                i++;
+            } else if (a.keys[i] > b.keys[j]) {
+                j++;
+            } else {
+                result.append(a.keys[i], a.containers[i++].and(b.containers[j++]));
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * @return A new bitmap holding the ints of either bitmap.
+     */
+    public static RoaringBitmap or(RoaringBitmap a, RoaringBitmap b) {
+        RoaringBitmap result = a.clone();
+        result.or(b);
+
+        return result;
+    }
+
+    /**
+     * @return A new bitmap holding the ints of the first bitmap that the second one doesn't hold.
+     */
+    public static RoaringBitmap andNot(RoaringBitmap a, RoaringBitmap b) {
+        RoaringBitmap result = new RoaringBitmap(new char[a.size], new Container[a.size], 0);
+        int j = 0;
+        for (int i = 0; i < a.size; i++) {
+            while (j < b.size && b.keys[j] < a.keys[i]) {
+                j++;
+            }
+            if (j < b.size && b.keys[j] == a.keys[i]) {
+                result.append(a.keys[i], a.containers[i].andNot(b.containers[j]));
+            } else {
+                result.append(a.keys[i], a.containers[i].copy());
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Keeps the ints that the other bitmap holds too.
+     */
+    public void and(RoaringBitmap other) {
+        adopt(and(this, other));
+    }
+
+    /**
+     * Adds the ints of the other bitmap, the containers of this bitmap are updated in place.
+     */
+    public void or(RoaringBitmap other) {
+        char[] mergedKeys = new char[size + other.size];
+        Container[] merged = new Container[size + other.size];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < size || j < other.size) {
+            if (j == other.size || (i < size && keys[i] < other.keys[j])) {
+                mergedKeys[count] = keys[i];
+                merged[count++] = containers[i++];
+            } else if (i == size || keys[i] > other.keys[j]) {
+                mergedKeys[count] = other.keys[j];
+                merged[count++] = other.containers[j++].copy();
+            } else {
+                mergedKeys[count] = keys[i];
+                merged[count++] = containers[i++].ior(other.containers[j++]);
+            }
+        }
+
+        keys = mergedKeys;
+        containers = merged;
+        size = count;
+    }
+
+    /**
+     * Removes the ints that the other bitmap holds.
+     */
+    public void andNot(RoaringBitmap other) {
+        adopt(andNot(this, other));
+    }
+
+    /**
+     * Calls the consumer for every int of the set, in increasing order.
+     *
+     * @param consumer The consumer.
+     */
+    public void forEach(IntConsumer consumer) {
+        for (int i = 0; i < size; i++) {
+            containers[i].forEach(keys[i] << 16, consumer);
+        }
+    }
+
+    /**
+     * @return The ints of the set in increasing order.
+     */
+    public int[] toArray() {
+        int[] values = new int[getCardinality()];
+        int[] count = {0};
+        forEach(value -> values[count[0]++] = value);
+
+        return values;
+    }
+
+    /**
+     * @return An iterator over the ints of the set in increasing order.
+     */
+    public PrimitiveIterator.OfInt iterator() {
+        return new PrimitiveIterator.OfInt() {
+            private int container = 0;
+            private int next = size == 0 ? -1 : containers[0].nextValue(0);
+
+            @Override
+            public boolean hasNext() {
+                while (next < 0 && container < size - 1) {
+                    next = containers[++container].nextValue(0);
+                }
+
+                return next >= 0;
+            }
+
+            @Override
+            public int nextInt() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+
+                int value = keys[container] << 16 | next;
+                next = containers[container].nextValue(next + 1);
+
+                return value;
+            }
+        };
+    }
+
+    @Override
+    public RoaringBitmap clone() {
+        Container[] copies = new Container[containers.length];
+        for (int i = 0; i < size; i++) {
+            copies[i] = containers[i].copy();
+        }
+
+        return new RoaringBitmap(keys.clone(), copies, size);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof RoaringBitmap other)) return false;
+        return Arrays.equals(toArray(), other.toArray());
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(toArray());
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+
+    private static char high(int value) {
+        return (char) (value >>> 16);
+    }
+
+    private static char low(int value) {
+        return (char) value;
+    }
+
+    private int find(char key) {
+        return Arrays.binarySearch(keys, 0, size, key);
+    }
+
+    private void insert(int index, char key, Container container) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, Math.max(4, 2 * size));
+            containers = Arrays.copyOf(containers, keys.length);
+        }
+        System.arraycopy(keys, index, keys, index + 1, size - index);
+        System.arraycopy(containers, index, containers, index + 1, size - index);
+        keys[index] = key;
+        containers[index] = container;
+        size++;
+    }
+
+    /**
+     * Adds a container after the last one, empty containers are dropped.
+     */
+    private void append(char key, Container container) {
+        if (container.cardinality() > 0) {
+            insert(size, key, container);
+        }
+    }
+
+    private void adopt(RoaringBitmap other) {
+        keys = other.keys;
+        containers = other.containers;
+        size = other.size;
+    }
+
+    /**
+     * The low 16 bits of the ints of a chunk.
+     */
+    private abstract static class Container implements Serializable {
+        @Serial
+        private static final long serialVersionUID = 8158883627788855670L;
+
+        abstract int cardinality();
+
+        abstract boolean contains(char value);
+
+        /**
+         * @return The container holding the value, this one or a bitmap when an array container grows too large.
+         */
+        abstract Container add(char value);
+
+        /**
+         * @return The container without the value, this one or an array when a bitmap container gets small enough.
+         */
+        abstract Container remove(char value);
+
+        /**
+         * @return The number of values smaller than or equal to the given value.
+         */
+        abstract int rank(char value);
+
+        /**
+         * @return The smallest value greater than or equal to from, or -1 if there is none.
+         */
+        abstract int nextValue(int from);
+
+        abstract Container and(Container other);
+
+        abstract Container andNot(Container other);
+
+        /**
+         * @return The container holding the values of both, this one when it can be updated in place.
+         */
+        abstract Container ior(Container other);
+
+        abstract void forEach(int high, IntConsumer consumer);
+
+        abstract Container copy();
+    }
+
+    /**
+     * A sorted array of values, for chunks holding at most ARRAY_LIMIT values.
+     */
+    private static final class ArrayContainer extends Container {
+        @Serial
+        private static final long serialVersionUID = 6560320547084536428L;
+
+        private char[] values;
+        private int cardinality;
+
+        private ArrayContainer() {
+            this(new char[4], 0);
+        }
+
+        private ArrayContainer(char[] values, int cardinality) {
+            this.values = values;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return Arrays.binarySearch(values, 0, cardinality, value) >= 0;
+        }
+
+        @Override
+        Container add(char value) {
+            int pos = Arrays.binarySearch(values, 0, cardinality, value);
+            if (pos >= 0) {
+                return this;
+            }
+            if (cardinality == ARRAY_LIMIT) {
+                return toBitmap().add(value);
+            }
+
+            pos = -pos - 1;
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.max(4, 2 * cardinality));
+            }
+            System.arraycopy(values, pos, values, pos + 1, cardinality - pos);
+            values[pos] = value;
+            cardinality++;
+
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            int pos = Arrays.binarySearch(values, 0, cardinality, value);
+            if (pos >= 0) {
+                System.arraycopy(values, pos + 1, values, pos, cardinality - pos - 1);
+                cardinality--;
+            }
+
+            return this;
+        }
+
+        @Override
+        int rank(char value) {
+            int pos = Arrays.binarySearch(values, 0, cardinality, value);
+            return pos >= 0 ? pos + 1 : -pos - 1;
+        }
+
+        @Override
+        int nextValue(int from) {
+            if (from > Character.MAX_VALUE) {
+                return -1;
+            }
+
+            int pos = Arrays.binarySearch(values, 0, cardinality, (char) from);
+            if (pos < 0) {
+                pos = -pos - 1;
+            }
+
+            return pos < cardinality ? values[pos] : -1;
+        }
+
+        @Override
+        Container and(Container other) {
+            char[] result = new char[Math.min(cardinality, other.cardinality())];
+            int count = 0;
+            if (other instanceof ArrayContainer array) {
+                int j = 0;
+                for (int i = 0; i < cardinality && j < array.cardinality; ) {
+                    if (values[i] < array.values[j]) {
+                        i++;
+                    } else if (values[i] > array.values[j]) {
+                        j++;
+                    } else {
+                        result[count++] = values[i++];
+                        j++;
+                    }
+                }
+            } else {
+                for (int i = 0; i < cardinality; i++) {
+                    if (other.contains(values[i])) {
+                        result[count++] = values[i];
+                    }
+                }
+            }
+
+            return new ArrayContainer(result, count);
+        }
+
+        @Override
+        Container andNot(Container other) {
+            char[] result = new char[cardinality];
+            int count = 0;
+            for (int i = 0; i < cardinality; i++) {
+                if (!other.contains(values[i])) {
+                    result[count++] = values[i];
+                }
+            }
+
+            return new ArrayContainer(result, count);
+        }
+
+        @Override
+        Container ior(Container other) {
+            if (other instanceof BitmapContainer bitmap) {
+                return bitmap.copy().ior(this);
+            }
+
+            ArrayContainer array = (ArrayContainer) other;
+            if (cardinality + array.cardinality > ARRAY_LIMIT) {
+                return toBitmap().ior(array);
+            }
+
+            // merge the two sorted arrays
+            char[] result = new char[cardinality + array.cardinality];
+            int count = 0;
+            int i = 0;
+            int j = 0;
+            while (i < cardinality || j < array.cardinality) {
+                if (j == array.cardinality || (i < cardinality && values[i] < array.values[j])) {
+                    result[count++] = values[i++];
+                } else if (i == cardinality || values[i] > array.values[j]) {
+                    result[count++] = array.values[j++];
+                } else {
+                    result[count++] = values[i++];
+                    j++;
+                }
+            }
+            values = result;
+            cardinality = count;
+
+            return this;
+        }
+
+        @Override
+        void forEach(int high, IntConsumer consumer) {
+            for (int i = 0; i < cardinality; i++) {
+                consumer.accept(high | values[i]);
+            }
+        }
+
+        @Override
+        ArrayContainer copy() {
+            return new ArrayContainer(Arrays.copyOf(values, Math.max(4, cardinality)), cardinality);
+        }
+
+        private BitmapContainer toBitmap() {
+            BitmapContainer bitmap = new BitmapContainer();
+            for (int i = 0; i < cardinality; i++) {
+                bitmap.add(values[i]);
+            }
+
+            return bitmap;
+        }
+
+        private void writeObject(ObjectOutputStream out) throws IOException {
+            // the unused capacity is not written
+            values = Arrays.copyOf(values, cardinality);
+            out.defaultWriteObject();
+        }
+    }
+
+    /**
+     * A bitmap of the 65536 values of a chunk, for chunks holding more than ARRAY_LIMIT values.
+     */
+    private static final class BitmapContainer extends Container {
+        @Serial
+        private static final long serialVersionUID = 1607152582913827585L;
+
+        private final long[] words;
+        private int cardinality;
+
+        private BitmapContainer() {
+            this(new long[BITMAP_WORDS], 0);
+        }
+
+        private BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        Container add(char value) {
+            if (!contains(value)) {
+                words[value >>> 6] |= 1L << value;
+                cardinality++;
+            }
+
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            if (contains(value)) {
+                words[value >>> 6] &= ~(1L << value);
+                cardinality--;
+            }
+
+            return cardinality > ARRAY_LIMIT ? this : toArray();
+        }
+
+        @Override
+        int rank(char value) {
+            int rank = 0;
+            int word = value >>> 6;
+            for (int i = 0; i < word; i++) {
+                rank += Long.bitCount(words[i]);
+            }
+
+            // the bits up to the value, all of them when it is the last bit of the word
+            return rank + Long.bitCount(words[word] & ((2L << value) - 1));
+        }
+
+        @Override
+        int nextValue(int from) {
+            if (from > Character.MAX_VALUE) {
+                return -1;
+            }
+
+            int word = from >>> 6;
+            long bits = words[word] & (-1L << from);
+            while (bits == 0) {
+                if (++word == BITMAP_WORDS) {
+                    return -1;
+                }
+                bits = words[word];
+            }
+
+            return word * 64 + Long.numberOfTrailingZeros(bits);
+        }
+
+        @Override
+        Container and(Container other) {
+            if (other instanceof ArrayContainer) {
+                return other.and(this);
+            }
+
+            long[] otherWords = ((BitmapContainer) other).words;
+            long[] result = new long[BITMAP_WORDS];
+            int count = 0;
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                result[i] = words[i] & otherWords[i];
+                count += Long.bitCount(result[i]);
+            }
+
+            return normalize(new BitmapContainer(result, count));
+        }
+
+        @Override
+        Container andNot(Container other) {
+            long[] result = words.clone();
+            if (other instanceof ArrayContainer array) {
+                for (int i = 0; i < array.cardinality; i++) {
+                    result[array.values[i] >>> 6] &= ~(1L << array.values[i]);
+                }
+            } else {
+                long[] otherWords = ((BitmapContainer) other).words;
+                for (int i = 0; i < BITMAP_WORDS; i++) {
+                    result[i] &= ~otherWords[i];
+                }
+            }
+
+            int count = 0;
+            for (long word : result) {
+                count += Long.bitCount(word);
+            }
+
+            return normalize(new BitmapContainer(result, count));
+        }
+
+        @Override
+        Container ior(Container other) {
+            if (other instanceof ArrayContainer array) {
+                for (int i = 0; i < array.cardinality; i++) {
+                    add(array.values[i]);
+                }
+
+                return this;
+            }
+
+            long[] otherWords = ((BitmapContainer) other).words;
+            int count = 0;
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                words[i] |= otherWords[i];
+                count += Long.bitCount(words[i]);
+            }
+            cardinality = count;
+
+            return this;
+        }
+
+        @Override
+        void forEach(int high, IntConsumer consumer) {
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                long bits = words[i];
+                while (bits != 0) {
+                    consumer.accept(high | (i * 64 + Long.numberOfTrailingZeros(bits)));
+                    bits &= bits - 1;
+                }
+            }
+        }
+
+        @Override
+        BitmapContainer copy() {
+            return new BitmapContainer(words.clone(), cardinality);
+        }
+
+        private ArrayContainer toArray() {
+            char[] values = new char[cardinality];
+            int[] count = {0};
+            forEach(0, value -> values[count[0]++] = (char) value);
+
+            return new ArrayContainer(values, cardinality);
+        }
+
+        private static Container normalize(BitmapContainer bitmap) {
+            return bitmap.cardinality > ARRAY_LIMIT ? bitmap : bitmap.toArray();
+        }
+    }
+}
@@ -0,0 +1,518 @@
+package DB;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * This class is a bounded cache of decoded pages shared by all the tables.
+ * Pages are keyed by the path of their file, which is unique for every (table, page number) pair.
+ * When the pool is full, a victim is chosen with the CLOCK algorithm: every frame has a reference bit
+ * that is set on each access, and the clock hand clears the bits until it finds a frame that was not
+ * referenced since its last visit. Pinned frames are never evicted, and dirty frames are written to disk
+ * before they are evicted.
+ * Pages are read and decoded outside the lock of the pool, so threads scanning different pages read them in
+ * parallel, and threads missing the same page wait for a single read.
+ * <p>
+ * The WriteMode property of the configuration decides when modified pages reach the disk:
+ * <ul>
+ *     <li>through: every mutation of a page rewrites its file immediately, before the statement is logged. This
+ *     mode gives no write-ahead guarantee: a crash in the middle of a statement may leave part of it in the files.</li>
+ *     <li>statement: mutations only mark the page dirty, and all dirty pages are written once at the end of
+ *     each DBApp statement.</li>
+ *     <li>background: dirty pages are written by a writer thread every FlushInterval milliseconds,
+ *     when they are evicted, and on DBApp.checkpoint and DBApp.close.</li>
+ * </ul>
+ *
+ * @author ahmedgado
+ */
+public class BufferPool {
+    private static BufferPool instance;
+
+    private final int capacity;
+    private final WriteMode writeMode;
+    private Thread writer;
+    private final HashMap<String, Frame> frames;
+    private final HashMap<String, Load> loads;
+    private final ArrayList<Frame> clock;
+    private int hand;
+    private long hits;
+    private long misses;
+
+    /**
+     * The policies for writing modified pages back to disk.
+     */
+    public enum WriteMode {
+        THROUGH, STATEMENT, BACKGROUND
+    }
+
+    /**
+     * A page being read from disk.
+     */
+    private record Load(String tableName, CompletableFuture<Page> page) {
+    }
+
+    /**
+     * A slot of the pool holding one page.
+     */
+    private static class Frame {
+        private final String path;
+        private Page page;
+        private int pinCount;
+        private boolean dirty;
+        private boolean referenced;
+
+        private Frame(String path, Page page) {
+            this.path = path;
+            this.page = page;
+            this.referenced = true;
+        }
+    }
+
+    /**
+     * Constructor for the BufferPool class, the pool writes every mutation through to disk.
+     *
+     * @param capacity The maximum number of unpinned pages kept in memory.
+     */
+    public BufferPool(int capacity) {
+        this(capacity, WriteMode.THROUGH);
+    }
+
+    /**
+     * Constructor for the BufferPool class.
+     *
+     * @param capacity  The maximum number of unpinned pages kept in memory.
+     * @param writeMode The policy for writing modified pages back to disk.
+     */
+    public BufferPool(int capacity, WriteMode writeMode) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Buffer pool capacity must be positive");
+        }
+
+        this.capacity = capacity;
+        this.writeMode = writeMode;
+        this.frames = new HashMap<>();
+        this.loads = new HashMap<>();
+        this.clock = new ArrayList<>(capacity);
+    }
+
+    /**
+     * Creates the shared buffer pool from the BufferPoolPages, WriteMode and FlushInterval properties of the configuration.
+     * The previous pool, if any, is closed first so that none of its dirty pages are lost.
+     */
+    public static synchronized void init() {
+        if (instance != null) {
+            instance.close();
+        }
+
+        int capacity = Integer.parseInt(DBApp.getDbConfig().getProperty("BufferPoolPages", "128"));
+        WriteMode writeMode = WriteMode.valueOf(
+                DBApp.getDbConfig().getProperty("WriteMode", "statement").trim().toUpperCase(Locale.ROOT));
+        instance = new BufferPool(capacity, writeMode);
+
+        if (writeMode == WriteMode.BACKGROUND) {
+            instance.startWriter(Long.parseLong(DBApp.getDbConfig().getProperty("FlushInterval", "1000")));
+        }
+    }
+
+    /**
+     * @return The shared buffer pool.
+     * @throws RuntimeException If the pool was not initialized.
+     */
+    public static synchronized BufferPool getInstance() {
+        if (instance == null) {
+            throw new RuntimeException("BufferPool not initialized");
+        }
+
+        return instance;
+    }
+
+    /**
+     * Returns a page, reading it from disk only if it is not already in the pool.
+     * The returned page is not pinned, so it may be evicted while the caller still holds it.
+     *
+     * @param tableName The name of the table that owns the page.
+     * @param path      The path of the page file.
+     * @return The page.
+     */
+    public Page fetch(String tableName, String path) {
+        Load load;
+        boolean reader = false;
+        synchronized (this) {
+            Frame frame = frames.get(path);
+            if (frame != null) {
+                hits++;
+                frame.referenced = true;
+                return frame.page;
+            }
+
+            load = loads.get(path);
+            if (load == null) {
+                misses++;
+                load = new Load(tableName, new CompletableFuture<>());
+                loads.put(path, load);
+                reader = true;
+            } else {
+                hits++;
+            }
+        }
+
+        if (!reader) {
+            try {
+                return load.page().join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+
+        Page page;
+        try {
+            page = PageFormat.read(tableName, Paths.get(path));
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                loads.remove(path, load);
+            }
+            load.page().completeExceptionally(e);
+            throw e;
+        }
+        synchronized (this) {
+            // a page discarded while it was read is not admitted, its file is being deleted
+            if (loads.remove(path, load)) {
+                admit(path, page);
+            }
+        }
+        load.page().complete(page);
+
+        return page;
+    }
+
+    /**
+     * Returns a page and pins it, a pinned page stays in the pool until it is unpinned as many times as it was pinned.
+     *
+     * @param tableName The name of the table that owns the page.
+     * @param path      The path of the page file.
+     * @return The pinned page.
+     */
+    public Page pin(String tableName, String path) {
+        while (true) {
+            Page page = fetch(tableName, path);
+            synchronized (this) {
+                // the page may have been evicted between the fetch and the pin
+                Frame frame = frames.get(path);
+                if (frame != null && frame.page == page) {
+                    frame.pinCount++;
+                    return page;
+                }
+            }
+        }
+    }
+
+    /**
+     * Releases a pin taken by pin.
+     *
+     * @param page  The pinned page.
+     * @param dirty True if the caller modified the page without saving it.
+     */
+    public synchronized void unpin(Page page, boolean dirty) {
+        Frame frame = frames.get(page.getPath().toString());
+        if (frame == null || frame.pinCount == 0) {
+            throw new IllegalStateException("Page " + page.getPageNumber() + " is not pinned");
+        }
+
+        frame.pinCount--;
+        frame.dirty |= dirty;
+    }
+
+    /**
+     * Registers a page that was just written or created, so that it becomes the cached copy of its file.
+     *
+     * @param page The page.
+     */
+    public synchronized void put(Page page) {
+        String path = page.getPath().toString();
+        Frame frame = frames.get(path);
+        if (frame == null) {
+            admit(path, page);
+        } else {
+            frame.page = page;
+            frame.referenced = true;
+        }
+    }
+
+    /**
+     * Marks a cached page as modified, it is written to disk when flushed or evicted.
+     * If the page was evicted in the meantime, it is admitted again.
+     *
+     * @param page The modified page.
+     */
+    public synchronized void markDirty(Page page) {
+        put(page);
+        frames.get(page.getPath().toString()).dirty = true;
+    }
+
+    /**
+     * @return The policy for writing modified pages back to disk.
+     */
+    public WriteMode getWriteMode() {
+        return writeMode;
+    }
+
+    /**
+     * Called at the end of every DBApp statement, writes all dirty pages when the pool is in statement mode.
+     */
+    public void endStatement() {
+        if (writeMode == WriteMode.STATEMENT) {
+            flushAll();
+        }
+    }
+
+    /**
+     * Stops the background writer, if any, and writes every dirty page to disk.
+     */
+    public void close() {
+        Thread thread;
+        synchronized (this) {
+            thread = writer;
+            writer = null;
+        }
+
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        flushAll();
+    }
+
+    /**
+     * Writes a cached page to disk if it is dirty and not pinned.
+     * The log is flushed up to the page first, outside the lock of the pool, so other threads keep reading pages
+     * meanwhile. A page modified again in the meantime is left dirty.
+     *
+     * @param path The path of the page file.
+     */
+    public void flush(String path) {
+        long lsn;
+        synchronized (this) {
+            Frame frame = frames.get(path);
+            if (frame == null || !frame.dirty || frame.pinCount > 0) {
+                return;
+            }
+            lsn = frame.page.getLsn();
+        }
+
+        WriteAheadLog log = WriteAheadLog.getInstance();
+        log.flushTo(lsn);
+        synchronized (this) {
+            Frame frame = frames.get(path);
+            if (frame != null && frame.dirty && frame.pinCount == 0 && log.isFlushed(frame.page.getLsn())) {
+                write(frame);
+            }
+        }
+    }
+
+    /**
+     * Writes every dirty page to disk.
+     * Pinned pages are skipped, they may hold changes of a running statement that is not logged yet.
+     * The log is flushed up to the newest of the pages first, outside the lock of the pool, so other threads keep
+     * reading pages meanwhile. Pages modified again in the meantime are left dirty.
+     */
+    public void flushAll() {
+        long lsn = 0;
+        synchronized (this) {
+            for (Frame frame : clock) {
+                if (frame.dirty && frame.pinCount == 0) {
+                    lsn = Math.max(lsn, frame.page.getLsn());
+                }
+            }
+        }
+
+        WriteAheadLog log = WriteAheadLog.getInstance();
+        log.flushTo(lsn);
+        synchronized (this) {
+            for (Frame frame : clock) {
+                if (frame.dirty && frame.pinCount == 0 && log.isFlushed(frame.page.getLsn())) {
+                    write(frame);
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops a page from the pool without writing it, used when its file is deleted.
+     *
+     * @param path The path of the page file.
+     */
+    public synchronized void discard(String path) {
+        loads.remove(path);
+        Frame frame = frames.remove(path);
+        if (frame != null) {
+            int index = clock.indexOf(frame);
+            clock.remove(index);
+            if (hand > index) {
+                hand--;
+            }
+            if (hand >= clock.size()) {
+                hand = 0;
+            }
+        }
+    }
+
+    /**
+     * Drops all the pages of a table from the pool without writing them.
+     *
+     * @param tableName The name of the table.
+     */
+    public synchronized void invalidate(String tableName) {
+        loads.values().removeIf(load -> load.tableName().equals(tableName));
+        for (Frame frame : new ArrayList<>(clock)) {
+            if (frame.page.getTableName().equals(tableName)) {
+                discard(frame.path);
+            }
+        }
+    }
+
+    /**
+     * @param path The path of the page file.
+     * @return True if the page is in the pool.
+     */
+    public synchronized boolean contains(String path) {
+        return frames.containsKey(path);
+    }
+
+    /**
+     * @param path The path of the page file.
+     * @return True if the page is in the pool with changes that are not written to its file yet.
+     */
+    public synchronized boolean isDirty(String path) {
+        Frame frame = frames.get(path);
+        return frame != null && frame.dirty;
+    }
+
+    /**
+     * @param path The path of the page file.
+     * @return True if the page is being read from disk by another thread.
+     */
+    public synchronized boolean isLoading(String path) {
+        return loads.containsKey(path);
+    }
+
+    /**
+     * @return The smallest recovery log sequence number of the dirty pages, the log before it is not needed to
+     * redo them. It is Long.MAX_VALUE if no dirty page holds a logged change.
+     */
+    public synchronized long getMinRecLsn() {
+        long min = Long.MAX_VALUE;
+        for (Frame frame : clock) {
+            if (frame.dirty && frame.page.getRecLsn() > 0) {
+                min = Math.min(min, frame.page.getRecLsn());
+            }
+        }
+
+        return min;
+    }
+
+    /**
+     * @return The number of pages in the pool.
+     */
+    public synchronized int size() {
+        return clock.size();
+    }
+
+    /**
+     * @return The maximum number of unpinned pages kept in memory.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return The number of fetches served from memory.
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return The number of fetches that read the page from disk.
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    private synchronized void startWriter(long interval) {
+        writer = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    Thread.sleep(interval);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                flushAll();
+            }
+        }, "BufferPool-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    private void admit(String path, Page page) {
+        while (clock.size() >= capacity) {
+            if (!evict()) {
+                // every page is pinned, let the pool grow until some of them are released
+                break;
+            }
+        }
+
+        Frame frame = new Frame(path, page);
+        frames.put(path, frame);
+        clock.add(frame);
+    }
+
+    /**
+     * Runs the clock hand until it finds an unpinned frame whose reference bit is clear, and evicts it.
+     * The log is not flushed under the lock of the pool, so a dirty frame whose changes are not flushed to the log yet
+     * is passed over like a pinned one, until the next flush of the log.
+     *
+     * @return False if every frame is pinned or waits for the log.
+     */
+    private boolean evict() {
+        // two full turns are enough to clear every reference bit
+        for (int steps = 0; steps < 2 * clock.size(); steps++) {
+            if (hand >= clock.size()) {
+                hand = 0;
+            }
+
+            Frame frame = clock.get(hand);
+            if (frame.pinCount > 0 || frame.dirty && !WriteAheadLog.getInstance().isFlushed(frame.page.getLsn())) {
+                hand++;
+            } else if (frame.referenced) {
+                frame.referenced = false;
+                hand++;
+            } else {
+                if (frame.dirty) {
+                    write(frame);
+                }
+                discard(frame.path);
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private void write(Frame frame) {
+        // write-ahead rule: the callers only write a page once the log is flushed up to it
+        WriteAheadLog log = WriteAheadLog.getInstance();
+        PageFormat.write(frame.page, Paths.get(frame.path));
+        log.fileWritten(Paths.get(frame.path));
+        frame.page.setRecLsn(0);
+        frame.dirty = false;
+    }
+}
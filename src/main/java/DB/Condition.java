@@ -0,0 +1,288 @@
+package DB;
+
+import java.util.function.Predicate;
+
+/**
+ * This class is the condition of a select query compiled once into an immutable tree, instead of converting the terms
+ * to postfix notation for every record.
+ * The leaves compare a column with a value, their comparison is chosen from the type of the column when the query is
+ * compiled: Integer and Double values are compared as primitives, Strings with compareTo. A record whose value is null
+ * doesn't satisfy any term.
+ * The inner nodes combine two conditions with the precedence "AND" before "OR" before "XOR", from left to right. "AND" and "OR" only evaluate their right condition when the left one doesn't decide the result.
+ * A condition is also evaluated on the zone map of a page, to skip the pages none of whose records can satisfy it.
+ *
+ * @author ahmedgado
+ */
+public abstract class Condition implements Predicate<Record> {
+
+    /**
+     * Checks if some records within the bounds of a zone map may satisfy the condition.
+     *
+     * @param zoneMap The zone map of a page.
+     * @return False if no record of the page can satisfy the condition.
+     */
+    public abstract boolean mayMatch(ZoneMap zoneMap);
+
+    /**
+     * Compiles the terms and operators of a select query.
+     *
+     * @param arrSQLTerms     The terms, on the columns of the table.
+     * @param strarrOperators The operators between the terms, "AND", "OR" or "XOR".
+     * @param schema          The schema of the table.
+     * @return The condition.
+     * @throws DBAppException If there isn't one operator between every two terms, if an operator is invalid, or if a
+     *                        column does not exist.
+     */
+    public static Condition compile(SQLTerm[] arrSQLTerms, String[] strarrOperators, Metadata.TableSchema schema)
+            throws DBAppException {
+        if (arrSQLTerms.length == 0 || arrSQLTerms.length != strarrOperators.length + 1) {
+            throw new DBAppException("Invalid arguments");
+        }
+
+        // the conditions of the current "AND" chain, "OR" chain and "XOR" chain
+        Condition and = compare(arrSQLTerms[0], schema);
+        Condition or = null;
+        Condition xor = null;
+        for (int i = 0; i < strarrOperators.length; i++) {
+            Condition term = compare(arrSQLTerms[i + 1], schema);
+            switch (String.valueOf(strarrOperators[i])) {
+                case "AND" -> and = new And(and, term);
+                case "OR" -> {
+                    or = or == null ? and : new Or(or, and);
+                    and = term;
+                }
+                case "XOR" -> {
+                    or = or == null ? and : new Or(or, and);
+                    xor = xor == null ? or : new Xor(xor, or);
+                    or = null;
+                    and = term;
+                }
+                default -> throw new DBAppException("Invalid operator");
+            }
+        }
+
+        or = or == null ? and : new Or(or, and);
+        return xor == null ? or : new Xor(xor, or);
+    }
+
+    /**
+     * Compiles a term into a comparison of the type of its column.
+     *
+     * @param term   The term.
+     * @param schema The schema of the table.
+     * @return The comparison.
+     * @throws DBAppException If the operator is invalid, or if the column does not exist.
+     */
+    private static Condition compare(SQLTerm term, Metadata.TableSchema schema) throws DBAppException {
+        Operator operator = Operator.of(term._strOperator);
+        Metadata.Column column = schema.getColumn(term._strColumnName);
+        if (column == null) {
+            throw new DBAppException("Column " + term._strColumnName + " does not exist in table " + schema.getName());
+        }
+        if (term._objValue == null) {
+            return new False();
+        }
+
+        return switch (column.type()) {
+            case INTEGER -> new IntComparison(column.name(), operator, (Integer) term._objValue);
+            case DOUBLE -> new DoubleComparison(column.name(), operator, (Double) term._objValue);
+            case STRING -> new StringComparison(column.name(), operator, (String) term._objValue);
+        };
+    }
+
+    /**
+     * The operators of a term, applied to the result of comparing the value of the record with the value of the term.
+     */
+    enum Operator {
+        EQUAL, NOT_EQUAL, GREATER, GREATER_OR_EQUAL, LESS, LESS_OR_EQUAL;
+
+        static Operator of(String operator) throws DBAppException {
+            return switch (String.valueOf(operator)) {
+                case "=" -> EQUAL;
+                case "!=" -> NOT_EQUAL;
+                case ">" -> GREATER;
+                case ">=" -> GREATER_OR_EQUAL;
+                case "<" -> LESS;
+                case "<=" -> LESS_OR_EQUAL;
+                default -> throw new DBAppException("Invalid operator");
+            };
+        }
+
+        boolean test(int comparison) {
+            return switch (this) {
+                case EQUAL -> comparison == 0;
+                case NOT_EQUAL -> comparison != 0;
+                case GREATER -> comparison > 0;
+                case GREATER_OR_EQUAL -> comparison >= 0;
+                case LESS -> comparison < 0;
+                case LESS_OR_EQUAL -> comparison <= 0;
+            };
+        }
+
+        /**
+         * @param minComparison The result of comparing the minimum value of a page with the value of the term.
+         * @param maxComparison The result of comparing the maximum value of a page with the value of the term.
+         * @return False if no value between the minimum and the maximum satisfies the term.
+         */
+        boolean mayMatch(int minComparison, int maxComparison) {
+            return switch (this) {
+                case EQUAL -> minComparison <= 0 && maxComparison >= 0;
+                case NOT_EQUAL -> minComparison != 0 || maxComparison != 0;
+                case GREATER -> maxComparison > 0;
+                case GREATER_OR_EQUAL -> maxComparison >= 0;
+                case LESS -> minComparison < 0;
+                case LESS_OR_EQUAL -> minComparison <= 0;
+            };
+        }
+    }
+
+    private static final class IntComparison extends Condition {
+        private final String column;
+        private final Operator operator;
+        private final int value;
+
+        private IntComparison(String column, Operator operator, int value) {
+            this.column = column;
+            this.operator = operator;
+            this.value = value;
+        }
+
+        @Override
+        public boolean test(Record record) {
+            return record.hashtable().get(column) instanceof Integer recordValue
+                    && operator.test(Integer.compare(recordValue, value));
+        }
+
+        @Override
+        public boolean mayMatch(ZoneMap zoneMap) {
+            return zoneMap.getMin(column) instanceof Integer min && zoneMap.getMax(column) instanceof Integer max
+                    && operator.mayMatch(Integer.compare(min, value), Integer.compare(max, value));
+        }
+    }
+
+    private static final class DoubleComparison extends Condition {
+        private final String column;
+        private final Operator operator;
+        private final double value;
+
+        private DoubleComparison(String column, Operator operator, double value) {
+            this.column = column;
+            this.operator = operator;
+            this.value = value;
+        }
+
+        @Override
+        public boolean test(Record record) {
+            return record.hashtable().get(column) instanceof Double recordValue
+                    && operator.test(Double.compare(recordValue, value));
+        }
+
+        @Override
+        public boolean mayMatch(ZoneMap zoneMap) {
+            return zoneMap.getMin(column) instanceof Double min && zoneMap.getMax(column) instanceof Double max
+                    && operator.mayMatch(Double.compare(min, value), Double.compare(max, value));
+        }
+    }
+
+    private static final class StringComparison extends Condition {
+        private final String column;
+        private final Operator operator;
+        private final String value;
+
+        private StringComparison(String column, Operator operator, String value) {
+            this.column = column;
+            this.operator = operator;
+            this.value = value;
+        }
+
+        @Override
+        public boolean test(Record record) {
+            return record.hashtable().get(column) instanceof String recordValue
+                    && operator.test(recordValue.compareTo(value));
+        }
+
+        @Override
+        public boolean mayMatch(ZoneMap zoneMap) {
+            return zoneMap.getMin(column) instanceof String min && zoneMap.getMax(column) instanceof String max
+                    && operator.mayMatch(min.compareTo(value), max.compareTo(value));
+        }
+    }
+
+    /**
+     * A term whose value is null, no record satisfies it.
+     */
+    private static final class False extends Condition {
+        @Override
+        public boolean test(Record record) {
+            return false;
+        }
+
+        @Override
+        public boolean mayMatch(ZoneMap zoneMap) {
+            return false;
+        }
+    }
+
+    private static final class And extends Condition {
+        private final Condition left;
+        private final Condition right;
+
+        private And(Condition left, Condition right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public boolean test(Record record) {
+            return left.test(record) && right.test(record);
+        }
+
+        @Override
+        public boolean mayMatch(ZoneMap zoneMap) {
+            return left.mayMatch(zoneMap) && right.mayMatch(zoneMap);
+        }
+    }
+
+    private static final class Or extends Condition {
+        private final Condition left;
+        private final Condition right;
+
+        private Or(Condition left, Condition right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public boolean test(Record record) {
+            return left.test(record) || right.test(record);
+        }
+
+        @Override
+        public boolean mayMatch(ZoneMap zoneMap) {
+            return left.mayMatch(zoneMap) || right.mayMatch(zoneMap);
+        }
+    }
+
+    private static final class Xor extends Condition {
+        private final Condition left;
+        private final Condition right;
+
+        private Xor(Condition left, Condition right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public boolean test(Record record) {
+            return left.test(record) ^ right.test(record);
+        }
+
+        /**
+         * Different records may satisfy either side, the page is only skipped when neither side can be satisfied.
+         */
+        @Override
+        public boolean mayMatch(ZoneMap zoneMap) {
+            return left.mayMatch(zoneMap) || right.mayMatch(zoneMap);
+        }
+    }
+}
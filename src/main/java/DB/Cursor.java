@@ -0,0 +1,271 @@
+package DB;
+
+import BTree.RecordId;
+import BTree.RoaringBitmap;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Predicate;
+
+/**
+ * This class is the result of a select, it reads the pages of the table as the caller advances instead of collecting
+ * every matching record first.
+ * Only the records of the current page, and of the pages read ahead, are held, the pages themselves are read through
+ * the buffer pool, so a scan of a large table neither fills the memory nor waits for the whole table before returning
+ * its first record.
+ * The ids of the pages to read are taken in the order of the table when the cursor is opened. A page removed afterward
+ * is skipped, and a record moved by a later page split to a page created afterward is not returned.
+ * With more than one ScanThreads, the pool of ParallelScan reads and filters the next pages ahead of the caller, twice
+ * as many pages as threads, and their records are returned in the order of the pages. A page read ahead is returned as
+ * it was when it was read. With one thread, a Prefetcher reads the next pages into the buffer pool while the caller
+ * filters the current one.
+ * The returned records are copies, changing them changes neither the table nor the next selects.
+ *
+ * @author ahmedgado
+ */
+public class Cursor implements Iterator<Record>, AutoCloseable {
+    private static final Record[] NO_RECORDS = new Record[0];
+
+    private final Table<?> table;
+    private final int[] pageIds;
+    private final int[] recordIds;
+    private final int[] pageStarts;
+    private final ArrayList<String> pagePaths;
+    private final Predicate<Record> filter;
+    private final int readAhead;
+    private final ArrayDeque<ForkJoinTask<Record[]>> reads;
+    private Prefetcher prefetcher;
+    private int nextPage;
+    private int nextRead;
+    private Record[] records;
+    private int nextRecord;
+    private Record next;
+    private boolean closed;
+
+    /**
+     * Constructor for the Cursor class, it returns the records of some pages that pass a filter.
+     *
+     * @param table       The table.
+     * @param pageIndexes The indexes of the pages in the table, sorted.
+     * @param filter      The condition of the returned records.
+     */
+    public Cursor(Table<?> table, int[] pageIndexes, Predicate<Record> filter) {
+        this.table = table;
+        this.pageIds = new int[pageIndexes.length];
+        this.pagePaths = new ArrayList<>(pageIndexes.length);
+        for (int i = 0; i < pageIndexes.length; i++) {
+            pageIds[i] = table.getPageId(pageIndexes[i]);
+            pagePaths.add(table.getPagesPath().get(pageIndexes[i]));
+        }
+        this.recordIds = null;
+        this.pageStarts = null;
+        this.filter = filter;
+        this.readAhead = readAhead();
+        this.reads = new ArrayDeque<>();
+        this.records = NO_RECORDS;
+    }
+
+    /**
+     * Constructor for the Cursor class, it returns the records of some RecordIds that pass a filter, only their pages
+     * are read. The ids of records that no longer exist are skipped.
+     *
+     * @param table     The table.
+     * @param recordIds The RecordIds.
+     * @param filter    The condition of the returned records.
+     */
+    public Cursor(Table<?> table, RoaringBitmap recordIds, Predicate<Record> filter) {
+        // the ids ordered by the index of their page in the table, then by slot
+        long[] ids = new long[recordIds.getCardinality()];
+        int length = 0;
+        PrimitiveIterator.OfInt iterator = recordIds.iterator();
+        while (iterator.hasNext()) {
+            int recordId = iterator.nextInt();
+            int pageNo = table.indexOfPageId(RecordId.page(recordId));
+            if (pageNo >= 0) {
+                ids[length++] = (long) pageNo << Integer.SIZE | recordId;
+            }
+        }
+        Arrays.sort(ids, 0, length);
+
+        // the ids of the k-th page are from pageStarts[k] to pageStarts[k + 1]
+        int[] pages = new int[length];
+        int[] starts = new int[length + 1];
+        int pagesCount = 0;
+        this.recordIds = new int[length];
+        this.pagePaths = new ArrayList<>();
+        for (int i = 0; i < length; i++) {
+            this.recordIds[i] = (int) ids[i];
+            int pageId = RecordId.page(this.recordIds[i]);
+            if (pagesCount == 0 || pages[pagesCount - 1] != pageId) {
+                starts[pagesCount] = i;
+                pages[pagesCount++] = pageId;
+                pagePaths.add(table.getPagesPath().get((int) (ids[i] >>> Integer.SIZE)));
+            }
+        }
+        starts[pagesCount] = length;
+
+        this.table = table;
+        this.pageIds = Arrays.copyOf(pages, pagesCount);
+        this.pageStarts = Arrays.copyOf(starts, pagesCount + 1);
+        this.filter = filter;
+        this.readAhead = readAhead();
+        this.reads = new ArrayDeque<>();
+        this.records = NO_RECORDS;
+    }
+
+    /**
+     * @return The number of pages read ahead, 1 when the pages are read by the caller.
+     */
+    private static int readAhead() {
+        int threads = ParallelScan.getThreads();
+        return threads == 1 ? 1 : 2 * threads;
+    }
+
+    /**
+     * Returns a cursor over every record of a table.
+     *
+     * @param table The table.
+     * @return The cursor.
+     */
+    public static Cursor of(Table<?> table) {
+        return of(table, record -> true);
+    }
+
+    /**
+     * Returns a cursor over the records of a table that pass a filter, every page is read.
+     *
+     * @param table  The table.
+     * @param filter The condition of the returned records.
+     * @return The cursor.
+     */
+    public static Cursor of(Table<?> table, Predicate<Record> filter) {
+        int[] pageIndexes = new int[table.pagesCount()];
+        Arrays.setAll(pageIndexes, i -> i);
+
+        return new Cursor(table, pageIndexes, filter);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null && !closed) {
+            next = advance();
+        }
+
+        return next != null;
+    }
+
+    @Override
+    public Record next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        Record record = next;
+        next = null;
+        return record;
+    }
+
+    /**
+     * Releases the records of the current page and cancels the pages read ahead, the cursor returns no more records.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        next = null;
+        records = NO_RECORDS;
+        for (ForkJoinTask<Record[]> read : reads) {
+            read.cancel(false);
+        }
+        reads.clear();
+    }
+
+    /**
+     * @return The next record that passes the filter, or null once every page is read.
+     */
+    private Record advance() {
+        while (nextRecord >= records.length) {
+            if (nextPage == pageIds.length) {
+                records = NO_RECORDS;
+                return null;
+            }
+            records = readPage();
+            nextRecord = 0;
+        }
+
+        return records[nextRecord++];
+    }
+
+    /**
+     * @return The records of the next page that pass the filter, read by the caller or taken from the pages read ahead.
+     */
+    private Record[] readPage() {
+        if (readAhead == 1) {
+            // the pages are filtered by this thread, only their reads are done ahead
+            if (prefetcher == null) {
+                prefetcher = new Prefetcher(table.getTableName(), pagePaths);
+            }
+            prefetcher.advance(nextPage);
+            return scanPage(nextPage++);
+        }
+
+        while (nextRead < pageIds.length && reads.size() < readAhead) {
+            int page = nextRead++;
+            reads.add(ParallelScan.submit(() -> scanPage(page)));
+        }
+        nextPage++;
+
+        return reads.poll().join();
+    }
+
+    /**
+     * Reads a page and filters its candidates: every record of the page, or the records of its RecordIds in the order
+     * of the page. It may run on a thread of the pool of ParallelScan.
+     *
+     * @param page The position of the page in pageIds.
+     * @return Copies of the candidates that pass the filter.
+     */
+    private Record[] scanPage(int page) {
+        int pageNo = table.indexOfPageId(pageIds[page]);
+        if (pageNo < 0) {
+            return NO_RECORDS;
+        }
+
+        Page current = table.getPage(pageNo);
+        Record[] candidates;
+        if (recordIds == null) {
+            candidates = current.getRecords().toArray(NO_RECORDS);
+        } else {
+            // the slots of a page are not in the order of its records
+            int[] positions = new int[pageStarts[page + 1] - pageStarts[page]];
+            int count = 0;
+            for (int i = pageStarts[page]; i < pageStarts[page + 1]; i++) {
+                int position = current.findSlot(RecordId.slot(recordIds[i]));
+                if (position >= 0) {
+                    positions[count++] = position;
+                }
+            }
+
+            Arrays.sort(positions, 0, count);
+            candidates = new Record[count];
+            for (int i = 0; i < count; i++) {
+                candidates[i] = current.getRecords().get(positions[i]);
+            }
+        }
+
+        // the records of the page are the ones cached in the buffer pool, the caller gets copies
+        int count = 0;
+        for (Record record : candidates) {
+            if (filter.test(record)) {
+                candidates[count++] = new Record(new Hashtable<>(record.hashtable()));
+            }
+        }
+
+        return count == candidates.length ? candidates : Arrays.copyOf(candidates, count);
+    }
+}
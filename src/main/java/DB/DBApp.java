@@ -1,11 +1,15 @@
 package DB;
 
 import BTree.DBBTree;
+import BTree.IndexCache;
+import BTree.RecordId;
+import BTree.RoaringBitmap;
 
 import java.io.*;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.function.Predicate;
 
 /**
  * @author Wael Abouelsaadat
@@ -14,8 +18,9 @@ import java.util.*;
 public class DBApp {
 
     public static final String configPath = "src/main/resources/DBApp.config";
-    public static final String metadataHeader = "Table Name,Column Name,Column Type,ClusteringKey,IndexName,IndexType\n";
+    public static final String metadataHeader = "Table Name,Column Name,Column Type,ClusteringKey,IndexName,IndexType,IndexEntries\n";
     private static Properties db_config;
+    private WriteAheadLog.RecoveryStats recoveryStats;
 
     public DBApp() {
         this.init();
@@ -25,8 +30,13 @@ public class DBApp {
      * This method is used for initialization at the application startup.
      * It performs the following operations:
      * 1. Reads the configuration file and loads it into a Properties object.
-     * 2. Checks if the data folder exists. If it doesn't, it creates the data folder.
-     * 3. Checks if the metadata file exists. If it doesn't, it creates the metadata file and writes the metadata header into it.
+     * 2. Creates the buffer pool that caches the pages, and the index cache that keeps the loaded indexes.
+     * 3. Checks if the data folder exists. If it doesn't, it creates the data folder.
+     * 4. Checks if the metadata file exists. If it doesn't, it creates the metadata file and writes the metadata header into it.
+     * Then it loads the metadata file into the in-memory catalog, the indexes of metadata files written before their
+     * kind was kept get it from their files.
+     * 5. Opens the write-ahead log in the data folder and replays it. If the previous run didn't close the log cleanly,
+     * the indexes are rebuilt from the recovered tables and a checkpoint empties the log.
      *
      * @throws RuntimeException If an error occurs while reading the configuration file, creating the data folder, creating the metadata file, or writing the metadata header.
      */
@@ -39,6 +49,9 @@ public class DBApp {
             throw new RuntimeException(e);
         }
 
+        BufferPool.init();
+        IndexCache.init();
+
         // Create the data folder if it doesn't exist
         File dataFolder = new File(getDbConfig().getProperty("DataPath"));
         if (!dataFolder.exists()) {
@@ -67,6 +80,54 @@ public class DBApp {
                 throw new RuntimeException(e);
             }
         }
+        Metadata.init();
+        Util.completeIndexEntries();
+
+        // the table files may have been changed since the handles were opened, by recovery or by another DBApp
+        Table.invalidateAll();
+        recover();
+    }
+
+    /**
+     * This method opens the write-ahead log and redoes the statements that may be missing from the data files.
+     * A log that is empty at startup means the previous run was closed cleanly and there is nothing to do.
+     * Otherwise, the index files of the tables named by the log can't be trusted: they are written outside the log, and
+     * may miss the entries of the replayed statements or hold entries of a statement that never committed. They are
+     * rebuilt for these tables only, the indexes of the other tables match their files.
+     * The time taken and the number of replayed records are kept in the recovery stats.
+     *
+     * @throws RuntimeException If an index can't be rebuilt.
+     */
+    private void recover() {
+        long start = System.nanoTime();
+        WriteAheadLog.init();
+        WriteAheadLog log = WriteAheadLog.getInstance();
+        boolean clean = log.getAppendedLsn() == log.getBaseLsn();
+
+        LinkedHashSet<String> tables = log.recover();
+        if (!clean) {
+            try {
+                for (String tableName : tables) {
+                    if (Metadata.getInstance().getTable(tableName) != null
+                            && Paths.get(getDbConfig().getProperty("DataPath"), tableName).toFile().isDirectory()) {
+                        Util.recreateIndexes(tableName, this);
+                    }
+                }
+            } catch (DBAppException e) {
+                throw new RuntimeException(e);
+            }
+            log.checkpoint();
+        }
+
+        recoveryStats = new WriteAheadLog.RecoveryStats(
+                (System.nanoTime() - start) / 1_000_000, log.getRecordsReplayed(), tables);
+    }
+
+    /**
+     * @return What the recovery did when this DBApp was initialized.
+     */
+    public WriteAheadLog.RecoveryStats getRecoveryStats() {
+        return recoveryStats;
     }
 
     /**
@@ -76,9 +137,9 @@ public class DBApp {
      * If the data type is not one of the supported types (Integer, Double, String), it throws an exception.
      * It then creates a new Table object and a new directory for the table.
      * If the directory already exists, it throws an exception.
-     * It then updates the metadata file with the information about the new table.
+     * It then adds the table to the catalog, which appends its columns to the metadata file.
      * The clustering key column is marked as "True" in the metadata file.
-     * Finally, it saves the Table object to disk.
+     * Finally, it saves the Table object to disk and opens it.
      *
      * @param strTableName           The name of the new table.
      * @param strClusteringKeyColumn The name of the clustering key column.
@@ -105,8 +166,6 @@ public class DBApp {
             throw new DBAppException("Clustering Key is not given as input");
         }
 
-        String metadataPath = getDbConfig().getProperty("MetadataPath");
-
         // create a new table, and parent folder
         Table<Object> table = new Table<>(strTableName);
         Path tablePath = Paths.get((String) getDbConfig().get("DataPath"), strTableName);
@@ -121,15 +180,9 @@ public class DBApp {
         }
 
         // update metadata, and set clustering key
-        try (FileWriter writer = new FileWriter(metadataPath, true)) {
-            for (String colName : htblColNameType.keySet()) {
-                String colType = htblColNameType.get(colName);
-                String clusteringKey = colName.equals(strClusteringKeyColumn) ? "True" : "False";
-                writer.write(strTableName + "," + colName + "," + colType + "," + clusteringKey + ",null,null\n");
-            }
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+        Metadata.getInstance().addTable(strTableName, strClusteringKeyColumn, htblColNameType);
+        PageFormat.invalidate(strTableName);
+        IndexCache.getInstance().invalidate(strTableName);
 
         // save table to disk
         Path path = Paths.get((String) getDbConfig().get("DataPath"), strTableName, strTableName + ".ser");
@@ -140,15 +193,20 @@ public class DBApp {
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
+        WriteAheadLog.getInstance().fileWritten(path);
+        Table.register(table);
     }
 
     /**
      * This method is used to create a B+ tree index for a specific column in a table.
      * It first checks if the table name, column name, and index name are not null.
      * It then loads the table from the disk and creates a new B+ tree.
-     * It iterates over all the records in the table and inserts the value of the column and the record's key into the B+ tree.
-     * It then saves the B+ tree to the disk.
-     * Finally, it updates the metadata file with the information about the new index.
+     * It iterates over all the records in the table and collects the value of the column with the id of the page of the record.
+     * The pairs are sorted by value, spilling to disk when they don't fit in SortBufferEntries, and the B+ tree is
+     * built bottom-up from them. It then saves the B+ tree to the disk once.
+     * Finally, it adds the index to the catalog, which rewrites the metadata file.
+     * When IndexEntries is "record", the index is a record index: it holds the RecordId of every record instead of
+     * its page, so lookups read only the matching records.
      *
      * @param strTableName The name of the table.
      * @param strColName   The name of the column.
@@ -158,62 +216,79 @@ public class DBApp {
     public void createIndex(String strTableName,
                             String strColName,
                             String strIndexName) throws DBAppException {
+        createIndex(strTableName, strColName, strIndexName, DBBTree.recordIdsFromConfig());
+    }
+
+    /**
+     * This method creates a B+ tree index like createIndex(String, String, String), of the given kind.
+     *
+     * @param strTableName The name of the table.
+     * @param strColName   The name of the column.
+     * @param strIndexName The name of the index.
+     * @param recordIds    True for a record index, false for an index of pages.
+     * @throws DBAppException If the table name, column name, or index name is null, if the pages are too large for
+     *                        record ids, if the table has used more page ids than record ids address, or if an error
+     *                        occurs while writing to the metadata file.
+     */
+    void createIndex(String strTableName,
+                     String strColName,
+                     String strIndexName,
+                     boolean recordIds) throws DBAppException {
         // no need to use the index since we are doing binary search without deserializable the pages
         if (strTableName == null || strColName == null || strIndexName == null) {
             throw new DBAppException("Null arguments");
         }
 
+        // a page never holds more than its maximum, a full page is split before a record is added to it
+        if (recordIds && Integer.parseInt(getDbConfig().getProperty("MaximumRowsCountinPage")) > RecordId.MAX_SLOTS) {
+            throw new DBAppException("Record indexes need pages of at most " + RecordId.MAX_SLOTS + " rows");
+        }
+
+        Metadata.Column column = Metadata.getInstance().requireTable(strTableName).getColumn(strColName);
+        if (column == null) {
+            throw new DBAppException("Column " + strColName + " does not exist in table " + strTableName);
+        }
+
         // Load the table from the disk
         Table<Object> table = Table.loadTable(strTableName);
+        if (recordIds && table.getNextPageId() > RecordId.MAX_PAGES) {
+            throw new DBAppException("Table " + strTableName + " has used more than the " + RecordId.MAX_PAGES
+                    + " page ids of a record index");
+        }
 
-        // Create a new B+ tree
-        DBBTree bpt = new DBBTree(strTableName, strIndexName);
+        // Create a new B+ tree, its fan-out fits the node size given in the config and its keys the column type
+        DBBTree bpt = new DBBTree(strTableName, strIndexName, column.type(), recordIds);
 
-        // Iterate over all the records in the table
-        for (int i = 0; i < table.pagesCount(); i++) {
-            Page page = table.getPage(i);
-            for (Record record : page.getRecords()) {
-                // Insert the value of the column and the record's key into the B+ tree
-                bpt.insert((Comparable) record.hashtable().get(strColName), i);
+        // Collect the value of the column and the page, or the record id, of every record, sorted by value
+        ExternalSorter<AbstractMap.SimpleImmutableEntry<Comparable, Integer>> sorter = ExternalSorter.fromConfig(
+                (a, b) -> a.getKey().compareTo(b.getKey()), Paths.get(getDbConfig().getProperty("DataPath"), strTableName));
+        try {
+            for (int i = 0; i < table.pagesCount(); i++) {
+                Page page = table.getPage(i);
+                int pageId = table.getPageId(i);
+                int[] slots = recordIds ? page.getSlots() : null;
+                for (int j = 0; j < page.size(); j++) {
+                    Object value = page.getRecords().get(j).hashtable().get(strColName);
+                    if (value != null) {
+                        int entry = recordIds ? RecordId.of(pageId, slots[j]) : pageId;
+                        sorter.add(new AbstractMap.SimpleImmutableEntry<>((Comparable) value, entry));
+                    }
+                }
             }
+
+            // Build the B+ tree bottom-up from the sorted pairs
+            bpt.build(sorter.sorted());
+        } finally {
+            sorter.close();
         }
 
-        // Save the B+ tree to the disk
+        // Save the B+ tree to the disk, it replaces the cached index of the same name
         bpt.saveIndex();
+        IndexCache.getInstance().register(bpt);
 
         // write to metadata
-        String metadataPath = getDbConfig().getProperty("MetadataPath");
-        LinkedList<String> metadataString = new LinkedList<>();
-
-        try (BufferedReader br = new BufferedReader(new FileReader(metadataPath))) {
-            br.readLine();
-            String line;
-            while ((line = br.readLine()) != null) {
-                String[] parts = line.split(",");
-                String tName = parts[0];
-                String cName = parts[1];
-                String cType = parts[2];
-                String cKey = parts[3];
-
-                if (tName.equals(strTableName) && cName.equals(strColName)) {
-                    metadataString.add(strTableName + "," + strColName + "," + cType + ","
-                            + cKey + "," + strIndexName + ",B+tree\n");
-                } else {
-                    metadataString.add(line + "\n");
-                }
-            }
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
-
-        try (FileWriter writer = new FileWriter(metadataPath, false)) {
-            writer.write(DBApp.metadataHeader);
-            for (String line : metadataString) {
-                writer.write(line);
-            }
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+        Metadata.getInstance().addIndex(strTableName, strColName, strIndexName, "B+tree",
+                Metadata.Index.entriesOf(recordIds));
     }
 
     /**
@@ -223,73 +298,388 @@ public class DBApp {
      * It retrieves the metadata for the table and gets the clustering key.
      * If the record does not contain a value for the clustering key, it throws an exception.
      * It then loads the table from the disk and gets the position of the record.
+     * A key greater than every key of the table is appended to the tail page without searching the table.
      * If the record already exists in the table, it throws an exception.
-     * It then iterates over the pages of the table. For each page, it adds the record and updates the indexes.
-     * If the page is full, it removes the last record from the page and deletes its indexes.
-     * The removed record is then inserted into the next page.
-     * If there are no more pages, it creates a new page and inserts the record into it.
+     * If the page of the record has room, the record is added to it and the indexes are updated.
+     * If the page is full and the record goes after its last record, the record is added to the start of the next
+     * page if it has room, otherwise to a new page right after the full one.
+     * If the record goes inside a full page, the page is split: the upper half of its records moves to a new page
+     * right after it, and the record is added to the half that holds its position.
+     * Either way, at most two data pages are modified.
      *
      * @param strTableName     The name of the table.
      * @param htblColNameValue A Hashtable mapping column names to their values.
-     * @throws DBAppException If the table name or the record is null, if the record does not contain a value for the clustering key, or if the record already exists in the table.
+     * @throws DBAppException If the table name or the record is null, if the record does not contain a value for the clustering key, if the record already exists in the table, or if a record index of the table can't reference a new page.
      */
     public void insertIntoTable(String strTableName,
                                 Hashtable<String, Object> htblColNameValue) throws DBAppException {
+        runStatement(strTableName, () -> runInsert(strTableName, htblColNameValue));
+    }
+
+    private void runInsert(String strTableName, Hashtable<String, Object> htblColNameValue) throws DBAppException {
         if (strTableName == null || htblColNameValue == null) {
             throw new DBAppException(("No value being inserted"));
         }
 
         Util.validateCols(strTableName, htblColNameValue);
 
-        Hashtable<String, Hashtable<String, String[]>> metaData = Util.getMetadata(strTableName);
-        if (metaData.get(strTableName) == null) {
+        Metadata.TableSchema schema = Metadata.getInstance().getTable(strTableName);
+        if (schema == null) {
+            throw new DBAppException("Table not found");
+        }
+
+        htblColNameValue = prepareRecord(schema, htblColNameValue);
+        String pKey = schema.getClusteringKey().name();
+
+        Table<Object> currentTable = Table.loadTable(strTableName);
+        // the record may go to a new page
+        Util.checkPageIds(currentTable, 1);
+        insertRecord(currentTable, pKey, new Record(htblColNameValue));
+
+        endStatement(currentTable);
+    }
+
+    /**
+     * This method is used to insert many records into a table in one statement.
+     * The schema is looked up once and every row is validated before the table is modified, so a batch with an invalid
+     * row or a duplicate clustering key inserts nothing.
+     * The rows are sorted by clustering key and inserted in order: keys past the table maximum are appended to the
+     * tail page, and the others are inserted like insertIntoTable does.
+     * The pages and indexes modified by the batch are logged and written once, when the statement ends.
+     *
+     * @param strTableName The name of the table.
+     * @param rows         The rows, each one a Hashtable mapping column names to their values.
+     * @throws DBAppException If the table name or a row is null, if the table does not exist, if a row is invalid,
+     *                        if a clustering key is repeated or already exists in the table, or if a record index
+     *                        of the table can't reference the new pages.
+     */
+    public void insertBatch(String strTableName, List<Hashtable<String, Object>> rows) throws DBAppException {
+        runStatement(strTableName, () -> runInsertBatch(strTableName, rows));
+    }
+
+    private void runInsertBatch(String strTableName, List<Hashtable<String, Object>> rows) throws DBAppException {
+        if (strTableName == null || rows == null) {
+            throw new DBAppException(("No value being inserted"));
+        }
+
+        Metadata.TableSchema schema = Metadata.getInstance().getTable(strTableName);
+        if (schema == null) {
             throw new DBAppException("Table not found");
         }
+        if (rows.isEmpty()) {
+            return;
+        }
+
+        String pKey = schema.getClusteringKey().name();
+        ArrayList<Hashtable<String, Object>> records = new ArrayList<>(rows.size());
+        for (Hashtable<String, Object> row : rows) {
+            if (row == null) {
+                throw new DBAppException(("No value being inserted"));
+            }
+            Util.validateCols(schema, row);
+            records.add(prepareRecord(schema, row));
+        }
+        records.sort((a, b) -> ((Comparable<Object>) a.get(pKey)).compareTo(b.get(pKey)));
+
+        Table<Object> table = Table.loadTable(strTableName);
+
+        // every key is checked before the table is modified, once a key is past the maximum the next ones are too
+        boolean pastMaximum = false;
+        for (int i = 0; i < records.size(); i++) {
+            Comparable<Object> pValue = (Comparable<Object>) records.get(i).get(pKey);
+            boolean exists = i > 0 && pValue.compareTo(records.get(i - 1).get(pKey)) == 0;
+            if (!exists && !pastMaximum) {
+                pastMaximum = Util.getAppendPos(table, pKey, pValue) != null;
+                exists = !pastMaximum && Util.getRecordPos(table, pKey, pValue)[2] == 1;
+            }
+            if (exists) {
+                throw new DBAppException("Record with the following primary key already exist: (" + pKey + ") " + pValue);
+            }
+        }
+
+        // each record adds at most one page
+        Util.checkPageIds(table, records.size());
+        for (Hashtable<String, Object> record : records) {
+            insertRecord(table, pKey, new Record(record));
+        }
+
+        endStatement(table);
+    }
+
+    /**
+     * This method is used to load many records into an empty table, without going through the insert path.
+     * Every row is validated, then the rows are sorted by clustering key, in memory or, beyond SortBufferEntries, by
+     * spilling sorted runs to disk and merging them (ExternalSorter).
+     * The sorted rows are packed into pages filled up to BulkLoadFillFactor of MaximumRowsCountinPage, and each page is
+     * written to its file once, without going through the buffer pool and the write-ahead log.
+     * Meanwhile, the values of the indexed columns are collected with the page, or the record id, of their record,
+     * and every index of the table is built bottom-up from them like createIndex does.
+     * Finally, a checkpoint forces the pages and the indexes to disk, then the table is logged and saved once,
+     * so a crash during the load leaves the table empty.
+     *
+     * @param strTableName The name of the table.
+     * @param rows         The rows, each one a Hashtable mapping column names to their values, in any order.
+     * @throws DBAppException If the table name or a row is null, if the table does not exist or is not empty, if
+     *                        BulkLoadFillFactor is not in (0, 1], if a row is invalid, if a clustering key is repeated,
+     *                        or if a record index of the table can't reference the new pages.
+     */
+    public void bulkLoad(String strTableName, Iterator<Hashtable<String, Object>> rows) throws DBAppException {
+        runStatement(strTableName, () -> runBulkLoad(strTableName, rows));
+    }
+
+    private void runBulkLoad(String strTableName, Iterator<Hashtable<String, Object>> rows) throws DBAppException {
+        if (strTableName == null || rows == null) {
+            throw new DBAppException(("No value being inserted"));
+        }
+
+        Metadata.TableSchema schema = Metadata.getInstance().getTable(strTableName);
+        if (schema == null) {
+            throw new DBAppException("Table not found");
+        }
+
+        Table<Object> table = Table.loadTable(strTableName);
+        if (table.pagesCount() != 0) {
+            throw new DBAppException("Bulk loads need an empty table");
+        }
+
+        int max = getMaximumRowsCountinPage();
+        double fillFactor = Double.parseDouble(getDbConfig().getProperty("BulkLoadFillFactor", "1.0"));
+        if (!(fillFactor > 0 && fillFactor <= 1)) {
+            throw new DBAppException("BulkLoadFillFactor must be in (0, 1]");
+        }
+        int pageRows = Math.max(1, (int) (max * fillFactor));
+
+        String pKey = schema.getClusteringKey().name();
+        Path directory = Paths.get(getDbConfig().getProperty("DataPath"), strTableName);
+        ExternalSorter<Hashtable<String, Object>> sorter = ExternalSorter.fromConfig(
+                (a, b) -> ((Comparable<Object>) a.get(pKey)).compareTo(b.get(pKey)), directory);
+        List<Metadata.Index> indexes = schema.getIndexes();
+        ArrayList<DBBTree> trees = new ArrayList<>();
+        ArrayList<ExternalSorter<AbstractMap.SimpleImmutableEntry<Comparable, Integer>>> entries = new ArrayList<>();
+        try {
+            long count = 0;
+            while (rows.hasNext()) {
+                Hashtable<String, Object> row = rows.next();
+                if (row == null) {
+                    throw new DBAppException(("No value being inserted"));
+                }
+                Util.validateCols(schema, row);
+                sorter.add(prepareRecord(schema, row));
+                count++;
+            }
+            if (count == 0) {
+                return;
+            }
+            Util.checkPageIds(table, (count + pageRows - 1) / pageRows);
+
+            // the new indexes keep the kind of the declared ones
+            for (Metadata.Index index : indexes) {
+                trees.add(new DBBTree(strTableName, index.name(), schema.getColumn(index.columnName()).type(),
+                        index.isRecordIndex()));
+                entries.add(ExternalSorter.fromConfig((a, b) -> a.getKey().compareTo(b.getKey()), directory));
+            }
+
+            Iterator<Hashtable<String, Object>> sorted = sorter.sorted();
+            Vector<Record> records = new Vector<>(pageRows);
+            Object previous = null;
+            while (sorted.hasNext()) {
+                Hashtable<String, Object> row = sorted.next();
+                Object pValue = row.get(pKey);
+                if (previous != null && ((Comparable<Object>) pValue).compareTo(previous) == 0) {
+                    // nothing refers to the written pages yet, dropping them leaves the table empty
+                    table.clear();
+                    endStatement(table);
+                    throw new DBAppException("Record with the following primary key already exist: (" + pKey + ") " + pValue);
+                }
+                previous = pValue;
+
+                records.add(new Record(row));
+                if (records.size() == pageRows || !sorted.hasNext()) {
+                    Page page = table.appendPage(records, pKey, max);
+                    int[] slots = page.getSlots();
+                    for (int i = 0; i < indexes.size(); i++) {
+                        String column = indexes.get(i).columnName();
+                        boolean recordIds = trees.get(i).isRecordIndex();
+                        for (int j = 0; j < records.size(); j++) {
+                            Object value = records.get(j).hashtable().get(column);
+                            if (value != null) {
+                                int entry = recordIds ? RecordId.of(page.getPageNumber(), slots[j]) : page.getPageNumber();
+                                entries.get(i).add(new AbstractMap.SimpleImmutableEntry<>((Comparable) value, entry));
+                            }
+                        }
+                    }
+                    records = new Vector<>(pageRows);
+                }
+            }
+
+            // they replace the cached indexes of the same names
+            for (int i = 0; i < trees.size(); i++) {
+                trees.get(i).build(entries.get(i).sorted());
+                trees.get(i).saveIndex();
+                IndexCache.getInstance().register(trees.get(i));
+            }
+        } finally {
+            sorter.close();
+            for (ExternalSorter<?> indexEntries : entries) {
+                indexEntries.close();
+            }
+        }
+
+        // the pages and the indexes are on disk before the table refers to them
+        WriteAheadLog.getInstance().checkpoint();
+        table.markDirty();
+        endStatement(table);
+    }
 
-        for (String colName : metaData.get(strTableName).keySet()) {
-            if (!colName.equals("clusteringKey") && htblColNameValue.get(colName) == null) {
-                throw new DBAppException("Column " + colName + " not provided");
+    /**
+     * This helper method checks that a validated record holds every column of the table.
+     *
+     * @param schema           The schema of the table.
+     * @param htblColNameValue A Hashtable mapping column names to their values.
+     * @return A copy of the record, it stays cached in the buffer pool, so it must not share the caller's hashtable.
+     * @throws DBAppException If a column, or the clustering key, is not provided.
+     */
+    private static Hashtable<String, Object> prepareRecord(Metadata.TableSchema schema,
+                                                           Hashtable<String, Object> htblColNameValue)
+            throws DBAppException {
+        for (Metadata.Column column : schema.getColumns()) {
+            if (htblColNameValue.get(column.name()) == null) {
+                throw new DBAppException("Column " + column.name() + " not provided");
             }
         }
 
-        String pKey = metaData.get(strTableName).get("clusteringKey")[0];
+        String pKey = schema.getClusteringKey().name();
         if (!htblColNameValue.containsKey(pKey)) {
             throw new DBAppException("Primary key not found");
         }
-        Comparable<Object> pValue = (Comparable<Object>) htblColNameValue.get(pKey);
 
-        Table<Object> currentTable = Table.loadTable(strTableName);
+        return new Hashtable<>(htblColNameValue);
+    }
 
-        int[] recordPos = Util.getRecordPos(strTableName, pKey, pValue);
+    /**
+     * This helper method inserts a record at its position in a table and updates the indexes, the statement is
+     * ended by the caller.
+     *
+     * @param table  The table.
+     * @param pKey   The primary key.
+     * @param record The record to be inserted.
+     * @throws DBAppException If the record already exists in the table, or if an index of the table can't be loaded.
+     */
+    private void insertRecord(Table<Object> table, String pKey, Record record) throws DBAppException {
+        Comparable<Object> pValue = (Comparable<Object>) record.hashtable().get(pKey);
+
+        // keys past the maximum of the table go to the end of the tail page, no search is needed
+        int[] recordPos = Util.getAppendPos(table, pKey, pValue);
+        if (recordPos == null) {
+            recordPos = Util.getRecordPos(table, pKey, pValue);
+        }
 
         if (recordPos[2] == 1) {
             throw new DBAppException("Record with the following primary key already exist: (" + pKey + ") " + pValue);
         }
 
         int pageNo = recordPos[0];
-        int recordNo = recordPos[1];
-
-        for (int currentPageNo = pageNo; currentPageNo <= currentTable.pagesCount(); currentPageNo++) {
-            if (currentPageNo < currentTable.pagesCount()) {
-                Page page = currentTable.getPage(currentPageNo);
-                currentTable.addRecord(recordNo + 1, new Record(htblColNameValue), pKey, page);
-                Util.updateIndexes(strTableName, currentPageNo, recordNo + 1);
-                if (page.size() == page.getMax() + 1) {
-                    Util.deleteIndexes(strTableName, currentPageNo, page.getMax());
-                    htblColNameValue = currentTable.removeRecord(page.getMax(), pKey, page).hashtable();
-                    recordNo = -1;
+        int recordNo = recordPos[1] + 1;
+
+        if (table.pagesCount() == 0) {
+            Page newPage = table.addPage(getMaximumRowsCountinPage());
+            table.addRecord(record, pKey, newPage);
+            Util.updateIndexes(table, 0, 0);
+        } else {
+            // keep the page in the pool while the indexes read it back
+            Page page = table.pinPage(pageNo);
+            try {
+                if (page.size() < page.getMax()) {
+                    table.addRecord(recordNo, record, pKey, page);
+                    Util.updateIndexes(table, pageNo, recordNo);
+                } else if (recordNo == page.size()) {
+                    insertAfterPage(table, pageNo, record, pKey);
                 } else {
-                    break;
+                    splitPage(table, pageNo, page, recordNo, record, pKey);
                 }
-            } else {
-                Page newPage = currentTable.addPage(Integer.parseInt((String) DBApp.getDbConfig().get("MaximumRowsCountinPage")));
-                currentTable.addRecord(new Record(htblColNameValue), pKey, newPage);
-                Util.updateIndexes(strTableName, currentPageNo, recordNo + 1);
-                break;
+            } finally {
+                table.unpinPage(page);
             }
         }
     }
 
+    /**
+     * This helper method inserts a record that goes after the last record of a full page.
+     * The record is added to the start of the next page if it has room, otherwise to a new page after the full page.
+     *
+     * @param table  The table.
+     * @param pageNo The index of the full page.
+     * @param record The record to be inserted.
+     * @param pKey   The primary key.
+     * @throws DBAppException If an index of the table can't be loaded.
+     */
+    private void insertAfterPage(Table<Object> table, int pageNo, Record record, String pKey) throws DBAppException {
+        int nextPageNo = pageNo + 1;
+        if (nextPageNo < table.pagesCount()) {
+            Page nextPage = table.pinPage(nextPageNo);
+            try {
+                if (nextPage.size() < nextPage.getMax()) {
+                    table.addRecord(0, record, pKey, nextPage);
+                    Util.updateIndexes(table, nextPageNo, 0);
+                    return;
+                }
+            } finally {
+                table.unpinPage(nextPage);
+            }
+        }
+
+        Page newPage = table.insertPage(nextPageNo, getMaximumRowsCountinPage());
+        table.addRecord(record, pKey, newPage);
+        Util.updateIndexes(table, nextPageNo, 0);
+    }
+
+    /**
+     * This helper method inserts a record inside a full page by splitting the page.
+     * The upper half of the records of the page moves to a new page right after it, their index entries move with
+     * them, and the record is then added to the half that holds its position.
+     *
+     * @param table    The table.
+     * @param pageNo   The index of the full page.
+     * @param page     The full page.
+     * @param recordNo The position of the record in the full page.
+     * @param record   The record to be inserted.
+     * @param pKey     The primary key.
+     * @throws DBAppException If an index of the table can't be loaded.
+     */
+    private void splitPage(Table<Object> table, int pageNo, Page page, int recordNo, Record record, String pKey)
+            throws DBAppException {
+        int half = page.size() / 2;
+        for (int i = page.size() - 1; i >= half; i--) {
+            Util.deleteIndexes(table, pageNo, i);
+        }
+        Vector<Record> moved = page.removeFrom(half);
+
+        int newPageNo = pageNo + 1;
+        Page newPage = table.insertPage(newPageNo, getMaximumRowsCountinPage());
+        newPage.addAll(moved);
+        table.updateClusteringKeyMin(pKey, newPage);
+        table.updateZoneMap(page);
+        table.updateZoneMap(newPage);
+        for (int i = 0; i < moved.size(); i++) {
+            Util.updateIndexes(table, newPageNo, i);
+        }
+
+        if (recordNo <= half) {
+            table.addRecord(recordNo, record, pKey, page);
+            Util.updateIndexes(table, pageNo, recordNo);
+        } else {
+            table.addRecord(recordNo - half, record, pKey, newPage);
+            Util.updateIndexes(table, newPageNo, recordNo - half);
+        }
+    }
+
+    /**
+     * @return The maximum number of records of a new page, the MaximumRowsCountinPage property of the configuration.
+     */
+    private static int getMaximumRowsCountinPage() {
+        return Integer.parseInt(getDbConfig().getProperty("MaximumRowsCountinPage"));
+    }
+
     /**
      * This method is used to update a specific record in a table.
      * It first checks if the table name, clustering key value, and the record are not null.
@@ -308,6 +698,12 @@ public class DBApp {
     public void updateTable(String strTableName,
                             String strClusteringKeyValue,
                             Hashtable<String, Object> htblColNameValue) throws DBAppException {
+        runStatement(strTableName, () -> runUpdate(strTableName, strClusteringKeyValue, htblColNameValue));
+    }
+
+    private void runUpdate(String strTableName,
+                           String strClusteringKeyValue,
+                           Hashtable<String, Object> htblColNameValue) throws DBAppException {
         // no need to use the index since we are doing binary search without deserializable the pages
         if (strTableName == null || strClusteringKeyValue == null || htblColNameValue == null) {
             throw new DBAppException("Null arguments");
@@ -320,40 +716,36 @@ public class DBApp {
         Util.validateCols(strTableName, htblColNameValue);
 
         Table<Object> table = Table.loadTable(strTableName);
-        Hashtable<String, Hashtable<String, String[]>> metaData = Util.getMetadata(strTableName);
+        Metadata.TableSchema schema = Metadata.getInstance().getTable(strTableName);
 
         // check if the table exists
-        if (metaData.get(strTableName) == null) {
+        if (schema == null) {
             throw new DBAppException("Table does not exist");
         }
-        Object clusteringKeyValue;
 
-        String compare = metaData.get(strTableName).get("clusteringKey")[0];
-        String clustKeyType = metaData.get(strTableName).get(compare)[0];
-        if (clustKeyType.equals("java.lang.Integer")) {
-            clusteringKeyValue = Integer.parseInt(strClusteringKeyValue);
-        } else if (clustKeyType.equals("java.lang.Double")) {
-            clusteringKeyValue = Double.parseDouble(strClusteringKeyValue);
-        } else {
-            clusteringKeyValue = strClusteringKeyValue;
-        }
-        String pKey = metaData.get(strTableName).get("clusteringKey")[0];
-        int[] info = Util.getRecordPos(strTableName, pKey, (Comparable) clusteringKeyValue);
-        Util.deleteIndexes(strTableName, info[0], info[1]);
+        Metadata.Column clusteringKey = schema.getClusteringKey();
+        Object clusteringKeyValue = clusteringKey.type().parse(strClusteringKeyValue);
+        String pKey = clusteringKey.name();
+        int[] info = Util.getRecordPos(table, pKey, (Comparable) clusteringKeyValue);
 
         if (info[2] == 0) {
             throw new DBAppException("Record Not found");
         }
+        Util.deleteIndexes(table, info[0], info[1]);
 
         Page page = table.getPage(info[0]);
         Vector<Record> records = page.getRecords();
         Record record = records.get(info[1]);
 
+        page.prepareChange();
         for (String colName : htblColNameValue.keySet()) {
             record.hashtable().put(colName, htblColNameValue.get(colName));
         }
-        page.savePage();
-        Util.updateIndexes(strTableName, info[0], info[1]);
+        page.markDirty();
+        table.widenZoneMap(page, record);
+        Util.updateIndexes(table, info[0], info[1]);
+
+        endStatement(table);
     }
 
     /**
@@ -365,8 +757,10 @@ public class DBApp {
      * If the record contains a value for the clustering key, it uses binary search to find and delete the record.
      * If the record does not contain a value for the clustering key, it checks if there is an index on the table.
      * If there is an index, it uses the index to delete the record.
-     * If there is no index, it iterates over the pages of the table and deletes the record.
-     * Finally, it saves the table to the disk and updates the indexes of the table.
+     * If there is no index, the pages of the table are searched in parallel (ParallelScan), and the records are
+     * deleted from the pages holding matching records.
+     * The keys of every deleted record are removed from the indexes of the table, the indexes are not rebuilt.
+     * Finally, it saves the table to the disk.
      *
      * @param strTableName     The name of the table.
      * @param htblColNameValue A Hashtable mapping column names to their values. This will be used in search to identify which rows/tuples to delete. Hashtable entries are ANDed together.
@@ -374,6 +768,10 @@ public class DBApp {
      */
     public void deleteFromTable(String strTableName,
                                 Hashtable<String, Object> htblColNameValue) throws DBAppException {
+        runStatement(strTableName, () -> runDelete(strTableName, htblColNameValue));
+    }
+
+    private void runDelete(String strTableName, Hashtable<String, Object> htblColNameValue) throws DBAppException {
         if (strTableName == null || htblColNameValue == null) {
             throw new DBAppException("Null arguments");
         }
@@ -382,6 +780,9 @@ public class DBApp {
         // delete all files in the table folder
         if (htblColNameValue.isEmpty()) {
             Table<Object> table = Table.loadTable(strTableName);
+            // drop the cached pages first, so none of them is written back after its file is deleted
+            table.clear();
+            IndexCache.getInstance().invalidate(strTableName);
             File tableFolder = new File(getDbConfig().get("DataPath") + "/" + strTableName);
             File[] files = tableFolder.listFiles();
             if (files != null) {
@@ -391,8 +792,8 @@ public class DBApp {
                     }
                 }
             }
-            table.clear();
             table.saveTable();
+            endStatement(table);
 
             return;
         }
@@ -404,14 +805,14 @@ public class DBApp {
         Table<Object> table = Table.loadTable(strTableName);
 
         // 3. check if there is an index on the table
-        Hashtable<String, Hashtable<String, String[]>> metaData = Util.getMetadata(strTableName);
+        Metadata.TableSchema schema = Metadata.getInstance().requireTable(strTableName);
 
-        String pKey = metaData.get(strTableName).get("clusteringKey")[0];
+        String pKey = schema.getClusteringKey().name();
         Object clusteringValue = htblColNameValue.get(pKey);
 
         // if the clustering key is in the delete condition just use binary search and delete
         if (clusteringValue != null) {
-            int[] recordPos = Util.getRecordPos(strTableName, pKey, (Comparable) clusteringValue);
+            int[] recordPos = Util.getRecordPos(table, pKey, (Comparable) clusteringValue);
             if (recordPos[2] == 1) {
                 Page page = table.getPage(recordPos[0]);
                 Record record = page.getRecords().get(recordPos[1]);
@@ -422,171 +823,218 @@ public class DBApp {
                     }
                 }
 
+                // indexes reference the page by its id, removing it doesn't move the entries of the other pages
+                Util.deleteIndexes(table, recordPos[0], recordPos[1]);
                 table.removeRecord(recordPos[1], pKey, page);
-                Util.deleteIndexes(strTableName, recordPos[0], recordPos[1]);
-                if (page.isEmpty()) {
-                    table.removePage(page);
-                    Util.recreateIndexes(strTableName, this);
-                } else {
-                    page.savePage();
-                }
-                table.saveTable();
+                endStatement(table);
             }
             return;
         }
 
-        LinkedList<String> indexColumns = Util.getIndexColumns(metaData, strTableName);
+        LinkedList<String> indexColumns = new LinkedList<>();
+        for (Metadata.Index index : schema.getIndexes()) {
+            indexColumns.add(index.columnName());
+        }
         HashSet<String> indexColumsSet = new HashSet<>(indexColumns);
         indexColumsSet.retainAll(htblColNameValue.keySet());
 
         if (!indexColumns.isEmpty() && !indexColumsSet.isEmpty()) {
             //if there is an index
-            deleteFromTableWithIndex(strTableName, htblColNameValue, indexColumns, table, metaData);
+            deleteFromTableWithIndex(strTableName, htblColNameValue, indexColumns, table, schema);
             return;
         }
 
-        for (Page page : table.clone()) {
-            deleteFromTableHelper(page, htblColNameValue, table);
+        // the pages are searched in parallel, only the ones holding matching records are modified, by this thread
+        for (int pageId : ParallelScan.findPages(table, record -> matches(record, htblColNameValue))) {
+            deleteFromTableHelper(table.getPageById(pageId), htblColNameValue, table);
         }
 
-        table.saveTable(); //serialize the table
-        Util.recreateIndexes(strTableName, this);
+        endStatement(table);
     }
 
     /**
      * This method is used to delete records from a table using an index.
-     * It first checks if the table name, record, index columns, table, and metadata are not null.
+     * It first checks if the table name, record, index columns, table, and schema are not null.
      * It then iterates over the index columns and loads the index for each column.
      * It searches the index for the value of the column in the record and adds the result to a set.
      * If the set is empty, it adds all the results. If the set is not empty, it retains only the results that are also in the set.
      * It then converts the set to an array and clones the table.
      * It iterates over the pages in the array and deletes the records from the page.
-     * Finally, it saves the table to the disk and recreates the indexes of the table.
+     * Record indexes give the records themselves, so only these records of their pages are compared with the values.
+     * Finally, it saves the table to the disk, the keys of the deleted records were removed from the indexes.
      *
      * @param strTableName     The name of the table.
      * @param htblColNameValue A Hashtable mapping column names to their values. This will be used in search to identify which rows/tuples to delete. Hashtable entries are ANDed together.
      * @param indexColumns     A LinkedList containing the names of the index columns.
      * @param table            The table from which the records will be deleted.
-     * @param metaData         A Hashtable containing the metadata of the table.
-     * @throws DBAppException If the table name, record, index columns, table, or metadata is null, or if an error occurs while deleting the records or updating the indexes.
+     * @param schema           The schema of the table.
+     * @throws DBAppException If the table name, record, index columns, table, or schema is null, or if an error occurs while deleting the records or updating the indexes.
      */
     private void deleteFromTableWithIndex(String strTableName,
                                           Hashtable<String, Object> htblColNameValue,
                                           LinkedList<String> indexColumns,
                                           Table<Object> table,
-                                          Hashtable<String, Hashtable<String, String[]>> metaData) throws DBAppException {
-        // Set to store the result
-        HashSet<Integer> result = new HashSet<>();
+                                          Metadata.TableSchema schema) throws DBAppException {
+        // Bitmap of the pages holding every value, null until an index of pages is searched
+        RoaringBitmap result = null;
+        // Bitmap of the records holding every value, null until a record index is searched
+        RoaringBitmap records = null;
 
         for (String colName : indexColumns) {
-            String indexName = metaData.get(strTableName).get(colName)[2];
+            String indexName = schema.getIndex(colName).name();
 
             // 2. Load the index
             DBBTree BPlusTree = DBBTree.loadIndex(strTableName, indexName);
-            HashSet<Integer> res = new HashSet<>();
             Object value = htblColNameValue.get(colName);
 
             if (value == null) continue;
-            //search in the index for the value
-            HashMap<Integer, Integer> search = BPlusTree.search((Comparable) value);
-            if (search != null) {
-                res.addAll(search.keySet());
+            //search in the index for the value, the record must hold every value
+            if (BPlusTree.isRecordIndex()) {
+                RoaringBitmap search = BPlusTree.searchRecords((Comparable) value);
+                if (records == null) {
+                    records = search;
+                } else {
+                    records.and(search);
+                }
+                continue;
             }
-
-            if (result.isEmpty()) {
-                result.addAll(res);
+            RoaringBitmap search = BPlusTree.searchPages((Comparable) value);
+            if (result == null) {
+                result = search;
             } else {
-                result.retainAll(res);
+                result.and(search);
             }
         }
 
-        Integer[] pages = result.toArray(new Integer[result.size()]);
+        if (records != null && result != null) {
+            records = RecordId.onPages(records, result);
+        }
+
         Table clonedTable = table.clone();
-        // 5. Iterate over the pages to delete the records
-        for (Integer integer : pages) {
-            Page page = clonedTable.getPage(integer); // load the page from disk
-            deleteFromTableHelper(page, htblColNameValue, table);
+        if (records != null) {
+            // 5. Delete the given records, the ids are ordered by page
+            int[] ids = records.toArray();
+            for (int i = 0; i < ids.length; ) {
+                int pageId = RecordId.page(ids[i]);
+                Page page = clonedTable.getPageById(pageId);
+                Set<Record> candidates = Collections.newSetFromMap(new IdentityHashMap<>());
+                for (; i < ids.length && RecordId.page(ids[i]) == pageId; i++) {
+                    int position = page.findSlot(RecordId.slot(ids[i]));
+                    if (position >= 0) {
+                        candidates.add(page.getRecords().get(position));
+                    }
+                }
+                deleteFromTableHelper(page, htblColNameValue, table, candidates::contains);
+            }
+        } else {
+            int[] pages = result == null ? new int[0] : result.toArray();
+            // 5. Iterate over the pages to delete the records
+            for (int pageId : pages) {
+                Page page = clonedTable.getPageById(pageId); // load the page from disk
+                deleteFromTableHelper(page, htblColNameValue, table);
+            }
         }
 
         // 6. Update table metadata (optional)
-        table.saveTable(); // serialize the table
-        Util.recreateIndexes(strTableName, this);
+        endStatement(table);
     }
 
     /**
      * This helper method is used to delete records from a page in a table.
-     * It first checks if the page, record, and table are not null.
-     * It then creates a new vector to store the new records.
-     * It iterates over the records in the page. For each record, it checks if the record should be deleted.
-     * If the record should not be deleted, it adds the record to the new vector.
-     * It then sets the records of the page to the new vector.
+     * It works like deleteFromTableHelper(Page, Hashtable, Table, Predicate), every record of the page is a candidate.
+     *
+     * @param page             The page from which the records will be deleted.
+     * @param htblColNameValue A Hashtable mapping column names to their values. This will be used in search to identify which rows/tuples to delete. Hashtable entries are ANDed together.
+     * @param table            The table from which the records will be deleted.
+     * @throws DBAppException If an index of the table can't be loaded.
+     */
+    private void deleteFromTableHelper(Page page, Hashtable<String, Object> htblColNameValue, Table table)
+            throws DBAppException {
+        deleteFromTableHelper(page, htblColNameValue, table, record -> true);
+    }
+
+    /**
+     * This helper method is used to delete records from a page in a table.
+     * It iterates over the candidate records in the page. For each record, it checks if the record should be deleted.
+     * The keys of a record that should be deleted are removed from the indexes while its page and slot are known.
+     * The records that should be deleted are then removed, the other records keep their slots.
      * If the page is empty after the deletion, it removes the page from the table.
      * If the page is not empty, it saves the page to the disk.
      *
      * @param page             The page from which the records will be deleted.
      * @param htblColNameValue A Hashtable mapping column names to their values. This will be used in search to identify which rows/tuples to delete. Hashtable entries are ANDed together.
      * @param table            The table from which the records will be deleted.
+     * @param candidates       The records that may be deleted, the other records are not compared with the values.
+     * @throws DBAppException If an index of the table can't be loaded.
      */
-    private void deleteFromTableHelper(Page page, Hashtable<String, Object> htblColNameValue, Table table) {
-        Vector<Record> newRecords = new Vector<>();
+    private void deleteFromTableHelper(Page page, Hashtable<String, Object> htblColNameValue, Table table,
+                                       Predicate<Record> candidates) throws DBAppException {
+        int pageNo = table.indexOf(page);
+        Set<Record> deleted = Collections.newSetFromMap(new IdentityHashMap<>());
         // Iterate over the records in the page
-        for (Record record : page.getRecords()) {
-            boolean delete = true;
-            // Loop over the columns in the record
-            for (String colName : htblColNameValue.keySet()) {
-                // If the record does not have the column or the value is not equal to the value in the condition
-                if (!record.hashtable().get(colName).equals(htblColNameValue.get(colName))) {
-                    delete = false;
-                    break;
-                }
-            }
-            if (!delete) {
-                newRecords.add(record);
+        for (int i = 0; i < page.size(); i++) {
+            Record record = page.getRecords().get(i);
+            if (!candidates.test(record) || !matches(record, htblColNameValue)) {
+                continue;
             }
+            Util.deleteIndexes(table, pageNo, i);
+            deleted.add(record);
+        }
+        if (deleted.isEmpty()) {
+            return;
         }
-        page.setRecords(newRecords);
+
+        page.removeIf(deleted::contains);
         // If the page is empty, remove it
         if (page.isEmpty()) {
             table.removePage(page);
         } else {
-            page.savePage(); // Serialize the page
+            page.markDirty();
         }
     }
 
+    /**
+     * @param record           A record.
+     * @param htblColNameValue A Hashtable mapping column names to their values.
+     * @return True if the record holds every value.
+     */
+    private static boolean matches(Record record, Hashtable<String, Object> htblColNameValue) {
+        // Loop over the columns in the record
+        for (String colName : htblColNameValue.keySet()) {
+            // If the record does not have the column or the value is not equal to the value in the condition
+            if (!record.hashtable().get(colName).equals(htblColNameValue.get(colName))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * This method is used to select records from a table based on certain conditions.
      * It first checks if the SQL terms and operators are not null.
      * It then checks if the SQL terms and operators are valid.
      * It retrieves the table name from the first SQL term.
      * It then validates the operator and columns of each SQL term.
+     * The terms and operators are compiled once into a Condition tree, which every candidate record is evaluated with.
      * It loads the table from the disk and filters the pages using the index.
-     * It then creates a new LinkedList to store the result.
-     * It iterates over the filtered pages and selects the records from the page.
-     * If the filtered pages are not empty, it returns an iterator for the result.
-     * If the filtered pages are empty, it iterates over all the pages in the table and selects the records from the page.
-     * Finally, it returns an iterator for the result.
+     * When record indexes apply, only the records they give are read and evaluated.
+     * Otherwise, only the pages given by the indexes are read, or every page of the table when no index applies.
+     * The records are not collected: the returned cursor reads the pages and evaluates their records as it is
+     * advanced, so it only holds the records of one page, and it should be closed when it is not read to the end.
      *
      * @param arrSQLTerms     An array of SQLTerm objects, each representing a condition in the SQL query.
      * @param strarrOperators An array of Strings, each representing an operator in the SQL query.
-     * @return An Iterator for the result.
+     * @return A Cursor over the result, in the order of the table.
      * @throws DBAppException If the SQL terms or operators are null, if the SQL terms or operators are invalid, or if an error occurs while selecting the records.
      */
-    public Iterator selectFromTable(SQLTerm[] arrSQLTerms,
-                                    String[] strarrOperators) throws DBAppException {
+    public Cursor selectFromTable(SQLTerm[] arrSQLTerms,
+                                  String[] strarrOperators) throws DBAppException {
         if (arrSQLTerms == null || strarrOperators == null) {
             throw new DBAppException("Null arguments");
         }
 
         if (arrSQLTerms.length == 1 && arrSQLTerms[0]._strOperator.equals("*")) {
-            LinkedList<Record> result = new LinkedList<>();
-            Table<Object> table = Table.loadTable(arrSQLTerms[0]._strTableName);
-            for (Page p : table) {
-                for (Record record : p.getRecords()) {
-                    result.add(record);
-                }
-            }
-
-            return result.iterator();
+            return Cursor.of(Table.loadTable(arrSQLTerms[0]._strTableName));
         }
 
         if (arrSQLTerms.length != strarrOperators.length + 1) {
@@ -610,59 +1058,112 @@ public class DBApp {
         }
 
         Table<Object> table = Table.loadTable(tableName);
-        HashSet<Integer> filteredPages = Util.filterPagesByIndex(arrSQLTerms, strarrOperators);
-        LinkedList<Record> result = new LinkedList<>();
+        Condition filter = Condition.compile(arrSQLTerms, strarrOperators, Metadata.getInstance().requireTable(tableName));
 
-        for (Integer i : filteredPages) {
-            for (Record record : table.getPage(i).getRecords()) {
-                selectFromTableHelper(arrSQLTerms, strarrOperators, record, result);
-            }
-        }
-        if (!filteredPages.isEmpty()) {
-            return result.iterator();
+        Util.IndexSearch search = Util.searchIndexes(arrSQLTerms, strarrOperators);
+        if (search.records() != null) {
+            // the record indexes give the records themselves, the other records of their pages are not evaluated
+            return new Cursor(table, search.records(), filter);
         }
 
-        for (Page p : table) {
-            for (Record record : p.getRecords()) {
-                selectFromTableHelper(arrSQLTerms, strarrOperators, record, result);
-            }
+        if (search.pages() != null) {
+            // only the pages given by the indexes can hold matching records, read in the order of the table
+            return new Cursor(table, table.pagesMayMatch(Util.pageIndexes(table, search.pages()), filter), filter);
         }
-        return result.iterator();
+
+        // the pages whose zone map rules the condition out are not read
+        int[] pageIndexes = new int[table.pagesCount()];
+        Arrays.setAll(pageIndexes, i -> i);
+        return new Cursor(table, table.pagesMayMatch(pageIndexes, filter), filter);
+    }
+
+    /**
+     * The body of a statement that modifies tables.
+     */
+    private interface TableStatement {
+        void run() throws DBAppException;
     }
 
     /**
-     * This helper method is used to select records from a table based on certain conditions.
-     * It first checks if the SQL terms array has only one term.
-     * If it does, it retrieves the value of the column in the record and evaluates the SQL term.
-     * If the SQL term is true, it adds the record to the result.
-     * If the SQL terms array has more than one term, it converts the SQL terms and operators to postfix notation.
-     * It then evaluates the postfix expression.
-     * If the postfix expression is true, it adds the record to the result.
+     * Runs a statement that modifies tables, a statement that fails before it committed is aborted.
      *
-     * @param arrSQLTerms     An array of SQLTerm objects, each representing a condition in the SQL query.
-     * @param strarrOperators An array of Strings, each representing an operator in the SQL query.
-     * @param record          The record to be evaluated.
-     * @param result          A LinkedList to store the selected records.
+     * @param strTableName The name of the table of the statement.
+     * @param statement    The statement.
+     * @throws DBAppException If the statement fails.
      */
-    private void selectFromTableHelper(SQLTerm[] arrSQLTerms, String[] strarrOperators,
-                                       Record record, LinkedList<Record> result) {
-        if (arrSQLTerms.length == 1) {
-            SQLTerm term = arrSQLTerms[0];
-            Object value = record.hashtable().get(term._strColumnName);
-            if (Util.evaluateSqlTerm((Comparable) value, term._strOperator, (Comparable) term._objValue)) {
-                result.add(record);
+    private void runStatement(String strTableName, TableStatement statement) throws DBAppException {
+        try {
+            statement.run();
+        } catch (DBAppException | RuntimeException e) {
+            try {
+                abortStatement(strTableName);
+            } catch (DBAppException | RuntimeException abortError) {
+                e.addSuppressed(abortError);
             }
+            throw e;
+        }
+    }
 
-            return;
+    /**
+     * Drops the changes of a statement that failed before it committed, its pages are given back by
+     * WriteAheadLog.abort. The handle of its table is read again from its file, and the indexes of the tables it
+     * changed are built again from their pages, since their cached trees may hold entries of the statement.
+     *
+     * @param strTableName The name of the table of the statement, or null.
+     * @throws DBAppException If an index can't be built again.
+     */
+    private void abortStatement(String strTableName) throws DBAppException {
+        LinkedHashSet<String> tables = WriteAheadLog.getInstance().abort();
+        if (strTableName != null) {
+            Table.invalidate(strTableName);
+        }
+        for (String tableName : tables) {
+            Table.invalidate(tableName);
+            IndexCache.getInstance().invalidate(tableName);
+            Util.recreateIndexes(tableName, this);
         }
+    }
 
-        LinkedList<Object> postfix = Util.toPostfix(record.hashtable(), arrSQLTerms, strarrOperators);
-        boolean res = Util.evaluatePostfix(postfix);
-        if (res) {
-            result.add(record);
+    /**
+     * Ends a statement that modified a table.
+     * The changes of the statement are committed to the write-ahead log first, then the table is saved if it changed,
+     * and in statement write mode every dirty page and index is written to disk.
+     * A checkpoint is taken when the log grew past CheckpointLogBytes.
+     *
+     * @param table The table modified by the statement.
+     */
+    private void endStatement(Table<?> table) {
+        WriteAheadLog log = WriteAheadLog.getInstance();
+        log.commit();
+        table.flush();
+        BufferPool.getInstance().endStatement();
+        IndexCache.getInstance().endStatement();
+        if (log.needsCheckpoint()) {
+            log.checkpoint();
         }
     }
 
+    /**
+     * This method takes a checkpoint: every modified page or index that is still only in memory is written to disk, and the
+     * write-ahead log is truncated. When it returns, everything done by the previous statements is on disk,
+     * whatever the write mode is.
+     */
+    public void checkpoint() {
+        WriteAheadLog.getInstance().checkpoint();
+    }
+
+    /**
+     * This method is used at the application shutdown.
+     * It stops the background writer, if any, writes every modified page and index to disk and closes the write-ahead log,
+     * which leaves it empty so the next startup has nothing to recover.
+     * The DBApp can't modify tables after close until it is initialized again.
+     */
+    public void close() {
+        BufferPool.getInstance().close();
+        IndexCache.getInstance().close();
+        WriteAheadLog.getInstance().close();
+    }
+
     /**
      * This method is used to get the database configuration.
      * It first checks if the database configuration is null.
@@ -0,0 +1,224 @@
+package DB;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * This class sorts more items than fit in memory.
+ * Items are collected in a buffer of at most bufferSize items, each full buffer is sorted with Arrays.parallelSort
+ * and spilled to a run file in the given directory. The sorted items are then read back by merging the runs.
+ * When every item fits in the buffer, nothing is written and the buffer is sorted in place.
+ *
+ * @param <T> The type of the items, they are written to the runs with Java serialization.
+ * @author ahmedgado
+ */
+public class ExternalSorter<T extends Serializable> {
+    /**
+     * The number of items written between two resets of a run stream, so it doesn't keep every written item.
+     */
+    private static final int RESET_INTERVAL = 1024;
+
+    private final Comparator<? super T> comparator;
+    private final int bufferSize;
+    private final Path directory;
+    private final ArrayList<T> buffer;
+    private final ArrayList<Path> runs;
+    private final ArrayList<Integer> runSizes;
+    private final ArrayList<ObjectInputStream> readers;
+
+    /**
+     * Constructor for the ExternalSorter class.
+     *
+     * @param comparator The order of the items.
+     * @param bufferSize The maximum number of items kept in memory.
+     * @param directory  The directory of the run files.
+     */
+    public ExternalSorter(Comparator<? super T> comparator, int bufferSize, Path directory) {
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("Sort buffer size must be positive");
+        }
+
+        this.comparator = comparator;
+        this.bufferSize = bufferSize;
+        this.directory = directory;
+        this.buffer = new ArrayList<>();
+        this.runs = new ArrayList<>();
+        this.runSizes = new ArrayList<>();
+        this.readers = new ArrayList<>();
+    }
+
+    /**
+     * Creates a sorter whose buffer size is the SortBufferEntries property of the configuration.
+     *
+     * @param comparator The order of the items.
+     * @param directory  The directory of the run files.
+     * @return The sorter.
+     */
+    public static <T extends Serializable> ExternalSorter<T> fromConfig(Comparator<? super T> comparator,
+                                                                       Path directory) {
+        int bufferSize = Integer.parseInt(DBApp.getDbConfig().getProperty("SortBufferEntries", "1000000"));
+        return new ExternalSorter<>(comparator, bufferSize, directory);
+    }
+
+    /**
+     * Adds an item, the buffer is spilled to a new run when it is full.
+     *
+     * @param item The item.
+     */
+    public void add(T item) {
+        buffer.add(item);
+        if (buffer.size() >= bufferSize) {
+            spill();
+        }
+    }
+
+    /**
+     * Returns the items in sorted order, no item can be added afterward.
+     *
+     * @return An iterator over the sorted items.
+     */
+    public Iterator<T> sorted() {
+        if (runs.isEmpty()) {
+            sortBuffer();
+            return buffer.iterator();
+        }
+        if (!buffer.isEmpty()) {
+            spill();
+        }
+
+        return new MergeIterator();
+    }
+
+    /**
+     * @return The number of runs spilled to disk.
+     */
+    public int getRuns() {
+        return runs.size();
+    }
+
+    /**
+     * Closes and deletes the run files.
+     */
+    public void close() {
+        try {
+            for (ObjectInputStream reader : readers) {
+                reader.close();
+            }
+            for (Path run : runs) {
+                Files.deleteIfExists(run);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        readers.clear();
+        runs.clear();
+        runSizes.clear();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void sortBuffer() {
+        Object[] items = buffer.toArray();
+        Arrays.parallelSort(items, (a, b) -> comparator.compare((T) a, (T) b));
+        buffer.clear();
+        for (Object item : items) {
+            buffer.add((T) item);
+        }
+    }
+
+    private void spill() {
+        sortBuffer();
+        try {
+            Path run = Files.createTempFile(directory, "sort", ".run");
+            runs.add(run);
+            try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(run)))) {
+                for (int i = 0; i < buffer.size(); i++) {
+                    out.writeObject(buffer.get(i));
+                    if ((i + 1) % RESET_INTERVAL == 0) {
+                        out.reset();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        runSizes.add(buffer.size());
+        buffer.clear();
+    }
+
+    /**
+     * This class merges the runs, it keeps the next item of every run in a priority queue.
+     */
+    private class MergeIterator implements Iterator<T> {
+        private final PriorityQueue<Head> heads;
+
+        /**
+         * The next item of a run.
+         */
+        private class Head {
+            private final ObjectInputStream in;
+            private int remaining;
+            private T item;
+
+            private Head(ObjectInputStream in, int remaining) {
+                this.in = in;
+                this.remaining = remaining;
+            }
+
+            @SuppressWarnings("unchecked")
+            private boolean advance() {
+                if (remaining == 0) {
+                    return false;
+                }
+                try {
+                    item = (T) in.readObject();
+                } catch (IOException | ClassNotFoundException e) {
+                    throw new RuntimeException(e);
+                }
+                remaining--;
+
+                return true;
+            }
+        }
+
+        /**
+         * Constructor for the MergeIterator class, it opens every run and reads its first item.
+         */
+        private MergeIterator() {
+            heads = new PriorityQueue<>((a, b) -> comparator.compare(a.item, b.item));
+            try {
+                for (int i = 0; i < runs.size(); i++) {
+                    ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(runs.get(i))));
+                    readers.add(in);
+                    Head head = new Head(in, runSizes.get(i));
+                    if (head.advance()) {
+                        heads.add(head);
+                    }
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !heads.isEmpty();
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            Head head = heads.poll();
+            T item = head.item;
+            if (head.advance()) {
+                heads.add(head);
+            }
+
+            return item;
+        }
+    }
+}
@@ -0,0 +1,384 @@
+package DB;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Hashtable;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class is the in-memory catalog of the database, it holds the schema of every table.
+ * The catalog is read from the metadata file once, by DBApp.init, and every later lookup is served from memory.
+ * The metadata file is only written by the DDL methods, createTable and createIndex, which update the catalog in place.
+ * A single instance of the class is kept (Singleton design pattern).
+ * <p>
+ * Schemas are immutable, a DDL change replaces the schema of the table, so a reader never sees a half-applied change.
+ *
+ * @author ahmedgado
+ */
+public class Metadata {
+    private static Metadata instance;
+
+    private final String path;
+    private final LinkedHashMap<String, TableSchema> tables;
+
+    /**
+     * The supported column types.
+     */
+    public enum ColumnType {
+        INTEGER("java.lang.Integer"),
+        DOUBLE("java.lang.Double"),
+        STRING("java.lang.String");
+
+        private final String className;
+
+        ColumnType(String className) {
+            this.className = className;
+        }
+
+        /**
+         * @return The name of the Java class of the values of the type, as written in the metadata file.
+         */
+        public String getClassName() {
+            return className;
+        }
+
+        /**
+         * @param value A value.
+         * @return True if the value can be stored in a column of this type.
+         */
+        public boolean accepts(Object value) {
+            return switch (this) {
+                case INTEGER -> value instanceof Integer;
+                case DOUBLE -> value instanceof Double;
+                case STRING -> value instanceof String;
+            };
+        }
+
+        /**
+         * Parses a value of this type from its string form.
+         *
+         * @param value The string form of the value.
+         * @return The parsed value.
+         * @throws NumberFormatException If the value is not a valid number.
+         */
+        public Object parse(String value) {
+            return switch (this) {
+                case INTEGER -> Integer.parseInt(value);
+                case DOUBLE -> Double.parseDouble(value);
+                case STRING -> value;
+            };
+        }
+
+        /**
+         * @param className The name of the Java class of the values, as written in the metadata file.
+         * @return The column type.
+         * @throws DBAppException If the class is not a supported column type.
+         */
+        public static ColumnType of(String className) throws DBAppException {
+            for (ColumnType type : values()) {
+                if (type.className.equals(className)) {
+                    return type;
+                }
+            }
+
+            throw new DBAppException("Invalid column type " + className);
+        }
+    }
+
+    /**
+     * A column of a table.
+     *
+     * @param name          The name of the column.
+     * @param ordinal       The position of the column in the schema, it is the order of the fields in a page record.
+     * @param type          The type of the column.
+     * @param clusteringKey True if the column is the clustering key of the table.
+     */
+    public record Column(String name, int ordinal, ColumnType type, boolean clusteringKey) {
+    }
+
+    /**
+     * An index on a column of a table.
+     *
+     * @param name       The name of the index.
+     * @param columnName The name of the indexed column.
+     * @param type       The type of the index, "B+tree" is the only one.
+     * @param entries    What the index holds for a key, "page" for the ids of the pages, "record" for the RecordIds of
+     *                   the records, or null if the metadata file was written before the kind was kept.
+     */
+    public record Index(String name, String columnName, String type, String entries) {
+        /**
+         * @param recordIds True for a record index.
+         * @return The entries of the index kind, as written in the metadata file.
+         */
+        public static String entriesOf(boolean recordIds) {
+            return recordIds ? "record" : "page";
+        }
+
+        /**
+         * @return True if the index is a record index, it holds the RecordIds of the records.
+         */
+        public boolean isRecordIndex() {
+            return "record".equals(entries);
+        }
+    }
+
+    /**
+     * The schema of a table: its columns in ordinal order, its clustering key and its indexes.
+     */
+    public static final class TableSchema {
+        private final String name;
+        private final LinkedHashMap<String, Column> columns;
+        private final Column clusteringKey;
+        private final List<Index> indexes;
+
+        private TableSchema(String name, List<Column> columns, List<Index> indexes) {
+            this.name = name;
+            this.columns = new LinkedHashMap<>();
+            Column key = null;
+            for (Column column : columns) {
+                this.columns.put(column.name(), column);
+                if (column.clusteringKey() && key == null) {
+                    key = column;
+                }
+            }
+            this.clusteringKey = key;
+            this.indexes = List.copyOf(indexes);
+        }
+
+        /**
+         * @return The name of the table.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return The columns of the table in ordinal order.
+         */
+        public List<Column> getColumns() {
+            return List.copyOf(columns.values());
+        }
+
+        /**
+         * @param columnName The name of a column.
+         * @return The column, or null if the table has no such column.
+         */
+        public Column getColumn(String columnName) {
+            return columns.get(columnName);
+        }
+
+        /**
+         * @return The clustering key column.
+         */
+        public Column getClusteringKey() {
+            return clusteringKey;
+        }
+
+        /**
+         * @return The indexes of the table.
+         */
+        public List<Index> getIndexes() {
+            return indexes;
+        }
+
+        /**
+         * @param columnName The name of a column.
+         * @return The index on the column, or null if the column is not indexed.
+         */
+        public Index getIndex(String columnName) {
+            for (Index index : indexes) {
+                if (index.columnName().equals(columnName)) {
+                    return index;
+                }
+            }
+
+            return null;
+        }
+
+        private TableSchema withIndex(Index index) {
+            ArrayList<Index> newIndexes = new ArrayList<>();
+            for (Index old : indexes) {
+                if (!old.columnName().equals(index.columnName())) {
+                    newIndexes.add(old);
+                }
+            }
+            newIndexes.add(index);
+
+            return new TableSchema(name, new ArrayList<>(columns.values()), newIndexes);
+        }
+    }
+
+    private Metadata(String path) {
+        this.path = path;
+        this.tables = new LinkedHashMap<>();
+    }
+
+    /**
+     * Loads the catalog from the metadata file given by the MetadataPath property of the configuration.
+     * Each line of the file is a column: table name, column name, column type, clustering key, index name, index type
+     * and index entries. Files written before the index entries were kept have no last field.
+     * The columns of a table are numbered in the order of their lines.
+     *
+     * @throws RuntimeException If the metadata file can't be read or holds an invalid column type.
+     */
+    public static synchronized void init() {
+        Metadata metadata = new Metadata(DBApp.getDbConfig().getProperty("MetadataPath"));
+
+        LinkedHashMap<String, ArrayList<Column>> columns = new LinkedHashMap<>();
+        LinkedHashMap<String, ArrayList<Index>> indexes = new LinkedHashMap<>();
+        try (BufferedReader br = new BufferedReader(new FileReader(metadata.path))) {
+            br.readLine(); // Skip the header
+            String line;
+            while ((line = br.readLine()) != null) {
+                String[] parts = line.split(",");
+                String tName = parts[0];
+                ArrayList<Column> tableColumns = columns.computeIfAbsent(tName, k -> new ArrayList<>());
+                ArrayList<Index> tableIndexes = indexes.computeIfAbsent(tName, k -> new ArrayList<>());
+
+                // a table created again after its folder was deleted redefines its columns
+                tableColumns.removeIf(column -> column.name().equals(parts[1]));
+                tableIndexes.removeIf(index -> index.columnName().equals(parts[1]));
+
+                tableColumns.add(new Column(parts[1], tableColumns.size(), ColumnType.of(parts[2]), parts[3].equals("True")));
+                if (!parts[4].equals("null")) {
+                    String entries = parts.length > 6 && !parts[6].equals("null") ? parts[6] : null;
+                    tableIndexes.add(new Index(parts[4], parts[1], parts[5], entries));
+                }
+            }
+        } catch (IOException | DBAppException e) {
+            throw new RuntimeException(e);
+        }
+
+        for (Map.Entry<String, ArrayList<Column>> table : columns.entrySet()) {
+            metadata.tables.put(table.getKey(), new TableSchema(table.getKey(), table.getValue(), indexes.get(table.getKey())));
+        }
+
+        instance = metadata;
+    }
+
+    /**
+     * @return The catalog.
+     * @throws RuntimeException If the catalog was not loaded.
+     */
+    public static synchronized Metadata getInstance() {
+        if (instance == null) {
+            throw new RuntimeException("Metadata not initialized");
+        }
+
+        return instance;
+    }
+
+    /**
+     * @param tableName The name of a table.
+     * @return The schema of the table, or null if the table does not exist.
+     */
+    public synchronized TableSchema getTable(String tableName) {
+        return tables.get(tableName);
+    }
+
+    /**
+     * @param tableName The name of a table.
+     * @return The schema of the table.
+     * @throws DBAppException If the table does not exist.
+     */
+    public TableSchema requireTable(String tableName) throws DBAppException {
+        TableSchema schema = getTable(tableName);
+        if (schema == null) {
+            throw new DBAppException("Table " + tableName + " does not exist");
+        }
+
+        return schema;
+    }
+
+    /**
+     * @return The names of all the tables, in creation order.
+     */
+    public synchronized List<String> getTableNames() {
+        return Collections.unmodifiableList(new ArrayList<>(tables.keySet()));
+    }
+
+    /**
+     * Adds a table to the catalog and to the metadata file.
+     * The columns are numbered in the iteration order of the given hashtable.
+     *
+     * @param tableName              The name of the table.
+     * @param strClusteringKeyColumn The name of the clustering key column.
+     * @param htblColNameType        A Hashtable mapping column names to their data types.
+     * @return The schema of the new table.
+     * @throws DBAppException If a column type is not supported.
+     */
+    public synchronized TableSchema addTable(String tableName, String strClusteringKeyColumn,
+                                             Hashtable<String, String> htblColNameType) throws DBAppException {
+        ArrayList<Column> columns = new ArrayList<>();
+        for (Map.Entry<String, String> column : htblColNameType.entrySet()) {
+            columns.add(new Column(column.getKey(), columns.size(), ColumnType.of(column.getValue()),
+                    column.getKey().equals(strClusteringKeyColumn)));
+        }
+
+        TableSchema schema = new TableSchema(tableName, columns, List.of());
+        boolean existed = tables.containsKey(tableName);
+        tables.put(tableName, schema);
+        if (existed) {
+            save();
+        } else {
+            try (FileWriter writer = new FileWriter(path, true)) {
+                writeTable(writer, schema);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        return schema;
+    }
+
+    /**
+     * Adds an index to a column of a table, replacing the previous index of the column, and rewrites the metadata file.
+     *
+     * @param tableName  The name of the table.
+     * @param columnName The name of the indexed column.
+     * @param indexName  The name of the index.
+     * @param indexType  The type of the index.
+     * @param entries    What the index holds for a key, "page" or "record".
+     * @throws DBAppException If the table or the column does not exist.
+     */
+    public synchronized void addIndex(String tableName, String columnName, String indexName, String indexType,
+                                      String entries) throws DBAppException {
+        TableSchema schema = requireTable(tableName);
+        if (schema.getColumn(columnName) == null) {
+            throw new DBAppException("Column " + columnName + " does not exist in table " + tableName);
+        }
+
+        tables.put(tableName, schema.withIndex(new Index(indexName, columnName, indexType, entries)));
+        save();
+    }
+
+    /**
+     * Rewrites the whole metadata file from the catalog.
+     */
+    private void save() {
+        try (FileWriter writer = new FileWriter(path, false)) {
+            writer.write(DBApp.metadataHeader);
+            for (TableSchema schema : tables.values()) {
+                writeTable(writer, schema);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void writeTable(FileWriter writer, TableSchema schema) throws IOException {
+        for (Column column : schema.columns.values()) {
+            Index index = schema.getIndex(column.name());
+            writer.write(schema.name + "," + column.name() + "," + column.type().getClassName() + ","
+                    + (column.clusteringKey() ? "True" : "False") + ","
+                    + (index == null ? "null,null,null" : index.name() + "," + index.type() + "," + index.entries())
+                    + "\n");
+        }
+    }
+}
@@ -1,22 +1,34 @@
 package DB;
 
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.ObjectOutputStream;
+import java.io.Serial;
 import java.io.Serializable;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Hashtable;
+import java.util.List;
 import java.util.Vector;
+import java.util.function.Predicate;
 
 /**
  * This class represents a Page object that implements Serializable interface.
  * It contains a list of Record objects and provides methods to manipulate and save these records.
+ * Pages are stored on disk in the binary format described in PageFormat, Serializable is only kept
+ * so that pages written by older versions can still be read by the PageMigrator.
+ * Every record of a page has a slot, a record keeps its slot while it stays in the page even when the records before
+ * it are added or removed, so the page and the slot identify the record for record indexes.
  */
 public class Page implements Serializable {
+    @Serial
+    private static final long serialVersionUID = -4014105853781440360L;
+
     private final String tableName;
     private final int pageNumber;
     private final int max;
     public Vector<Record> records;
+    private int[] slots;
+    private transient long lsn;
+    private transient long recLsn;
 
     /**
      * Constructor for the Page class.
@@ -36,14 +48,36 @@ public class Page implements Serializable {
      * This method saves the current page to a file.
      */
     public void savePage() {
-        Path path = Paths.get((String) DBApp.getDbConfig().get("DataPath"), tableName, pageNumber + ".ser");
-        try (
-                FileOutputStream fileOut = new FileOutputStream(path.toAbsolutePath().toString());
-                ObjectOutputStream out = new ObjectOutputStream(fileOut)) {
-            out.writeObject(this);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+        PageFormat.write(this, getPath());
+        WriteAheadLog.getInstance().fileWritten(getPath());
+        recLsn = 0;
+        BufferPool.getInstance().put(this);
+    }
+
+    /**
+     * @return The absolute path of the file of this page.
+     */
+    public Path getPath() {
+        return getPath(tableName, pageNumber);
+    }
+
+    /**
+     * Returns the path of the file of a page.
+     *
+     * @param tableName  The name of the table.
+     * @param pageNumber The page number.
+     * @return The absolute path of the page file.
+     */
+    public static Path getPath(String tableName, int pageNumber) {
+        return Paths.get((String) DBApp.getDbConfig().get("DataPath"), tableName, pageNumber + PageFormat.EXTENSION)
+                .toAbsolutePath();
+    }
+
+    /**
+     * @return The name of the table that owns the page.
+     */
+    public String getTableName() {
+        return tableName;
     }
 
     /**
@@ -82,47 +116,303 @@ public class Page implements Serializable {
     }
 
     /**
-     * Sets the records vector.
+     * Sets the records vector, the records get new slots.
      *
      * @param records The new records vector.
      */
     public void setRecords(Vector<Record> records) {
         this.records = records;
+        this.slots = null;
+    }
+
+    /**
+     * Sets the records vector and the slot of each record.
+     *
+     * @param records The new records vector.
+     * @param slots   The slots of the records, in the same order.
+     */
+    public void setRecords(Vector<Record> records, int[] slots) {
+        if (slots.length != records.size()) {
+            throw new IllegalArgumentException("Every record needs one slot");
+        }
+
+        this.records = records;
+        this.slots = slots.clone();
+    }
+
+    /**
+     * @param recordNo The position of a record.
+     * @return The slot of the record.
+     */
+    public int getSlot(int recordNo) {
+        synchronized (records) {
+            syncSlots();
+            return slots[recordNo];
+        }
+    }
+
+    /**
+     * @return The slots of the records, in the order of the records.
+     */
+    public int[] getSlots() {
+        synchronized (records) {
+            syncSlots();
+            return slots.clone();
+        }
+    }
+
+    /**
+     * Finds the position of the record in a slot.
+     *
+     * @param slot The slot.
+     * @return The position of the record, or -1 if the slot is free.
+     */
+    public int findSlot(int slot) {
+        synchronized (records) {
+            syncSlots();
+            for (int i = 0; i < slots.length; i++) {
+                if (slots[i] == slot) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * @return The log sequence number of the last logged change of the page, or 0 if none was logged.
+     */
+    public long getLsn() {
+        return lsn;
+    }
+
+    /**
+     * Sets the log sequence number of the last logged change of the page.
+     *
+     * @param lsn The log sequence number.
+     */
+    public void setLsn(long lsn) {
+        this.lsn = lsn;
+    }
+
+    /**
+     * @return The log sequence number of the first logged change of the page that is not in its file yet,
+     * or 0 if the file is up-to-date with the log.
+     */
+    public long getRecLsn() {
+        return recLsn;
+    }
+
+    /**
+     * Sets the log sequence number of the first logged change of the page that is not in its file yet.
+     *
+     * @param recLsn The log sequence number, or 0 once the page is written.
+     */
+    public void setRecLsn(long recLsn) {
+        this.recLsn = recLsn;
+    }
+
+    /**
+     * @return A copy of the page with copies of its records, its slots and its log sequence numbers, changing either
+     * page doesn't change the other.
+     */
+    public Page copy() {
+        Page copy = new Page(tableName, pageNumber, max);
+        synchronized (records) {
+            syncSlots();
+            for (Record record : records) {
+                copy.records.add(new Record(new Hashtable<>(record.hashtable())));
+            }
+            copy.slots = slots.clone();
+        }
+        copy.lsn = lsn;
+        copy.recLsn = recLsn;
+
+        return copy;
+    }
+
+    /**
+     * Registers the page with the running statement before it is modified.
+     * The page becomes the cached copy of its file and stays pinned until the statement commits, so neither the
+     * background writer nor an eviction can write it while it is half-changed.
+     */
+    public void prepareChange() {
+        BufferPool.getInstance().put(this);
+        WriteAheadLog.getInstance().pageChanged(this);
     }
 
     /**
-     * Adds a record to the records vector and saves the page.
+     * Records that the page was modified.
+     * In write-through mode the page is saved right away, before it is logged, otherwise it is only marked dirty in the
+     * buffer pool and written when the pool flushes it. Either way, the page is logged when the running statement
+     * commits.
+     */
+    public void markDirty() {
+        BufferPool pool = BufferPool.getInstance();
+        if (pool.getWriteMode() == BufferPool.WriteMode.THROUGH) {
+            savePage();
+        } else {
+            pool.markDirty(this);
+        }
+        WriteAheadLog.getInstance().pageChanged(this);
+    }
+
+    /**
+     * Adds a record to the records vector and marks the page dirty.
      *
      * @param record The record to be added.
      */
     public void add(Record record) {
-        records.add(record);
-        savePage();
+        add(records.size(), record);
     }
 
     /**
-     * Adds a record at a specific position in the records vector and saves the page.
+     * Adds a record at a specific position in the records vector and marks the page dirty.
      *
      * @param recordNo The position at which the record should be added.
      * @param record   The record to be added.
      */
     public void add(int recordNo, Record record) {
-        records.add(recordNo, record);
-        savePage();
+        prepareChange();
+        synchronized (records) {
+            syncSlots();
+            int slot = freeSlot(slots.length);
+            records.add(recordNo, record);
+            int[] grown = new int[slots.length + 1];
+            System.arraycopy(slots, 0, grown, 0, recordNo);
+            System.arraycopy(slots, recordNo, grown, recordNo + 1, slots.length - recordNo);
+            grown[recordNo] = slot;
+            slots = grown;
+        }
+        markDirty();
     }
 
     /**
-     * Removes a record at a specific position in the records vector and saves the page.
+     * Removes a record at a specific position in the records vector and marks the page dirty.
      *
      * @param recordNo The position of the record to be removed.
      * @return The removed record.
      */
     public Record remove(int recordNo) {
-        Record htbl = records.remove(recordNo);
-        savePage();
+        Record htbl;
+        prepareChange();
+        synchronized (records) {
+            syncSlots();
+            htbl = records.remove(recordNo);
+            int[] shrunk = new int[slots.length - 1];
+            System.arraycopy(slots, 0, shrunk, 0, recordNo);
+            System.arraycopy(slots, recordNo + 1, shrunk, recordNo, shrunk.length - recordNo);
+            slots = shrunk;
+        }
+        markDirty();
         return htbl;
     }
 
+    /**
+     * Removes the records from a position to the end of the page and marks the page dirty.
+     *
+     * @param recordNo The position of the first record to be removed.
+     * @return The removed records, in order.
+     */
+    public Vector<Record> removeFrom(int recordNo) {
+        Vector<Record> removed;
+        prepareChange();
+        synchronized (records) {
+            syncSlots();
+            removed = new Vector<>(records.subList(recordNo, records.size()));
+            records.setSize(recordNo);
+            slots = Arrays.copyOf(slots, recordNo);
+        }
+        markDirty();
+        return removed;
+    }
+
+    /**
+     * Adds records at the end of the records vector and marks the page dirty once.
+     *
+     * @param added The records to be added, in order.
+     */
+    public void addAll(List<Record> added) {
+        prepareChange();
+        synchronized (records) {
+            syncSlots();
+            for (Record record : added) {
+                int slot = freeSlot(slots.length);
+                records.add(record);
+                slots = Arrays.copyOf(slots, slots.length + 1);
+                slots[slots.length - 1] = slot;
+            }
+        }
+        markDirty();
+    }
+
+    /**
+     * Removes the records matching a condition, the remaining records keep their slots.
+     * The page is not marked dirty, the caller either marks it dirty or removes it.
+     *
+     * @param filter The condition of the records to be removed.
+     * @return The number of removed records.
+     */
+    public int removeIf(Predicate<Record> filter) {
+        prepareChange();
+        synchronized (records) {
+            syncSlots();
+            int kept = 0;
+            int size = records.size();
+            for (int i = 0; i < size; i++) {
+                Record record = records.get(i);
+                if (!filter.test(record)) {
+                    records.set(kept, record);
+                    slots[kept++] = slots[i];
+                }
+            }
+            records.setSize(kept);
+            slots = Arrays.copyOf(slots, kept);
+
+            return size - kept;
+        }
+    }
+
+    /**
+     * Gives a slot to the records that don't have one, like the records of a page written without slots.
+     * The records must be locked by the caller.
+     */
+    private void syncSlots() {
+        if (slots != null && slots.length == records.size()) {
+            return;
+        }
+        if (slots == null || slots.length > records.size()) {
+            // the records were replaced, they get the slots in order
+            slots = new int[0];
+        }
+
+        int known = slots.length;
+        slots = Arrays.copyOf(slots, records.size());
+        for (int i = known; i < slots.length; i++) {
+            slots[i] = freeSlot(i);
+        }
+    }
+
+    /**
+     * @param count The number of records whose slot is already set.
+     * @return The smallest slot that is not used by these records.
+     */
+    private int freeSlot(int count) {
+        boolean[] used = new boolean[count + 1];
+        for (int i = 0; i < count; i++) {
+            if (slots[i] <= count) {
+                used[slots[i]] = true;
+            }
+        }
+
+        int slot = 0;
+        while (used[slot]) {
+            slot++;
+        }
+
+        return slot;
+    }
+
     /**
      * This method overrides the toString method from the Object class.
      * It iterates over the records vector and appends each record to a StringBuilder.
@@ -0,0 +1,294 @@
+package DB;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class implements the binary on-disk format of a Page.
+ * A page file is laid out as a fixed header, followed by a slot directory and a heap of encoded records:
+ * <pre>
+ * header: magic (int), version (short), column count (short), page number (int), max (int), slot count (int)
+ * slots:  slot count * (record offset (int), record length (int), record slot (int))
+ * heap:   records, each one is a null bitmap followed by the non-null fields in schema order
+ * </pre>
+ * The record slot is the stable slot of the record in the page, see Page. Version 1 pages have no record slot,
+ * their records get the slots in order when they are read.
+ * Integer fields take 4 bytes, Double fields take 8 bytes and String fields are stored as a length-prefixed UTF-8 string.
+ * Column names are never written to the page, the schema ordinal of each column comes from the catalog.
+ *
+ * @author ahmedgado
+ */
+public final class PageFormat {
+    public static final String EXTENSION = ".page";
+
+    private static final int MAGIC = 0x44425047; // "DBPG"
+    private static final short VERSION = 2;
+    private static final int HEADER_SIZE = 20;
+    private static final int SLOT_SIZE = 12;
+    private static final int SLOT_SIZE_V1 = 8;
+
+    private static final byte INTEGER = 1;
+    private static final byte DOUBLE = 2;
+    private static final byte STRING = 3;
+
+    private static final Map<String, Layout> layouts = new ConcurrentHashMap<>();
+
+    private PageFormat() {
+    }
+
+    /**
+     * The columns of a table in schema order, and the type code of each column.
+     *
+     * @param names The column names.
+     * @param types The column type codes.
+     */
+    private record Layout(String[] names, byte[] types) {
+    }
+
+    /**
+     * Encodes a page and writes it to the given file, replacing its content.
+     *
+     * @param page The page to be written.
+     * @param path The path of the page file.
+     */
+    public static void write(Page page, Path path) {
+        ByteBuffer buffer = encode(page);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Reads a page file and decodes it.
+     *
+     * @param tableName The name of the table that owns the page.
+     * @param path      The path of the page file.
+     * @return The decoded Page object.
+     */
+    public static Page read(String tableName, Path path) {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = ByteBuffer.allocate((int) channel.size());
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw new RuntimeException("Unexpected end of page file " + path);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        buffer.flip();
+
+        return decode(tableName, buffer);
+    }
+
+    /**
+     * Encodes a page into a buffer ready to be written.
+     *
+     * @param page The page to be encoded.
+     * @return A flipped buffer holding the encoded page.
+     */
+    public static ByteBuffer encode(Page page) {
+        Layout layout = getLayout(page.getTableName());
+        Vector<Record> records = page.getRecords();
+
+        byte[][] encoded;
+        int[] slots;
+        int heapSize = 0;
+        // a background flush may run while a statement modifies the page
+        synchronized (records) {
+            slots = page.getSlots();
+            encoded = new byte[records.size()][];
+            for (int i = 0; i < encoded.length; i++) {
+                encoded[i] = encodeRecord(layout, records.get(i));
+                heapSize += encoded[i].length;
+            }
+        }
+
+        int heapStart = HEADER_SIZE + SLOT_SIZE * encoded.length;
+        ByteBuffer buffer = ByteBuffer.allocate(heapStart + heapSize);
+        buffer.putInt(MAGIC)
+                .putShort(VERSION)
+                .putShort((short) layout.names().length)
+                .putInt(page.getPageNumber())
+                .putInt(page.getMax())
+                .putInt(encoded.length);
+
+        int offset = heapStart;
+        for (int i = 0; i < encoded.length; i++) {
+            buffer.putInt(offset).putInt(encoded[i].length).putInt(slots[i]);
+            offset += encoded[i].length;
+        }
+        for (byte[] record : encoded) {
+            buffer.put(record);
+        }
+
+        return buffer.flip();
+    }
+
+    /**
+     * Decodes a page from a buffer positioned at the start of the page header.
+     *
+     * @param tableName The name of the table that owns the page.
+     * @param buffer    The buffer holding the encoded page.
+     * @return The decoded Page object.
+     */
+    public static Page decode(String tableName, ByteBuffer buffer) {
+        Layout layout = getLayout(tableName);
+
+        int start = buffer.position();
+        if (buffer.getInt() != MAGIC) {
+            throw new RuntimeException("Not a page file of table " + tableName);
+        }
+        short version = buffer.getShort();
+        if (version != VERSION && version != 1) {
+            throw new RuntimeException("Unsupported page version " + version);
+        }
+        short columnCount = buffer.getShort();
+        if (columnCount != layout.names().length) {
+            throw new RuntimeException("Page doesn't match the schema of table " + tableName);
+        }
+        int pageNumber = buffer.getInt();
+        int max = buffer.getInt();
+        int slotCount = buffer.getInt();
+
+        Page page = new Page(tableName, pageNumber, max);
+        int slotSize = version == 1 ? SLOT_SIZE_V1 : SLOT_SIZE;
+        Vector<Record> records = new Vector<>(Math.max(slotCount, 10));
+        int[] slots = new int[slotCount];
+        for (int i = 0; i < slotCount; i++) {
+            int slot = start + HEADER_SIZE + slotSize * i;
+            if (version != 1) {
+                slots[i] = buffer.getInt(slot + SLOT_SIZE_V1);
+            }
+            records.add(decodeRecord(layout, buffer.position(start + buffer.getInt(slot))));
+        }
+        if (version == 1) {
+            page.setRecords(records);
+        } else {
+            page.setRecords(records, slots);
+        }
+
+        return page;
+    }
+
+    /**
+     * Forgets the cached layout of a table, the next access reads it again from the catalog.
+     *
+     * @param tableName The name of the table.
+     */
+    public static void invalidate(String tableName) {
+        layouts.remove(tableName);
+    }
+
+    private static Layout getLayout(String tableName) {
+        return layouts.computeIfAbsent(tableName, PageFormat::loadLayout);
+    }
+
+    private static Layout loadLayout(String tableName) {
+        Metadata.TableSchema schema = Metadata.getInstance().getTable(tableName);
+        if (schema == null) {
+            throw new RuntimeException("Table " + tableName + " has no columns");
+        }
+
+        List<Metadata.Column> columns = schema.getColumns();
+        String[] names = new String[columns.size()];
+        byte[] types = new byte[columns.size()];
+        for (Metadata.Column column : columns) {
+            names[column.ordinal()] = column.name();
+            types[column.ordinal()] = switch (column.type()) {
+                case INTEGER -> INTEGER;
+                case DOUBLE -> DOUBLE;
+                case STRING -> STRING;
+            };
+        }
+
+        return new Layout(names, types);
+    }
+
+    private static byte[] encodeRecord(Layout layout, Record record) {
+        Hashtable<String, Object> hashtable = record.hashtable();
+        String[] names = layout.names();
+        int bitmapSize = (names.length + 7) / 8;
+
+        // read every field once, so the size and the content can't disagree
+        Object[] values = new Object[names.length];
+        byte[][] strings = new byte[names.length][];
+        int size = bitmapSize;
+        for (int i = 0; i < names.length; i++) {
+            Object value = values[i] = hashtable.get(names[i]);
+            if (value == null) {
+                continue;
+            }
+            switch (layout.types()[i]) {
+                case INTEGER -> size += Integer.BYTES;
+                case DOUBLE -> size += Double.BYTES;
+                default -> {
+                    strings[i] = ((String) value).getBytes(StandardCharsets.UTF_8);
+                    size += Integer.BYTES + strings[i].length;
+                }
+            }
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        byte[] nulls = new byte[bitmapSize];
+        for (int i = 0; i < names.length; i++) {
+            if (values[i] == null) {
+                nulls[i / 8] |= (byte) (1 << (i % 8));
+            }
+        }
+        buffer.put(nulls);
+
+        for (int i = 0; i < names.length; i++) {
+            Object value = values[i];
+            if (value == null) {
+                continue;
+            }
+            switch (layout.types()[i]) {
+                case INTEGER -> buffer.putInt((Integer) value);
+                case DOUBLE -> buffer.putDouble((Double) value);
+                default -> buffer.putInt(strings[i].length).put(strings[i]);
+            }
+        }
+
+        return buffer.array();
+    }
+
+    private static Record decodeRecord(Layout layout, ByteBuffer buffer) {
+        String[] names = layout.names();
+        byte[] nulls = new byte[(names.length + 7) / 8];
+        buffer.get(nulls);
+
+        Hashtable<String, Object> values = new Hashtable<>();
+        for (int i = 0; i < names.length; i++) {
+            if ((nulls[i / 8] & (1 << (i % 8))) != 0) {
+                continue;
+            }
+            switch (layout.types()[i]) {
+                case INTEGER -> values.put(names[i], buffer.getInt());
+                case DOUBLE -> values.put(names[i], buffer.getDouble());
+                default -> {
+                    byte[] bytes = new byte[buffer.getInt()];
+                    buffer.get(bytes);
+                    values.put(names[i], new String(bytes, StandardCharsets.UTF_8));
+                }
+            }
+        }
+
+        return new Record(values);
+    }
+}
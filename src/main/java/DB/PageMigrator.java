@@ -0,0 +1,130 @@
+package DB;
+
+import BTree.DBBTree;
+
+import java.io.*;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Vector;
+
+/**
+ * This class is a one-time migration tool that converts pages stored with Java serialization
+ * (the old ".ser" page files) to the binary format described in PageFormat.
+ * The page files and the page paths of each table are rewritten, and the indexes of a table are created again from its
+ * migrated pages, since index files written by older versions can't be read anymore.
+ * Running it more than once is harmless, pages that are already migrated are skipped, and the indexes are only created
+ * again when one of them can't be read.
+ *
+ * @author ahmedgado
+ */
+public class PageMigrator {
+
+    /**
+     * Migrates the pages of every table in the data folder.
+     *
+     * @param dbApp The DBApp used to create the indexes again.
+     * @return The number of migrated pages.
+     * @throws DBAppException If a table can't be loaded.
+     */
+    public static int migrateAll(DBApp dbApp) throws DBAppException {
+        File dataFolder = new File(DBApp.getDbConfig().getProperty("DataPath"));
+        File[] tableFolders = dataFolder.listFiles(File::isDirectory);
+        if (tableFolders == null) {
+            return 0;
+        }
+
+        int migrated = 0;
+        for (File tableFolder : tableFolders) {
+            String tableName = tableFolder.getName();
+            if (new File(tableFolder, tableName + ".ser").exists()) {
+                migrated += migrateTable(dbApp, tableName);
+            }
+        }
+
+        return migrated;
+    }
+
+    /**
+     * Migrates the pages of a single table.
+     * Each old page is deserialized, written again in the binary format and then deleted.
+     * The table is saved after all of its pages have been converted, then its indexes are created again.
+     *
+     * @param dbApp     The DBApp used to create the indexes again.
+     * @param tableName The name of the table.
+     * @return The number of migrated pages.
+     * @throws DBAppException If the table does not exist.
+     */
+    public static int migrateTable(DBApp dbApp, String tableName) throws DBAppException {
+        Table<Object> table = Table.loadTable(tableName);
+        Vector<String> pagesPath = table.getPagesPath();
+
+        int migrated = 0;
+        for (int i = 0; i < pagesPath.size(); i++) {
+            String oldPath = pagesPath.get(i);
+            if (!oldPath.endsWith(".ser")) {
+                continue;
+            }
+
+            Page page = readLegacyPage(oldPath);
+            Path newPath = Page.getPath(tableName, page.getPageNumber());
+            PageFormat.write(page, newPath);
+            pagesPath.set(i, newPath.toString());
+            migrated++;
+        }
+
+        if (migrated > 0) {
+            // the table must point to the new files before the old ones disappear
+            table.saveTable();
+            for (File file : new File(Paths.get(DBApp.getDbConfig().getProperty("DataPath"), tableName).toString())
+                    .listFiles()) {
+                if (file.getName().matches("\\d+\\.ser") && !file.delete()) {
+                    throw new RuntimeException("Couldn't delete old page " + file.getName());
+                }
+            }
+        }
+
+        if (migrated > 0 || !indexesReadable(tableName)) {
+            Util.recreateIndexes(tableName, dbApp);
+        }
+
+        return migrated;
+    }
+
+    /**
+     * @return True if every index of the table can be loaded.
+     */
+    private static boolean indexesReadable(String tableName) throws DBAppException {
+        for (Metadata.Index index : Metadata.getInstance().requireTable(tableName).getIndexes()) {
+            try {
+                DBBTree.loadIndex(tableName, index.name());
+            } catch (DBAppException e) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static Page readLegacyPage(String path) {
+        try (
+                FileInputStream fileIn = new FileInputStream(path);
+                ObjectInputStream in = new ObjectInputStream(fileIn)) {
+            return (Page) in.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static void main(String[] args) {
+        try {
+            DBApp dbApp = new DBApp();
+            int migrated = args.length == 0 ? migrateAll(dbApp) : 0;
+            for (String tableName : args) {
+                migrated += migrateTable(dbApp, tableName);
+            }
+            System.out.println("Migrated " + migrated + " pages");
+        } catch (DBAppException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package DB;
+
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Predicate;
+
+/**
+ * This class runs the scans of the pages of tables on a shared ForkJoinPool, whose size is the ScanThreads property of
+ * the configuration, 0 for one thread per available processor.
+ * The workers read their pages through the buffer pool, which decodes pages outside its lock, and filter their
+ * records concurrently. Their results are merged in the order of the pages, so the order of the clustering key is kept.
+ * With one thread, scans run on the caller thread and no pool is created.
+ *
+ * @author ahmedgado
+ */
+public final class ParallelScan {
+    /**
+     * The number of ranges given to every thread, so threads that finish early take the ranges of the others.
+     */
+    private static final int RANGES_PER_THREAD = 8;
+
+    private static ForkJoinPool pool;
+
+    private ParallelScan() {
+    }
+
+    /**
+     * @return The number of threads scanning pages.
+     */
+    public static int getThreads() {
+        int threads = Integer.parseInt(DBApp.getDbConfig().getProperty("ScanThreads", "0"));
+        return threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * @return The pool of the scans, it is created again when ScanThreads changed.
+     */
+    private static synchronized ForkJoinPool getPool() {
+        int threads = getThreads();
+        if (pool == null || pool.getParallelism() != threads) {
+            if (pool != null) {
+                pool.shutdown();
+            }
+            pool = new ForkJoinPool(threads);
+        }
+
+        return pool;
+    }
+
+    /**
+     * Runs a task on the pool of the scans.
+     *
+     * @param task The task.
+     * @return The running task.
+     */
+    public static <T> ForkJoinTask<T> submit(Callable<T> task) {
+        return getPool().submit(task);
+    }
+
+    /**
+     * Reads the pages of a table in parallel and returns the ones holding a record that passes a filter.
+     * The range of pages is split in halves until every thread has a few ranges to search.
+     *
+     * @param table  The table.
+     * @param filter The condition.
+     * @return The ids of the pages, in the order of the table.
+     */
+    public static int[] findPages(Table<?> table, Predicate<Record> filter) {
+        int count = table.pagesCount();
+        int threads = getThreads();
+        boolean[] found = new boolean[count];
+        if (threads == 1) {
+            // one range, it is not split
+            new Search(table, filter, found, 0, count, count).compute();
+        } else {
+            getPool().invoke(new Search(table, filter, found, 0, count, Math.max(1, count / (threads * RANGES_PER_THREAD))));
+        }
+
+        int[] pageIds = new int[count];
+        int length = 0;
+        for (int i = 0; i < count; i++) {
+            if (found[i]) {
+                pageIds[length++] = table.getPageId(i);
+            }
+        }
+
+        return Arrays.copyOf(pageIds, length);
+    }
+
+    /**
+     * Searches a range of pages, it is split in two tasks while it holds more than the given number of pages.
+     */
+    private static final class Search extends RecursiveAction {
+        private final Table<?> table;
+        private final Predicate<Record> filter;
+        private final boolean[] found;
+        private final int from;
+        private final int to;
+        private final int rangePages;
+
+        private Search(Table<?> table, Predicate<Record> filter, boolean[] found, int from, int to, int rangePages) {
+            this.table = table;
+            this.filter = filter;
+            this.found = found;
+            this.from = from;
+            this.to = to;
+            this.rangePages = rangePages;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > rangePages) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Search(table, filter, found, from, middle, rangePages),
+                        new Search(table, filter, found, middle, to, rangePages));
+                return;
+            }
+
+            for (int i = from; i < to; i++) {
+                for (Record record : table.getPage(i).getRecords().toArray(new Record[0])) {
+                    if (filter.test(record)) {
+                        found[i] = true;
+                        break;
+                    }
+                }
+            }
+        }
+    }
+}
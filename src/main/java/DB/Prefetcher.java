@@ -0,0 +1,82 @@
+package DB;
+
+import java.util.List;
+
+/**
+ * This class reads the pages of a scan ahead of it on virtual threads, so the reads and the decoding of the next pages
+ * overlap with the filtering of the current one. The pages are read through the buffer pool, which shares a read in
+ * progress with the scan when it reaches the page.
+ * The number of pages read ahead adapts to the scan. It doubles, up to PrefetchPages of the configuration and a quarter
+ * of the buffer pool, whenever the scan reaches a page that is still being read. It halves whenever a page read ahead
+ * was evicted before the scan reached it.
+ * Reads ahead are hints: a page that can't be read, because its file was deleted in the meantime, is left to the scan.
+ *
+ * @author ahmedgado
+ */
+public class Prefetcher {
+    private final String tableName;
+    private final List<String> pagePaths;
+    private final int maxPages;
+    private int pages;
+    private int requested;
+
+    /**
+     * Constructor for the Prefetcher class.
+     *
+     * @param tableName The name of the table.
+     * @param pagePaths The paths of the page files, in the order of the scan.
+     */
+    public Prefetcher(String tableName, List<String> pagePaths) {
+        this.tableName = tableName;
+        this.pagePaths = pagePaths;
+        int configured = Integer.parseInt(DBApp.getDbConfig().getProperty("PrefetchPages", "8"));
+        this.maxPages = Math.max(0, Math.min(configured, BufferPool.getInstance().getCapacity() / 4));
+        this.pages = Math.min(1, maxPages);
+    }
+
+    /**
+     * Adapts the number of pages read ahead to the state of the page the scan is about to read, then requests the
+     * pages that follow it.
+     *
+     * @param position The position of the page the scan is about to read.
+     */
+    public void advance(int position) {
+        if (maxPages == 0) {
+            return;
+        }
+
+        BufferPool pool = BufferPool.getInstance();
+        if (position < requested) {
+            String path = pagePaths.get(position);
+            if (pool.isLoading(path)) {
+                pages = Math.min(2 * pages, maxPages);
+            } else if (!pool.contains(path)) {
+                pages = Math.max(1, pages / 2);
+            }
+        }
+
+        int end = Math.min(pagePaths.size(), position + 1 + pages);
+        for (int i = Math.max(requested, position + 1); i < end; i++) {
+            String path = pagePaths.get(i);
+            if (!pool.contains(path)) {
+                Thread.startVirtualThread(() -> read(path));
+            }
+        }
+        requested = Math.max(requested, end);
+    }
+
+    /**
+     * @return The number of pages currently read ahead of the scan.
+     */
+    public int getPages() {
+        return pages;
+    }
+
+    private void read(String path) {
+        try {
+            BufferPool.getInstance().fetch(tableName, path);
+        } catch (RuntimeException e) {
+            // the scan reads the page itself, and reports the error if it still can't be read
+        }
+    }
+}
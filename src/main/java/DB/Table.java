@@ -11,14 +11,30 @@ import java.util.*;
 /**
  * This class represents a Table object that implements Iterable, Cloneable, and Serializable interfaces.
  * It contains a list of Page objects and provides methods to manipulate and save these pages.
+ * Open tables are kept resident by loadTable, so the table file is only read once and written when it changes.
+ * Every page has a permanent id, its page number, that doesn't change when the pages before it are removed.
+ * The table maps the id of each page to its file, indexes reference pages by id.
+ * The table keeps the zone map of every page, the bounds of the values of its columns, so selects skip the pages that
+ * can't hold a matching record. The zone map of a page is null, and the page is never skipped, when it is unknown: the
+ * last page has none while records are appended to it, so appends don't rewrite the table on every insert, it is
+ * computed when a page is added after it.
  *
  * @author ahmedgado
  */
 public class Table<PKey> implements Iterable<Page>, Cloneable, Serializable {
+    @Serial
+    private static final long serialVersionUID = -583370699619373349L;
+
+    private static final Hashtable<String, Table<?>> openTables = new Hashtable<>();
+
     private final String tableName;
     private Vector<String> pagesPath;
+    private Vector<Integer> pageIds;
     private Vector<Comparable<PKey>> clusteringKeyMin;
+    private Vector<ZoneMap> zoneMaps;
     private int lastPageNumber = 0;
+    private transient boolean dirty;
+    private transient volatile HashMap<Integer, Integer> pagePositions;
 
     /**
      * Constructor for the Table class.
@@ -28,7 +44,9 @@ public class Table<PKey> implements Iterable<Page>, Cloneable, Serializable {
     public Table(String tableName) {
         this.tableName = tableName;
         pagesPath = new Vector<>();
+        pageIds = new Vector<>();
         clusteringKeyMin = new Vector<>();
+        zoneMaps = new Vector<>();
     }
 
     /**
@@ -38,6 +56,13 @@ public class Table<PKey> implements Iterable<Page>, Cloneable, Serializable {
         return pagesPath;
     }
 
+    /**
+     * @return The id of the next page added to the table, the ids of removed pages are never reused.
+     */
+    public int getNextPageId() {
+        return lastPageNumber;
+    }
+
     /**
      * @return The minimum values of the clustering keys.
      */
@@ -45,13 +70,117 @@ public class Table<PKey> implements Iterable<Page>, Cloneable, Serializable {
         return clusteringKeyMin;
     }
 
+    /**
+     * @param index The index of a page.
+     * @return The zone map of the page, or null if it is unknown.
+     */
+    public ZoneMap getZoneMap(int index) {
+        return zoneMaps.get(index);
+    }
+
+    /**
+     * Returns the pages whose zone map allows some of their records to satisfy a condition, the other pages are not
+     * read.
+     *
+     * @param pageIndexes The indexes of the candidate pages, sorted.
+     * @param condition   The condition.
+     * @return The indexes of the pages that may hold a matching record, sorted.
+     */
+    public int[] pagesMayMatch(int[] pageIndexes, Condition condition) {
+        int[] indexes = new int[pageIndexes.length];
+        int count = 0;
+        for (int index : pageIndexes) {
+            ZoneMap zoneMap = zoneMaps.get(index);
+            if (zoneMap == null || condition.mayMatch(zoneMap)) {
+                indexes[count++] = index;
+            }
+        }
+
+        return count == indexes.length ? indexes : Arrays.copyOf(indexes, count);
+    }
+
+    /**
+     * Computes the zone map of a page again from its records, after some of them were moved to another page.
+     *
+     * @param page A page of the table.
+     */
+    public void updateZoneMap(Page page) {
+        int index = indexOf(page);
+        if (index >= 0) {
+            zoneMaps.set(index, new ZoneMap(page.getRecords()));
+            markDirty();
+        }
+    }
+
+    /**
+     * Widens the zone map of a page to include the values of a record added to it or changed.
+     * The bounds of the other records are kept, so they may be wider than the values of the page.
+     *
+     * @param page   A page of the table.
+     * @param record The record.
+     */
+    public void widenZoneMap(Page page, Record record) {
+        if (widenZoneMap(indexOf(page), record)) {
+            markDirty();
+        }
+    }
+
+    /**
+     * @param index  The index of a page.
+     * @param record A record added to the page or changed.
+     * @return True if the zone map of the page changed, the zone map of the last page is dropped instead of widened.
+     */
+    private boolean widenZoneMap(int index, Record record) {
+        ZoneMap zoneMap = zoneMaps.get(index);
+        if (zoneMap == null || !zoneMap.add(record)) {
+            return false;
+        }
+        if (index == pagesCount() - 1) {
+            zoneMaps.set(index, null);
+        }
+
+        return true;
+    }
+
     /**
      * Clears the pagesPath and clusteringKeyMin vectors and resets the lastPageNumber to 0.
+     * The pages are dropped from the buffer pool, deleting their files is left to the caller.
      */
     public void clear() {
+        BufferPool.getInstance().invalidate(tableName);
+        for (String pagePath : pagesPath) {
+            WriteAheadLog.getInstance().pageRemoved(tableName, pagePath);
+        }
         pagesPath.clear();
+        pageIds.clear();
+        pagePositions = null;
         clusteringKeyMin.clear();
+        zoneMaps.clear();
         lastPageNumber = 0;
+        markDirty();
+    }
+
+    /**
+     * Records that the table (not the pages) was modified.
+     * In write-through mode the table is saved right away, before it is logged, otherwise it is saved by flush at the end
+     * of the statement.
+     * Either way, the table is logged when the running statement commits.
+     */
+    public void markDirty() {
+        dirty = true;
+        WriteAheadLog.getInstance().tableChanged(this);
+        if (BufferPool.getInstance().getWriteMode() == BufferPool.WriteMode.THROUGH) {
+            saveTable();
+        }
+    }
+
+    /**
+     * Saves the table if it was modified since it was last saved.
+     */
+    public void flush() {
+        if (dirty) {
+            saveTable();
+        }
     }
 
     /**
@@ -66,73 +195,187 @@ public class Table<PKey> implements Iterable<Page>, Cloneable, Serializable {
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
+        WriteAheadLog.getInstance().fileWritten(path);
+        dirty = false;
     }
 
     /**
-     * Creates a new Page object, serializes it, and adds its path to the table.
+     * Creates a new Page object, registers it in the buffer pool, and adds its path to the table.
+     * The clustering key minimum of the new page is set by the first addRecord on it.
      *
      * @param max The maximum number of records in a page.
      * @return The created Page object.
      */
     public Page addPage(int max) {
+        return insertPage(pagesCount(), max);
+    }
+
+    /**
+     * Creates a new page at a position of the table, the pages from this position move one position forward.
+     * The clustering key minimum of the new page is set by the first addRecord on it.
+     *
+     * @param index The position of the new page.
+     * @param max   The maximum number of records in a page.
+     * @return The created Page object.
+     */
+    public Page insertPage(int index, int max) {
+        if (index > 0 && index == pagesCount() && zoneMaps.get(index - 1) == null) {
+            // the last page no longer takes the appends
+            zoneMaps.set(index - 1, new ZoneMap(getPage(index - 1).getRecords()));
+        }
         Page page = new Page(tableName, lastPageNumber++, max);
 
-        page.savePage();
+        page.markDirty();
 
-        Path path = Paths.get((String) DBApp.getDbConfig().get("DataPath"), tableName, page.getPageNumber() + ".ser");
-        pagesPath.add(path.toAbsolutePath().toString());
+        pagesPath.add(index, page.getPath().toString());
+        pageIds.add(index, page.getPageNumber());
+        pagePositions = null;
+        clusteringKeyMin.add(index, null);
+        zoneMaps.add(index, new ZoneMap());
 
-        saveTable();
+        markDirty();
 
         return page;
     }
 
     /**
-     * Removes a page from the table and deletes its file.
+     * Creates a page holding the given records at the end of the table and writes it to its file right away.
+     * Unlike addPage, the page is neither logged nor cached in the buffer pool: it is used by bulk loads, which force
+     * the page files to disk before logging the table once, so a crash before that leaves the table as it was.
      *
-     * @param index The index of the page to be removed.
+     * @param records The records of the page, sorted by the primary key.
+     * @param pKey    The primary key.
+     * @param max     The maximum number of records in a page.
+     * @return The created Page object.
      */
-    public void removePage(int index) {
-        File file = new File(pagesPath.get(index));
-        if (!file.delete()) {
-            throw new RuntimeException("Failed to delete the page");
+    public Page appendPage(Vector<Record> records, String pKey, int max) {
+        if (pagesCount() > 0 && zoneMaps.lastElement() == null) {
+            zoneMaps.set(pagesCount() - 1, new ZoneMap(getPage(pagesCount() - 1).getRecords()));
         }
+        Page page = new Page(tableName, lastPageNumber++, max);
+        page.setRecords(records);
+        PageFormat.write(page, page.getPath());
+        WriteAheadLog.getInstance().fileWritten(page.getPath());
+
+        pagesPath.add(page.getPath().toString());
+        pageIds.add(page.getPageNumber());
+        pagePositions = null;
+        clusteringKeyMin.add((Comparable<PKey>) records.getFirst().hashtable().get(pKey));
+        zoneMaps.add(new ZoneMap(records));
+        dirty = true;
+
+        return page;
+    }
 
-        pagesPath.remove(index);
+    /**
+     * Removes a page from the table, its file is deleted when the statement commits.
+     *
+     * @param index The index of the page to be removed.
+     */
+    public void removePage(int index) {
+        BufferPool.getInstance().discard(pagesPath.get(index));
+        WriteAheadLog.getInstance().pageRemoved(tableName, pagesPath.remove(index));
+        pageIds.remove(index);
+        pagePositions = null;
         clusteringKeyMin.remove(index);
+        zoneMaps.remove(index);
+        markDirty();
     }
 
     /**
-     * Removes a page from the table and deletes its file.
+     * Removes a page from the table, its file is deleted when the statement commits.
      *
      * @param page The page to be removed.
      */
     public void removePage(Page page) {
-        String pageName = Paths.get((String) DBApp.getDbConfig().get("DataPath"),
-                tableName, page.getPageNumber() + ".ser").toAbsolutePath().toString();
-        int index = pagesPath.indexOf(pageName);
-        removePage(index);
+        removePage(indexOf(page));
     }
 
     /**
-     * Deserializes a page from a file.
+     * @param page A page of the table.
+     * @return The index of the page in the table, or -1 if it is not part of the table.
+     */
+    public int indexOf(Page page) {
+        return pagesPath.indexOf(page.getPath().toString());
+    }
+
+    /**
+     * Returns a page through the buffer pool, it is only read from its file if it is not cached.
      *
      * @param index The index of the page.
-     * @return The deserialized Page object.
+     * @return The Page object.
      */
     public Page getPage(int index) {
-        String path = pagesPath.get(index);
+        return BufferPool.getInstance().fetch(tableName, pagesPath.get(index));
+    }
 
-        Page page;
-        try (
-                FileInputStream fileIn = new FileInputStream(path);
-                ObjectInputStream in = new ObjectInputStream(fileIn)) {
-            page = (Page) in.readObject();
-        } catch (IOException | ClassNotFoundException e) {
-            throw new RuntimeException(e);
+    /**
+     * @param index The index of a page.
+     * @return The permanent id of the page.
+     */
+    public int getPageId(int index) {
+        return pageIds.get(index);
+    }
+
+    /**
+     * @param pageId The permanent id of a page.
+     * @return The index of the page in the table, or -1 if no page of the table has the id.
+     */
+    public int indexOfPageId(int pageId) {
+        // read once, scans of other threads may look pages up while it is rebuilt
+        HashMap<Integer, Integer> positions = pagePositions;
+        if (positions == null) {
+            // rebuilt after pages are added or removed, the positions of the following pages change
+            positions = new HashMap<>();
+            for (int i = 0; i < pageIds.size(); i++) {
+                positions.put(pageIds.get(i), i);
+            }
+            pagePositions = positions;
         }
 
-        return page;
+        return positions.getOrDefault(pageId, -1);
+    }
+
+    /**
+     * Returns a page by its permanent id, like getPage.
+     *
+     * @param pageId The permanent id of the page.
+     * @return The Page object.
+     * @throws IllegalArgumentException If no page of the table has the id.
+     */
+    public Page getPageById(int pageId) {
+        int index = indexOfPageId(pageId);
+        if (index < 0) {
+            throw new IllegalArgumentException("Table " + tableName + " has no page " + pageId);
+        }
+
+        return getPage(index);
+    }
+
+    /**
+     * Returns a page and pins it in the buffer pool, so it is not evicted until unpinPage is called.
+     *
+     * @param index The index of the page.
+     * @return The pinned Page object.
+     */
+    public Page pinPage(int index) {
+        return BufferPool.getInstance().pin(tableName, pagesPath.get(index));
+    }
+
+    /**
+     * Releases a page pinned by pinPage.
+     *
+     * @param page The pinned page.
+     */
+    public void unpinPage(Page page) {
+        BufferPool.getInstance().unpin(page, false);
+    }
+
+    /**
+     * @return The name of the table.
+     */
+    public String getTableName() {
+        return tableName;
     }
 
     /**
@@ -143,7 +386,7 @@ public class Table<PKey> implements Iterable<Page>, Cloneable, Serializable {
     }
 
     /**
-     * Adds a record to a page and updates the clustering key minimum value.
+     * Adds a record to a page and updates the clustering key minimum value and the zone map of the page.
      *
      * @param record The record to be added.
      * @param pKey   The primary key.
@@ -151,12 +394,12 @@ public class Table<PKey> implements Iterable<Page>, Cloneable, Serializable {
      */
     public void addRecord(Record record, String pKey, Page page) {
         page.add(record);
-        clusteringKeyMin.add(page.getPageNumber(), (Comparable<PKey>) page.getRecords().getFirst().hashtable().get(pKey));
-        saveTable();
+        updateClusteringKeyMin(pKey, page, record);
     }
 
     /**
-     * Adds a record at a specific position in a page and updates the clustering key minimum value.
+     * Adds a record at a specific position in a page and updates the clustering key minimum value and the zone map of
+     * the page.
      *
      * @param recordNo The position at which the record should be added.
      * @param record   The record to be added.
@@ -165,12 +408,13 @@ public class Table<PKey> implements Iterable<Page>, Cloneable, Serializable {
      */
     public void addRecord(int recordNo, Record record, String pKey, Page page) {
         page.add(recordNo, record);
-        clusteringKeyMin.add(page.getPageNumber(), (Comparable<PKey>) page.getRecords().getFirst().hashtable().get(pKey));
-        saveTable();
+        updateClusteringKeyMin(pKey, page, record);
     }
 
     /**
      * Removes a record at a specific position from a page and updates the clustering key minimum value.
+     * The zone map of the page is kept, its bounds still hold the remaining records.
+     * If the page becomes empty, it is removed from the table and its file is deleted.
      *
      * @param recordNo The position of the record to be removed.
      * @param pKey     The primary key.
@@ -180,19 +424,48 @@ public class Table<PKey> implements Iterable<Page>, Cloneable, Serializable {
     public Record removeRecord(int recordNo, String pKey, Page page) {
         Record htbl = page.remove(recordNo);
         if (page.isEmpty()) {
-            String pageName = Paths.get((String) DBApp.getDbConfig().get("DataPath"),
-                    tableName, page.getPageNumber() + ".ser").toAbsolutePath().toString();
-            int index = pagesPath.indexOf(pageName);
-            pagesPath.remove(index);
-            clusteringKeyMin.remove(index);
+            removePage(page);
         } else {
-            clusteringKeyMin.add(page.getPageNumber(), (Comparable<PKey>) page.getRecords().getFirst().hashtable().get(pKey));
+            updateClusteringKeyMin(pKey, page);
         }
-        saveTable();
 
         return htbl;
     }
 
+    /**
+     * Sets the clustering key minimum value of a page to the key of its first record.
+     *
+     * @param pKey The primary key.
+     * @param page A non-empty page of the table.
+     */
+    public void updateClusteringKeyMin(String pKey, Page page) {
+        updateClusteringKeyMin(pKey, page, null);
+    }
+
+    /**
+     * Sets the clustering key minimum value of a page to the key of its first record, and widens the zone map of the
+     * page to include a record added to it.
+     *
+     * @param pKey   The primary key.
+     * @param page   A non-empty page of the table.
+     * @param record The record added to the page, or null.
+     */
+    private void updateClusteringKeyMin(String pKey, Page page, Record record) {
+        Comparable<PKey> min = (Comparable<PKey>) page.getRecords().getFirst().hashtable().get(pKey);
+        int index = indexOf(page);
+        boolean changed = false;
+        if (!min.equals(clusteringKeyMin.get(index))) {
+            clusteringKeyMin.set(index, min);
+            changed = true;
+        }
+        if (record != null) {
+            changed |= widenZoneMap(index, record);
+        }
+        if (changed) {
+            markDirty();
+        }
+    }
+
     /**
      * This method overrides the toString method from the Object class.
      * It iterates over the pages and appends each page to a StringBuilder.
@@ -219,6 +492,52 @@ public class Table<PKey> implements Iterable<Page>, Cloneable, Serializable {
         return res.toString();
     }
 
+    /**
+     * Returns the open handle of a table, the table is only deserialized from its file the first time it is used.
+     * The handle stays resident until a DDL statement invalidates it, changes to it are saved through flush.
+     *
+     * @param tableName The name of the table.
+     * @return The Table object.
+     * @throws DBAppException If the table does not exist.
+     */
+    public static <T> Table<T> loadTable(String tableName) throws DBAppException {
+        synchronized (openTables) {
+            Table<?> table = openTables.get(tableName);
+            if (table == null) {
+                table = readTable(tableName);
+                openTables.put(tableName, table);
+            }
+
+            return (Table<T>) table;
+        }
+    }
+
+    /**
+     * Makes a table the open handle of its name, replacing any handle left by an older table of the same name.
+     *
+     * @param table The table.
+     */
+    public static void register(Table<?> table) {
+        openTables.put(table.getTableName(), table);
+    }
+
+    /**
+     * Drops the open handle of a table, the next loadTable reads it again from its file.
+     *
+     * @param tableName The name of the table.
+     */
+    public static void invalidate(String tableName) {
+        openTables.remove(tableName);
+    }
+
+    /**
+     * Drops the open handle of every table, the next loadTable reads each table again from its file.
+     * Must only be called between statements, when no handle holds unsaved changes.
+     */
+    public static void invalidateAll() {
+        openTables.clear();
+    }
+
     /**
      * Deserializes a table from a file.
      *
@@ -226,22 +545,38 @@ public class Table<PKey> implements Iterable<Page>, Cloneable, Serializable {
      * @return The deserialized Table object.
      * @throws DBAppException If the table does not exist.
      */
-    public static <T> Table<T> loadTable(String tableName) throws DBAppException {
+    private static Table<?> readTable(String tableName) throws DBAppException {
         Path path = Paths.get((String) DBApp.getDbConfig().get("DataPath"), tableName, tableName + ".ser");
 
         if (!path.toFile().exists()) {
             throw new DBAppException("Table doesn't exit");
         }
 
-        Table<T> table;
         try (
                 FileInputStream fileIn = new FileInputStream(path.toAbsolutePath().toString());
                 ObjectInputStream in = new ObjectInputStream(fileIn)) {
-            table = (Table<T>) in.readObject();
+            return (Table<?>) in.readObject();
         } catch (IOException | ClassNotFoundException e) {
             throw new RuntimeException(e);
         }
-        return table;
+    }
+
+    @Serial
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        if (pageIds == null) {
+            // tables saved without ids, the id of a page is the number in the name of its file
+            pageIds = new Vector<>();
+            for (String pagePath : pagesPath) {
+                String name = Paths.get(pagePath).getFileName().toString();
+                pageIds.add(Integer.parseInt(name.substring(0, name.indexOf('.'))));
+            }
+        }
+        if (zoneMaps == null) {
+            // tables saved without zone maps, their pages are never skipped until they are rewritten
+            zoneMaps = new Vector<>();
+            zoneMaps.setSize(pagesPath.size());
+        }
     }
 
     /**
@@ -261,7 +596,10 @@ public class Table<PKey> implements Iterable<Page>, Cloneable, Serializable {
         try {
             Table<PKey> clone = (Table<PKey>) super.clone();
             clone.pagesPath = (Vector<String>) pagesPath.clone();
+            clone.pageIds = (Vector<Integer>) pageIds.clone();
+            clone.pagePositions = null;
             clone.clusteringKeyMin = (Vector<Comparable<PKey>>) clusteringKeyMin.clone();
+            clone.zoneMaps = (Vector<ZoneMap>) zoneMaps.clone();
 
             return clone;
         } catch (CloneNotSupportedException e) {
@@ -273,13 +611,15 @@ public class Table<PKey> implements Iterable<Page>, Cloneable, Serializable {
      * This class represents an iterator over the pages in the table.
      */
     private class TableIterator implements Iterator<Page> {
+        private final Prefetcher prefetcher;
         private int pageIndex;
         private Page page;
 
         /**
-         * Constructor for the TableIterator class.
+         * Constructor for the TableIterator class, the next pages are read ahead while the current one is used.
          */
         public TableIterator() {
+            prefetcher = new Prefetcher(tableName, new ArrayList<>(pagesPath));
             pageIndex = 0;
             page = null;
         }
@@ -302,6 +642,7 @@ public class Table<PKey> implements Iterable<Page>, Cloneable, Serializable {
                 throw new RuntimeException("No more records");
             }
 
+            prefetcher.advance(pageIndex);
             page = getPage(pageIndex);
             pageIndex++;
 
@@ -1,6 +1,8 @@
 package DB;
 
 import BTree.DBBTree;
+import BTree.RecordId;
+import BTree.RoaringBitmap;
 
 import java.io.*;
 import java.util.*;
@@ -8,63 +10,12 @@ import java.util.*;
 
 /**
  * This class provides utility methods for the DB package.
- * It includes methods for getting metadata, evaluating SQL terms, and handling indexes.
+ * It includes methods for validating records, evaluating SQL terms, and handling indexes.
  *
  * @author ahmedgado
  */
 public class Util {
 
-    /**
-     * This method retrieves the metadata for a given table from a metadata file.
-     * The metadata file is a CSV file where each line represents a column in a table.
-     * Each line is split into parts: table name, column name, column type, clustering key, index name, and index type.
-     * The metadata is stored in a Hashtable where the key is the table name and the value is another Hashtable.
-     * The inner Hashtable has the column name as the key and an array of column properties as the value.
-     * If the tableName parameter is null, the metadata for all tables is returned.
-     * If the tableName parameter is not null, only the metadata for the specified table is returned.
-     *
-     * @param tableName The name of the table for which to retrieve the metadata. If null, the metadata for all tables is returned.
-     * @return A Hashtable containing the metadata for the specified table(s). The outer Hashtable has the table name as the key and another Hashtable as the value.
-     * The inner Hashtable has the column name as the key and an array of column properties (type, clustering key, index name, index type) as the value.
-     * @throws RuntimeException If an error occurs while reading the metadata file.
-     */
-    public static Hashtable<String, Hashtable<String, String[]>> getMetadata(String tableName) {
-        Hashtable<String, Hashtable<String, String[]>> metadata = new Hashtable<>();
-        String metadataPath = DBApp.getDbConfig().getProperty("MetadataPath");
-
-        try (BufferedReader br = new BufferedReader(new FileReader(metadataPath))) {
-            br.readLine(); // Skip the header
-            String line;
-            while ((line = br.readLine()) != null) {
-                String[] parts = line.split(",");
-                String tName = parts[0];
-                String cName = parts[1];
-                String cType = parts[2];
-                String cKey = parts[3];
-                String iName = parts[4];
-                String iType = parts[5];
-
-                if (tableName == null || tName.equals(tableName)) {
-                    if (!metadata.containsKey(tName)) {
-                        metadata.put(tName, new Hashtable<>());
-                    }
-
-                    if (cKey.equals("True")) {
-                        if (!metadata.get(tName).containsKey("clusteringKey")) {
-                            metadata.get(tName).put("clusteringKey", new String[]{cName});
-                        }
-                    }
-
-                    metadata.get(tName).put(cName, new String[]{cType, cKey, iName, iType});
-                }
-            }
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
-
-        return metadata;
-    }
-
     /**
      * This method uses binary search to find the position of a record with a given clustering key in a table.
      * It first loads the table and checks if it has any pages. If it doesn't, it returns an array with -1 as the second element.
@@ -81,8 +32,22 @@ public class Util {
      */
     public static int[] getRecordPos(String tableName, String clusteringKey,
                                      Comparable<?> clusteringKeyValue) throws DBAppException {
+        return getRecordPos(Table.loadTable(tableName), clusteringKey, clusteringKeyValue);
+    }
+
+    /**
+     * This method finds the position of a record with a given clustering key in an already loaded table.
+     * It works like getRecordPos(String, String, Comparable), but sees the changes of the current statement that
+     * were not saved yet.
+     *
+     * @param table              The table.
+     * @param clusteringKey      The clustering key.
+     * @param clusteringKeyValue The value of the clustering key.
+     * @return An array containing the page number, the position of the record in the page, and a flag indicating if the record was found.
+     */
+    public static int[] getRecordPos(Table<?> table, String clusteringKey,
+                                     Comparable<?> clusteringKeyValue) {
         int[] recordPos = new int[3];
-        Table<Object> table = Table.loadTable(tableName);
 
         if (table.getPagesPath().isEmpty()) {
             recordPos[1] = -1;
@@ -100,7 +65,7 @@ public class Util {
             }
 
             int midPage = (leftPage + rightPage) / 2;
-            Comparable<Object> midValue = table.getClusteringKeyMin().get(midPage);
+            Comparable<Object> midValue = (Comparable<Object>) table.getClusteringKeyMin().get(midPage);
 
             if (midValue.compareTo(clusteringKeyValue) <= 0) {
                 leftPage = midPage + 1;
@@ -144,391 +109,334 @@ public class Util {
     }
 
     /**
-     * This method validates the columns of a given table.
-     * It first retrieves the metadata for the table. If the table does not exist, it throws a DBAppException.
-     * It then iterates over the provided column names and values. For each column, it checks if the column exists in the table.
-     * If the column does not exist, it throws a DBAppException.
-     * It then checks the type of the value provided for the column. If the type of the value does not match the type of the column,
-     * it throws a DBAppException.
+     * This method finds the position of a record whose clustering key is greater than every key of the table, like
+     * auto-incremented or timestamp keys, without searching: it only compares the key with the last record of the
+     * tail page, which stays in the buffer pool while records are appended to it.
      *
-     * @param tableName    The name of the table.
-     * @param colNameValue A Hashtable containing the column names and their values.
-     * @throws DBAppException If the table does not exist, a column does not exist, or a value's type does not match the column's type.
+     * @param table              The table.
+     * @param clusteringKey      The clustering key.
+     * @param clusteringKeyValue The value of the clustering key.
+     * @return The position of the record like getRecordPos returns it, the last record of the tail page, or null if
+     * the key is not greater than every key of the table.
      */
-    public static void validateCols(String tableName, Hashtable<String, Object> colNameValue) throws DBAppException {
-        Hashtable<String, Hashtable<String, String[]>> metadata = getMetadata(tableName);
-        if (!metadata.containsKey(tableName)) {
-            throw new DBAppException("Table " + tableName + " does not exist");
+    public static int[] getAppendPos(Table<?> table, String clusteringKey, Comparable<?> clusteringKeyValue) {
+        int pageNumber = table.pagesCount() - 1;
+        if (pageNumber < 0) {
+            return null;
         }
 
-        for (String colName : colNameValue.keySet()) {
-            if (!metadata.get(tableName).containsKey(colName)) {
-                throw new DBAppException("Column " + colName + " does not exist in table " + tableName);
-            }
-
-            String[] colMetadata = metadata.get(tableName).get(colName);
-            String colType = colMetadata[0];
-
-            switch (colType) {
-                case "java.lang.Integer" -> {
-                    if (!(colNameValue.get(colName) instanceof Integer)) {
-                        throw new DBAppException("Invalid value for column " + colName + " of type " + colType);
-                    }
-                }
-                case "java.lang.String" -> {
-                    if (!(colNameValue.get(colName) instanceof String)) {
-                        throw new DBAppException("Invalid value for column " + colName + " of type " + colType);
-                    }
-                }
-                case "java.lang.Double" -> {
-                    if (!(colNameValue.get(colName) instanceof Double)) {
-                        throw new DBAppException("Invalid value for column " + colName + " of type " + colType);
-                    }
-                }
-                default -> throw new DBAppException("Invalid column type " + colType);
-            }
+        Page page = table.getPage(pageNumber);
+        if (page.isEmpty()) {
+            return null;
         }
-    }
-
-    /**
-     * This method evaluates a SQL term.
-     * It first checks if either of the values is null. If either value is null, it returns false.
-     * It then compares the two values based on the provided operator.
-     * The operator can be one of the following: "=", "!=", ">", ">=", "<", "<=".
-     * If the operator is "=", it checks if the two values are equal.
-     * If the operator is "!=", it checks if the two values are not equal.
-     * If the operator is ">", it checks if the first value is greater than the second value.
-     * If the operator is ">=", it checks if the first value is greater than or equal to the second value.
-     * If the operator is "<", it checks if the first value is less than the second value.
-     * If the operator is "<=", it checks if the first value is less than or equal to the second value.
-     * If the operator is not one of the above, it throws a RuntimeException.
-     *
-     * @param value    The first value to be compared.
-     * @param operator The operator to be used for comparison.
-     * @param objValue The second value to be compared.
-     * @return True if the SQL term is true, false otherwise.
-     * @throws RuntimeException If an invalid operator is provided.
-     */
-    public static boolean evaluateSqlTerm(Comparable<Object> value, String operator, Comparable<Object> objValue) {
-        if (value == null || objValue == null) {
-            return false;
+        Comparable<Object> max = (Comparable<Object>) page.getRecords().lastElement().hashtable().get(clusteringKey);
+        if (max.compareTo(clusteringKeyValue) >= 0) {
+            return null;
         }
 
-        return switch (operator) {
-            case "=" -> value.equals(objValue);
-            case "!=" -> !value.equals(objValue);
-            case ">" -> (value).compareTo(objValue) > 0;
-            case ">=" -> (value).compareTo(objValue) >= 0;
-            case "<" -> (value).compareTo(objValue) < 0;
-            case "<=" -> (value).compareTo(objValue) <= 0;
-            default -> throw new RuntimeException("Invalid operator");
-        };
+        return new int[]{pageNumber, page.size() - 1, 0};
     }
 
     /**
-     * This method compares the precedence of two SQL operators.
-     * It supports the following operators: "AND", "OR", "XOR".
-     * The precedence order is as follows: "AND" > "OR" > "XOR".
-     * If the precedence of the first operator is higher than or equal to the second operator, it returns true.
-     * Otherwise, it returns false.
-     * If an invalid operator is provided, it throws a RuntimeException.
+     * This method validates the columns of a given table.
+     * It first retrieves the schema of the table from the catalog. If the table does not exist, it throws a DBAppException.
+     * It then iterates over the provided column names and values. For each column, it checks if the column exists in the table.
+     * If the column does not exist, it throws a DBAppException.
+     * It then checks the type of the value provided for the column. If the type of the value does not match the type of the column,
+     * it throws a DBAppException.
      *
-     * @param op  The first operator.
-     * @param op2 The second operator.
-     * @return True if the precedence of the first operator is higher than or equal to the second operator, false otherwise.
-     * @throws RuntimeException If an invalid operator is provided.
+     * @param tableName    The name of the table.
+     * @param colNameValue A Hashtable containing the column names and their values.
+     * @throws DBAppException If the table does not exist, a column does not exist, or a value's type does not match the column's type.
      */
-    public static boolean comparePrecedence(String op, String op2) {
-        return switch (op) {
-            case "AND" -> switch (op2) {
-                case "AND" -> true;
-                case "OR", "XOR" -> false;
-                default -> throw new RuntimeException("Invalid operator");
-            };
-            case "OR" -> switch (op2) {
-                case "AND", "OR" -> true;
-                case "XOR" -> false;
-                default -> throw new RuntimeException("Invalid operator");
-            };
-            case "XOR" -> switch (op2) {
-                case "AND", "OR", "XOR" -> true;
-                default -> throw new RuntimeException("Invalid operator");
-            };
-            default -> throw new RuntimeException("Invalid operator");
-        };
+    public static void validateCols(String tableName, Hashtable<String, Object> colNameValue) throws DBAppException {
+        validateCols(Metadata.getInstance().requireTable(tableName), colNameValue);
     }
 
     /**
-     * This method converts an array of SQL terms and operators into postfix notation.
-     * It iterates over the SQL terms and evaluates each term using the evaluateSqlTerm method.
-     * The result of the evaluation is added to the postfix list.
-     * It then checks if there are any remaining operators.
-     * If there are, it compares the precedence of the current operator with the operator at the top of the stack.
-     * If the current operator has higher or equal precedence, it pops the operator from the stack and adds it to the postfix list.
-     * The current operator is then pushed onto the stack.
-     * After all terms and operators have been processed, any remaining operators on the stack are popped and added to the postfix list.
+     * This method validates the columns of a record against an already retrieved schema, like
+     * validateCols(String, Hashtable), so the schema is only looked up once for many records.
      *
-     * @param record          The record to be evaluated.
-     * @param arrSQLTerms     The array of SQL terms.
-     * @param strarrOperators The array of operators.
-     * @return A LinkedList containing the postfix notation of the SQL terms and operators.
+     * @param schema       The schema of the table.
+     * @param colNameValue A Hashtable containing the column names and their values.
+     * @throws DBAppException If a column does not exist, or a value's type does not match the column's type.
      */
-    public static LinkedList<Object> toPostfix(Hashtable<String, Object> record,
-                                               SQLTerm[] arrSQLTerms, String[] strarrOperators) {
-        Stack<String> stack = new Stack<>();
-        LinkedList<Object> postfix = new LinkedList<>();
-        int j = 0;
-
-        for (SQLTerm arrSQLTerm : arrSQLTerms) {
-            Object value1 = record.get(arrSQLTerm._strColumnName);
-            postfix.add(
-                    Util.evaluateSqlTerm((Comparable<Object>) value1, arrSQLTerm._strOperator, (Comparable<Object>) arrSQLTerm._objValue));
-
-            if (j >= strarrOperators.length) {
-                continue;
-            }
-
-            while (!stack.isEmpty() && Util.comparePrecedence(strarrOperators[j], stack.peek())) {
-                postfix.add(stack.pop());
+    public static void validateCols(Metadata.TableSchema schema, Hashtable<String, Object> colNameValue)
+            throws DBAppException {
+        for (String colName : colNameValue.keySet()) {
+            Metadata.Column column = schema.getColumn(colName);
+            if (column == null) {
+                throw new DBAppException("Column " + colName + " does not exist in table " + schema.getName());
             }
-            stack.push(strarrOperators[j]);
-            j++;
-        }
-
-        while (!stack.isEmpty()) {
-            postfix.add(stack.pop());
-        }
-
-        return postfix;
-    }
 
-    /**
-     * This method evaluates a postfix notation of SQL terms and operators.
-     * It iterates over the postfix list. If the current element is a Boolean, it pushes it onto the stack.
-     * If the current element is an operator, it pops two values from the stack, evaluates the operation, and pushes the result back onto the stack.
-     * After all elements in the postfix list have been processed, the method returns the final result from the top of the stack.
-     *
-     * @param postfix The postfix notation of SQL terms and operators.
-     * @return The result of the evaluation.
-     */
-    public static boolean evaluatePostfix(LinkedList<Object> postfix) {
-        Stack<Boolean> stack = new Stack<>();
-        for (Object token : postfix) {
-            if (token instanceof Boolean) {
-                stack.push((Boolean) token);
-            } else {
-                boolean value2 = stack.pop();
-                boolean value1 = stack.pop();
-                stack.push(Util.evaluateBinaryOp(value1, (String) token, value2));
+            if (!column.type().accepts(colNameValue.get(colName))) {
+                throw new DBAppException("Invalid value for column " + colName + " of type " + column.type().getClassName());
             }
         }
-        return stack.pop();
     }
 
     /**
-     * This method evaluates a binary operation.
-     * It supports the following operators: "AND", "OR", "XOR".
-     * If the operator is "AND", it returns the logical AND of the two values.
-     * If the operator is "OR", it returns the logical OR of the two values.
-     * If the operator is "XOR", it returns the logical XOR of the two values.
-     * If the operator is not one of the above, it throws a RuntimeException.
+     * The records and the pages that can satisfy a select query, given by the indexes.
      *
-     * @param value    The first value.
-     * @param operator The operator.
-     * @param objValue The second value.
-     * @return The result of the binary operation.
-     * @throws RuntimeException If an invalid operator is provided.
+     * @param records The RecordIds of the records, or null if no record index applies.
+     * @param pages   The ids of the pages, or null if no index applies.
      */
-    public static boolean evaluateBinaryOp(boolean value, String operator, boolean objValue) {
-        return switch (operator) {
-            case "AND" -> value && objValue;
-            case "OR" -> value || objValue;
-            case "XOR" -> value ^ objValue;
-            default -> throw new RuntimeException("Invalid operator");
-        };
+    public record IndexSearch(RoaringBitmap records, RoaringBitmap pages) {
     }
 
     /**
-     * This method returns a set of the pages of the select query using any available index.
-     * It first retrieves the metadata for the table and gets the index columns.
-     * It then iterates over the index columns and loads the corresponding index.
-     * For each SQL term, it checks if the column name matches the current index column and if the condition is ANDed.
-     * If the condition is not ANDed, it continues to the next term.
-     * It then performs a search on the index based on the operator and value of the term.
-     * The result of the search is added to a set of page numbers.
-     * If the overall result set is empty, it adds all page numbers from the current result set.
-     * Otherwise, it retains only the page numbers that are present in both the overall result set and the current result set.
-     * After all terms have been processed, it returns the overall result set.
+     * This method returns the records and the pages that can satisfy a select query using the available indexes.
+     * Indexes are only used when every operator is AND, so a record must satisfy every term.
+     * For each term on an indexed column, the matching keys are looked up as a bitmap: the keys of the value for "=",
+     * the keys in the range for the comparisons, while "!=" is not answered by the index.
+     * Record indexes give the RecordIds of the matching records, the other indexes the ids of their pages, and the
+     * bitmaps of each kind are ANDed. The records are then only kept on the pages given by the indexes of pages, and
+     * the pages are the ones of the records.
+     * The kind of each index is read from the catalog, and only the indexes of columns with a term are loaded, once.
      *
      * @param arrSQLTerms     The array of SQL terms.
      * @param strarrOperators The array of operators.
-     * @return A HashSet containing the page numbers that satisfy the select query.
+     * @return The records and the pages that can satisfy the select query.
      * @throws DBAppException If an invalid operator is provided.
      */
-    public static HashSet<Integer> filterPagesByIndex(
+    public static IndexSearch searchIndexes(
             SQLTerm[] arrSQLTerms,
             String[] strarrOperators) throws DBAppException {
 
-        HashSet<Integer> result = new HashSet<>();
-        String tableName = arrSQLTerms[0]._strTableName;
+        if (!allAnd(strarrOperators)) {
+            return new IndexSearch(null, null);
+        }
 
-        Hashtable<String, Hashtable<String, String[]>> metaData = Util.getMetadata(tableName);
-        LinkedList<String> indexColumns = Util.getIndexColumns(metaData, tableName);
+        RoaringBitmap records = null;
+        RoaringBitmap pages = null;
+        String tableName = arrSQLTerms[0]._strTableName;
 
-        for (String col : indexColumns) {
-            String indexName = metaData.get(tableName).get(col)[2];
-            DBBTree index = DBBTree.loadIndex(tableName, indexName);
-            HashSet<Integer> res = new HashSet<>();
-            // only consider filtering using the index if the condition is anded
-            for (int i = 0; i < arrSQLTerms.length; i++) {
-                if (!col.equals(arrSQLTerms[i]._strColumnName)) {
+        for (Metadata.Index metadataIndex : Metadata.getInstance().requireTable(tableName).getIndexes()) {
+            String col = metadataIndex.columnName();
+            boolean recordIds = metadataIndex.isRecordIndex();
+            DBBTree index = null;
+            for (SQLTerm term : arrSQLTerms) {
+                if (!col.equals(term._strColumnName) || term._strOperator.equals("!=")) {
                     continue;
                 }
-
-                SQLTerm term = arrSQLTerms[i];
-                String before = i == 0 ? null : strarrOperators[i - 1];
-                String after = i == arrSQLTerms.length - 1 ? null : strarrOperators[i];
-
-                if ((before == null || !before.equals("AND"))
-                        && (after == null || !after.equals("AND"))) {
-                    continue;
+                if (index == null) {
+                    index = DBBTree.loadIndex(tableName, metadataIndex.name());
                 }
 
-                Object value = term._objValue;
-                Set<Integer> search = null;
-
-                switch (term._strOperator) {
-                    case "!=" -> {
-                    }
-                    case "=" -> search = index.search((Comparable) value).keySet();
-                    case ">", ">=" -> search = index.searchRange((Comparable) value, null);
-                    case "<", "<=" -> search = index.searchRange(null, (Comparable) value);
+                Comparable value = (Comparable) term._objValue;
+                RoaringBitmap matches = switch (term._strOperator) {
+                    case "=" -> recordIds ? index.searchRecords(value) : index.searchPages(value);
+                    case ">", ">=" -> recordIds ? index.searchRecords(value, null) : index.searchPages(value, null);
+                    case "<", "<=" -> recordIds ? index.searchRecords(null, value) : index.searchPages(null, value);
                     default -> throw new DBAppException("Invalid operator");
-                }
+                };
 
-                if (search != null) {
-                    res.addAll(search);
-                }
-
-                if (result.isEmpty()) {
-                    result.addAll(res);
+                if (recordIds) {
+                    records = and(records, matches);
                 } else {
-                    result.retainAll(res);
+                    pages = and(pages, matches);
                 }
             }
         }
 
+        if (records == null) {
+            return new IndexSearch(null, pages);
+        }
+
+        RoaringBitmap recordPages = RecordId.pages(records);
+        if (pages != null) {
+            recordPages.and(pages);
+            records = RecordId.onPages(records, pages);
+        }
+        return new IndexSearch(records, recordPages);
+    }
+
+    private static RoaringBitmap and(RoaringBitmap result, RoaringBitmap matches) {
+        if (result == null) {
+            return matches;
+        }
+
+        result.and(matches);
         return result;
     }
 
+    private static boolean allAnd(String[] strarrOperators) {
+        for (String operator : strarrOperators) {
+            if (!"AND".equals(operator)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
     /**
-     * This method retrieves the index columns for a given table from the metadata.
-     * It iterates over the metadata for the table and checks if each column has an index.
-     * If a column has an index, it adds the column name to a list of index columns.
-     * After all columns have been processed, it returns the list of index columns.
+     * This method checks, before a statement modifies a table, that the record indexes of the table can reference the
+     * pages the statement may add. Page ids are never reused, and record ids only address MAX_PAGES pages.
      *
-     * @param metaData     The metadata for the table.
-     * @param strTableName The name of the table.
-     * @return A LinkedList containing the names of the index columns.
+     * @param table    The table.
+     * @param newPages The maximum number of pages the statement adds.
+     * @throws DBAppException If the table has a record index and the new pages are out of the range of record ids.
      */
-    public static LinkedList<String> getIndexColumns(Hashtable<String, Hashtable<String, String[]>> metaData, String strTableName) {
-        LinkedList<String> indexColumns = new LinkedList<>();
-        //loop over metaData file and check if the index exists
-        for (String colName : metaData.get(strTableName).keySet()) {
-            // check if index name is not null in meta-data file
-            if (colName.equals("clusteringKey")) {
-                continue;
+    public static void checkPageIds(Table<?> table, long newPages) throws DBAppException {
+        if (table.getNextPageId() + newPages <= RecordId.MAX_PAGES) {
+            return;
+        }
+
+        for (Metadata.Index index : Metadata.getInstance().requireTable(table.getTableName()).getIndexes()) {
+            if (index.isRecordIndex()) {
+                throw new DBAppException("Table " + table.getTableName() + " has used all the " + RecordId.MAX_PAGES
+                        + " page ids of its record index " + index.name());
             }
+        }
+    }
 
-            if (!metaData.get(strTableName).get(colName)[2].equals("null")) {
-                indexColumns.add(colName);
+    /**
+     * This method orders the pages given by an index like the table, ids are not in the order of the pages once a
+     * page was inserted between two others.
+     *
+     * @param table   The table.
+     * @param pageIds The ids of pages.
+     * @return The indexes of the pages in the table, sorted, the ids of pages that no longer exist are skipped.
+     */
+    public static int[] pageIndexes(Table<?> table, RoaringBitmap pageIds) {
+        int[] indexes = new int[pageIds.getCardinality()];
+        int count = 0;
+        PrimitiveIterator.OfInt iterator = pageIds.iterator();
+        while (iterator.hasNext()) {
+            int index = table.indexOfPageId(iterator.nextInt());
+            if (index >= 0) {
+                indexes[count++] = index;
             }
         }
 
-        return indexColumns;
+        indexes = Arrays.copyOf(indexes, count);
+        Arrays.sort(indexes);
+        return indexes;
     }
 
     /**
      * This method updates the indexes of a given table.
-     * It first retrieves the metadata for the table and gets the index columns.
-     * It then loads the table and retrieves the record at the specified page number and record number.
-     * It iterates over the index columns and checks if the index type is "B+tree".
+     * It first retrieves the indexes of the table from the catalog.
+     * It then retrieves the record at the specified page number and record number from the table.
+     * It iterates over the indexes and checks if the index type is "B+tree".
      * If the index type is "B+tree", it loads the index and inserts the value of the column in the record into the index.
-     * The page number is used as the key for the index.
+     * The page id is used as the value of the key, or the RecordId of the record in a record index.
      *
-     * @param tableName The name of the table.
-     * @param pageNo    The page number of the record.
-     * @param recordNo  The record number within the page.
-     * @throws DBAppException If an error occurs while loading the table or the index.
+     * @param table    The table.
+     * @param pageNo   The index of the page of the record in the table.
+     * @param recordNo The record number within the page.
+     * @throws DBAppException If an error occurs while loading the index.
      */
-    public static void updateIndexes(String tableName, int pageNo, int recordNo) throws DBAppException {
-        Hashtable<String, Hashtable<String, String[]>> metadata = Util.getMetadata(tableName);
-        LinkedList<String> indexColumns = Util.getIndexColumns(metadata, tableName);
-        Table<Object> table = Table.loadTable(tableName);
-        Hashtable<String, Object> record = table.getPage(pageNo).getRecords().get(recordNo).hashtable();
-
-        for (String colName : indexColumns) {
-            String indexName = metadata.get(tableName).get(colName)[2];
-            String indexType = metadata.get(tableName).get(colName)[3];
-            if (indexType.equals("B+tree")) {
+    public static void updateIndexes(Table<?> table, int pageNo, int recordNo) throws DBAppException {
+        String tableName = table.getTableName();
+        List<Metadata.Index> indexes = Metadata.getInstance().requireTable(tableName).getIndexes();
+        Page page = table.getPage(pageNo);
+        Hashtable<String, Object> record = page.getRecords().get(recordNo).hashtable();
+
+        for (Metadata.Index index : indexes) {
+            String colName = index.columnName();
+            String indexName = index.name();
+            if (index.type().equals("B+tree")) {
                 if (record.get(colName) == null) continue;
                 DBBTree tree = DBBTree.loadIndex(tableName, indexName);
-                tree.insert((Comparable) record.get(colName), pageNo);
+                tree.insert((Comparable) record.get(colName), indexValue(tree, table, page, pageNo, recordNo));
             }
         }
     }
 
     /**
      * This method deletes the indexes of a given table.
-     * It first retrieves the metadata for the table and gets the index columns.
-     * It then loads the table and retrieves the record at the specified page number and record number.
-     * It iterates over the index columns and checks if the index type is "B+tree".
+     * It first retrieves the indexes of the table from the catalog.
+     * It then retrieves the record at the specified page number and record number from the table.
+     * It iterates over the indexes and checks if the index type is "B+tree".
      * If the index type is "B+tree", it loads the index and deletes the value of the column in the record from the index.
-     * The page number is used as the key for the index.
+     * The page id is used as the value of the key, or the RecordId of the record in a record index.
      *
-     * @param tableName The name of the table.
-     * @param pageNo    The page number of the record.
-     * @param recordNo  The record number within the page.
-     * @throws DBAppException If an error occurs while loading the table or the index.
+     * @param table    The table.
+     * @param pageNo   The index of the page of the record in the table.
+     * @param recordNo The record number within the page.
+     * @throws DBAppException If an error occurs while loading the index.
      */
-    public static void deleteIndexes(String tableName, int pageNo, int recordNo) throws DBAppException {
-        Hashtable<String, Hashtable<String, String[]>> metadata = Util.getMetadata(tableName);
-        LinkedList<String> indexColumns = Util.getIndexColumns(metadata, tableName);
-        Table<Object> table = Table.loadTable(tableName);
-        Hashtable<String, Object> record = table.getPage(pageNo).getRecords().get(recordNo).hashtable();
-
-        for (String colName : indexColumns) {
-            String indexName = metadata.get(tableName).get(colName)[2];
-            String indexType = metadata.get(tableName).get(colName)[3];
-            if (indexType.equals("B+tree")) {
+    public static void deleteIndexes(Table<?> table, int pageNo, int recordNo) throws DBAppException {
+        String tableName = table.getTableName();
+        List<Metadata.Index> indexes = Metadata.getInstance().requireTable(tableName).getIndexes();
+        Page page = table.getPage(pageNo);
+        Hashtable<String, Object> record = page.getRecords().get(recordNo).hashtable();
+
+        for (Metadata.Index index : indexes) {
+            String colName = index.columnName();
+            String indexName = index.name();
+            if (index.type().equals("B+tree")) {
                 if (record.get(colName) == null) continue;
                 DBBTree tree = DBBTree.loadIndex(tableName, indexName);
-                tree.delete((Comparable) record.get(colName), pageNo);
+                tree.delete((Comparable) record.get(colName), indexValue(tree, table, page, pageNo, recordNo));
             }
         }
     }
 
+    /**
+     * @return The value of a record in an index, the id of its page, or the RecordId of the record in a record index.
+     */
+    private static int indexValue(DBBTree tree, Table<?> table, Page page, int pageNo, int recordNo) {
+        int pageId = table.getPageId(pageNo);
+        return tree.isRecordIndex() ? RecordId.of(pageId, page.getSlot(recordNo)) : pageId;
+    }
+
     /**
      * This method recreates the indexes of a given table.
-     * It first retrieves the metadata for the table and gets the index columns.
-     * It then iterates over the index columns. For each column, it checks if the index type is "B+tree".
+     * It first retrieves the indexes of the table from the catalog.
+     * It then iterates over the indexes. For each index, it checks if the index type is "B+tree".
      * If the index type is "B+tree", it calls the createIndex method of the DBApp instance to create the index.
-     * The table name, column name, and index name are passed as parameters to the createIndex method.
+     * The table name, column name, and index name are passed as parameters to the createIndex method, a record
+     * index is created again as a record index.
      *
      * @param tableName The name of the table.
      * @param dbApp     The DBApp instance.
      * @throws DBAppException If an error occurs while creating the index.
      */
     public static void recreateIndexes(String tableName, DBApp dbApp) throws DBAppException {
-        Hashtable<String, Hashtable<String, String[]>> metadata = Util.getMetadata(tableName);
-        LinkedList<String> indexColumns = Util.getIndexColumns(metadata, tableName);
-
-        for (String colName : indexColumns) {
-            String indexName = metadata.get(tableName).get(colName)[2];
-            String indexType = metadata.get(tableName).get(colName)[3];
-            if (indexType.equals("B+tree")) {
-                dbApp.createIndex(tableName, colName, indexName);
+        List<Metadata.Index> indexes = Metadata.getInstance().requireTable(tableName).getIndexes();
+
+        for (Metadata.Index index : indexes) {
+            String colName = index.columnName();
+            String indexName = index.name();
+            if (index.type().equals("B+tree")) {
+                dbApp.createIndex(tableName, colName, indexName, index.isRecordIndex());
             }
         }
     }
+
+    /**
+     * This method completes the catalog of a metadata file written before the kind of the indexes was kept.
+     * The kind of such an index is read from its file, and written to the metadata file.
+     *
+     * @throws RuntimeException If the catalog can't be updated.
+     */
+    public static void completeIndexEntries() {
+        Metadata metadata = Metadata.getInstance();
+        try {
+            for (String tableName : metadata.getTableNames()) {
+                for (Metadata.Index index : metadata.requireTable(tableName).getIndexes()) {
+                    if (index.entries() == null) {
+                        metadata.addIndex(tableName, index.columnName(), index.name(), index.type(),
+                                Metadata.Index.entriesOf(isRecordIndex(tableName, index.name())));
+                    }
+                }
+            }
+        } catch (DBAppException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @return True if an index is a record index, an index whose file was lost gets the kind of the configuration.
+     */
+    private static boolean isRecordIndex(String tableName, String indexName) {
+        try {
+            return DBBTree.loadIndex(tableName, indexName).isRecordIndex();
+        } catch (DBAppException e) {
+            return DBBTree.recordIdsFromConfig();
+        }
+    }
 }
@@ -0,0 +1,870 @@
+package DB;
+
+import BTree.IndexCache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32C;
+
+/**
+ * This class is an append-only write-ahead log shared by all the tables, stored in the wal.log file of the data folder.
+ * Every DBApp statement that modifies a table appends exactly one log record at its end, holding the after-image of
+ * every page it modified, the names of the page files it removed, and the serialized header of every table it changed.
+ * A record is framed as its length and a CRC32C checksum, so a record torn by a crash is detected and ignored, and a
+ * statement is either entirely in the log or not at all.
+ * <p>
+ * Indexes are not logged, recovery builds again the indexes of the tables named by the log instead. A record also names
+ * the tables whose indexes its statement changed, and an index holding changes of a running statement is only written
+ * after a record naming its table is durable, so the indexes of the tables missing from the log match their tables.
+ * <p>
+ * Pages modified by a statement stay pinned in the buffer pool until its record is appended, so they never reach their
+ * files before the log does. When the pool writes a page later, it first makes sure the log is durable up to the page.
+ * The through WriteMode is the exception: it writes every change to its file right away, so a crash in the middle of
+ * a statement may leave part of it in the files, and only the statements that committed are redone.
+ * <p>
+ * The LogSync property of the configuration decides when a committing statement waits for the disk:
+ * <ul>
+ *     <li>commit: every statement waits until its record is forced to disk. Statements committing at the same time
+ *     share one fsync (group commit): the first one writes and forces everything appended so far, the others wait.</li>
+ *     <li>interval: statements return as soon as their record is appended, a writer thread forces the log every
+ *     LogSyncInterval milliseconds, so a crash loses at most the last interval.</li>
+ *     <li>os: records are handed to the operating system at commit without forcing, a crash of the process loses
+ *     nothing but a crash of the machine may.</li>
+ * </ul>
+ * <p>
+ * The file starts with a header holding the log sequence number of its first record. A log sequence number is the
+ * offset of a byte in the log as if it was never truncated. A checkpoint writes the dirty pages and drops the prefix of
+ * the log that is no longer needed. It is taken whenever the log grows past CheckpointLogBytes, so the work done by
+ * recovery stays bounded however long the database runs. Checkpoints are fuzzy: statements keep running while the
+ * pages are written, only the ones committing at the moment the checkpoint starts are waited for.
+ *
+ * @author ahmedgado
+ */
+public class WriteAheadLog {
+    public static final String FILE_NAME = "wal.log";
+
+    static final int MAGIC = 0x44425741; // "DBWA"
+    static final int HEADER_SIZE = 12;
+
+    static final byte PAGE = 1;
+    static final byte DROP_PAGE = 2;
+    static final byte TABLE = 3;
+    static final byte INDEX = 4;
+
+    private static WriteAheadLog instance;
+
+    private final Path path;
+    private final SyncMode syncMode;
+    private final ThreadLocal<Statement> statements = ThreadLocal.withInitial(Statement::new);
+    private final ArrayList<ByteBuffer> buffered = new ArrayList<>();
+    private final ReentrantReadWriteLock commitLock = new ReentrantReadWriteLock();
+    private final Set<String> unsynced = ConcurrentHashMap.newKeySet();
+    private final ConcurrentHashMap<String, Integer> openIndexes = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Long> markedIndexes = new ConcurrentHashMap<>();
+    private FileChannel channel;
+    private Thread syncer;
+    private long baseLsn;
+    private long appendedLsn;
+    private long writtenLsn;
+    private long durableLsn;
+    private boolean flushing;
+    private boolean closed;
+    private long syncs;
+    private long checkpoints;
+    private int recordsReplayed;
+
+    /**
+     * The policies for forcing the log to disk.
+     */
+    public enum SyncMode {
+        COMMIT, INTERVAL, OS
+    }
+
+    /**
+     * The changes made by the running statement of a thread.
+     */
+    private static class Statement {
+        private final LinkedHashMap<String, Page> pages = new LinkedHashMap<>();
+        private final LinkedHashMap<String, String> droppedPages = new LinkedHashMap<>();
+        private final LinkedHashMap<String, Table<?>> tables = new LinkedHashMap<>();
+        private final LinkedHashSet<String> indexes = new LinkedHashSet<>();
+        // the pages as they were before the statement, null for the pages whose files held them
+        private final LinkedHashMap<String, Page> originals = new LinkedHashMap<>();
+        private final LinkedHashSet<String> changedTables = new LinkedHashSet<>();
+
+        private boolean isEmpty() {
+            return pages.isEmpty() && droppedPages.isEmpty() && tables.isEmpty() && indexes.isEmpty();
+        }
+    }
+
+    /**
+     * What the recovery did at startup.
+     *
+     * @param durationMillis  The time the recovery took, including rebuilding the indexes.
+     * @param recordsReplayed The number of log records replayed.
+     * @param tablesRecovered The names of the tables named by the log, whose files were rewritten and whose indexes
+     *                        were built again.
+     */
+    public record RecoveryStats(long durationMillis, int recordsReplayed, Set<String> tablesRecovered) {
+    }
+
+    /**
+     * Constructor for the WriteAheadLog class, it opens the log file and appends to its end.
+     * A new log file starts at log sequence number 0.
+     *
+     * @param path     The path of the log file.
+     * @param syncMode The policy for forcing the log to disk.
+     */
+    public WriteAheadLog(Path path, SyncMode syncMode) {
+        this.path = path;
+        this.syncMode = syncMode;
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            if (channel.size() < HEADER_SIZE) {
+                channel.truncate(0);
+                channel.write(header(0), 0);
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            channel.read(header, 0);
+            if (header.flip().getInt() != MAGIC) {
+                throw new RuntimeException("Not a log file " + path);
+            }
+            baseLsn = header.getLong();
+            appendedLsn = writtenLsn = durableLsn = baseLsn + channel.size() - HEADER_SIZE;
+            channel.position(channel.size());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Opens the shared log from the DataPath, LogSync and LogSyncInterval properties of the configuration.
+     * The previous log, if any, is closed first.
+     */
+    public static synchronized void init() {
+        if (instance != null) {
+            instance.close();
+        }
+
+        SyncMode syncMode = SyncMode.valueOf(
+                DBApp.getDbConfig().getProperty("LogSync", "commit").trim().toUpperCase(Locale.ROOT));
+        instance = new WriteAheadLog(getPath(), syncMode);
+
+        if (syncMode == SyncMode.INTERVAL) {
+            instance.startSyncer(Long.parseLong(DBApp.getDbConfig().getProperty("LogSyncInterval", "10")));
+        }
+    }
+
+    /**
+     * @return The shared log.
+     * @throws RuntimeException If the log was not initialized.
+     */
+    public static synchronized WriteAheadLog getInstance() {
+        if (instance == null) {
+            throw new RuntimeException("WriteAheadLog not initialized");
+        }
+
+        return instance;
+    }
+
+    /**
+     * @return The absolute path of the log file in the data folder.
+     */
+    public static Path getPath() {
+        return Paths.get(DBApp.getDbConfig().getProperty("DataPath"), FILE_NAME).toAbsolutePath();
+    }
+
+    /**
+     * Records that the running statement modifies a page, its after-image is logged when the statement commits.
+     * The page is pinned in the buffer pool until then. When its file doesn't hold the page as it is, the page is
+     * copied first, so that abort can give it back.
+     *
+     * @param page The page, not modified yet by the statement.
+     */
+    public void pageChanged(Page page) {
+        String pagePath = page.getPath().toString();
+        Statement statement = statements.get();
+        if (!statement.pages.containsKey(pagePath)) {
+            BufferPool pool = BufferPool.getInstance();
+            if (!statement.originals.containsKey(pagePath)) {
+                boolean unwritten = pool.getWriteMode() == BufferPool.WriteMode.THROUGH || pool.isDirty(pagePath);
+                statement.originals.put(pagePath, unwritten ? page.copy() : null);
+                statement.changedTables.add(page.getTableName());
+            }
+            pool.pin(page.getTableName(), pagePath);
+            statement.pages.put(pagePath, page);
+        }
+        statement.droppedPages.remove(pagePath);
+    }
+
+    /**
+     * Records that the running statement removed a page, its file is deleted when the statement commits.
+     * The page must already be discarded from the buffer pool, which also dropped its pin.
+     *
+     * @param tableName The name of the table that owned the page.
+     * @param pagePath  The path of the page file.
+     */
+    public void pageRemoved(String tableName, String pagePath) {
+        Statement statement = statements.get();
+        statement.pages.remove(pagePath);
+        statement.droppedPages.put(pagePath, tableName);
+    }
+
+    /**
+     * Records that the running statement modified the header of a table, it is serialized when the statement commits.
+     *
+     * @param table The modified table.
+     */
+    public void tableChanged(Table<?> table) {
+        Statement statement = statements.get();
+        statement.tables.put(table.getTableName(), table);
+        statement.changedTables.add(table.getTableName());
+    }
+
+    /**
+     * Records that the running statement modified an index of a table, the table is named by its record.
+     *
+     * @param tableName The name of the table.
+     */
+    public void indexChanged(String tableName) {
+        Statement statement = statements.get();
+        if (statement.indexes.add(tableName)) {
+            openIndexes.merge(tableName, 1, Integer::sum);
+        }
+        statement.changedTables.add(tableName);
+    }
+
+    /**
+     * This method is called before an index file of a table is written.
+     * When a running statement changed an index of the table, the file may receive changes that never commit, so a
+     * record naming the table is made durable first, once per table between two checkpoints.
+     *
+     * @param tableName The name of the table.
+     */
+    public void indexWritten(String tableName) {
+        if (!openIndexes.containsKey(tableName)) {
+            return;
+        }
+
+        Long lsn = markedIndexes.get(tableName);
+        if (lsn == null) {
+            commitLock.readLock().lock();
+            try {
+                lsn = markedIndexes.computeIfAbsent(tableName, this::mark);
+            } finally {
+                commitLock.readLock().unlock();
+            }
+        }
+        flushTo(lsn);
+    }
+
+    /**
+     * Appends a record that only names a table whose indexes must be built again by recovery.
+     *
+     * @return The log sequence number at the end of the record.
+     */
+    private long mark(String tableName) {
+        Statement marker = new Statement();
+        marker.indexes.add(tableName);
+
+        return append(encode(marker));
+    }
+
+    /**
+     * Records that a data file was written without being forced to disk, the next checkpoint forces it.
+     *
+     * @param file The path of the file.
+     */
+    public void fileWritten(Path file) {
+        unsynced.add(file.toAbsolutePath().toString());
+    }
+
+    /**
+     * Appends the record of the running statement of this thread and releases its pages.
+     * Depending on the sync mode, it then waits until the record is on disk.
+     * Finally, the headers of the changed tables are saved and the files of the removed pages are deleted,
+     * both after the log so that a table file never refers to a page that can't be recovered.
+     *
+     * @return The log sequence number at the end of the record, or 0 if the statement changed nothing.
+     */
+    public long commit() {
+        Statement statement = statements.get();
+        if (statement.isEmpty()) {
+            return 0;
+        }
+        statements.remove();
+
+        // a checkpoint must not start between the append and the table writes below
+        commitLock.readLock().lock();
+        try {
+            ByteBuffer record = encode(statement);
+            long lsn;
+            try {
+                lsn = append(record);
+                long start = lsn - record.limit();
+                for (Page page : statement.pages.values()) {
+                    page.setLsn(lsn);
+                    if (page.getRecLsn() == 0) {
+                        page.setRecLsn(start);
+                    }
+                }
+            } finally {
+                BufferPool pool = BufferPool.getInstance();
+                for (Page page : statement.pages.values()) {
+                    pool.unpin(page, false);
+                }
+                for (String tableName : statement.indexes) {
+                    openIndexes.computeIfPresent(tableName, (name, count) -> count == 1 ? null : count - 1);
+                }
+            }
+
+            if (syncMode == SyncMode.COMMIT || !statement.tables.isEmpty()) {
+                flushTo(lsn);
+            } else if (syncMode == SyncMode.OS) {
+                write(lsn);
+            }
+
+            for (Table<?> table : statement.tables.values()) {
+                table.flush();
+            }
+            for (String pagePath : statement.droppedPages.keySet()) {
+                Files.deleteIfExists(Paths.get(pagePath));
+            }
+
+            return lsn;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            commitLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Drops the changes of the running statement of this thread, which failed before it committed, nothing is logged.
+     * The pages it changed are dropped from the buffer pool, with their pins, so they are read again from their files.
+     * The pages whose files didn't hold them are given back as they were before the statement instead, still dirty.
+     * The headers and the indexes of the changed tables can't be given back, the caller must load them again.
+     *
+     * @return The names of the tables changed by the statement.
+     */
+    public LinkedHashSet<String> abort() {
+        Statement statement = statements.get();
+        statements.remove();
+        if (statement == null) {
+            return new LinkedHashSet<>();
+        }
+
+        BufferPool pool = BufferPool.getInstance();
+        for (var original : statement.originals.entrySet()) {
+            pool.discard(original.getKey());
+            if (original.getValue() != null) {
+                pool.markDirty(original.getValue());
+            }
+        }
+        for (String tableName : statement.indexes) {
+            openIndexes.computeIfPresent(tableName, (name, count) -> count == 1 ? null : count - 1);
+        }
+
+        return statement.changedTables;
+    }
+
+    /**
+     * Makes the log durable up to a log sequence number, as far as the sync mode allows.
+     * This method is called before a page is written to its file.
+     *
+     * @param lsn The log sequence number.
+     */
+    public void flushTo(long lsn) {
+        if (syncMode == SyncMode.OS) {
+            write(lsn);
+        } else {
+            force(lsn);
+        }
+    }
+
+    /**
+     * This method tells whether flushTo already made the log durable up to a log sequence number, as far as the sync
+     * mode allows. It doesn't wait, so the buffer pool can call it under its lock.
+     *
+     * @param lsn The log sequence number.
+     * @return True if a page changed up to the log sequence number may be written to its file.
+     */
+    public synchronized boolean isFlushed(long lsn) {
+        long reached = syncMode == SyncMode.OS ? writtenLsn : durableLsn;
+        return reached >= Math.min(lsn, appendedLsn);
+    }
+
+    /**
+     * @return True if the log grew past CheckpointLogBytes since its last truncation.
+     */
+    public synchronized boolean needsCheckpoint() {
+        long limit = Long.parseLong(DBApp.getDbConfig().getProperty("CheckpointLogBytes", "16777216"));
+        return appendedLsn - baseLsn >= limit;
+    }
+
+    /**
+     * Takes a fuzzy checkpoint:
+     * 1. Waits for the statements that are committing, and takes the end of the log as the checkpoint start. The tables
+     * whose indexes hold changes of running statements are named again after the start, since the records naming them
+     * are dropped.
+     * 2. Forces the log up to the start, then writes every dirty page of the buffer pool and every dirty index.
+     * 3. Forces every data file written since the previous checkpoint.
+     * 4. Drops the log before the oldest change that is still not on disk. That is the start, unless a page
+     * could not be written because a running statement has it pinned.
+     */
+    public void checkpoint() {
+        long start;
+        commitLock.writeLock().lock();
+        try {
+            start = getAppendedLsn();
+            markedIndexes.clear();
+            for (String tableName : openIndexes.keySet()) {
+                markedIndexes.put(tableName, mark(tableName));
+            }
+        } finally {
+            commitLock.writeLock().unlock();
+        }
+
+        flushTo(getAppendedLsn());
+        BufferPool pool = BufferPool.getInstance();
+        pool.flushAll();
+        // the indexes are not logged, the records after the start name the tables whose indexes recovery rebuilds
+        IndexCache.getInstance().flushAll();
+        long redoLsn = Math.min(start, pool.getMinRecLsn());
+
+        syncFiles();
+        truncate(redoLsn);
+    }
+
+    /**
+     * Replays the log into the data files, it is called once at startup before any page is read.
+     * Every complete record is redone in order: page and table images are written to their files and removed pages are
+     * deleted, which gives the same files whether the changes already reached them or not.
+     * The log is cut at the first torn or corrupted record, which is the end of the last statement before a crash.
+     *
+     * @return The names of the tables named by the log, in replay order. Their files were rewritten, and their indexes
+     * must be built again.
+     */
+    public LinkedHashSet<String> recover() {
+        LinkedHashSet<String> tables = new LinkedHashSet<>();
+        synchronized (this) {
+            long offset = HEADER_SIZE;
+            try {
+                ByteBuffer frame = ByteBuffer.allocate(2 * Integer.BYTES);
+                while (channel.read(frame.clear(), offset) == frame.capacity()) {
+                    int length = frame.flip().getInt();
+                    int checksum = frame.getInt();
+                    if (length < 0 || offset + frame.capacity() + length > channel.size()) {
+                        break;
+                    }
+
+                    ByteBuffer body = ByteBuffer.allocate(length);
+                    channel.read(body, offset + frame.capacity());
+                    CRC32C crc = new CRC32C();
+                    crc.update(body.array());
+                    if ((int) crc.getValue() != checksum) {
+                        break;
+                    }
+
+                    redo(body.array(), tables);
+                    offset += frame.capacity() + length;
+                    recordsReplayed++;
+                }
+
+                // drop the torn tail, new records are appended after the last complete one
+                channel.truncate(offset);
+                channel.position(offset);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            appendedLsn = writtenLsn = durableLsn = baseLsn + offset - HEADER_SIZE;
+        }
+
+        for (String tableName : tables) {
+            BufferPool.getInstance().invalidate(tableName);
+        }
+
+        return tables;
+    }
+
+    /**
+     * Stops the sync thread, if any, forces the whole log to disk and closes it.
+     * When the buffer pool has no dirty page left, which is the case after it was closed, the log is emptied
+     * as well, so that the next startup has nothing to recover.
+     */
+    public void close() {
+        Thread thread;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            thread = syncer;
+            syncer = null;
+        }
+
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        force(Long.MAX_VALUE);
+        syncFiles();
+        truncate(Math.min(getAppendedLsn(), BufferPool.getInstance().getMinRecLsn()));
+        synchronized (this) {
+            closed = true;
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    /**
+     * @return The policy for forcing the log to disk.
+     */
+    public SyncMode getSyncMode() {
+        return syncMode;
+    }
+
+    /**
+     * @return The log sequence number of the first record kept in the log file.
+     */
+    public synchronized long getBaseLsn() {
+        return baseLsn;
+    }
+
+    /**
+     * @return The log sequence number at the end of the last appended record.
+     */
+    public synchronized long getAppendedLsn() {
+        return appendedLsn;
+    }
+
+    /**
+     * @return The log sequence number up to which the log was forced to disk.
+     */
+    public synchronized long getDurableLsn() {
+        return durableLsn;
+    }
+
+    /**
+     * @return The number of times the log was forced to disk.
+     */
+    public synchronized long getSyncs() {
+        return syncs;
+    }
+
+    /**
+     * @return The number of times the log was truncated.
+     */
+    public synchronized long getCheckpoints() {
+        return checkpoints;
+    }
+
+    /**
+     * @return The number of records replayed by recover.
+     */
+    public synchronized int getRecordsReplayed() {
+        return recordsReplayed;
+    }
+
+    private synchronized long append(ByteBuffer record) {
+        if (closed) {
+            throw new IllegalStateException("WriteAheadLog is closed");
+        }
+        buffered.add(record);
+        appendedLsn += record.remaining();
+
+        return appendedLsn;
+    }
+
+    private void write(long lsn) {
+        sync(lsn, false);
+    }
+
+    private void force(long lsn) {
+        sync(lsn, true);
+    }
+
+    /**
+     * Makes the log written, or durable, up to a log sequence number.
+     * Only one thread at a time writes: the leader takes every buffered record, writes it and optionally forces the
+     * file outside the lock, while the other threads wait for it and find their own record already covered.
+     */
+    private void sync(long lsn, boolean durable) {
+        ArrayList<ByteBuffer> records;
+        long target;
+        synchronized (this) {
+            while (true) {
+                long reached = durable ? durableLsn : writtenLsn;
+                if (reached >= Math.min(lsn, appendedLsn)) {
+                    return;
+                }
+                if (!flushing) {
+                    break;
+                }
+                awaitLeader();
+            }
+
+            flushing = true;
+            records = new ArrayList<>(buffered);
+            buffered.clear();
+            target = appendedLsn;
+        }
+
+        boolean forced = false;
+        try {
+            writeRecords(records);
+            if (durable) {
+                channel.force(false);
+                forced = true;
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            synchronized (this) {
+                flushing = false;
+                writtenLsn = target;
+                if (forced) {
+                    durableLsn = target;
+                    syncs++;
+                }
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Drops the log before a log sequence number.
+     * The kept suffix is copied to a new file that replaces the log atomically, so a crash in the middle leaves
+     * either the old log or the new one. The caller must make sure the dropped changes are in the data files.
+     */
+    private void truncate(long redoLsn) {
+        ArrayList<ByteBuffer> records;
+        long target;
+        synchronized (this) {
+            if (closed || redoLsn <= baseLsn) {
+                return;
+            }
+            while (flushing) {
+                awaitLeader();
+            }
+
+            flushing = true;
+            records = new ArrayList<>(buffered);
+            buffered.clear();
+            target = appendedLsn;
+        }
+
+        boolean truncated = false;
+        try {
+            writeRecords(records);
+
+            Path tmp = path.resolveSibling(FILE_NAME + ".tmp");
+            try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                out.write(header(redoLsn));
+                long from = HEADER_SIZE + redoLsn - baseLsn;
+                long to = HEADER_SIZE + target - baseLsn;
+                while (from < to) {
+                    from += channel.transferTo(from, to - from, out);
+                }
+                out.force(true);
+            }
+
+            channel.close();
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            channel.position(channel.size());
+            truncated = true;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            synchronized (this) {
+                flushing = false;
+                writtenLsn = target;
+                if (truncated) {
+                    baseLsn = redoLsn;
+                    durableLsn = target;
+                    checkpoints++;
+                }
+                notifyAll();
+            }
+        }
+    }
+
+    private void writeRecords(ArrayList<ByteBuffer> records) throws IOException {
+        for (ByteBuffer record : records) {
+            while (record.hasRemaining()) {
+                channel.write(record);
+            }
+        }
+    }
+
+    private void awaitLeader() {
+        try {
+            wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Forces every data file written since the previous call.
+     */
+    private void syncFiles() {
+        for (String file : new ArrayList<>(unsynced)) {
+            unsynced.remove(file);
+            try (FileChannel out = FileChannel.open(Paths.get(file), StandardOpenOption.WRITE)) {
+                out.force(true);
+            } catch (NoSuchFileException e) {
+                // the file was deleted after it was written
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    private synchronized void startSyncer(long interval) {
+        syncer = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    Thread.sleep(interval);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                force(Long.MAX_VALUE);
+            }
+        }, "WriteAheadLog-sync");
+        syncer.setDaemon(true);
+        syncer.start();
+    }
+
+    private static ByteBuffer header(long baseLsn) {
+        return ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putLong(baseLsn).flip();
+    }
+
+    /**
+     * Redoes the entries of one record.
+     * Entries of a table whose folder no longer exists are skipped.
+     */
+    private void redo(byte[] body, LinkedHashSet<String> tables) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+        int entries = in.readInt();
+        for (int i = 0; i < entries; i++) {
+            byte type = in.readByte();
+            String tableName = in.readUTF();
+            String fileName = in.readUTF();
+            byte[] image = null;
+            if (type == PAGE || type == TABLE) {
+                image = new byte[in.readInt()];
+                in.readFully(image);
+            }
+
+            File tableFolder = Paths.get(DBApp.getDbConfig().getProperty("DataPath"), tableName).toFile();
+            if (!tableFolder.isDirectory()) {
+                continue;
+            }
+            Path file = tableFolder.toPath().resolve(fileName).toAbsolutePath();
+            switch (type) {
+                case PAGE, TABLE -> {
+                    Files.write(file, image);
+                    fileWritten(file);
+                }
+                case DROP_PAGE -> Files.deleteIfExists(file);
+                case INDEX -> {
+                    // nothing to redo, the indexes of the table are built again
+                }
+                default -> throw new RuntimeException("Invalid log entry type " + type);
+            }
+            tables.add(tableName);
+        }
+    }
+
+    /**
+     * Encodes the changes of a statement as one framed log record:
+     * length (int), CRC32C of the body (int), then the body: entry count (int) and the entries.
+     * Each entry is a type byte, the table name and the page file name, followed by the bytes of the page or table.
+     * The entry of a table whose indexes changed has an empty file name and no bytes.
+     */
+    private static ByteBuffer encode(Statement statement) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(statement.pages.size() + statement.droppedPages.size() + statement.tables.size()
+                    + statement.indexes.size());
+            for (Page page : statement.pages.values()) {
+                ByteBuffer image = PageFormat.encode(page);
+                writeEntry(out, PAGE, page.getTableName(), page.getPath().getFileName().toString());
+                out.writeInt(image.remaining());
+                out.write(image.array(), image.position(), image.remaining());
+            }
+            for (var dropped : statement.droppedPages.entrySet()) {
+                writeEntry(out, DROP_PAGE, dropped.getValue(), Paths.get(dropped.getKey()).getFileName().toString());
+            }
+            for (Table<?> table : statement.tables.values()) {
+                byte[] image = serialize(table);
+                writeEntry(out, TABLE, table.getTableName(), table.getTableName() + ".ser");
+                out.writeInt(image.length);
+                out.write(image);
+            }
+            for (String tableName : statement.indexes) {
+                writeEntry(out, INDEX, tableName, "");
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        byte[] body = bytes.toByteArray();
+        CRC32C crc = new CRC32C();
+        crc.update(body);
+
+        ByteBuffer record = ByteBuffer.allocate(2 * Integer.BYTES + body.length);
+        record.putInt(body.length).putInt((int) crc.getValue()).put(body);
+
+        return record.flip();
+    }
+
+    private static void writeEntry(DataOutputStream out, byte type, String tableName, String fileName) throws IOException {
+        out.writeByte(type);
+        out.writeUTF(tableName);
+        out.writeUTF(fileName);
+    }
+
+    private static byte[] serialize(Table<?> table) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(table);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        return bytes.toByteArray();
+    }
+}
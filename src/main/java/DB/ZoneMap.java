@@ -0,0 +1,130 @@
+package DB;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This class is the zone map of a page: the minimum and maximum values of every column of its records. It is kept in
+ * the table, so a select can rule out a page without reading it.
+ * Adding or changing a record only widens the bounds, and removing records leaves them as they are, so the bounds may
+ * exceed the values of the page, which is still safe for skipping it. The zone map is
+ * computed again from the page when the page is split.
+ *
+ * @author ahmedgado
+ */
+public class ZoneMap implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 5372045962017461934L;
+
+    private final HashMap<String, Zone> zones;
+
+    /**
+     * Constructor for the ZoneMap class, the zone map of an empty page.
+     */
+    public ZoneMap() {
+        zones = new HashMap<>();
+    }
+
+    /**
+     * Constructor for the ZoneMap class, the zone map of the given records.
+     *
+     * @param records The records of a page.
+     */
+    public ZoneMap(Collection<Record> records) {
+        this();
+        for (Record record : records) {
+            add(record);
+        }
+    }
+
+    /**
+     * Widens the bounds of the columns to include the values of a record, its null values are skipped.
+     *
+     * @param record The record added to the page.
+     * @return True if the zone map changed.
+     */
+    public boolean add(Record record) {
+        boolean changed = false;
+        for (Map.Entry<String, Object> entry : record.hashtable().entrySet()) {
+            if (!(entry.getValue() instanceof Comparable<?> value)) {
+                continue;
+            }
+
+            Zone zone = zones.get(entry.getKey());
+            if (zone == null) {
+                zones.put(entry.getKey(), new Zone(value));
+                changed = true;
+            } else {
+                changed |= zone.widen(value);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * @param column The name of a column.
+     * @return The minimum value of the column, or null if the page holds no value of the column.
+     */
+    public Comparable<?> getMin(String column) {
+        Zone zone = zones.get(column);
+        return zone == null ? null : zone.min;
+    }
+
+    /**
+     * @param column The name of a column.
+     * @return The maximum value of the column, or null if the page holds no value of the column.
+     */
+    public Comparable<?> getMax(String column) {
+        Zone zone = zones.get(column);
+        return zone == null ? null : zone.max;
+    }
+
+    /**
+     * @return True if no record was added to the zone map.
+     */
+    public boolean isEmpty() {
+        return zones.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return zones.toString();
+    }
+
+    /**
+     * The bounds of one column.
+     */
+    private static final class Zone implements Serializable {
+        @Serial
+        private static final long serialVersionUID = -2519403868152407716L;
+
+        private Comparable<Object> min;
+        private Comparable<Object> max;
+
+        private Zone(Comparable<?> value) {
+            this.min = (Comparable<Object>) value;
+            this.max = (Comparable<Object>) value;
+        }
+
+        private boolean widen(Comparable<?> value) {
+            if (min.compareTo(value) > 0) {
+                min = (Comparable<Object>) value;
+                return true;
+            }
+            if (max.compareTo(value) < 0) {
+                max = (Comparable<Object>) value;
+                return true;
+            }
+
+            return false;
+        }
+
+        @Override
+        public String toString() {
+            return "[" + min + ", " + max + "]";
+        }
+    }
+}
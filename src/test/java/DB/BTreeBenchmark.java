@@ -0,0 +1,77 @@
+package DB;
+
+import BTree.BTree;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the lookup and insert throughput of the B+ tree at several orders, with boxed and primitive int keys.
+ * JMH forks a JVM for each run, so it must be started on a real test classpath:
+ * <pre>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=cp.txt -Dmdep.includeScope=test
+ * java -cp target/test-classes:target/classes:$(cat cp.txt) org.openjdk.jmh.Main BTreeBenchmark
+ * </pre>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BTreeBenchmark {
+    private static final int KEYS = 100_000;
+
+    @Param({"4", "64", "256"})
+    public int order;
+
+    @Param({"false", "true"})
+    public boolean primitive;
+
+    private BTree<Integer, Integer> tree;
+    private int[] keys;
+    private int next;
+
+    @Setup
+    public void setup() {
+        keys = new int[KEYS];
+        Random random = new Random(42);
+        for (int i = 0; i < KEYS; i++) {
+            keys[i] = random.nextInt();
+        }
+
+        tree = newTree();
+        for (int key : keys) {
+            tree.insert(key, key);
+        }
+    }
+
+    @Benchmark
+    public Integer lookup() {
+        next = (next + 1) % KEYS;
+        return tree.search(keys[next]);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(KEYS)
+    public BTree<Integer, Integer> insert() {
+        BTree<Integer, Integer> fresh = newTree();
+        for (int key : keys) {
+            fresh.insert(key, key);
+        }
+
+        return fresh;
+    }
+
+    private BTree<Integer, Integer> newTree() {
+        return primitive ? new BTree<>(order, Integer.class) : new BTree<>(order);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(BTreeBenchmark.class.getSimpleName()).build()).run();
+    }
+}
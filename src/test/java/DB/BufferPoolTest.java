@@ -0,0 +1,266 @@
+package DB;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BufferPoolTest {
+
+    @Test
+    void testClockEvictionAndPinning() {
+        try {
+            String strTableName = "TestBufferPool";
+            DBApp dbApp = new DBApp();
+            DBApp.getDbConfig().put("MaximumRowsCountinPage", "1");
+
+            Hashtable<String, String> htblColNameType = new Hashtable<>();
+            htblColNameType.put("id", "java.lang.Integer");
+            dbApp.createTable(strTableName, "id", htblColNameType);
+
+            for (int i = 0; i < 4; i++) {
+                Hashtable<String, Object> values = new Hashtable<>();
+                values.put("id", i);
+                dbApp.insertIntoTable(strTableName, values);
+            }
+
+            Table<Object> table = Table.loadTable(strTableName);
+            BufferPool pool = new BufferPool(2);
+            String path0 = table.getPagesPath().get(0);
+
+            Page pinned = pool.pin(strTableName, path0);
+            assertSame(pinned, pool.fetch(strTableName, path0));
+            assertEquals(1, pool.getMisses());
+            assertEquals(1, pool.getHits());
+
+            // the pinned page survives while the other pages cycle through the remaining frame
+            for (int i = 1; i < 4; i++) {
+                pool.fetch(strTableName, table.getPagesPath().get(i));
+                assertTrue(pool.contains(path0));
+                assertEquals(2, pool.size());
+            }
+
+            pool.unpin(pinned, false);
+            pool.fetch(strTableName, table.getPagesPath().get(1));
+            pool.fetch(strTableName, table.getPagesPath().get(2));
+            assertFalse(pool.contains(path0));
+            assertThrows(IllegalStateException.class, () -> pool.unpin(pinned, false));
+        } catch (DBAppException e) {
+            e.printStackTrace();
+            fail("DBAppException thrown");
+        }
+    }
+
+    @Test
+    void testConcurrentFetch() throws Exception {
+        String strTableName = "TestConcurrentFetch";
+        DBApp dbApp = new DBApp();
+        DBApp.getDbConfig().put("MaximumRowsCountinPage", "1");
+
+        Hashtable<String, String> htblColNameType = new Hashtable<>();
+        htblColNameType.put("id", "java.lang.Integer");
+        dbApp.createTable(strTableName, "id", htblColNameType);
+        for (int i = 0; i < 8; i++) {
+            Hashtable<String, Object> values = new Hashtable<>();
+            values.put("id", i);
+            dbApp.insertIntoTable(strTableName, values);
+        }
+
+        // threads missing the same pages share one read of each page
+        Table<Object> table = Table.loadTable(strTableName);
+        BufferPool pool = new BufferPool(8);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Page>> pages = new ArrayList<>();
+            for (int i = 0; i < 32; i++) {
+                String path = table.getPagesPath().get(i % 8);
+                pages.add(executor.submit(() -> pool.fetch(strTableName, path)));
+            }
+            for (int i = 0; i < 32; i++) {
+                assertSame(pages.get(i % 8).get(), pages.get(i).get());
+                assertEquals(i % 8, pages.get(i).get().getRecords().getFirst().hashtable().get("id"));
+            }
+            assertEquals(8, pool.getMisses());
+            assertEquals(24, pool.getHits());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void testPrefetcher() throws Exception {
+        String strTableName = "TestPrefetcher";
+        DBApp dbApp = new DBApp();
+        DBApp.getDbConfig().put("MaximumRowsCountinPage", "1");
+        DBApp.getDbConfig().put("PrefetchPages", "4");
+
+        Hashtable<String, String> htblColNameType = new Hashtable<>();
+        htblColNameType.put("id", "java.lang.Integer");
+        dbApp.createTable(strTableName, "id", htblColNameType);
+        for (int i = 0; i < 8; i++) {
+            Hashtable<String, Object> values = new Hashtable<>();
+            values.put("id", i);
+            dbApp.insertIntoTable(strTableName, values);
+        }
+
+        // the page after the current one is read into the buffer pool by a virtual thread
+        Table<Object> table = Table.loadTable(strTableName);
+        BufferPool pool = BufferPool.getInstance();
+        pool.invalidate(strTableName);
+        Prefetcher prefetcher = new Prefetcher(strTableName, table.getPagesPath());
+        prefetcher.advance(0);
+        String path1 = table.getPagesPath().get(1);
+        for (int i = 0; i < 500 && !pool.contains(path1); i++) {
+            Thread.sleep(10);
+        }
+        assertTrue(pool.contains(path1));
+        assertFalse(pool.contains(table.getPagesPath().get(2)));
+
+        // every page is still returned in order while it reads ahead
+        int id = 0;
+        for (Page page : table) {
+            assertEquals(id++, page.getRecords().getFirst().hashtable().get("id"));
+        }
+        assertEquals(8, id);
+        DBApp.getDbConfig().remove("PrefetchPages");
+    }
+
+    @Test
+    void testWriteThrough() throws Exception {
+        Page page = modifyPage("TestWriteThrough", "through", "1000");
+
+        // the page was written by the mutation itself
+        assertEquals(2, readPage(page).size());
+        endStatement(page);
+        assertEquals(2, readPage(page).size());
+    }
+
+    @Test
+    void testWriteAtStatementEnd() throws Exception {
+        Page page = modifyPage("TestWriteAtStatementEnd", "statement", "1000");
+
+        // the page is only written once the statement ends
+        assertEquals(1, readPage(page).size());
+        endStatement(page);
+        assertEquals(2, readPage(page).size());
+    }
+
+    @Test
+    void testBackgroundWriter() throws Exception {
+        Page page = modifyPage("TestBackgroundWriter", "background", "2000");
+
+        // the end of the statement doesn't write the page, the writer does once the FlushInterval is over
+        BufferPool pool = BufferPool.getInstance();
+        String path = page.getPath().toString();
+        assertEquals(1, readPage(page).size());
+        endStatement(page);
+        assertTrue(pool.isDirty(path));
+        for (int i = 0; i < 500 && pool.isDirty(path); i++) {
+            Thread.sleep(10);
+        }
+        assertFalse(pool.isDirty(path));
+        assertEquals(2, readPage(page).size());
+
+        DBApp.getDbConfig().remove("WriteMode");
+        DBApp.getDbConfig().remove("FlushInterval");
+        BufferPool.init();
+    }
+
+    @Test
+    void testChangedPageIsNotWritten() throws Exception {
+        Page page = modifyPage("TestChangedPageIsNotWritten", "background", "60000");
+        endStatement(page);
+        BufferPool pool = BufferPool.getInstance();
+        assertTrue(pool.isDirty(page.getPath().toString()));
+
+        // a new statement changes the dirty page, the pool doesn't write it until the statement commits
+        page.removeIf(record -> true);
+        pool.flushAll();
+        assertEquals(1, readPage(page).size());
+        endStatement(page);
+        pool.flushAll();
+        assertEquals(0, readPage(page).size());
+
+        DBApp.getDbConfig().remove("WriteMode");
+        DBApp.getDbConfig().remove("FlushInterval");
+        BufferPool.init();
+    }
+
+    @Test
+    void testPageWaitsForLog() throws Exception {
+        Page page = modifyPage("TestPageWaitsForLog", "background", "60000");
+        endStatement(page);
+        DBApp.getDbConfig().put("LogSync", "interval");
+        DBApp.getDbConfig().put("LogSyncInterval", "60000");
+        WriteAheadLog.init();
+
+        // a statement that changes only the page is appended but not forced, the pool forces the log before it
+        // writes the page
+        page.removeIf(record -> record.hashtable().get("id").equals(1));
+        endStatement(page);
+        WriteAheadLog log = WriteAheadLog.getInstance();
+        assertTrue(log.getDurableLsn() < page.getLsn());
+        assertFalse(log.isFlushed(page.getLsn()));
+        BufferPool.getInstance().flushAll();
+        assertTrue(log.getDurableLsn() >= page.getLsn());
+        assertEquals(1, readPage(page).size());
+
+        DBApp.getDbConfig().remove("LogSync");
+        DBApp.getDbConfig().remove("LogSyncInterval");
+        DBApp.getDbConfig().remove("WriteMode");
+        DBApp.getDbConfig().remove("FlushInterval");
+        BufferPool.init();
+        WriteAheadLog.init();
+    }
+
+    /**
+     * Creates a table of one page in the given write mode and writes it to disk, then adds a record to the page without
+     * ending the statement.
+     *
+     * @return The modified page.
+     */
+    private static Page modifyPage(String strTableName, String writeMode, String flushInterval) throws DBAppException {
+        DBApp dbApp = new DBApp();
+        DBApp.getDbConfig().put("WriteMode", writeMode);
+        DBApp.getDbConfig().put("FlushInterval", flushInterval);
+        BufferPool.init();
+
+        Hashtable<String, String> htblColNameType = new Hashtable<>();
+        htblColNameType.put("id", "java.lang.Integer");
+        dbApp.createTable(strTableName, "id", htblColNameType);
+        Hashtable<String, Object> values = new Hashtable<>();
+        values.put("id", 0);
+        dbApp.insertIntoTable(strTableName, values);
+        dbApp.checkpoint();
+
+        Table<Object> table = Table.loadTable(strTableName);
+        Page page = table.getPage(0);
+        values = new Hashtable<>();
+        values.put("id", 1);
+        table.addRecord(new Record(values), "id", page);
+
+        return page;
+    }
+
+    /**
+     * Ends the running statement the way DBApp does.
+     */
+    private static void endStatement(Page page) throws DBAppException {
+        WriteAheadLog.getInstance().commit();
+        Table.loadTable(page.getTableName()).flush();
+        BufferPool.getInstance().endStatement();
+    }
+
+    /**
+     * @return The page as it is on disk.
+     */
+    private static Page readPage(Page page) {
+        return PageFormat.read(page.getTableName(), page.getPath());
+    }
+}
@@ -4,6 +4,8 @@ import BTree.DBBTree;
 
 import java.util.HashMap;
 import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.Map;
 
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -60,11 +62,12 @@ public class DeleteTests {
             assertNull(res);
 
             res = index.search("loser");
+            // the first page was emptied and removed, the other pages keep their ids
             assertEquals(4, res.size());
-            assertEquals(1, res.get(0));
-            assertEquals(2, res.get(1));
-            assertEquals(1, res.get(2));
+            assertEquals(1, res.get(1));
+            assertEquals(2, res.get(2));
             assertEquals(1, res.get(3));
+            assertEquals(1, res.get(4));
         } catch (DBAppException e) {
             e.printStackTrace();
             fail("DBAppException thrown");
@@ -101,11 +104,17 @@ public class DeleteTests {
             }
 
             dbApp.createIndex(strTableName, "gpa", "gpaIndex");
+            DBBTree nameIndex = DBBTree.loadIndex(strTableName, "nameIndex");
+            DBBTree gpaIndex = DBBTree.loadIndex(strTableName, "gpaIndex");
 
             Hashtable htblColNameValue = new Hashtable();
             htblColNameValue.put("gpa", 7.7);
             dbApp.deleteFromTable(strTableName, htblColNameValue);
 
+            // the keys of the deleted records were removed, the indexes were not rebuilt
+            assertSame(nameIndex, DBBTree.loadIndex(strTableName, "nameIndex"));
+            assertSame(gpaIndex, DBBTree.loadIndex(strTableName, "gpaIndex"));
+
             // Check that the rows have been deleted
             Table<Object> table = Table.loadTable(strTableName);
 
@@ -124,11 +133,12 @@ public class DeleteTests {
             assertNull(res);
 
             res = index.search("loser");
+            // the first page was emptied and removed, the other pages keep their ids
             assertEquals(4, res.size());
-            assertEquals(1, res.get(0));
-            assertEquals(2, res.get(1));
-            assertEquals(1, res.get(2));
+            assertEquals(1, res.get(1));
+            assertEquals(2, res.get(2));
             assertEquals(1, res.get(3));
+            assertEquals(1, res.get(4));
 
             // Check that the index has been updated
             index = DBBTree.loadIndex(strTableName, "gpaIndex");
@@ -136,17 +146,108 @@ public class DeleteTests {
             assertNull(res);
 
             res = index.search(0.7);
+            // the first page was emptied and removed, the other pages keep their ids
             assertEquals(4, res.size());
-            assertEquals(1, res.get(0));
-            assertEquals(2, res.get(1));
-            assertEquals(1, res.get(2));
+            assertEquals(1, res.get(1));
+            assertEquals(2, res.get(2));
             assertEquals(1, res.get(3));
+            assertEquals(1, res.get(4));
+        } catch (DBAppException e) {
+            e.printStackTrace();
+            fail("DBAppException thrown");
+        }
+    }
+
+
+    @org.junit.jupiter.api.Test
+    void testDeletePageKeepsIndex() {
+        try {
+            String strTableName = "TestDeletePageKeepsIndex";
+            DBApp dbApp = new DBApp();
+            DBApp.getDbConfig().put("MaximumRowsCountinPage", "2");
+
+            Hashtable htblColNameType = new Hashtable();
+            htblColNameType.put("id", "java.lang.Integer");
+            htblColNameType.put("name", "java.lang.String");
+            dbApp.createTable(strTableName, "id", htblColNameType);
+            dbApp.createIndex(strTableName, "name", "nameIndex");
+
+            for (int i = 0; i < 6; i++) {
+                Hashtable htblColNameValue = new Hashtable();
+                htblColNameValue.put("id", Integer.valueOf(i));
+                htblColNameValue.put("name", "Name " + i % 3);
+                dbApp.insertIntoTable(strTableName, htblColNameValue);
+            }
+            DBBTree index = DBBTree.loadIndex(strTableName, "nameIndex");
+
+            // empty the first page
+            for (int i = 0; i < 2; i++) {
+                Hashtable htblColNameValue = new Hashtable();
+                htblColNameValue.put("id", Integer.valueOf(i));
+                dbApp.deleteFromTable(strTableName, htblColNameValue);
+            }
+
+            Table<Object> table = Table.loadTable(strTableName);
+            assertEquals(2, table.pagesCount());
+            assertEquals(1, table.getPageId(0));
+            assertEquals(0, table.indexOfPageId(1));
+            assertEquals(-1, table.indexOfPageId(0));
+
+            // the index was not rebuilt, only the entries of the deleted records were removed
+            assertSame(index, DBBTree.loadIndex(strTableName, "nameIndex"));
+            assertEquals(new HashMap<>(Map.of(1, 1, 2, 1)), index.search("Name 2"));
+            assertEquals(new HashMap<>(Map.of(1, 1)), index.search("Name 0"));
+
+            SQLTerm[] arrSQLTerms = new SQLTerm[1];
+            arrSQLTerms[0] = new SQLTerm();
+            arrSQLTerms[0]._strTableName = strTableName;
+            arrSQLTerms[0]._strColumnName = "name";
+            arrSQLTerms[0]._strOperator = "=";
+            arrSQLTerms[0]._objValue = "Name 1";
+            Iterator iterator = dbApp.selectFromTable(arrSQLTerms, new String[0]);
+            assertEquals(4, ((Record) iterator.next()).hashtable().get("id"));
+            assertFalse(iterator.hasNext());
         } catch (DBAppException e) {
             e.printStackTrace();
             fail("DBAppException thrown");
         }
     }
 
+    @org.junit.jupiter.api.Test
+    void testDeleteByClusteringKeyKeepsIndex() {
+        try {
+            String strTableName = "TestDeleteByClusteringKeyKeepsIndex";
+            DBApp dbApp = new DBApp();
+            DBApp.getDbConfig().put("MaximumRowsCountinPage", "3");
+
+            Hashtable htblColNameType = new Hashtable();
+            htblColNameType.put("id", "java.lang.Integer");
+            htblColNameType.put("name", "java.lang.String");
+            dbApp.createTable(strTableName, "id", htblColNameType);
+            dbApp.createIndex(strTableName, "name", "nameIndex");
+
+            for (int i = 0; i < 6; i++) {
+                Hashtable htblColNameValue = new Hashtable();
+                htblColNameValue.put("id", Integer.valueOf(i));
+                htblColNameValue.put("name", "Name " + i);
+                dbApp.insertIntoTable(strTableName, htblColNameValue);
+            }
+
+            // the entry of the deleted record is removed, not the one of the record that takes its place
+            Hashtable htblColNameValue = new Hashtable();
+            htblColNameValue.put("id", Integer.valueOf(1));
+            dbApp.deleteFromTable(strTableName, htblColNameValue);
+
+            DBBTree index = DBBTree.loadIndex(strTableName, "nameIndex");
+            assertNull(index.search("Name 1"));
+            assertEquals(new HashMap<>(Map.of(0, 1)), index.search("Name 0"));
+            assertEquals(new HashMap<>(Map.of(0, 1)), index.search("Name 2"));
+            assertEquals(new HashMap<>(Map.of(1, 1)), index.search("Name 3"));
+        } catch (DBAppException e) {
+            e.printStackTrace();
+            fail("DBAppException thrown");
+        }
+    }
 
     @org.junit.jupiter.api.Test
     void testDeleteAll() {
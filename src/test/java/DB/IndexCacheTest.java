@@ -0,0 +1,54 @@
+package DB;
+
+import BTree.DBBTree;
+import BTree.IndexCache;
+import org.junit.jupiter.api.Test;
+
+import java.util.Hashtable;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IndexCacheTest {
+
+    @Test
+    void testIndexStaysResident() {
+        try {
+            String strTableName = "TestIndexCache";
+            DBApp dbApp = new DBApp();
+
+            Hashtable<String, String> htblColNameType = new Hashtable<>();
+            htblColNameType.put("id", "java.lang.Integer");
+            htblColNameType.put("name", "java.lang.String");
+            dbApp.createTable(strTableName, "id", htblColNameType);
+            dbApp.createIndex(strTableName, "name", "nameIndex");
+
+            IndexCache cache = IndexCache.getInstance();
+            DBBTree<String> index = DBBTree.loadIndex(strTableName, "nameIndex");
+            long misses = cache.getMisses();
+            for (int i = 0; i < 5; i++) {
+                Hashtable<String, Object> values = new Hashtable<>();
+                values.put("id", i);
+                values.put("name", "name" + (i % 2));
+                dbApp.insertIntoTable(strTableName, values);
+
+                // every statement changes the same tree, which is saved when the statement ends
+                assertSame(index, DBBTree.loadIndex(strTableName, "nameIndex"));
+                assertFalse(index.isDirty());
+            }
+            assertEquals(misses, cache.getMisses());
+            assertEquals(Map.of(0, 3), index.search("name0"));
+
+            // the saved file holds the same entries
+            cache.close();
+            DBBTree<String> loaded = DBBTree.loadIndex(strTableName, "nameIndex");
+            assertNotSame(index, loaded);
+            assertEquals(misses + 1, cache.getMisses());
+            assertEquals(index.search("name0"), loaded.search("name0"));
+            assertEquals(index.search("name1"), loaded.search("name1"));
+        } catch (DBAppException e) {
+            e.printStackTrace();
+            fail("DBAppException thrown");
+        }
+    }
+}
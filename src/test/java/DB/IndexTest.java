@@ -2,12 +2,24 @@ package DB;
 
 import BTree.BTree;
 import BTree.DBBTree;
+import BTree.IndexCache;
+import BTree.PagedBTree;
+import BTree.RecordId;
+import BTree.RoaringBitmap;
 
 import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
+import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.TreeMap;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -141,4 +153,461 @@ public class IndexTest {
             assertTrue(result.contains(i + 1));
         }
     }
+
+    @org.junit.jupiter.api.Test
+    void testBTreeOrders() {
+        for (int order : new int[]{BTree.MIN_ORDER, 4, 64, 256}) {
+            BTree<Integer, Integer> bTree = new BTree<Integer, Integer>(order);
+            TreeMap<Integer, Integer> reference = new TreeMap<>();
+            for (int i = 0; i < 2000; i++) {
+                int key = (i * 7919) % 2000;
+                bTree.insert(key, i);
+                reference.put(key, i);
+            }
+            for (int key = 0; key < 2000; key += 3) {
+                bTree.delete(key);
+                reference.remove(key);
+            }
+            assertEquals(order, bTree.getOrder());
+
+            for (int key = 0; key < 2000; key++) {
+                assertEquals(reference.get(key), bTree.search(key));
+            }
+            // the range spans leaves of different parents
+            assertEquals(new LinkedList<>(reference.subMap(100, true, 1900, true).values()), bTree.search(100, 1900));
+            assertEquals(new LinkedList<>(reference.values()), bTree.search(null, null));
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> new BTree<Integer, Integer>(BTree.MIN_ORDER - 1));
+        assertEquals(4096 / (4 + 16), BTree.orderForNodeBytes(4096, 4));
+        assertEquals(BTree.MIN_ORDER, BTree.orderForNodeBytes(16, 4));
+    }
+
+    @org.junit.jupiter.api.Test
+    void testBulkLoad() {
+        for (int order : new int[]{BTree.MIN_ORDER, 4, 64}) {
+            for (int n : new int[]{0, 1, order, order + 1, order + 2, 1000}) {
+                BTree<Integer, Integer> bTree = new BTree<Integer, Integer>(order);
+                TreeMap<Integer, Integer> reference = new TreeMap<>();
+                for (int i = 0; i < n; i++) {
+                    reference.put(2 * i, i);
+                }
+                bTree.bulkLoad(reference.entrySet().iterator());
+                assertEquals(new LinkedList<>(reference.values()), bTree.search(null, null));
+
+                // the built tree keeps working with inserts and deletes
+                for (int i = 0; i < n; i++) {
+                    bTree.insert(2 * i + 1, -i);
+                    reference.put(2 * i + 1, -i);
+                }
+                for (int i = 0; i < 2 * n; i += 3) {
+                    bTree.delete(i);
+                    reference.remove(i);
+                }
+                for (int key = 0; key < 2 * n; key++) {
+                    assertEquals(reference.get(key), bTree.search(key));
+                }
+                assertEquals(new LinkedList<>(reference.values()), bTree.search(null, null));
+            }
+        }
+
+        BTree<Integer, Integer> bTree = new BTree<Integer, Integer>();
+        TreeMap<Integer, Integer> unsorted = new TreeMap<>(java.util.Comparator.reverseOrder());
+        unsorted.put(1, 1);
+        unsorted.put(2, 2);
+        assertThrows(IllegalArgumentException.class, () -> bTree.bulkLoad(unsorted.entrySet().iterator()));
+    }
+
+    @org.junit.jupiter.api.Test
+    void testExternalSorter() throws java.io.IOException {
+        java.nio.file.Path directory = java.nio.file.Files.createTempDirectory("ExternalSorter");
+        ExternalSorter<Integer> sorter = new ExternalSorter<>(Integer::compare, 100, directory);
+        java.util.Random random = new java.util.Random(7);
+        LinkedList<Integer> expected = new LinkedList<>();
+        for (int i = 0; i < 1050; i++) {
+            int value = random.nextInt(500);
+            sorter.add(value);
+            expected.add(value);
+        }
+        expected.sort(null);
+
+        LinkedList<Integer> sorted = new LinkedList<>();
+        sorter.sorted().forEachRemaining(sorted::add);
+        assertEquals(expected, sorted);
+        assertEquals(11, sorter.getRuns());
+
+        sorter.close();
+        try (java.util.stream.Stream<java.nio.file.Path> files = java.nio.file.Files.list(directory)) {
+            assertEquals(0, files.count());
+        }
+        java.nio.file.Files.delete(directory);
+    }
+
+    @org.junit.jupiter.api.Test
+    void testCreateIndexSpills() {
+        String strTableName = "TestIndexSpill";
+        try {
+            DBApp dbApp = new DBApp();
+            DBApp.getDbConfig().put("MaximumRowsCountinPage", "5");
+
+            Hashtable<String, String> htblColNameType = new Hashtable<>();
+            htblColNameType.put("id", "java.lang.Integer");
+            htblColNameType.put("name", "java.lang.String");
+            dbApp.createTable(strTableName, "id", htblColNameType);
+            for (int i = 0; i < 50; i++) {
+                Hashtable<String, Object> values = new Hashtable<>();
+                values.put("id", i);
+                values.put("name", "name" + (i % 7));
+                dbApp.insertIntoTable(strTableName, values);
+            }
+
+            // far fewer pairs fit in memory than there are records
+            DBApp.getDbConfig().put("SortBufferEntries", "8");
+            dbApp.createIndex(strTableName, "name", "nameIndex");
+            DBApp.getDbConfig().remove("SortBufferEntries");
+
+            DBBTree<String> index = DBBTree.loadIndex(strTableName, "nameIndex");
+            for (int k = 0; k < 7; k++) {
+                HashMap<Integer, Integer> expected = new HashMap<>();
+                for (int i = k; i < 50; i += 7) {
+                    expected.merge(i / 5, 1, Integer::sum);
+                }
+                assertEquals(expected, index.search("name" + k));
+            }
+            // the runs were deleted
+            File[] runs = new File(DBApp.getDbConfig().getProperty("DataPath"), strTableName)
+                    .listFiles((dir, name) -> name.endsWith(".run"));
+            assertNotNull(runs);
+            assertEquals(0, runs.length);
+        } catch (DBAppException e) {
+            e.printStackTrace();
+            fail("DBAppException thrown");
+        }
+    }
+
+    @org.junit.jupiter.api.Test
+    void testPrimitiveKeys() throws java.io.IOException {
+        java.util.Random random = new java.util.Random(11);
+        BTree<Integer, Integer> boxedInts = new BTree<Integer, Integer>(16);
+        BTree<Integer, Integer> ints = new BTree<Integer, Integer>(16, Integer.class);
+        BTree<Double, Integer> boxedDoubles = new BTree<Double, Integer>(16);
+        BTree<Double, Integer> doubles = new BTree<Double, Integer>(16, Double.class);
+        for (int i = 0; i < 5000; i++) {
+            int key = random.nextInt(20000) - 10000;
+            if (boxedInts.search(key) == null) {
+                boxedInts.insert(key, i);
+                ints.insert(key, i);
+                boxedDoubles.insert(key / 7.0, i);
+                doubles.insert(key / 7.0, i);
+            }
+        }
+        // the keys are written as raw values instead of one object each
+        assertTrue(serializedSize(ints) < serializedSize(boxedInts));
+        assertTrue(serializedSize(doubles) < serializedSize(boxedDoubles));
+
+        for (int key = -10000; key < 10000; key += 3) {
+            boxedInts.delete(key);
+            ints.delete(key);
+            boxedDoubles.delete(key / 7.0);
+            doubles.delete(key / 7.0);
+        }
+
+        for (int key = -10000; key < 10000; key++) {
+            assertEquals(boxedInts.search(key), ints.search(key));
+            assertEquals(boxedDoubles.search(key / 7.0), doubles.search(key / 7.0));
+        }
+        assertEquals(boxedInts.search(-500, 2500), ints.search(-500, 2500));
+        assertEquals(boxedDoubles.search(-0.5, 12.25), doubles.search(-0.5, 12.25));
+    }
+
+    @org.junit.jupiter.api.Test
+    void testRecordIndex() {
+        String strTableName = "TestRecordIndex";
+        try {
+            DBApp dbApp = new DBApp();
+            DBApp.getDbConfig().put("MaximumRowsCountinPage", "5");
+
+            Hashtable<String, String> htblColNameType = new Hashtable<>();
+            htblColNameType.put("id", "java.lang.Integer");
+            htblColNameType.put("name", "java.lang.String");
+            dbApp.createTable(strTableName, "id", htblColNameType);
+            for (int i = 0; i < 60; i += 2) {
+                insert(dbApp, strTableName, i);
+            }
+
+            DBApp.getDbConfig().put("IndexEntries", "record");
+            dbApp.createIndex(strTableName, "name", "nameIndex");
+            DBApp.getDbConfig().remove("IndexEntries");
+            DBBTree<String> index = DBBTree.loadIndex(strTableName, "nameIndex");
+            assertTrue(index.isRecordIndex());
+            assertRecordIds(strTableName, index);
+
+            // records are inserted between the others and overflow to the next pages
+            for (int i = 1; i < 60; i += 4) {
+                insert(dbApp, strTableName, i);
+            }
+            assertRecordIds(strTableName, index);
+
+            Hashtable<String, Object> update = new Hashtable<>();
+            update.put("name", "name3");
+            dbApp.updateTable(strTableName, "8", update);
+            assertRecordIds(strTableName, index);
+
+            SQLTerm[] arrSQLTerms = new SQLTerm[2];
+            arrSQLTerms[0] = new SQLTerm();
+            arrSQLTerms[0]._strTableName = strTableName;
+            arrSQLTerms[0]._strColumnName = "name";
+            arrSQLTerms[0]._strOperator = "=";
+            arrSQLTerms[0]._objValue = "name3";
+            arrSQLTerms[1] = new SQLTerm();
+            arrSQLTerms[1]._strTableName = strTableName;
+            arrSQLTerms[1]._strColumnName = "id";
+            arrSQLTerms[1]._strOperator = ">=";
+            arrSQLTerms[1]._objValue = 10;
+            LinkedList<Integer> ids = new LinkedList<>();
+            for (Iterator<Record> iterator = dbApp.selectFromTable(arrSQLTerms, new String[]{"AND"});
+                 iterator.hasNext(); ) {
+                ids.add((Integer) iterator.next().hashtable().get("id"));
+            }
+            LinkedList<Integer> expected = new LinkedList<>();
+            for (int i = 10; i < 60; i++) {
+                if ((i % 2 == 0 || i % 4 == 1) && (i == 8 || i % 7 == 3)) {
+                    expected.add(i);
+                }
+            }
+            assertEquals(expected, ids);
+
+            // the delete only compares the records given by the index
+            Hashtable<String, Object> delete = new Hashtable<>();
+            delete.put("name", "name3");
+            dbApp.deleteFromTable(strTableName, delete);
+            index = DBBTree.loadIndex(strTableName, "nameIndex");
+            assertTrue(index.isRecordIndex());
+            assertTrue(index.searchRecords("name3").isEmpty());
+            assertRecordIds(strTableName, index);
+        } catch (DBAppException e) {
+            e.printStackTrace();
+            fail("DBAppException thrown");
+        }
+    }
+
+    @org.junit.jupiter.api.Test
+    void testPagedIndex() {
+        String strTableName = "TestPagedIndex";
+        try {
+            DBApp dbApp = new DBApp();
+            DBApp.getDbConfig().put("MaximumRowsCountinPage", "5");
+
+            Hashtable<String, String> htblColNameType = new Hashtable<>();
+            htblColNameType.put("id", "java.lang.Integer");
+            htblColNameType.put("name", "java.lang.String");
+            dbApp.createTable(strTableName, "id", htblColNameType);
+            for (int i = 0; i < 60; i += 2) {
+                insert(dbApp, strTableName, i);
+            }
+
+            DBApp.getDbConfig().put("IndexStorage", "paged");
+            DBApp.getDbConfig().put("IndexEntries", "record");
+            dbApp.createIndex(strTableName, "name", "nameIndex");
+            DBApp.getDbConfig().remove("IndexEntries");
+            DBApp.getDbConfig().remove("IndexStorage");
+            DBBTree<String> index = DBBTree.loadIndex(strTableName, "nameIndex");
+            assertTrue(index.isPaged());
+            assertTrue(Files.exists(Paths.get((String) DBApp.getDbConfig().get("DataPath"), strTableName,
+                    "nameIndex" + PagedBTree.EXTENSION)));
+            assertRecordIds(strTableName, index);
+
+            for (int i = 1; i < 60; i += 4) {
+                insert(dbApp, strTableName, i);
+            }
+            Hashtable<String, Object> update = new Hashtable<>();
+            update.put("name", "name3");
+            dbApp.updateTable(strTableName, "8", update);
+            assertRecordIds(strTableName, index);
+            assertEquals(RecordId.pages(index.searchRecords("name3")), index.searchPages("name3"));
+
+            // the index is read again from its file
+            dbApp.close();
+            dbApp = new DBApp();
+            index = DBBTree.loadIndex(strTableName, "nameIndex");
+            assertTrue(index.isPaged());
+            assertRecordIds(strTableName, index);
+
+            SQLTerm[] arrSQLTerms = new SQLTerm[1];
+            arrSQLTerms[0] = new SQLTerm();
+            arrSQLTerms[0]._strTableName = strTableName;
+            arrSQLTerms[0]._strColumnName = "name";
+            arrSQLTerms[0]._strOperator = "=";
+            arrSQLTerms[0]._objValue = "name3";
+            LinkedList<Integer> ids = new LinkedList<>();
+            for (Iterator<Record> iterator = dbApp.selectFromTable(arrSQLTerms, new String[]{});
+                 iterator.hasNext(); ) {
+                ids.add((Integer) iterator.next().hashtable().get("id"));
+            }
+            LinkedList<Integer> expected = new LinkedList<>();
+            for (int i = 0; i < 60; i++) {
+                if ((i % 2 == 0 || i % 4 == 1) && (i == 8 || i % 7 == 3)) {
+                    expected.add(i);
+                }
+            }
+            assertEquals(expected, ids);
+
+            Hashtable<String, Object> delete = new Hashtable<>();
+            delete.put("name", "name3");
+            dbApp.deleteFromTable(strTableName, delete);
+            index = DBBTree.loadIndex(strTableName, "nameIndex");
+            assertTrue(index.searchRecords("name3").isEmpty());
+            assertRecordIds(strTableName, index);
+        } catch (DBAppException e) {
+            e.printStackTrace();
+            fail("DBAppException thrown");
+        }
+    }
+
+    @org.junit.jupiter.api.Test
+    void testRecordIndexPageSize() {
+        String strTableName = "TestRecordIndexPageSize";
+        try {
+            DBApp dbApp = new DBApp();
+
+            Hashtable<String, String> htblColNameType = new Hashtable<>();
+            htblColNameType.put("id", "java.lang.Integer");
+            htblColNameType.put("name", "java.lang.String");
+            dbApp.createTable(strTableName, "id", htblColNameType);
+
+            // every slot of a full page fits in a record id
+            DBApp.getDbConfig().put("MaximumRowsCountinPage", String.valueOf(RecordId.MAX_SLOTS + 1));
+            DBAppException e = assertThrows(DBAppException.class,
+                    () -> dbApp.createIndex(strTableName, "name", "nameIndex", true));
+            assertEquals("Record indexes need pages of at most " + RecordId.MAX_SLOTS + " rows", e.getMessage());
+            DBApp.getDbConfig().put("MaximumRowsCountinPage", String.valueOf(RecordId.MAX_SLOTS));
+            dbApp.createIndex(strTableName, "name", "nameIndex", true);
+            assertTrue(DBBTree.loadIndex(strTableName, "nameIndex").isRecordIndex());
+        } catch (DBAppException e) {
+            e.printStackTrace();
+            fail("DBAppException thrown");
+        }
+    }
+
+    @org.junit.jupiter.api.Test
+    void testRecordIndexPageIdRange() throws ReflectiveOperationException {
+        String strTableName = "TestRecordIndexPageIdRange";
+        try {
+            DBApp dbApp = new DBApp();
+            DBApp.getDbConfig().put("MaximumRowsCountinPage", "2");
+
+            Hashtable<String, String> htblColNameType = new Hashtable<>();
+            htblColNameType.put("id", "java.lang.Integer");
+            htblColNameType.put("name", "java.lang.String");
+            dbApp.createTable(strTableName, "id", htblColNameType);
+            for (int i = 0; i < 4; i++) {
+                insert(dbApp, strTableName, i);
+            }
+            dbApp.createIndex(strTableName, "name", "nameIndex", true);
+            DBBTree<String> index = DBBTree.loadIndex(strTableName, "nameIndex");
+
+            // only the last page id of record ids is left
+            Table<Object> table = Table.loadTable(strTableName);
+            java.lang.reflect.Field lastPageNumber = Table.class.getDeclaredField("lastPageNumber");
+            lastPageNumber.setAccessible(true);
+            lastPageNumber.setInt(table, RecordId.MAX_PAGES - 1);
+            insert(dbApp, strTableName, 4);
+            assertEquals(RecordId.MAX_PAGES - 1, table.getPageId(2));
+            assertRecordIds(strTableName, index);
+
+            // a statement that may need a new page fails before the table is modified
+            assertThrows(DBAppException.class, () -> insert(dbApp, strTableName, 6));
+            Hashtable<String, Object> values = new Hashtable<>();
+            values.put("id", 7);
+            assertThrows(DBAppException.class, () -> dbApp.insertBatch(strTableName, List.of(values)));
+            assertEquals(3, table.pagesCount());
+            assertEquals(1, table.getPage(2).size());
+            assertRecordIds(strTableName, index);
+        } catch (DBAppException e) {
+            e.printStackTrace();
+            fail("DBAppException thrown");
+        }
+    }
+
+    @org.junit.jupiter.api.Test
+    void testUnreadableIndex() throws java.io.IOException {
+        String strTableName = "TestUnreadableIndex";
+        try {
+            DBApp dbApp = new DBApp();
+            DBApp.getDbConfig().put("MaximumRowsCountinPage", "5");
+
+            Hashtable<String, String> htblColNameType = new Hashtable<>();
+            htblColNameType.put("id", "java.lang.Integer");
+            htblColNameType.put("name", "java.lang.String");
+            dbApp.createTable(strTableName, "id", htblColNameType);
+            for (int i = 0; i < 20; i++) {
+                insert(dbApp, strTableName, i);
+            }
+            dbApp.createIndex(strTableName, "name", "nameIndex");
+            IndexCache.init();
+
+            // change the serialVersionUID in the file, like an index written by an incompatible version
+            Path file = Paths.get(DBApp.getDbConfig().getProperty("DataPath"), strTableName, "nameIndex.ser");
+            byte[] bytes = Files.readAllBytes(file);
+            byte[] className = "BTree.DBBTree".getBytes(StandardCharsets.UTF_8);
+            int uid = indexOf(bytes, className) + className.length;
+            for (int i = uid; i < uid + Long.BYTES; i++) {
+                bytes[i] = (byte) ~bytes[i];
+            }
+            Files.write(file, bytes);
+            assertThrows(DBAppException.class, () -> DBBTree.loadIndex(strTableName, "nameIndex"));
+
+            // the index is created again from the table
+            Util.recreateIndexes(strTableName, dbApp);
+            RoaringBitmap pages = DBBTree.loadIndex(strTableName, "nameIndex").searchPages("name3");
+            assertEquals(3, pages.getCardinality());
+        } catch (DBAppException e) {
+            e.printStackTrace();
+            fail("DBAppException thrown");
+        }
+    }
+
+    private static int indexOf(byte[] bytes, byte[] part) {
+        for (int i = 0; i + part.length <= bytes.length; i++) {
+            if (Arrays.equals(bytes, i, i + part.length, part, 0, part.length)) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private static void insert(DBApp dbApp, String strTableName, int id) throws DBAppException {
+        Hashtable<String, Object> values = new Hashtable<>();
+        values.put("id", id);
+        values.put("name", "name" + (id % 7));
+        dbApp.insertIntoTable(strTableName, values);
+    }
+
+    /**
+     * Checks that the record ids of every name in the index are the records holding the name.
+     */
+    private static void assertRecordIds(String strTableName, DBBTree<String> index) throws DBAppException {
+        HashMap<String, RoaringBitmap> expected = new HashMap<>();
+        Table<Object> table = Table.loadTable(strTableName);
+        for (int i = 0; i < table.pagesCount(); i++) {
+            Page page = table.getPage(i);
+            for (int j = 0; j < page.size(); j++) {
+                String name = (String) page.getRecords().get(j).hashtable().get("name");
+                expected.computeIfAbsent(name, k -> new RoaringBitmap()).add(RecordId.of(table.getPageId(i), page.getSlot(j)));
+            }
+        }
+        for (int k = 0; k < 7; k++) {
+            assertEquals(expected.getOrDefault("name" + k, new RoaringBitmap()), index.searchRecords("name" + k));
+        }
+    }
+
+    private static int serializedSize(Object object) throws java.io.IOException {
+        java.io.ByteArrayOutputStream bytes = new java.io.ByteArrayOutputStream();
+        try (java.io.ObjectOutputStream out = new java.io.ObjectOutputStream(bytes)) {
+            out.writeObject(object);
+        }
+
+        return bytes.size();
+    }
 }
@@ -2,8 +2,11 @@ package DB;
 
 import BTree.DBBTree;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -142,6 +145,217 @@ public class InsertTest {
         }
     }
 
+    @org.junit.jupiter.api.Test
+    void testPageSplit() {
+        try {
+            String strTableName = "TestPageSplit";
+            DBApp dbApp = new DBApp();
+            DBApp.getDbConfig().put("MaximumRowsCountinPage", "4");
+
+            Hashtable htblColNameType = new Hashtable();
+            htblColNameType.put("id", "java.lang.Integer");
+            htblColNameType.put("name", "java.lang.String");
+            dbApp.createTable(strTableName, "id", htblColNameType);
+            dbApp.createIndex(strTableName, "name", "nameIndex");
+
+            // 5 splits the full first page, 17 goes to the start of the next page, 18 splits it
+            int[] ids = {0, 10, 20, 30, 5, 35, 15, 17, 18};
+            for (int id : ids) {
+                Hashtable htblColNameValue = new Hashtable();
+                htblColNameValue.put("id", id);
+                htblColNameValue.put("name", "Name " + id);
+                dbApp.insertIntoTable(strTableName, htblColNameValue);
+            }
+
+            int[][] expected = {{0, 5, 10, 15}, {17, 18, 20}, {30, 35}};
+            Table<Object> table = Table.loadTable(strTableName);
+            assertEquals(expected.length, table.pagesCount());
+            DBBTree index = DBBTree.loadIndex(strTableName, "nameIndex");
+            for (int i = 0; i < expected.length; i++) {
+                Page page = table.getPage(i);
+                assertEquals(expected[i][0], table.getClusteringKeyMin().get(i));
+                assertEquals(expected[i].length, page.size());
+                for (int j = 0; j < expected[i].length; j++) {
+                    assertEquals(expected[i][j], page.getRecords().get(j).hashtable().get("id"));
+                    // the index entries moved with the records
+                    assertEquals(new HashMap<>(Map.of(table.getPageId(i), 1)), index.search("Name " + expected[i][j]));
+                }
+            }
+            // the pages created by the splits got new ids
+            assertEquals(1, table.getPageId(1));
+            assertEquals(2, table.getPageId(2));
+        } catch (DBAppException e) {
+            e.printStackTrace();
+            fail("DBAppException thrown");
+        }
+    }
+
+    @org.junit.jupiter.api.Test
+    void testAppend() {
+        try {
+            String strTableName = "TestAppend";
+            DBApp dbApp = new DBApp();
+            DBApp.getDbConfig().put("MaximumRowsCountinPage", "2");
+
+            Hashtable htblColNameType = new Hashtable();
+            htblColNameType.put("id", "java.lang.Integer");
+            dbApp.createTable(strTableName, "id", htblColNameType);
+            Table<Object> table = Table.loadTable(strTableName);
+            assertNull(Util.getAppendPos(table, "id", 0));
+
+            Hashtable record = new Hashtable();
+            for (int i = 0; i < 5; i++) {
+                record.put("id", i);
+                dbApp.insertIntoTable(strTableName, record);
+            }
+
+            // only keys past the maximum are appended
+            assertArrayEquals(new int[]{2, 0, 0}, Util.getAppendPos(table, "id", 7));
+            assertNull(Util.getAppendPos(table, "id", 4));
+            assertNull(Util.getAppendPos(table, "id", -1));
+
+            // the tail page has room, then a new page is allocated
+            for (int i = 5; i < 7; i++) {
+                record.put("id", i);
+                dbApp.insertIntoTable(strTableName, record);
+            }
+            assertEquals(4, table.pagesCount());
+            assertEquals(2, table.getPage(2).size());
+            assertEquals(6, table.getPage(3).getRecords().getFirst().hashtable().get("id"));
+
+            // the maximum is still a duplicate
+            record.put("id", 6);
+            assertThrows(DBAppException.class, () -> dbApp.insertIntoTable(strTableName, record));
+        } catch (DBAppException e) {
+            e.printStackTrace();
+            fail("DBAppException thrown");
+        }
+    }
+
+    @org.junit.jupiter.api.Test
+    void testInsertBatch() {
+        try {
+            String strTableName = "TestInsertBatch";
+            DBApp dbApp = new DBApp();
+            DBApp.getDbConfig().put("MaximumRowsCountinPage", "4");
+
+            Hashtable htblColNameType = new Hashtable();
+            htblColNameType.put("id", "java.lang.Integer");
+            htblColNameType.put("name", "java.lang.String");
+            dbApp.createTable(strTableName, "id", htblColNameType);
+            dbApp.createIndex(strTableName, "name", "nameIndex");
+
+            for (int id : new int[]{0, 10, 20}) {
+                Hashtable htblColNameValue = new Hashtable();
+                htblColNameValue.put("id", id);
+                htblColNameValue.put("name", "Name " + id);
+                dbApp.insertIntoTable(strTableName, htblColNameValue);
+            }
+
+            // the rows are not sorted, some go between the keys of the table and some past its maximum
+            dbApp.insertBatch(strTableName, batch(30, 5, 15, 25, 40, 35, 12, 1));
+
+            int[] expected = {0, 1, 5, 10, 12, 15, 20, 25, 30, 35, 40};
+            Table<Object> table = Table.loadTable(strTableName);
+            DBBTree index = DBBTree.loadIndex(strTableName, "nameIndex");
+            int k = 0;
+            for (int i = 0; i < table.pagesCount(); i++) {
+                Page page = table.getPage(i);
+                assertEquals(page.getRecords().getFirst().hashtable().get("id"), table.getClusteringKeyMin().get(i));
+                for (Record record : page.getRecords()) {
+                    assertEquals(expected[k], record.hashtable().get("id"));
+                    assertEquals(new HashMap<>(Map.of(table.getPageId(i), 1)), index.search("Name " + expected[k]));
+                    k++;
+                }
+            }
+            assertEquals(expected.length, k);
+
+            // a key of the table, a repeated key or an invalid row fails the whole batch
+            assertThrows(DBAppException.class, () -> dbApp.insertBatch(strTableName, batch(50, 10)));
+            assertThrows(DBAppException.class, () -> dbApp.insertBatch(strTableName, batch(50, 60, 50)));
+            List<Hashtable<String, Object>> rows = batch(50);
+            rows.getFirst().remove("name");
+            assertThrows(DBAppException.class, () -> dbApp.insertBatch(strTableName, rows));
+            assertThrows(DBAppException.class, () -> dbApp.insertBatch("Missing", batch(50)));
+            assertNull(index.search("Name 50"));
+            assertNull(index.search("Name 60"));
+
+            int count = 0;
+            for (int i = 0; i < table.pagesCount(); i++) {
+                count += table.getPage(i).size();
+            }
+            assertEquals(expected.length, count);
+
+            dbApp.insertBatch(strTableName, new ArrayList<>());
+        } catch (DBAppException e) {
+            e.printStackTrace();
+            fail("DBAppException thrown");
+        }
+    }
+
+    @org.junit.jupiter.api.Test
+    void testBulkLoad() {
+        try {
+            String strTableName = "TestBulkLoad";
+            DBApp dbApp = new DBApp();
+            DBApp.getDbConfig().put("MaximumRowsCountinPage", "4");
+
+            Hashtable htblColNameType = new Hashtable();
+            htblColNameType.put("id", "java.lang.Integer");
+            htblColNameType.put("name", "java.lang.String");
+            dbApp.createTable(strTableName, "id", htblColNameType);
+            dbApp.createIndex(strTableName, "name", "nameIndex");
+
+            // the rows are sorted in runs of 3, and the pages are half full
+            DBApp.getDbConfig().put("SortBufferEntries", "3");
+            DBApp.getDbConfig().put("BulkLoadFillFactor", "0.5");
+            dbApp.bulkLoad(strTableName, batch(7, 2, 9, 0, 4, 1, 8, 3, 6, 5).iterator());
+            DBApp.getDbConfig().remove("SortBufferEntries");
+            DBApp.getDbConfig().remove("BulkLoadFillFactor");
+
+            Table<Object> table = Table.loadTable(strTableName);
+            DBBTree index = DBBTree.loadIndex(strTableName, "nameIndex");
+            assertEquals(5, table.pagesCount());
+            for (int i = 0; i < table.pagesCount(); i++) {
+                Page page = table.getPage(i);
+                assertEquals(2, page.size());
+                assertEquals(2 * i, table.getClusteringKeyMin().get(i));
+                for (int j = 0; j < page.size(); j++) {
+                    assertEquals(2 * i + j, page.getRecords().get(j).hashtable().get("id"));
+                    assertEquals(new HashMap<>(Map.of(table.getPageId(i), 1)), index.search("Name " + (2 * i + j)));
+                }
+            }
+
+            // the loaded table takes regular inserts, and can't be loaded again
+            dbApp.insertIntoTable(strTableName, batch(10).getFirst());
+            assertEquals(3, table.getPage(4).size());
+            assertThrows(DBAppException.class, () -> dbApp.bulkLoad(strTableName, batch(20).iterator()));
+
+            // a repeated key leaves the table empty
+            String strOtherName = "TestBulkLoadDuplicate";
+            dbApp.createTable(strOtherName, "id", htblColNameType);
+            assertThrows(DBAppException.class, () -> dbApp.bulkLoad(strOtherName, batch(1, 2, 3, 4, 5, 3).iterator()));
+            assertEquals(0, Table.loadTable(strOtherName).pagesCount());
+            dbApp.bulkLoad(strOtherName, batch(1, 2).iterator());
+            assertEquals(2, Table.loadTable(strOtherName).getPage(0).size());
+        } catch (DBAppException e) {
+            e.printStackTrace();
+            fail("DBAppException thrown");
+        }
+    }
+
+    private static List<Hashtable<String, Object>> batch(int... ids) {
+        List<Hashtable<String, Object>> rows = new ArrayList<>();
+        for (int id : ids) {
+            Hashtable<String, Object> row = new Hashtable<>();
+            row.put("id", id);
+            row.put("name", "Name " + id);
+            rows.add(row);
+        }
+
+        return rows;
+    }
+
     @org.junit.jupiter.api.Test
     void testWrongType() {
         try {
@@ -0,0 +1,81 @@
+package DB;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Hashtable;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MetadataTest {
+
+    @Test
+    void testCatalogFollowsDDL() {
+        try {
+            String strTableName = "TestMetadata";
+            DBApp dbApp = new DBApp();
+
+            Hashtable<String, String> htblColNameType = new Hashtable<>();
+            htblColNameType.put("id", "java.lang.Integer");
+            htblColNameType.put("name", "java.lang.String");
+            htblColNameType.put("gpa", "java.lang.Double");
+            dbApp.createTable(strTableName, "id", htblColNameType);
+            dbApp.createIndex(strTableName, "gpa", "gpaIndex");
+
+            Metadata.TableSchema schema = Metadata.getInstance().requireTable(strTableName);
+            assertEquals("id", schema.getClusteringKey().name());
+            assertEquals(Metadata.ColumnType.DOUBLE, schema.getColumn("gpa").type());
+            assertEquals(List.of(new Metadata.Index("gpaIndex", "gpa", "B+tree", "page")), schema.getIndexes());
+            List<Metadata.Column> columns = schema.getColumns();
+            for (int i = 0; i < columns.size(); i++) {
+                assertEquals(i, columns.get(i).ordinal());
+            }
+
+            // the metadata file written by the DDL gives back the same catalog
+            Metadata.init();
+            Metadata.TableSchema loaded = Metadata.getInstance().requireTable(strTableName);
+            assertEquals(columns, loaded.getColumns());
+            assertEquals(schema.getIndexes(), loaded.getIndexes());
+
+            assertThrows(DBAppException.class, () -> Metadata.getInstance().requireTable("TestMetadataMissing"));
+            assertThrows(DBAppException.class, () -> dbApp.createIndex(strTableName, "age", "ageIndex"));
+        } catch (DBAppException e) {
+            e.printStackTrace();
+            fail("DBAppException thrown");
+        }
+    }
+
+    @Test
+    void testCatalogKeepsIndexKind() throws IOException {
+        try {
+            String strTableName = "TestMetadataIndexKind";
+            DBApp dbApp = new DBApp();
+
+            Hashtable<String, String> htblColNameType = new Hashtable<>();
+            htblColNameType.put("id", "java.lang.Integer");
+            htblColNameType.put("name", "java.lang.String");
+            dbApp.createTable(strTableName, "id", htblColNameType);
+            dbApp.createIndex(strTableName, "name", "nameIndex", true);
+            assertTrue(Metadata.getInstance().requireTable(strTableName).getIndex("name").isRecordIndex());
+
+            // a metadata file written before the kind was kept gets it from the index file
+            Path path = Paths.get(DBApp.getDbConfig().getProperty("MetadataPath"));
+            List<String> lines = Files.readAllLines(path);
+            lines.replaceAll(line -> line.substring(0, line.lastIndexOf(',')));
+            Files.write(path, lines);
+            Metadata.init();
+            assertNull(Metadata.getInstance().requireTable(strTableName).getIndex("name").entries());
+
+            Util.completeIndexEntries();
+            Metadata.init();
+            assertEquals("record", Metadata.getInstance().requireTable(strTableName).getIndex("name").entries());
+        } catch (DBAppException e) {
+            e.printStackTrace();
+            fail("DBAppException thrown");
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package DB;
+
+import BTree.DBBTree;
+import BTree.IndexCache;
+import org.junit.jupiter.api.Test;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Hashtable;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PageFormatTest {
+
+    @Test
+    void testEncodeDecode() {
+        try {
+            String strTableName = "TestPageFormat";
+            DBApp dbApp = new DBApp();
+
+            Hashtable<String, String> htblColNameType = new Hashtable<>();
+            htblColNameType.put("id", "java.lang.Integer");
+            htblColNameType.put("name", "java.lang.String");
+            htblColNameType.put("gpa", "java.lang.Double");
+            dbApp.createTable(strTableName, "id", htblColNameType);
+
+            Page page = new Page(strTableName, 3, 200);
+            for (int i = 0; i < 3; i++) {
+                Hashtable<String, Object> values = new Hashtable<>();
+                values.put("id", i);
+                values.put("name", "Name é " + i);
+                values.put("gpa", i + 0.5);
+                page.getRecords().add(new Record(values));
+            }
+            Hashtable<String, Object> partial = new Hashtable<>();
+            partial.put("id", 3);
+            page.getRecords().add(new Record(partial));
+
+            ByteBuffer buffer = PageFormat.encode(page);
+            Page decoded = PageFormat.decode(strTableName, buffer);
+
+            assertEquals(3, decoded.getPageNumber());
+            assertEquals(200, decoded.getMax());
+            assertEquals(4, decoded.size());
+            for (int i = 0; i < 3; i++) {
+                assertEquals(page.getRecords().get(i).hashtable(), decoded.getRecords().get(i).hashtable());
+            }
+            assertEquals(1, decoded.getRecords().get(3).hashtable().size());
+            assertEquals(3, decoded.getRecords().get(3).hashtable().get("id"));
+        } catch (DBAppException e) {
+            e.printStackTrace();
+            fail("DBAppException thrown");
+        }
+    }
+
+    @Test
+    void testSlots() {
+        try {
+            String strTableName = "TestPageSlots";
+            DBApp dbApp = new DBApp();
+
+            Hashtable<String, String> htblColNameType = new Hashtable<>();
+            htblColNameType.put("id", "java.lang.Integer");
+            dbApp.createTable(strTableName, "id", htblColNameType);
+
+            Page page = new Page(strTableName, 0, 200);
+            for (int i = 0; i < 4; i++) {
+                Hashtable<String, Object> values = new Hashtable<>();
+                values.put("id", 10 * i);
+                page.getRecords().add(new Record(values));
+            }
+            assertArrayEquals(new int[]{0, 1, 2, 3}, page.getSlots());
+
+            // the other records keep their slots
+            assertEquals(1, page.removeIf(record -> record.hashtable().get("id").equals(10)));
+            assertArrayEquals(new int[]{0, 2, 3}, page.getSlots());
+            assertEquals(-1, page.findSlot(1));
+            assertEquals(2, page.findSlot(3));
+
+            Page decoded = PageFormat.decode(strTableName, PageFormat.encode(page));
+            assertArrayEquals(new int[]{0, 2, 3}, decoded.getSlots());
+            assertEquals(30, decoded.getRecords().get(decoded.findSlot(3)).hashtable().get("id"));
+        } catch (DBAppException e) {
+            e.printStackTrace();
+            fail("DBAppException thrown");
+        }
+    }
+
+    @Test
+    void testMigrateSerializedPages() {
+        try {
+            String strTableName = "TestPageMigration";
+            DBApp dbApp = new DBApp();
+
+            Hashtable<String, String> htblColNameType = new Hashtable<>();
+            htblColNameType.put("id", "java.lang.Integer");
+            htblColNameType.put("name", "java.lang.String");
+            dbApp.createTable(strTableName, "id", htblColNameType);
+
+            Hashtable<String, Object> values = new Hashtable<>();
+            values.put("id", 7);
+            values.put("name", "legacy");
+            dbApp.insertIntoTable(strTableName, values);
+            dbApp.createIndex(strTableName, "name", "nameIndex");
+            IndexCache.init();
+
+            // rewrite the page the way older versions stored it
+            Table<Object> table = Table.loadTable(strTableName);
+            Page page = table.getPage(0);
+            String legacyPath = Paths.get(DBApp.getDbConfig().getProperty("DataPath"), strTableName, "0.ser")
+                    .toAbsolutePath().toString();
+            try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(legacyPath))) {
+                out.writeObject(page);
+            } catch (IOException e) {
+                fail(e);
+            }
+            table.getPagesPath().set(0, legacyPath);
+            table.saveTable();
+            writeUnreadableIndex(strTableName, "nameIndex");
+
+            assertEquals(1, PageMigrator.migrateTable(dbApp, strTableName));
+            assertEquals(1, DBBTree.loadIndex(strTableName, "nameIndex").searchPages("legacy").getCardinality());
+
+            // an index that can't be read is created again even when no page is left to migrate
+            IndexCache.init();
+            writeUnreadableIndex(strTableName, "nameIndex");
+            assertEquals(0, PageMigrator.migrateTable(dbApp, strTableName));
+            assertEquals(1, DBBTree.loadIndex(strTableName, "nameIndex").searchPages("legacy").getCardinality());
+
+            table = Table.loadTable(strTableName);
+            assertTrue(table.getPagesPath().getFirst().endsWith(PageFormat.EXTENSION));
+            assertFalse(Paths.get(legacyPath).toFile().exists());
+            assertEquals("legacy", table.getPage(0).getRecords().getFirst().hashtable().get("name"));
+        } catch (DBAppException e) {
+            e.printStackTrace();
+            fail("DBAppException thrown");
+        }
+    }
+
+    private static void writeUnreadableIndex(String strTableName, String indexName) {
+        String path = Paths.get(DBApp.getDbConfig().getProperty("DataPath"), strTableName, indexName + ".ser").toString();
+        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(path))) {
+            out.writeObject(new ArrayList<>());
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+}
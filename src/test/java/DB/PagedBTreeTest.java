@@ -0,0 +1,121 @@
+package DB;
+
+import BTree.PagedBTree;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PagedBTreeTest {
+
+    @Test
+    void testPagedTreeMatchesReference() throws IOException {
+        Path path = Files.createTempFile("PagedBTreeTest", PagedBTree.EXTENSION);
+        try {
+            // small pages and a small cache, so the tree is deep and nodes are evicted while it grows
+            PagedBTree<Integer> tree = PagedBTree.create(path, Integer.class, 256, 8);
+            TreeMap<Integer, HashMap<Integer, Integer>> reference = new TreeMap<>();
+            for (int i = 0; i < 5000; i++) {
+                int key = (i * 7919) % 1000;
+                tree.insert(key, i / 100);
+                reference.computeIfAbsent(key, k -> new HashMap<>()).merge(i / 100, 1, Integer::sum);
+            }
+            for (int i = 0; i < 5000; i += 3) {
+                int key = (i * 7919) % 1000;
+                tree.delete(key, i / 100);
+                HashMap<Integer, Integer> counts = reference.get(key);
+                if (counts.merge(i / 100, -1, Integer::sum) == 0) {
+                    counts.remove(i / 100);
+                    if (counts.isEmpty()) {
+                        reference.remove(key);
+                    }
+                }
+            }
+            assertTrue(tree.getHeight() > 2);
+
+            for (int key = 0; key < 1000; key++) {
+                assertEquals(reference.get(key), tree.search(key));
+            }
+            HashSet<Integer> pages = new HashSet<>();
+            for (HashMap<Integer, Integer> counts : reference.subMap(100, true, 120, true).values()) {
+                pages.addAll(counts.keySet());
+            }
+            assertEquals(pages, tree.searchRange(100, 120));
+            tree.close();
+
+            // a lookup after reopening only reads the nodes on its path
+            tree = PagedBTree.open(path, 4);
+            int height = tree.getHeight();
+            long reads = tree.getNodeReads();
+            assertEquals(reference.get(500), tree.search(500));
+            assertTrue(tree.getNodeReads() - reads <= height + 1);
+            tree.close();
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    void testPagedTreeStringKeys() throws IOException {
+        Path path = Files.createTempFile("PagedBTreeTest", PagedBTree.EXTENSION);
+        try {
+            PagedBTree<String> tree = PagedBTree.create(path, String.class, 512, 16);
+            for (int i = 0; i < 300; i++) {
+                tree.insert("name" + (i % 30), i % 4);
+            }
+            tree.close();
+
+            PagedBTree<String> reopened = PagedBTree.open(path, 16);
+            // name7 is inserted for i = 7, 37, 67, ..., which alternate between pages 3 and 1
+            assertEquals(Map.of(1, 5, 3, 5), reopened.search("name7"));
+            assertNull(reopened.search("missing"));
+            assertThrows(IllegalArgumentException.class, () -> reopened.insert("x".repeat(512), 0));
+            reopened.close();
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    void testPagedTreeRangeScanReadsAhead() throws IOException {
+        Path path = Files.createTempFile("PagedBTreeTest", PagedBTree.EXTENSION);
+        try {
+            PagedBTree<Integer> tree = PagedBTree.create(path, Integer.class, 256, 16);
+            for (int i = 0; i < 3000; i++) {
+                tree.insert(i, i / 50);
+            }
+            tree.close();
+
+            // the leaves of the chain are read ahead, the scan still finds every page once
+            tree = PagedBTree.open(path, 16);
+            HashSet<Integer> pages = new HashSet<>();
+            for (int i = 0; i < 60; i++) {
+                pages.add(i);
+            }
+            assertEquals(pages, tree.searchRange(null, null));
+            assertEquals(new HashSet<>(List.of(10, 11, 12)), tree.searchRange(500, 649));
+
+            // leaves read ahead before a change are not used after it
+            tree.searchRange(0, 1000);
+            for (int i = 0; i < 3000; i += 2) {
+                tree.delete(i, i / 50);
+                tree.insert(i, 100);
+            }
+            HashSet<Integer> changed = new HashSet<>(pages);
+            changed.add(100);
+            assertEquals(changed, tree.searchRange(null, null));
+            assertEquals(Map.of(100, 1), tree.search(2000));
+            tree.close();
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+}
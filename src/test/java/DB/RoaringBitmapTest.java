@@ -0,0 +1,110 @@
+package DB;
+
+import BTree.PostingList;
+import BTree.RoaringBitmap;
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RoaringBitmapTest {
+
+    @Test
+    void testBitmapMatchesReference() throws IOException, ClassNotFoundException {
+        Random random = new Random(3);
+        // sparse chunks stay arrays, the dense chunk of the first set becomes a bitmap
+        TreeSet<Integer> a = new TreeSet<>();
+        TreeSet<Integer> b = new TreeSet<>();
+        for (int i = 0; i < 20000; i++) {
+            a.add(random.nextInt(30000));
+            b.add(random.nextInt(200000));
+        }
+        for (int i = 0; i < 3000; i++) {
+            a.add(65536 * 3 + random.nextInt(65536));
+        }
+        RoaringBitmap bitmapA = of(a);
+        RoaringBitmap bitmapB = of(b);
+
+        assertEquals(a.size(), bitmapA.getCardinality());
+        assertArrayEquals(toArray(a), bitmapA.toArray());
+        for (int value = 0; value < 70000; value += 7) {
+            assertEquals(a.contains(value), bitmapA.contains(value));
+            assertEquals(a.headSet(value, true).size(), bitmapA.rank(value));
+        }
+
+        TreeSet<Integer> and = new TreeSet<>(a);
+        and.retainAll(b);
+        TreeSet<Integer> or = new TreeSet<>(a);
+        or.addAll(b);
+        TreeSet<Integer> andNot = new TreeSet<>(a);
+        andNot.removeAll(b);
+        assertArrayEquals(toArray(and), RoaringBitmap.and(bitmapA, bitmapB).toArray());
+        assertArrayEquals(toArray(or), RoaringBitmap.or(bitmapA, bitmapB).toArray());
+        assertArrayEquals(toArray(andNot), RoaringBitmap.andNot(bitmapA, bitmapB).toArray());
+        // the static operations leave their operands unchanged
+        assertArrayEquals(toArray(a), bitmapA.toArray());
+
+        RoaringBitmap inPlace = bitmapA.clone();
+        inPlace.or(bitmapB);
+        assertEquals(RoaringBitmap.or(bitmapA, bitmapB), inPlace);
+        inPlace.andNot(bitmapB);
+        inPlace.and(bitmapA);
+        assertEquals(RoaringBitmap.andNot(bitmapA, bitmapB), inPlace);
+
+        // removing most of a dense chunk turns it back into an array
+        for (int value : toArray(a)) {
+            if (value % 5 != 0) {
+                assertTrue(bitmapA.remove(value));
+            }
+        }
+        a.removeIf(value -> value % 5 != 0);
+        assertFalse(bitmapA.remove(1));
+        assertArrayEquals(toArray(a), bitmapA.toArray());
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(bitmapA);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            RoaringBitmap read = (RoaringBitmap) in.readObject();
+            assertEquals(bitmapA, read);
+            read.add(1);
+            assertTrue(read.contains(1));
+        }
+    }
+
+    @Test
+    void testPostingListCounts() {
+        PostingList postings = new PostingList();
+        HashMap<Integer, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            int page = (i * 37) % 101;
+            postings.add(page);
+            expected.merge(page, 1, Integer::sum);
+        }
+        for (int i = 0; i < 1000; i += 2) {
+            int page = (i * 37) % 101;
+            assertTrue(postings.remove(page));
+            if (expected.merge(page, -1, Integer::sum) == 0) {
+                expected.remove(page);
+            }
+        }
+
+        assertFalse(postings.remove(500));
+        assertEquals(expected, postings.toMap());
+        assertEquals(expected.size(), postings.getPages().getCardinality());
+        assertEquals(expected.getOrDefault(36, 0), postings.count(36));
+    }
+
+    private static RoaringBitmap of(TreeSet<Integer> values) {
+        return RoaringBitmap.of(toArray(values));
+    }
+
+    private static int[] toArray(TreeSet<Integer> values) {
+        return values.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
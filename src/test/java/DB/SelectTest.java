@@ -8,159 +8,91 @@ import static org.junit.jupiter.api.Assertions.*;
 class SelectTest {
 
     @org.junit.jupiter.api.Test
-    void testToPostfix2() {
-        SQLTerm[] arrSQLTerms = new SQLTerm[2];
-        arrSQLTerms[0] = new SQLTerm();
-        arrSQLTerms[0]._strColumnName = "name";
-        arrSQLTerms[0]._strOperator = "=";
-        arrSQLTerms[0]._objValue = "John";
-        arrSQLTerms[1] = new SQLTerm();
-        arrSQLTerms[1]._strColumnName = "age";
-        arrSQLTerms[1]._strOperator = "=";
-        arrSQLTerms[1]._objValue = Integer.valueOf(20);
-
-        String[] strarrOperators = new String[1];
-        strarrOperators[0] = "AND";
-
-        Hashtable record = new Hashtable();
-        record.put("name", "John");
-        record.put("age", Integer.valueOf(20));
-
-        LinkedList postfix = Util.toPostfix(record, arrSQLTerms, strarrOperators);
-
-        // name = "John" AND age = 20
-        // [true, true, "AND"]
-        // System.out.println(postfix);
-
-        assertEquals(3, postfix.size());
-        assertEquals(true, postfix.get(0));
-        assertEquals(true, postfix.get(1));
-        assertEquals("AND", postfix.get(2));
-    }
-
-    @org.junit.jupiter.api.Test
-    void testToPostfix3() {
-
-        SQLTerm[] arrSQLTerms = new SQLTerm[3];
-        arrSQLTerms[0] = new SQLTerm();
-        arrSQLTerms[0]._strColumnName = "name";
-        arrSQLTerms[0]._strOperator = "=";
-        arrSQLTerms[0]._objValue = "John";
-        arrSQLTerms[1] = new SQLTerm();
-        arrSQLTerms[1]._strColumnName = "age";
-        arrSQLTerms[1]._strOperator = "=";
-        arrSQLTerms[1]._objValue = Integer.valueOf(20);
-        arrSQLTerms[2] = new SQLTerm();
-        arrSQLTerms[2]._strColumnName = "gpa";
-        arrSQLTerms[2]._strOperator = "=";
-        arrSQLTerms[2]._objValue = Double.valueOf(3.5);
-
-        String[] strarrOperators = new String[2];
-        strarrOperators[0] = "OR";
-        strarrOperators[1] = "AND";
-
-        Hashtable record = new Hashtable();
-        record.put("name", "John");
-        record.put("age", Integer.valueOf(20));
-        record.put("gpa", Double.valueOf(1.5));
-
-
-        LinkedList postfix = Util.toPostfix(record, arrSQLTerms, strarrOperators);
-
-        // name = "John" OR age = 20 AND gpa = 3.5
-        // [true, true, false, "AND", "OR"]
-        // System.out.println(postfix);
-
-        assertEquals(5, postfix.size());
-        assertEquals(true, postfix.get(0));
-        assertEquals(true, postfix.get(1));
-        assertEquals(false, postfix.get(2));
-        assertEquals("AND", postfix.get(3));
-        assertEquals("OR", postfix.get(4));
+    void testConditionAnd() {
+        try {
+            String strTableName = "TestConditionAnd";
+            Metadata.TableSchema schema = createConditionTable(strTableName);
+            SQLTerm[] arrSQLTerms = new SQLTerm[2];
+            String[] columns = {"name", "age", "gpa", "gender"};
+            Object[] values = {"John", 20, 3.5, "Male"};
+            for (int i = 0; i < arrSQLTerms.length; i++) {
+                arrSQLTerms[i] = new SQLTerm();
+                arrSQLTerms[i]._strTableName = strTableName;
+                arrSQLTerms[i]._strColumnName = columns[i];
+                arrSQLTerms[i]._strOperator = "=";
+                arrSQLTerms[i]._objValue = values[i];
+            }
+
+            Condition condition = Condition.compile(arrSQLTerms, new String[]{"AND"}, schema);
+
+            // name = "John" AND age = 20
+            assertTrue(condition.test(new Record(new Hashtable<>(Map.of("name", "John", "age", 20)))));
+            assertFalse(condition.test(new Record(new Hashtable<>(Map.of("name", "John", "age", 21)))));
+            assertFalse(condition.test(new Record(new Hashtable<>(Map.of("name", "Jane", "age", 20)))));
+        } catch (DBAppException e) {
+            e.printStackTrace();
+            fail("DBAppException thrown");
+        }
     }
 
-
     @org.junit.jupiter.api.Test
-    void testToPostfix4() {
-
-        SQLTerm[] arrSQLTerms = new SQLTerm[4];
-        arrSQLTerms[0] = new SQLTerm();
-        arrSQLTerms[0]._strColumnName = "name";
-        arrSQLTerms[0]._strOperator = "=";
-        arrSQLTerms[0]._objValue = "John";
-        arrSQLTerms[1] = new SQLTerm();
-        arrSQLTerms[1]._strColumnName = "age";
-        arrSQLTerms[1]._strOperator = "=";
-        arrSQLTerms[1]._objValue = Integer.valueOf(20);
-        arrSQLTerms[2] = new SQLTerm();
-        arrSQLTerms[2]._strColumnName = "gpa";
-        arrSQLTerms[2]._strOperator = "=";
-        arrSQLTerms[2]._objValue = Double.valueOf(3.5);
-        arrSQLTerms[3] = new SQLTerm();
-        arrSQLTerms[3]._strColumnName = "gender";
-        arrSQLTerms[3]._strOperator = "=";
-        arrSQLTerms[3]._objValue = "Male";
-
-
-        String[] strarrOperators = new String[3];
-        strarrOperators[0] = "OR";
-        strarrOperators[1] = "AND";
-        strarrOperators[2] = "XOR";
-
-        Hashtable record = new Hashtable();
-        record.put("name", "John");
-        record.put("age", Integer.valueOf(20));
-        record.put("gpa", Double.valueOf(1.5));
-        record.put("gender", "Male");
-
-
-        LinkedList postfix = Util.toPostfix(record, arrSQLTerms, strarrOperators);
-
-        // name = "John" OR age = 20 AND gpa = 3.5 XOR gender = "Male"
-        // [true, true, false, "AND", "OR", true, "XOR"]
-        // System.out.println(postfix);
-
-        assertEquals(7, postfix.size());
-        assertEquals(true, postfix.get(0));
-        assertEquals(true, postfix.get(1));
-        assertEquals(false, postfix.get(2));
-        assertEquals("AND", postfix.get(3));
-        assertEquals("OR", postfix.get(4));
-        assertEquals(true, postfix.get(5));
-        assertEquals("XOR", postfix.get(6));
+    void testConditionAndBeforeOr() {
+        try {
+            String strTableName = "TestConditionAndBeforeOr";
+            Metadata.TableSchema schema = createConditionTable(strTableName);
+            SQLTerm[] arrSQLTerms = new SQLTerm[3];
+            String[] columns = {"name", "age", "gpa", "gender"};
+            Object[] values = {"John", 20, 3.5, "Male"};
+            for (int i = 0; i < arrSQLTerms.length; i++) {
+                arrSQLTerms[i] = new SQLTerm();
+                arrSQLTerms[i]._strTableName = strTableName;
+                arrSQLTerms[i]._strColumnName = columns[i];
+                arrSQLTerms[i]._strOperator = "=";
+                arrSQLTerms[i]._objValue = values[i];
+            }
+
+            Condition condition = Condition.compile(arrSQLTerms, new String[]{"OR", "AND"}, schema);
+
+            // name = "John" OR age = 20 AND gpa = 3.5, true OR (true AND false)
+            // evaluated from left to right it would be (true OR true) AND false
+            assertTrue(condition.test(new Record(new Hashtable<>(Map.of("name", "John", "age", 20, "gpa", 1.5)))));
+            assertFalse(condition.test(new Record(new Hashtable<>(Map.of("name", "Jane", "age", 20, "gpa", 1.5)))));
+            assertTrue(condition.test(new Record(new Hashtable<>(Map.of("name", "Jane", "age", 20, "gpa", 3.5)))));
+        } catch (DBAppException e) {
+            e.printStackTrace();
+            fail("DBAppException thrown");
+        }
     }
 
     @org.junit.jupiter.api.Test
-    void testEvaluatePostfix() {
-        LinkedList postfix = new LinkedList();
-        postfix.add(true);
-        postfix.add(true);
-        postfix.add("AND");
-
-        boolean result = Util.evaluatePostfix(postfix);
-        assertEquals(true, result);
-
-        postfix.clear();
-        postfix.add(true);
-        postfix.add(true);
-        postfix.add(false);
-        postfix.add("AND");
-        postfix.add("OR");
-
-        result = Util.evaluatePostfix(postfix);
-        assertEquals(true, result);
-
-        postfix.clear();
-        postfix.add(true);
-        postfix.add(true);
-        postfix.add(false);
-        postfix.add("AND");
-        postfix.add("OR");
-        postfix.add(true);
-        postfix.add("XOR");
-
-        result = Util.evaluatePostfix(postfix);
-        assertFalse(result);
+    void testConditionOrBeforeXor() {
+        try {
+            String strTableName = "TestConditionOrBeforeXor";
+            Metadata.TableSchema schema = createConditionTable(strTableName);
+            SQLTerm[] arrSQLTerms = new SQLTerm[4];
+            String[] columns = {"name", "age", "gpa", "gender"};
+            Object[] values = {"John", 20, 3.5, "Male"};
+            for (int i = 0; i < arrSQLTerms.length; i++) {
+                arrSQLTerms[i] = new SQLTerm();
+                arrSQLTerms[i]._strTableName = strTableName;
+                arrSQLTerms[i]._strColumnName = columns[i];
+                arrSQLTerms[i]._strOperator = "=";
+                arrSQLTerms[i]._objValue = values[i];
+            }
+
+            Condition condition = Condition.compile(arrSQLTerms, new String[]{"OR", "AND", "XOR"}, schema);
+
+            // name = "John" OR age = 20 AND gpa = 3.5 XOR gender = "Male", (true OR (true AND false)) XOR true
+            Hashtable<String, Object> record = new Hashtable<>(Map.of("name", "John", "age", 20, "gpa", 1.5, "gender", "Male"));
+            assertFalse(condition.test(new Record(record)));
+            record.put("gender", "Female");
+            assertTrue(condition.test(new Record(record)));
+            record.put("name", "Jane");
+            assertFalse(condition.test(new Record(record)));
+        } catch (DBAppException e) {
+            e.printStackTrace();
+            fail("DBAppException thrown");
+        }
     }
 
     @org.junit.jupiter.api.Test
@@ -312,4 +244,353 @@ class SelectTest {
             fail("DBAppException thrown");
         }
     }
-}
\ No newline at end of file
+
+    @org.junit.jupiter.api.Test
+    void testSelectIndexOnlyForAnd() {
+        try {
+            String strTableName = "TestSelectIndexOnlyForAnd";
+            DBApp dbApp = new DBApp();
+            DBApp.getDbConfig().put("MaximumRowsCountinPage", "2");
+
+            Hashtable htblColNameType = new Hashtable();
+            htblColNameType.put("id", "java.lang.Integer");
+            htblColNameType.put("name", "java.lang.String");
+            htblColNameType.put("grade", "java.lang.Integer");
+            dbApp.createTable(strTableName, "id", htblColNameType);
+            dbApp.createIndex(strTableName, "grade", "GradeIndex");
+
+            // only the first page holds grade 11
+            for (int id = 1; id <= 6; id++) {
+                Hashtable htblColNameValue = new Hashtable();
+                htblColNameValue.put("id", id);
+                htblColNameValue.put("name", id == 1 ? "a" : "b");
+                htblColNameValue.put("grade", id <= 2 ? 11 : 12);
+                dbApp.insertIntoTable(strTableName, htblColNameValue);
+            }
+
+            // id = 5 OR name = "a" AND grade = 11, the grade index must not hide id 5
+            SQLTerm[] arrSQLTerms = new SQLTerm[3];
+            String[] columns = {"id", "name", "grade"};
+            Object[] values = {5, "a", 11};
+            for (int i = 0; i < 3; i++) {
+                arrSQLTerms[i] = new SQLTerm();
+                arrSQLTerms[i]._strTableName = strTableName;
+                arrSQLTerms[i]._strColumnName = columns[i];
+                arrSQLTerms[i]._strOperator = "=";
+                arrSQLTerms[i]._objValue = values[i];
+            }
+            ArrayList list = new ArrayList();
+            dbApp.selectFromTable(arrSQLTerms, new String[]{"OR", "AND"}).forEachRemaining(list::add);
+            assertEquals(2, list.size());
+            assertEquals(1, ((Record) list.get(0)).hashtable().get("id"));
+            assertEquals(5, ((Record) list.get(1)).hashtable().get("id"));
+
+            // when every operator is AND an empty lookup means no record matches
+            arrSQLTerms[0]._objValue = 1;
+            arrSQLTerms[2]._objValue = 12;
+            list.clear();
+            dbApp.selectFromTable(arrSQLTerms, new String[]{"AND", "AND"}).forEachRemaining(list::add);
+            assertEquals(0, list.size());
+        } catch (DBAppException e) {
+            e.printStackTrace();
+            fail("DBAppException thrown");
+        }
+    }
+
+    @org.junit.jupiter.api.Test
+    void testCursor() {
+        try {
+            String strTableName = "TestCursor";
+            DBApp dbApp = new DBApp();
+            DBApp.getDbConfig().put("MaximumRowsCountinPage", "2");
+
+            Hashtable htblColNameType = new Hashtable();
+            htblColNameType.put("id", "java.lang.Integer");
+            htblColNameType.put("grade", "java.lang.Integer");
+            dbApp.createTable(strTableName, "id", htblColNameType);
+
+            for (int i = 0; i < 8; i++) {
+                Hashtable htblColNameValue = new Hashtable();
+                htblColNameValue.put("id", i);
+                htblColNameValue.put("grade", i % 2);
+                dbApp.insertIntoTable(strTableName, htblColNameValue);
+            }
+
+            SQLTerm[] arrSQLTerms = new SQLTerm[1];
+            arrSQLTerms[0] = new SQLTerm();
+            arrSQLTerms[0]._strTableName = strTableName;
+            arrSQLTerms[0]._strColumnName = "grade";
+            arrSQLTerms[0]._strOperator = "=";
+            arrSQLTerms[0]._objValue = 1;
+
+            // the pages are read one at a time as the cursor advances, so a page removed in the meantime is skipped
+            DBApp.getDbConfig().put("ScanThreads", "1");
+            Cursor cursor = dbApp.selectFromTable(arrSQLTerms, new String[0]);
+            DBApp.getDbConfig().remove("ScanThreads");
+            assertEquals(1, cursor.next().hashtable().get("id"));
+            Hashtable htblColNameValue = new Hashtable();
+            htblColNameValue.put("id", 4);
+            dbApp.deleteFromTable(strTableName, htblColNameValue);
+            htblColNameValue.put("id", 5);
+            dbApp.deleteFromTable(strTableName, htblColNameValue);
+
+            ArrayList<Object> ids = new ArrayList<>();
+            cursor.forEachRemaining(record -> ids.add(record.hashtable().get("id")));
+            assertEquals(List.of(3, 7), ids);
+            assertFalse(cursor.hasNext());
+            assertThrows(NoSuchElementException.class, cursor::next);
+
+            // a closed cursor returns no more records
+            arrSQLTerms[0]._strOperator = "*";
+            try (Cursor all = dbApp.selectFromTable(arrSQLTerms, new String[0])) {
+                assertEquals(0, all.next().hashtable().get("id"));
+                all.close();
+                assertFalse(all.hasNext());
+            }
+
+            // the returned records are copies, changing one doesn't reach the cached pages
+            arrSQLTerms[0]._strOperator = "=";
+            Record record = dbApp.selectFromTable(arrSQLTerms, new String[0]).next();
+            assertEquals(1, record.hashtable().get("id"));
+            record.hashtable().put("grade", 0);
+            record.hashtable().remove("id");
+            assertEquals(List.of(1, 3, 7), selectIds(dbApp, arrSQLTerms));
+            assertEquals(1, Table.loadTable(strTableName).getPage(0).getRecords().get(1).hashtable().get("grade"));
+        } catch (DBAppException e) {
+            e.printStackTrace();
+            fail("DBAppException thrown");
+        }
+    }
+
+    @org.junit.jupiter.api.Test
+    void testCondition() {
+        try {
+            String strTableName = "TestCondition";
+            DBApp dbApp = new DBApp();
+
+            Hashtable htblColNameType = new Hashtable();
+            htblColNameType.put("id", "java.lang.Integer");
+            htblColNameType.put("name", "java.lang.String");
+            htblColNameType.put("gpa", "java.lang.Double");
+            dbApp.createTable(strTableName, "id", htblColNameType);
+            Metadata.TableSchema schema = Metadata.getInstance().requireTable(strTableName);
+
+            SQLTerm[] arrSQLTerms = new SQLTerm[4];
+            String[] columns = {"id", "name", "gpa", "id"};
+            Object[] values = {5, "m", 1.5, 2};
+            String[] operators = {"<", ">=", "=", "!="};
+            for (int i = 0; i < arrSQLTerms.length; i++) {
+                arrSQLTerms[i] = new SQLTerm();
+                arrSQLTerms[i]._strTableName = strTableName;
+                arrSQLTerms[i]._strColumnName = columns[i];
+                arrSQLTerms[i]._strOperator = operators[i];
+                arrSQLTerms[i]._objValue = values[i];
+            }
+
+            // the compiled condition gives the result of evaluating the terms one by one for every operator and record
+            String[] logical = {"AND", "OR", "XOR"};
+            for (int ops = 0; ops < 27; ops++) {
+                String[] strarrOperators = {logical[ops % 3], logical[ops / 3 % 3], logical[ops / 9]};
+                Condition condition = Condition.compile(arrSQLTerms, strarrOperators, schema);
+                for (int id = 0; id < 8; id++) {
+                    for (String name : new String[]{"a", "z"}) {
+                        for (double gpa : new double[]{1.5, 2.5}) {
+                            Hashtable<String, Object> record = new Hashtable<>(Map.of("id", id, "name", name, "gpa", gpa));
+                            boolean expected = evaluate(record, arrSQLTerms, strarrOperators);
+                            assertEquals(expected, condition.test(new Record(record)));
+                        }
+                    }
+                }
+            }
+
+            assertThrows(DBAppException.class, () -> Condition.compile(arrSQLTerms, new String[]{"AND", "NAND", "OR"}, schema));
+            assertThrows(DBAppException.class, () -> Condition.compile(arrSQLTerms, new String[]{"AND"}, schema));
+        } catch (DBAppException e) {
+            e.printStackTrace();
+            fail("DBAppException thrown");
+        }
+    }
+
+    @org.junit.jupiter.api.Test
+    void testParallelScan() {
+        try {
+            String strTableName = "TestParallelScan";
+            DBApp dbApp = new DBApp();
+            DBApp.getDbConfig().put("MaximumRowsCountinPage", "2");
+            DBApp.getDbConfig().put("ScanThreads", "4");
+
+            Hashtable htblColNameType = new Hashtable();
+            htblColNameType.put("id", "java.lang.Integer");
+            htblColNameType.put("grade", "java.lang.Integer");
+            htblColNameType.put("name", "java.lang.String");
+            dbApp.createTable(strTableName, "id", htblColNameType);
+            dbApp.createIndex(strTableName, "grade", "gradeIndex");
+
+            ArrayList<Hashtable<String, Object>> rows = new ArrayList<>();
+            for (int i = 0; i < 60; i++) {
+                rows.add(new Hashtable<>(Map.of("id", i, "grade", i % 3, "name", "Name " + i % 5)));
+            }
+            dbApp.insertBatch(strTableName, rows);
+
+            SQLTerm[] arrSQLTerms = new SQLTerm[1];
+            arrSQLTerms[0] = new SQLTerm();
+            arrSQLTerms[0]._strTableName = strTableName;
+            arrSQLTerms[0]._strColumnName = "name";
+            arrSQLTerms[0]._strOperator = "!=";
+            arrSQLTerms[0]._objValue = "Name 0";
+
+            // the pages read ahead by the pool are returned in the order of the table
+            ArrayList<Object> ids = new ArrayList<>();
+            dbApp.selectFromTable(arrSQLTerms, new String[0]).forEachRemaining(record -> ids.add(record.hashtable().get("id")));
+            assertEquals(48, ids.size());
+            for (int i = 1; i < ids.size(); i++) {
+                assertTrue((Integer) ids.get(i - 1) < (Integer) ids.get(i));
+                assertNotEquals(0, (Integer) ids.get(i) % 5);
+            }
+
+            arrSQLTerms[0]._strColumnName = "grade";
+            arrSQLTerms[0]._strOperator = "=";
+            arrSQLTerms[0]._objValue = 1;
+            ids.clear();
+            dbApp.selectFromTable(arrSQLTerms, new String[0]).forEachRemaining(record -> ids.add(record.hashtable().get("id")));
+            assertEquals(20, ids.size());
+            for (int i = 0; i < ids.size(); i++) {
+                assertEquals(3 * i + 1, ids.get(i));
+            }
+
+            // the pages holding matching records are found in parallel
+            dbApp.deleteFromTable(strTableName, new Hashtable<>(Map.of("name", "Name 1")));
+            arrSQLTerms[0]._strOperator = "*";
+            ids.clear();
+            dbApp.selectFromTable(arrSQLTerms, new String[0]).forEachRemaining(record -> ids.add(record.hashtable().get("id")));
+            assertEquals(48, ids.size());
+            assertFalse(ids.contains(1));
+            assertFalse(ids.contains(56));
+            assertTrue(ids.contains(55));
+            DBApp.getDbConfig().remove("ScanThreads");
+        } catch (DBAppException e) {
+            e.printStackTrace();
+            fail("DBAppException thrown");
+        }
+    }
+
+    @org.junit.jupiter.api.Test
+    void testZoneMaps() {
+        try {
+            String strTableName = "TestZoneMaps";
+            DBApp dbApp = new DBApp();
+            DBApp.getDbConfig().put("MaximumRowsCountinPage", "2");
+
+            Hashtable htblColNameType = new Hashtable();
+            htblColNameType.put("id", "java.lang.Integer");
+            htblColNameType.put("gpa", "java.lang.Double");
+            htblColNameType.put("name", "java.lang.String");
+            dbApp.createTable(strTableName, "id", htblColNameType);
+
+            // the odd ids are inserted between the even ones, so pages are split
+            for (int i = 0; i < 40; i++) {
+                int id = i < 20 ? 2 * i : 2 * (i - 20) + 1;
+                dbApp.insertIntoTable(strTableName, new Hashtable<>(Map.of("id", id, "gpa", id / 10.0, "name", "Name " + id % 5)));
+            }
+
+            SQLTerm[] arrSQLTerms = new SQLTerm[1];
+            arrSQLTerms[0] = new SQLTerm();
+            arrSQLTerms[0]._strTableName = strTableName;
+            arrSQLTerms[0]._strColumnName = "gpa";
+            arrSQLTerms[0]._strOperator = ">";
+            arrSQLTerms[0]._objValue = 3.55;
+            assertEquals(List.of(36, 37, 38, 39), selectIds(dbApp, arrSQLTerms));
+
+            // every skipped page holds no matching record
+            Table<Object> table = Table.loadTable(strTableName);
+            Condition condition = Condition.compile(arrSQLTerms, new String[0], Metadata.getInstance().requireTable(strTableName));
+            int[] pageIndexes = new int[table.pagesCount()];
+            Arrays.setAll(pageIndexes, i -> i);
+            int[] candidates = table.pagesMayMatch(pageIndexes, condition);
+            assertTrue(candidates.length <= 3);
+            for (int i = 0; i < table.pagesCount(); i++) {
+                if (Arrays.binarySearch(candidates, i) < 0) {
+                    assertTrue(table.getPage(i).getRecords().stream().noneMatch(condition));
+                }
+            }
+            assertEquals(0.0, table.getZoneMap(0).getMin("gpa"));
+
+            // updates widen the zone map of their page, the bounds kept by deletes still hold the records
+            dbApp.updateTable(strTableName, "39", new Hashtable<>(Map.of("gpa", 0.05)));
+            dbApp.deleteFromTable(strTableName, new Hashtable<>(Map.of("id", 38)));
+            dbApp.deleteFromTable(strTableName, new Hashtable<>(Map.of("name", "Name 2")));
+            assertEquals(List.of(36), selectIds(dbApp, arrSQLTerms));
+            arrSQLTerms[0]._strOperator = "<";
+            arrSQLTerms[0]._objValue = 0.06;
+            assertEquals(List.of(0, 39), selectIds(dbApp, arrSQLTerms));
+
+            // the last page takes the appends, it is never skipped, the zone maps are saved with the table
+            assertNull(table.getZoneMap(table.pagesCount() - 1));
+            String zoneMap = table.getZoneMap(0).toString();
+            Table.invalidateAll();
+            assertEquals(zoneMap, Table.loadTable(strTableName).getZoneMap(0).toString());
+            assertEquals(List.of(0, 39), selectIds(dbApp, arrSQLTerms));
+        } catch (DBAppException e) {
+            e.printStackTrace();
+            fail("DBAppException thrown");
+        }
+    }
+
+    private static List<Object> selectIds(DBApp dbApp, SQLTerm[] arrSQLTerms) throws DBAppException {
+        ArrayList<Object> ids = new ArrayList<>();
+        dbApp.selectFromTable(arrSQLTerms, new String[0]).forEachRemaining(record -> ids.add(record.hashtable().get("id")));
+        return ids;
+    }
+
+    private static Metadata.TableSchema createConditionTable(String strTableName) throws DBAppException {
+        DBApp dbApp = new DBApp();
+
+        Hashtable htblColNameType = new Hashtable();
+        htblColNameType.put("name", "java.lang.String");
+        htblColNameType.put("age", "java.lang.Integer");
+        htblColNameType.put("gpa", "java.lang.Double");
+        htblColNameType.put("gender", "java.lang.String");
+        dbApp.createTable(strTableName, "name", htblColNameType);
+
+        return Metadata.getInstance().requireTable(strTableName);
+    }
+
+    /**
+     * Evaluates every term on a record, then combines them with "AND" before "OR" before "XOR", from left to right.
+     */
+    private static boolean evaluate(Hashtable<String, Object> record, SQLTerm[] arrSQLTerms, String[] strarrOperators) {
+        boolean[] terms = new boolean[arrSQLTerms.length];
+        for (int i = 0; i < arrSQLTerms.length; i++) {
+            int cmp = ((Comparable) record.get(arrSQLTerms[i]._strColumnName)).compareTo(arrSQLTerms[i]._objValue);
+            terms[i] = switch (arrSQLTerms[i]._strOperator) {
+                case "=" -> cmp == 0;
+                case "!=" -> cmp != 0;
+                case ">" -> cmp > 0;
+                case ">=" -> cmp >= 0;
+                case "<" -> cmp < 0;
+                case "<=" -> cmp <= 0;
+                default -> throw new IllegalArgumentException(arrSQLTerms[i]._strOperator);
+            };
+        }
+
+        boolean xor = false;
+        boolean or = false;
+        boolean and = terms[0];
+        for (int i = 0; i < strarrOperators.length; i++) {
+            switch (strarrOperators[i]) {
+                case "AND" -> and &= terms[i + 1];
+                case "OR" -> {
+                    or |= and;
+                    and = terms[i + 1];
+                }
+                default -> {
+                    xor ^= or | and;
+                    or = false;
+                    and = terms[i + 1];
+                }
+            }
+        }
+
+        return xor ^ (or | and);
+    }
+}
@@ -0,0 +1,85 @@
+package DB;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Hashtable;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TableTest {
+
+    @Test
+    void testOpenTableIsShared() {
+        try {
+            String strTableName = "TestOpenTable";
+            DBApp dbApp = new DBApp();
+            DBApp.getDbConfig().put("MaximumRowsCountinPage", "2");
+
+            Hashtable<String, String> htblColNameType = new Hashtable<>();
+            htblColNameType.put("id", "java.lang.Integer");
+            dbApp.createTable(strTableName, "id", htblColNameType);
+
+            Table<Object> table = Table.loadTable(strTableName);
+            for (int i = 0; i < 5; i++) {
+                Hashtable<String, Object> values = new Hashtable<>();
+                values.put("id", i);
+                dbApp.insertIntoTable(strTableName, values);
+
+                // every statement works on the same handle
+                assertSame(table, Table.loadTable(strTableName));
+            }
+            assertEquals(3, table.pagesCount());
+
+            // the changes reached the table file
+            Table.invalidateAll();
+            Table<Object> loaded = Table.loadTable(strTableName);
+            assertNotSame(table, loaded);
+            assertEquals(table.getPagesPath(), loaded.getPagesPath());
+            assertEquals(table.getClusteringKeyMin(), loaded.getClusteringKeyMin());
+        } catch (DBAppException e) {
+            e.printStackTrace();
+            fail("DBAppException thrown");
+        }
+    }
+
+    @Test
+    void testClusteringKeyMinFollowsFirstRecords() {
+        try {
+            String strTableName = "TestClusteringKeyMin";
+            DBApp dbApp = new DBApp();
+            DBApp.getDbConfig().put("MaximumRowsCountinPage", "2");
+
+            Hashtable<String, String> htblColNameType = new Hashtable<>();
+            htblColNameType.put("id", "java.lang.Integer");
+            dbApp.createTable(strTableName, "id", htblColNameType);
+
+            // smaller keys are inserted at the start of the pages and shift their minimums
+            int[] ids = {10, 20, 30, 40, 50, 5, 25, 15, 1};
+            Table<Object> table = Table.loadTable(strTableName);
+            for (int id : ids) {
+                Hashtable<String, Object> values = new Hashtable<>();
+                values.put("id", id);
+                dbApp.insertIntoTable(strTableName, values);
+                assertClusteringKeyMin(table);
+            }
+
+            Hashtable<String, Object> values = new Hashtable<>();
+            values.put("id", 1);
+            dbApp.deleteFromTable(strTableName, values);
+            assertClusteringKeyMin(table);
+        } catch (DBAppException e) {
+            e.printStackTrace();
+            fail("DBAppException thrown");
+        }
+    }
+
+    /**
+     * Checks that the table holds one clustering key minimum per page, the key of its first record.
+     */
+    private static void assertClusteringKeyMin(Table<Object> table) {
+        assertEquals(table.pagesCount(), table.getClusteringKeyMin().size());
+        for (int i = 0; i < table.pagesCount(); i++) {
+            assertEquals(table.getPage(i).getRecords().getFirst().hashtable().get("id"), table.getClusteringKeyMin().get(i));
+        }
+    }
+}
@@ -54,4 +54,41 @@ public class UpdateTest {
             fail("An exception occurred");
         }
     }
+
+    @Test
+    void testUpdateMissingRecordKeepsIndex() {
+        try {
+            String strTableName = "TestUpdateMissingRecord";
+            DBApp dbApp = new DBApp();
+            DBApp.getDbConfig().put("MaximumRowsCountinPage", "2");
+
+            Hashtable<String, String> htblColNameType = new Hashtable<>();
+            htblColNameType.put("id", "java.lang.Integer");
+            htblColNameType.put("name", "java.lang.String");
+            dbApp.createTable(strTableName, "id", htblColNameType);
+            dbApp.createIndex(strTableName, "name", "nameIndex");
+
+            for (int i = 0; i < 6; i += 2) {
+                Hashtable<String, Object> values = new Hashtable<>();
+                values.put("id", i);
+                values.put("name", "Name " + i);
+                dbApp.insertIntoTable(strTableName, values);
+            }
+
+            // the key falls between two records, neither of them loses its index entry
+            Hashtable<String, Object> update = new Hashtable<>();
+            update.put("name", "Updated");
+            DBAppException e = assertThrows(DBAppException.class, () -> dbApp.updateTable(strTableName, "3", update));
+            assertEquals("Record Not found", e.getMessage());
+
+            DBBTree<String> index = DBBTree.loadIndex(strTableName, "nameIndex");
+            assertNull(index.search("Updated"));
+            assertEquals(new HashMap<>(java.util.Map.of(0, 1)), index.search("Name 0"));
+            assertEquals(new HashMap<>(java.util.Map.of(0, 1)), index.search("Name 2"));
+            assertEquals(new HashMap<>(java.util.Map.of(1, 1)), index.search("Name 4"));
+        } catch (DBAppException e) {
+            e.printStackTrace();
+            fail("DBAppException thrown");
+        }
+    }
 }
@@ -0,0 +1,267 @@
+package DB;
+
+import BTree.DBBTree;
+import BTree.IndexCache;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Hashtable;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WriteAheadLogTest {
+
+    @Test
+    void testStatementsAreLogged() {
+        try {
+            String strTableName = "TestWriteAheadLog";
+            DBApp dbApp = new DBApp();
+
+            Hashtable<String, String> htblColNameType = new Hashtable<>();
+            htblColNameType.put("id", "java.lang.Integer");
+            htblColNameType.put("name", "java.lang.String");
+            dbApp.createTable(strTableName, "id", htblColNameType);
+
+            WriteAheadLog log = WriteAheadLog.getInstance();
+            long lsn = log.getAppendedLsn();
+            long syncs = log.getSyncs();
+
+            for (int i = 0; i < 3; i++) {
+                Hashtable<String, Object> values = new Hashtable<>();
+                values.put("id", i);
+                values.put("name", "name" + i);
+                dbApp.insertIntoTable(strTableName, values);
+
+                // every statement appends one record, and commit mode forces it before returning
+                assertTrue(log.getAppendedLsn() > lsn);
+                assertEquals(log.getAppendedLsn(), log.getDurableLsn());
+                lsn = log.getAppendedLsn();
+            }
+            assertEquals(syncs + 3, log.getSyncs());
+
+            // a statement that changes nothing doesn't touch the log
+            Hashtable<String, Object> values = new Hashtable<>();
+            values.put("id", 10);
+            dbApp.deleteFromTable(strTableName, values);
+            assertEquals(lsn, log.getAppendedLsn());
+
+            // a clean close leaves nothing to recover
+            dbApp.close();
+            assertEquals(WriteAheadLog.HEADER_SIZE, WriteAheadLog.getPath().toFile().length());
+            assertEquals(0, new DBApp().getRecoveryStats().recordsReplayed());
+        } catch (DBAppException e) {
+            e.printStackTrace();
+            fail("DBAppException thrown");
+        }
+    }
+
+    @Test
+    void testCheckpointTruncatesLog() {
+        try {
+            String strTableName = "TestCheckpoint";
+            DBApp dbApp = new DBApp();
+            DBApp.getDbConfig().put("CheckpointLogBytes", "1");
+
+            Hashtable<String, String> htblColNameType = new Hashtable<>();
+            htblColNameType.put("id", "java.lang.Integer");
+            dbApp.createTable(strTableName, "id", htblColNameType);
+
+            WriteAheadLog log = WriteAheadLog.getInstance();
+            long checkpoints = log.getCheckpoints();
+            for (int i = 0; i < 3; i++) {
+                Hashtable<String, Object> values = new Hashtable<>();
+                values.put("id", i);
+                dbApp.insertIntoTable(strTableName, values);
+
+                // every statement fills the log past the limit, so it is truncated right away
+                assertEquals(log.getAppendedLsn(), log.getBaseLsn());
+                assertEquals(WriteAheadLog.HEADER_SIZE, WriteAheadLog.getPath().toFile().length());
+            }
+            assertEquals(checkpoints + 3, log.getCheckpoints());
+        } catch (DBAppException e) {
+            e.printStackTrace();
+            fail("DBAppException thrown");
+        } finally {
+            DBApp.getDbConfig().remove("CheckpointLogBytes");
+        }
+    }
+
+    @Test
+    void testRecoveryRedoesLoggedStatements() {
+        try {
+            String strTableName = "TestRecovery";
+            DBApp dbApp = new DBApp();
+            DBApp.getDbConfig().put("MaximumRowsCountinPage", "2");
+
+            Hashtable<String, String> htblColNameType = new Hashtable<>();
+            htblColNameType.put("id", "java.lang.Integer");
+            htblColNameType.put("name", "java.lang.String");
+            dbApp.createTable(strTableName, "id", htblColNameType);
+            dbApp.createIndex(strTableName, "name", "nameIndex");
+
+            for (int i = 0; i < 5; i++) {
+                Hashtable<String, Object> values = new Hashtable<>();
+                values.put("id", i);
+                values.put("name", "name" + i);
+                dbApp.insertIntoTable(strTableName, values);
+            }
+
+            // crash: the data files are lost, only the log survives, with a torn record at its end
+            Path logPath = WriteAheadLog.getPath();
+            byte[] logBytes = Files.readAllBytes(logPath);
+            dbApp.close();
+            File[] files = logPath.resolveSibling(strTableName).toFile().listFiles();
+            assertNotNull(files);
+            for (File file : files) {
+                assertTrue(file.delete());
+            }
+            Files.write(logPath, logBytes);
+            Files.write(logPath, new byte[]{0, 0, 1, 0, 42}, StandardOpenOption.APPEND);
+
+            dbApp = new DBApp();
+            assertEquals(5, dbApp.getRecoveryStats().recordsReplayed());
+            assertTrue(dbApp.getRecoveryStats().tablesRecovered().contains(strTableName));
+            assertEquals(WriteAheadLog.HEADER_SIZE, logPath.toFile().length());
+
+            Table<Object> table = Table.loadTable(strTableName);
+            assertEquals(3, table.pagesCount());
+            for (int i = 0; i < 5; i++) {
+                Record record = table.getPage(i / 2).getRecords().get(i % 2);
+                assertEquals(i, record.hashtable().get("id"));
+            }
+            assertEquals(Map.of(1, 1), DBBTree.loadIndex(strTableName, "nameIndex").search("name3"));
+        } catch (DBAppException | IOException e) {
+            e.printStackTrace();
+            fail("Exception thrown");
+        }
+    }
+
+    @Test
+    void testRecoveryRebuildsLoggedTablesOnly() {
+        try {
+            DBApp dbApp = new DBApp();
+            String[] tableNames = {"TestRecoveryIdle", "TestRecoveryBusy"};
+            for (String strTableName : tableNames) {
+                Hashtable<String, String> htblColNameType = new Hashtable<>();
+                htblColNameType.put("id", "java.lang.Integer");
+                htblColNameType.put("name", "java.lang.String");
+                dbApp.createTable(strTableName, "id", htblColNameType);
+                dbApp.createIndex(strTableName, "name", "nameIndex");
+                insert(dbApp, strTableName, 0);
+            }
+            dbApp.checkpoint();
+            insert(dbApp, tableNames[1], 1);
+
+            // crash after the checkpoint: the log only names the busy table
+            Path logPath = WriteAheadLog.getPath();
+            byte[] logBytes = Files.readAllBytes(logPath);
+            dbApp.close();
+            Files.write(logPath, logBytes);
+            Path idleIndex = logPath.resolveSibling(tableNames[0]).resolve("nameIndex.ser");
+            byte[] idleIndexBytes = Files.readAllBytes(idleIndex);
+            Files.delete(idleIndex);
+
+            dbApp = new DBApp();
+            assertEquals(Set.of(tableNames[1]), dbApp.getRecoveryStats().tablesRecovered());
+            assertFalse(Files.exists(idleIndex));
+            assertEquals(Map.of(0, 1), DBBTree.loadIndex(tableNames[1], "nameIndex").search("name1"));
+            Files.write(idleIndex, idleIndexBytes);
+        } catch (DBAppException | IOException e) {
+            e.printStackTrace();
+            fail("Exception thrown");
+        }
+    }
+
+    @Test
+    void testRecoveryRebuildsIndexesOfRunningStatements() {
+        try {
+            String strTableName = "TestRecoveryRunning";
+            DBApp dbApp = new DBApp();
+
+            Hashtable<String, String> htblColNameType = new Hashtable<>();
+            htblColNameType.put("id", "java.lang.Integer");
+            htblColNameType.put("name", "java.lang.String");
+            dbApp.createTable(strTableName, "id", htblColNameType);
+            dbApp.createIndex(strTableName, "name", "nameIndex");
+            insert(dbApp, strTableName, 0);
+            dbApp.checkpoint();
+
+            // a statement changes the index and the index is written before the statement commits
+            WriteAheadLog log = WriteAheadLog.getInstance();
+            long lsn = log.getAppendedLsn();
+            DBBTree<String> index = DBBTree.loadIndex(strTableName, "nameIndex");
+            index.insert("ghost", 0);
+            index.saveIndex();
+            assertTrue(log.getDurableLsn() > lsn);
+
+            // crash before the commit
+            Path logPath = WriteAheadLog.getPath();
+            byte[] logBytes = Files.readAllBytes(logPath);
+            dbApp.close();
+            Files.write(logPath, logBytes);
+
+            dbApp = new DBApp();
+            assertEquals(Set.of(strTableName), dbApp.getRecoveryStats().tablesRecovered());
+            assertNull(DBBTree.loadIndex(strTableName, "nameIndex").search("ghost"));
+            assertEquals(Map.of(0, 1), DBBTree.loadIndex(strTableName, "nameIndex").search("name0"));
+        } catch (DBAppException | IOException e) {
+            e.printStackTrace();
+            fail("Exception thrown");
+        }
+    }
+
+    @Test
+    void testFailedStatementIsAborted() {
+        try {
+            String strTableName = "TestAbort";
+            DBApp dbApp = new DBApp();
+
+            Hashtable<String, String> htblColNameType = new Hashtable<>();
+            htblColNameType.put("id", "java.lang.Integer");
+            htblColNameType.put("name", "java.lang.String");
+            dbApp.createTable(strTableName, "id", htblColNameType);
+            dbApp.createIndex(strTableName, "name", "nameIndex");
+            insert(dbApp, strTableName, 0);
+            dbApp.checkpoint();
+
+            // the index is missing when the insert updates it, after the record was added to its page
+            IndexCache.getInstance().invalidate(strTableName);
+            Files.delete(Path.of(DBApp.getDbConfig().getProperty("DataPath"), strTableName, "nameIndex.ser"));
+            String pagePath = Table.loadTable(strTableName).getPagesPath().get(0);
+            WriteAheadLog log = WriteAheadLog.getInstance();
+            long lsn = log.getAppendedLsn();
+            assertThrows(DBAppException.class, () -> insert(dbApp, strTableName, 1));
+
+            // nothing was logged, the page was read again from its file and the index was built again
+            assertEquals(lsn, log.getAppendedLsn());
+            assertFalse(BufferPool.getInstance().isDirty(pagePath));
+            assertNull(DBBTree.loadIndex(strTableName, "nameIndex").search("name1"));
+            assertEquals(1, Table.loadTable(strTableName).getPage(0).size());
+
+            // the next statement logs its own change only
+            insert(dbApp, strTableName, 1);
+            assertTrue(log.getAppendedLsn() > lsn);
+            dbApp.close();
+
+            new DBApp();
+            assertEquals(2, Table.loadTable(strTableName).getPage(0).size());
+            assertEquals(Map.of(0, 1), DBBTree.loadIndex(strTableName, "nameIndex").search("name1"));
+        } catch (DBAppException | IOException e) {
+            e.printStackTrace();
+            fail("Exception thrown");
+        }
+    }
+
+    private static void insert(DBApp dbApp, String strTableName, int id) throws DBAppException {
+        Hashtable<String, Object> values = new Hashtable<>();
+        values.put("id", id);
+        values.put("name", "name" + id);
+        dbApp.insertIntoTable(strTableName, values);
+    }
+}